@@ -0,0 +1,62 @@
+package admission;
+
+/**
+ * A concurrency limit driven by a congestion signal, additive increase and multiplicative
+ * decrease. While operations complete without congestion and the limit is actually being used it
+ * grows by about one per limit's worth of samples; a congested sample cuts it by a tenth, at most
+ * once per limit's worth of samples so that one slow burst does not collapse it.
+ */
+final class AdaptiveLimit {
+
+    private static final double BACKOFF = 0.9;
+
+    private final int min;
+    private final int max;
+
+    private double limit;
+    private int samplesSinceDecrease;
+
+    /**
+     * @param initial the limit before any sample has been seen.
+     * @param min     the lowest the limit goes, at least 1.
+     * @param max     the highest the limit goes.
+     */
+    AdaptiveLimit(int initial, int min, int max) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.limit = Math.max(this.min, Math.min(this.max, initial));
+    }
+
+    /**
+     * Records one completed operation.
+     *
+     * @param congested true if its latency showed the database to be overloaded.
+     * @param inflight  the operations holding a permit when it completed, itself included.
+     */
+    synchronized void onSample(boolean congested, int inflight) {
+        samplesSinceDecrease++;
+        if (congested) {
+            if (samplesSinceDecrease >= limit) {
+                limit = Math.max(min, limit * BACKOFF);
+                samplesSinceDecrease = 0;
+            }
+        } else if (inflight * 2 >= limit) {
+            // Only grow a limit that is in use, otherwise an idle period would drift it to the maximum.
+            limit = Math.min(max, limit + 1 / limit);
+        }
+    }
+
+    /**
+     * @return the number of operations that may currently hold a permit.
+     */
+    synchronized int get() {
+        return (int) limit;
+    }
+
+    /**
+     * @return true if backing off has gone as far as it can.
+     */
+    synchronized boolean isAtMinimum() {
+        return limit <= min;
+    }
+}
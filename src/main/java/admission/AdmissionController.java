@@ -0,0 +1,343 @@
+package admission;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Admission control in front of the DAOs, so that overload turns into quick rejections rather
+ * than every request queueing for a database connection until it times out.
+ * <p>
+ * Work is admitted per {@link OperationClass}. An {@link AdaptiveLimit}, at most the configured
+ * maximum concurrency (roughly the connection budget), bounds everything that runs at once; it
+ * shrinks when operations of any class take longer than their {@link LatencyBaseline} allows and
+ * grows back once they do not. The database is shared, so the limit is too: a slow class would
+ * otherwise be punished for load another class causes. Bulk work may use at most a quarter of the
+ * limit. Requests that cannot start right away wait in a short per-class queue; when a permit is
+ * released the freed slot goes to the highest-priority class with a waiter, so interactive edits
+ * overtake a backlog of bulk imports. A request whose queue is full, or that has waited longer
+ * than the maximum wait, is rejected with a retry hint derived from the current backlog.
+ * <p>
+ * Callbacks are never run while the controller's lock is held.
+ */
+public final class AdmissionController {
+
+    private static final Logger LOGGER = Logger.getLogger(AdmissionController.class.getName());
+    private static final long SWEEP_MILLIS = 20;
+    private static final int MAX_RETRY_AFTER_SECONDS = 30;
+    private static final double LATENCY_TOLERANCE = 2.0;
+
+    private static final AdmissionController DEFAULT = new AdmissionController(
+            Integer.getInteger("ontology.admission.maxConcurrency", 16),
+            Integer.getInteger("ontology.admission.queue", 64),
+            Long.getLong("ontology.admission.maxWaitMillis", 2000));
+
+    /**
+     * Receives the outcome of {@link #submit(OperationClass, Admission)}, exactly one of the two methods.
+     */
+    public interface Admission {
+
+        /**
+         * The work may run now; the permit must be released when it is done, also when it fails.
+         */
+        void admitted(Permit permit);
+
+        /**
+         * The work must not run.
+         *
+         * @param retryAfterSeconds a hint for when a retry is likely to be admitted.
+         */
+        void rejected(int retryAfterSeconds);
+    }
+
+    /**
+     * The right to run one operation. Releasing it more than once has no further effect.
+     */
+    public final class Permit {
+
+        private final Lane lane;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(Lane lane) {
+            this.lane = lane;
+        }
+
+        public OperationClass getOperationClass() {
+            return lane.operationClass;
+        }
+
+        /**
+         * Releases the permit without a latency sample, for work that did not reach the database
+         * (cache hits, 304s, requests rejected before any query) or never ran.
+         */
+        public void release() {
+            if (released.compareAndSet(false, true)) {
+                AdmissionController.this.release(lane, -1);
+            }
+        }
+
+        /**
+         * Releases the permit of work that reached the database.
+         *
+         * @param latencyNanos how long the work ran, from when it started rather than from when it
+         *                     was admitted, so that time spent queueing for a thread is not counted.
+         */
+        public void release(long latencyNanos) {
+            if (released.compareAndSet(false, true)) {
+                AdmissionController.this.release(lane, Math.max(0, latencyNanos));
+            }
+        }
+    }
+
+    private static final class Waiter {
+
+        final Admission admission;
+        final long deadline;
+
+        Waiter(Admission admission, long deadline) {
+            this.admission = admission;
+            this.deadline = deadline;
+        }
+    }
+
+    private static final class Lane {
+
+        final OperationClass operationClass;
+        final LatencyBaseline baseline = new LatencyBaseline(LATENCY_TOLERANCE);
+        final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
+        final LongAdder admittedCount = new LongAdder();
+        final LongAdder rejectedCount = new LongAdder();
+        int inflight;
+
+        Lane(OperationClass operationClass) {
+            this.operationClass = operationClass;
+        }
+    }
+
+    private final AdaptiveLimit limit;
+    private final int queueCapacity;
+    private final long maxWaitNanos;
+    private final Map<OperationClass, Lane> lanes = new EnumMap<>(OperationClass.class);
+    private final Object lock = new Object();
+    private final ScheduledExecutorService sweeper;
+    private int inflight;
+
+    /**
+     * @param maxConcurrency the operations of all classes that may run at once.
+     * @param queueCapacity  the requests of each class that may wait for a permit.
+     * @param maxWaitMillis  how long a request may wait before it is rejected.
+     */
+    public AdmissionController(int maxConcurrency, int queueCapacity, long maxWaitMillis) {
+        int max = Math.max(1, maxConcurrency);
+        this.limit = new AdaptiveLimit(max, Math.max(1, max / 4), max);
+        this.queueCapacity = Math.max(0, queueCapacity);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        for (OperationClass operationClass : OperationClass.values()) {
+            lanes.put(operationClass, new Lane(operationClass));
+        }
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "admission-sweeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::rejectExpired, SWEEP_MILLIS, SWEEP_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    public static AdmissionController getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Asks to run one operation. The outcome is delivered either on the calling thread, or later
+     * on the thread that releases a permit or on the controller's timer thread.
+     */
+    public void submit(OperationClass operationClass, Admission admission) {
+        Lane lane = lanes.get(operationClass);
+        Permit permit = null;
+        int retryAfter = 0;
+        synchronized (lock) {
+            if (lane.waiters.isEmpty() && hasRoom(lane) && !higherPriorityWaiting(lane)) {
+                permit = admit(lane);
+            } else if (lane.waiters.size() < queueCapacity) {
+                lane.waiters.addLast(new Waiter(admission, System.nanoTime() + maxWaitNanos));
+                return;
+            } else {
+                lane.rejectedCount.increment();
+                retryAfter = retryAfter(lane);
+            }
+        }
+        if (permit != null) {
+            notifyAdmitted(admission, permit);
+        } else {
+            notifyRejected(admission, retryAfter);
+        }
+    }
+
+    private void release(Lane lane, long latencyNanos) {
+        List<Waiter> admitted = new ArrayList<>();
+        List<Permit> permits = new ArrayList<>();
+        List<Waiter> expired = new ArrayList<>();
+        List<Integer> retryAfters = new ArrayList<>();
+        synchronized (lock) {
+            if (latencyNanos >= 0) {
+                limit.onSample(lane.baseline.isCongested(latencyNanos, limit.isAtMinimum()), inflight);
+            }
+            lane.inflight--;
+            inflight--;
+            long now = System.nanoTime();
+            for (Lane candidate : lanes.values()) {
+                while (!candidate.waiters.isEmpty() && hasRoom(candidate)) {
+                    Waiter waiter = candidate.waiters.pollFirst();
+                    if (waiter.deadline - now < 0) {
+                        candidate.rejectedCount.increment();
+                        expired.add(waiter);
+                        retryAfters.add(retryAfter(candidate));
+                    } else {
+                        admitted.add(waiter);
+                        permits.add(admit(candidate));
+                    }
+                }
+            }
+        }
+        for (int i = 0; i < expired.size(); i++) {
+            notifyRejected(expired.get(i).admission, retryAfters.get(i));
+        }
+        for (int i = 0; i < admitted.size(); i++) {
+            notifyAdmitted(admitted.get(i).admission, permits.get(i));
+        }
+    }
+
+    private void rejectExpired() {
+        List<Waiter> expired = new ArrayList<>();
+        List<Integer> retryAfters = new ArrayList<>();
+        synchronized (lock) {
+            long now = System.nanoTime();
+            for (Lane lane : lanes.values()) {
+                // Every waiter gets the same maximum wait, so the queue is ordered by deadline.
+                while (!lane.waiters.isEmpty() && lane.waiters.peekFirst().deadline - now < 0) {
+                    expired.add(lane.waiters.pollFirst());
+                    lane.rejectedCount.increment();
+                    retryAfters.add(retryAfter(lane));
+                }
+            }
+        }
+        for (int i = 0; i < expired.size(); i++) {
+            notifyRejected(expired.get(i).admission, retryAfters.get(i));
+        }
+    }
+
+    private boolean hasRoom(Lane lane) {
+        return inflight < limit.get() && lane.inflight < share(lane);
+    }
+
+    /**
+     * @return the part of the limit the class may use on its own.
+     */
+    private int share(Lane lane) {
+        int current = limit.get();
+        return lane.operationClass == OperationClass.BULK ? Math.max(1, current / 4) : current;
+    }
+
+    private boolean higherPriorityWaiting(Lane lane) {
+        for (Lane other : lanes.values()) {
+            if (other == lane) {
+                return false;
+            }
+            if (!other.waiters.isEmpty() && other.inflight < share(other)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Permit admit(Lane lane) {
+        lane.inflight++;
+        inflight++;
+        lane.admittedCount.increment();
+        return new Permit(lane);
+    }
+
+    /**
+     * Estimates how long the backlog of the class takes to drain at its current limit.
+     */
+    private int retryAfter(Lane lane) {
+        double seconds = (lane.waiters.size() + 1) * (double) lane.baseline.getAverageLatency() / share(lane) / 1e9;
+        return (int) Math.max(1, Math.min(MAX_RETRY_AFTER_SECONDS, Math.ceil(seconds)));
+    }
+
+    private static void notifyAdmitted(Admission admission, Permit permit) {
+        try {
+            admission.admitted(permit);
+        } catch (RuntimeException e) {
+            permit.release();
+            LOGGER.log(Level.SEVERE, "Error starting admitted operation", e);
+        }
+    }
+
+    private static void notifyRejected(Admission admission, int retryAfterSeconds) {
+        try {
+            admission.rejected(retryAfterSeconds);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Error rejecting operation", e);
+        }
+    }
+
+    /**
+     * @return the operations of the class that may currently run at once, its share of the adaptive limit.
+     */
+    public int getLimit(OperationClass operationClass) {
+        return share(lanes.get(operationClass));
+    }
+
+    /**
+     * @return the operations of the class holding a permit.
+     */
+    public int getInflight(OperationClass operationClass) {
+        synchronized (lock) {
+            return lanes.get(operationClass).inflight;
+        }
+    }
+
+    /**
+     * @return the requests of the class waiting for a permit.
+     */
+    public int getQueued(OperationClass operationClass) {
+        synchronized (lock) {
+            return lanes.get(operationClass).waiters.size();
+        }
+    }
+
+    public long getAdmitted(OperationClass operationClass) {
+        return lanes.get(operationClass).admittedCount.sum();
+    }
+
+    public long getRejected(OperationClass operationClass) {
+        return lanes.get(operationClass).rejectedCount.sum();
+    }
+
+    /**
+     * Stops the timer; requests still waiting are rejected.
+     */
+    public void shutdown() {
+        sweeper.shutdownNow();
+        List<Waiter> waiting = new ArrayList<>();
+        synchronized (lock) {
+            for (Lane lane : lanes.values()) {
+                waiting.addAll(lane.waiters);
+                lane.waiters.clear();
+            }
+        }
+        for (Waiter waiter : waiting) {
+            notifyRejected(waiter.admission, 1);
+        }
+    }
+}
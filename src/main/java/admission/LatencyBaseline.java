@@ -0,0 +1,72 @@
+package admission;
+
+/**
+ * The latency one class of operations has when the database is not overloaded, kept per class
+ * because a bulk import is expected to take much longer than a single edit. Only operations that
+ * reached the database are sampled. Samples are collected in windows, and the baseline is the
+ * lowest mean latency of the recent windows: the mean of a window, like the smoothed latency it
+ * is compared with, is not dragged down by a few unusually fast operations, the lowest of several
+ * windows ignores one that caught a burst of slow ones, and only recent windows count so that the
+ * baseline follows the database when it gets slower for good. Windows measured while congested
+ * are only taken in once the limit has been backed off completely, since latency that stays high
+ * at minimum concurrency means the database got slower rather than overloaded; otherwise overload
+ * would soon become the new baseline.
+ */
+final class LatencyBaseline {
+
+    private static final int WINDOW = 100;
+    private static final int HISTORY = 20;
+    private static final double SMOOTHING = 0.05;
+
+    private final double tolerance;
+
+    private double windowTotal;
+    private int windowSamples;
+    private final double[] history = new double[HISTORY];
+    private int historySize;
+    private int historyNext;
+    private double baseline = Double.NaN;
+    private double averageLatency;
+
+    /**
+     * @param tolerance how many times the baseline latency is still considered healthy.
+     */
+    LatencyBaseline(double tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Records the latency of one completed operation.
+     *
+     * @param backedOff true if the limit is at its minimum.
+     * @return true if the recent latency, smoothed so that one slow sample does not count, is
+     * above what the baseline tolerates; always false until the first window is complete.
+     */
+    synchronized boolean isCongested(long latencyNanos, boolean backedOff) {
+        averageLatency = averageLatency == 0 ? latencyNanos : averageLatency + SMOOTHING * (latencyNanos - averageLatency);
+        boolean congested = !Double.isNaN(baseline) && averageLatency > baseline * tolerance;
+        windowTotal += latencyNanos;
+        if (++windowSamples == WINDOW) {
+            double mean = windowTotal / WINDOW;
+            if (!congested || backedOff || mean < baseline) {
+                history[historyNext] = mean;
+                historyNext = (historyNext + 1) % HISTORY;
+                historySize = Math.min(HISTORY, historySize + 1);
+                baseline = Double.MAX_VALUE;
+                for (int i = 0; i < historySize; i++) {
+                    baseline = Math.min(baseline, history[i]);
+                }
+            }
+            windowTotal = 0;
+            windowSamples = 0;
+        }
+        return congested;
+    }
+
+    /**
+     * @return the smoothed latency of recent operations, 0 before the first sample.
+     */
+    synchronized long getAverageLatency() {
+        return (long) averageLatency;
+    }
+}
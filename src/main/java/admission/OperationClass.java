@@ -0,0 +1,20 @@
+package admission;
+
+/**
+ * The kinds of work the admission controller limits separately, in priority order: when a slot
+ * frees up, waiting writes are admitted before reads, and reads before bulk operations.
+ */
+public enum OperationClass {
+    /**
+     * Interactive edits, a user waiting on a single create, update or delete.
+     */
+    WRITE,
+    /**
+     * Interactive reads.
+     */
+    READ,
+    /**
+     * Bulk imports and other batch work that can tolerate waiting or being retried.
+     */
+    BULK
+}
@@ -0,0 +1,4 @@
+/**
+ * Package for admission.
+ */
+package admission;
\ No newline at end of file
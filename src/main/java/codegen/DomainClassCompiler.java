@@ -0,0 +1,230 @@
+package codegen;
+
+import model.ObjectTypes;
+import org.apache.maven.shared.invoker.DefaultInvocationRequest;
+import org.apache.maven.shared.invoker.DefaultInvoker;
+import org.apache.maven.shared.invoker.InvocationRequest;
+import org.apache.maven.shared.invoker.InvocationResult;
+import org.apache.maven.shared.invoker.Invoker;
+import org.apache.maven.shared.invoker.MavenInvocationException;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compiles the project written by {@link DomainClassGenerator} into a jar. The build is skipped
+ * when generation changed nothing and the jar already exists. Otherwise, when the JDK's compiler
+ * is available and the project has been built before, only the regenerated classes are compiled
+ * into {@code target/classes}: the generated classes depend on nothing but the JDK, so they are
+ * split into one batch per core and the batches compiled concurrently, after which the jar is
+ * rewritten from the class files. The first build, or a build on a JRE without a compiler,
+ * packages the whole project through maven-invoker.
+ */
+public class DomainClassCompiler {
+
+    private static final Logger LOGGER = Logger.getLogger(DomainClassCompiler.class.getName());
+
+    // Below this many classes per batch, starting another compiler costs more than it saves.
+    private static final int MIN_BATCH_SIZE = Integer.getInteger("codegen.minBatchSize", 50);
+
+    private final File mavenHome;
+
+    /**
+     * @param mavenHome the Maven installation to run, or null to use the maven.home system property.
+     */
+    public DomainClassCompiler(File mavenHome) {
+        this.mavenHome = mavenHome;
+    }
+
+    /**
+     * Generates the domain classes for the given object types and packages them.
+     *
+     * @param generator   the generator owning the project directory.
+     * @param objectTypes the object types, each with its attributes list populated.
+     * @return the packaged jar.
+     * @throws IOException if generation or the Maven build fails.
+     */
+    public File generateAndPackage(DomainClassGenerator generator, List<ObjectTypes> objectTypes) throws IOException {
+        DomainClassGenerator.GenerationResult result = generator.generate(objectTypes);
+        LOGGER.log(Level.INFO, "Domain class generation: " + result);
+        File jar = findJar(generator.getProjectDir());
+        if (!result.hasChanges() && jar != null) {
+            return jar;
+        }
+        Path classesDir = generator.getProjectDir().resolve("target/classes");
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (jar == null || compiler == null || !Files.isDirectory(classesDir)) {
+            return packageProject(generator.getProjectDir());
+        }
+        Path packageDir = classesDir.resolve(generator.getBasePackage().replace('.', '/'));
+        for (String removed : result.getRemovedClasses()) {
+            Files.deleteIfExists(packageDir.resolve(removed + ".class"));
+        }
+        List<File> sources = new ArrayList<>();
+        for (String regenerated : result.getRegeneratedClasses()) {
+            sources.add(generator.getSourceDir().resolve(regenerated + ".java").toFile());
+        }
+        compile(compiler, sources, classesDir);
+        return writeJar(classesDir, jar.toPath());
+    }
+
+    /**
+     * Compiles the sources into the output directory, in concurrent batches. The sources must not
+     * depend on each other.
+     *
+     * @param compiler  the compiler to run.
+     * @param sources   the sources to compile.
+     * @param outputDir the class output directory.
+     * @throws IOException if a source does not compile.
+     */
+    public void compile(JavaCompiler compiler, List<File> sources, Path outputDir) throws IOException {
+        if (sources.isEmpty()) {
+            return;
+        }
+        int batches = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors(), sources.size() / MIN_BATCH_SIZE));
+        ExecutorService executor = Executors.newFixedThreadPool(batches);
+        try {
+            List<Future<List<String>>> results = new ArrayList<>();
+            for (int b = 0; b < batches; b++) {
+                List<File> batch = sources.subList(b * sources.size() / batches, (b + 1) * sources.size() / batches);
+                results.add(executor.submit(() -> compileBatch(compiler, batch, outputDir)));
+            }
+            List<String> errors = new ArrayList<>();
+            for (Future<List<String>> result : results) {
+                errors.addAll(result.get());
+            }
+            if (!errors.isEmpty()) {
+                throw new IOException("Compilation of generated classes failed: " + String.join("\n", errors));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while compiling generated classes");
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException ? (IOException) e.getCause()
+                    : new IOException("Could not compile generated classes", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        LOGGER.log(Level.INFO, "Compiled " + sources.size() + " generated classes in " + batches + " batches");
+    }
+
+    // Each batch gets its own file manager, which is not thread-safe.
+    private static List<String> compileBatch(JavaCompiler compiler, List<File> batch, Path outputDir) throws IOException {
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, StandardCharsets.UTF_8)) {
+            List<String> options = Arrays.asList("--release", "11", "-encoding", "UTF-8", "-implicit:none",
+                    "-d", outputDir.toString());
+            Boolean success = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    fileManager.getJavaFileObjectsFromFiles(batch)).call();
+            List<String> errors = new ArrayList<>();
+            for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                    errors.add(diagnostic.toString());
+                }
+            }
+            if (!success && errors.isEmpty()) {
+                errors.add("javac failed on " + batch.size() + " sources without reporting an error");
+            }
+            return errors;
+        }
+    }
+
+    // Written next to the jar and moved over it, so readers never see a partial jar.
+    private static File writeJar(Path classesDir, Path jar) throws IOException {
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        Path temporary = Files.createTempFile(jar.getParent(), jar.getFileName().toString(), ".tmp");
+        try {
+            List<Path> files;
+            try (Stream<Path> walk = Files.walk(classesDir)) {
+                files = walk.filter(Files::isRegularFile).sorted().collect(Collectors.toList());
+            }
+            try (JarOutputStream out = new JarOutputStream(Files.newOutputStream(temporary), manifest)) {
+                for (Path file : files) {
+                    out.putNextEntry(new JarEntry(classesDir.relativize(file).toString().replace(File.separatorChar, '/')));
+                    Files.copy(file, out);
+                    out.closeEntry();
+                }
+            }
+            Files.move(temporary, jar, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return jar.toFile();
+    }
+
+    /**
+     * Runs {@code mvn package} on the generated project.
+     *
+     * @param projectDir the generated project.
+     * @return the packaged jar.
+     * @throws IOException if the build fails.
+     */
+    public File packageProject(Path projectDir) throws IOException {
+        InvocationRequest request = new DefaultInvocationRequest();
+        request.setPomFile(projectDir.resolve("pom.xml").toFile());
+        request.setGoals(Collections.singletonList("package"));
+        request.setBatchMode(true);
+        request.setOffline(Boolean.getBoolean("codegen.offline"));
+
+        Invoker invoker = new DefaultInvoker();
+        if (mavenHome != null) {
+            invoker.setMavenHome(mavenHome);
+        }
+        invoker.setOutputHandler(line -> LOGGER.log(Level.FINE, line));
+        try {
+            InvocationResult result = invoker.execute(request);
+            if (result.getExitCode() != 0) {
+                throw new IOException("Maven build of generated classes failed with exit code " + result.getExitCode(),
+                        result.getExecutionException());
+            }
+        } catch (MavenInvocationException e) {
+            throw new IOException("Could not invoke Maven for generated classes", e);
+        }
+        File jar = findJar(projectDir);
+        if (jar == null) {
+            throw new IOException("Maven build of generated classes produced no jar in " + projectDir.resolve("target"));
+        }
+        return jar;
+    }
+
+    private static File findJar(Path projectDir) throws IOException {
+        Path target = projectDir.resolve("target");
+        if (!Files.isDirectory(target)) {
+            return null;
+        }
+        try (Stream<Path> files = Files.list(target)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".jar"))
+                    .map(Path::toFile)
+                    .findFirst()
+                    .orElse(null);
+        }
+    }
+}
@@ -0,0 +1,383 @@
+package codegen;
+
+import model.Attributes;
+import model.ObjectTypes;
+import utils.DataTypeMapping;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Generates one Java domain class per object type into a standalone Maven project.
+ * Each object type is fingerprinted from its class name and attribute definitions; the
+ * fingerprints of the previous run are kept in a manifest, and only object types whose
+ * fingerprint changed are rewritten. Fingerprinting and writing run in parallel.
+ */
+public class DomainClassGenerator {
+
+    private static final String MANIFEST = ".codegen-manifest.properties";
+    private static final String VERSION = "0.0.1";
+    private static final Set<String> KEYWORDS = new HashSet<>(java.util.Arrays.asList(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+            "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
+            "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
+            "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp",
+            "super", "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void",
+            "volatile", "while", "true", "false", "null", "var"));
+
+    private final Path projectDir;
+    private final String basePackage;
+
+    /**
+     * @param projectDir  the directory of the generated Maven project.
+     * @param basePackage the package of the generated classes.
+     */
+    public DomainClassGenerator(Path projectDir, String basePackage) {
+        this.projectDir = projectDir;
+        this.basePackage = basePackage;
+    }
+
+    public Path getProjectDir() {
+        return projectDir;
+    }
+
+    public String getBasePackage() {
+        return basePackage;
+    }
+
+    /**
+     * @return the file name Maven gives the jar of the generated project.
+     */
+    public String getJarName() {
+        return artifactId() + "-" + VERSION + ".jar";
+    }
+
+    /**
+     * @return the directory holding the generated sources.
+     */
+    public Path getSourceDir() {
+        return projectDir.resolve("src/main/java").resolve(basePackage.replace('.', '/'));
+    }
+
+    /**
+     * Brings the generated sources in line with the given object types.
+     *
+     * @param objectTypes the object types, each with its attributes list populated.
+     * @return what was regenerated, removed and left untouched.
+     * @throws IOException if the project cannot be written.
+     */
+    public GenerationResult generate(List<ObjectTypes> objectTypes) throws IOException {
+        Path sourceDir = getSourceDir();
+        Files.createDirectories(sourceDir);
+        writePomIfMissing();
+
+        Map<Integer, String> classNames = assignClassNames(objectTypes);
+        Properties previous = loadManifest();
+        Map<Integer, String> fingerprints = new ConcurrentHashMap<>();
+        objectTypes.parallelStream().forEach(objectType ->
+                fingerprints.put(objectType.getId(), fingerprint(classNames.get(objectType.getId()), objectType)));
+
+        List<ObjectTypes> changed = objectTypes.stream()
+                .filter(objectType -> !fingerprints.get(objectType.getId()).equals(previous.getProperty(String.valueOf(objectType.getId()))))
+                .collect(Collectors.toList());
+        try {
+            changed.parallelStream().forEach(objectType -> {
+                String className = classNames.get(objectType.getId());
+                try {
+                    Files.write(sourceDir.resolve(className + ".java"), render(className, objectType).getBytes(StandardCharsets.UTF_8));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // Remove classes of deleted or renamed object types.
+        Set<String> live = new HashSet<>(classNames.values());
+        List<String> removed = new ArrayList<>();
+        for (String key : previous.stringPropertyNames()) {
+            String oldClass = previous.getProperty(key).substring(previous.getProperty(key).indexOf(':') + 1);
+            if (!live.contains(oldClass) && Files.deleteIfExists(sourceDir.resolve(oldClass + ".java"))) {
+                removed.add(oldClass);
+            }
+        }
+
+        Properties manifest = new Properties();
+        fingerprints.forEach((id, fingerprint) -> manifest.setProperty(String.valueOf(id), fingerprint));
+        try (OutputStream out = Files.newOutputStream(projectDir.resolve(MANIFEST))) {
+            manifest.store(out, "Fingerprints of generated domain classes");
+        }
+        List<String> regenerated = changed.stream().map(objectType -> classNames.get(objectType.getId())).collect(Collectors.toList());
+        return new GenerationResult(regenerated, removed, objectTypes.size() - changed.size());
+    }
+
+    private Map<Integer, String> assignClassNames(List<ObjectTypes> objectTypes) {
+        Map<String, Integer> uses = new HashMap<>();
+        for (ObjectTypes objectType : objectTypes) {
+            uses.merge(toIdentifier(objectType.getName(), true), 1, Integer::sum);
+        }
+        Map<Integer, String> names = new HashMap<>();
+        for (ObjectTypes objectType : objectTypes) {
+            String name = toIdentifier(objectType.getName(), true);
+            // Names that collide after sanitising are disambiguated by id so they stay stable between runs.
+            names.put(objectType.getId(), uses.get(name) > 1 ? name + "_" + objectType.getId() : name);
+        }
+        return names;
+    }
+
+    private static String fingerprint(String className, ObjectTypes objectType) {
+        StringBuilder canonical = new StringBuilder(className).append('\n').append(objectType.getDescription()).append('\n');
+        List<Attributes> attributes = sortedAttributes(objectType);
+        for (Attributes attribute : attributes) {
+            canonical.append(attribute.getName()).append('\t')
+                    .append(attribute.getDataType()).append('\t')
+                    .append(attribute.isRequired()).append('\t')
+                    .append(attribute.getDefaultValue()).append('\n');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(canonical.toString().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            // The class name is kept in the manifest so stale files can be removed after a rename.
+            return hex + ":" + className;
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private String render(String className, ObjectTypes objectType) {
+        StringBuilder source = new StringBuilder();
+        source.append("package ").append(basePackage).append(";\n\n");
+        source.append("/**\n * Generated from object type '").append(escapeComment(objectType.getName())).append("' (id ")
+                .append(objectType.getId()).append("). Do not edit.\n");
+        if (objectType.getDescription() != null) {
+            source.append(" * <p>").append(escapeComment(objectType.getDescription())).append("\n");
+        }
+        source.append(" */\npublic class ").append(className).append(" {\n");
+
+        List<String[]> fields = new ArrayList<>();
+        Set<String> fieldNames = new HashSet<>();
+        for (Attributes attribute : sortedAttributes(objectType)) {
+            String field = toIdentifier(attribute.getName(), false);
+            while (!fieldNames.add(field)) {
+                field = field + "_";
+            }
+            String type = DataTypeMapping.javaType(attribute.getDataType()).getName().replace("java.lang.", "");
+            fields.add(new String[]{field, type});
+            source.append("\n    /** Attribute '").append(escapeComment(attribute.getName())).append("'")
+                    .append(attribute.isRequired() ? ", required" : "").append(". */\n");
+            source.append("    private ").append(type).append(' ').append(field);
+            String initializer = defaultInitializer(attribute);
+            if (initializer != null) {
+                source.append(" = ").append(initializer);
+            }
+            source.append(";\n");
+        }
+        for (String[] field : fields) {
+            String property = Character.toUpperCase(field[0].charAt(0)) + field[0].substring(1);
+            source.append("\n    public ").append(field[1]).append(" get").append(property).append("() {\n")
+                    .append("        return ").append(field[0]).append(";\n    }\n");
+            source.append("\n    public void set").append(property).append('(').append(field[1]).append(' ').append(field[0]).append(") {\n")
+                    .append("        this.").append(field[0]).append(" = ").append(field[0]).append(";\n    }\n");
+        }
+        source.append("}\n");
+        return source.toString();
+    }
+
+    private static String defaultInitializer(Attributes attribute) {
+        String value = attribute.getDefaultValue();
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            switch (attribute.getDataType()) {
+                case INTEGER:
+                    return Long.parseLong(value.trim()) + "L";
+                case FLOAT:
+                    return Double.toString(Double.parseDouble(value.trim()));
+                case DATE:
+                    return "java.time.LocalDate.parse(\"" + java.time.LocalDate.parse(value.trim()) + "\")";
+                case DATETIME:
+                    return "java.time.LocalDateTime.parse(\"" + java.time.LocalDateTime.parse(value.trim().replace(' ', 'T')) + "\")";
+                default:
+                    return quote(value);
+            }
+        } catch (RuntimeException e) {
+            // An unparseable default is a data problem, not a reason to emit uncompilable code.
+            return null;
+        }
+    }
+
+    private static List<Attributes> sortedAttributes(ObjectTypes objectType) {
+        List<Attributes> attributes = objectType.getAttributesList() == null ? new ArrayList<>() : new ArrayList<>(objectType.getAttributesList());
+        attributes.sort(Comparator.comparing(Attributes::getName, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return attributes;
+    }
+
+    static String toIdentifier(String name, boolean typeName) {
+        StringBuilder identifier = new StringBuilder();
+        boolean upperNext = typeName;
+        if (name != null) {
+            for (char c : name.toCharArray()) {
+                if (Character.isLetterOrDigit(c)) {
+                    if (identifier.length() == 0) {
+                        identifier.append(typeName ? Character.toUpperCase(c) : Character.toLowerCase(c));
+                    } else {
+                        identifier.append(upperNext ? Character.toUpperCase(c) : c);
+                    }
+                    upperNext = false;
+                } else {
+                    upperNext = true;
+                }
+            }
+        }
+        if (identifier.length() == 0 || !Character.isJavaIdentifierStart(identifier.charAt(0))) {
+            identifier.insert(0, typeName ? "Type" : "attr");
+        }
+        String result = identifier.toString();
+        return KEYWORDS.contains(result) ? result + "_" : result;
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                default:
+                    if (c < 0x20 || c > 0x7e) {
+                        quoted.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        quoted.append(c);
+                    }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    private static String escapeComment(String text) {
+        return text == null ? "" : text.replace("*/", "*&#47;").replace("\\u", "\\\\u").replace('\n', ' ');
+    }
+
+    private Properties loadManifest() throws IOException {
+        Properties manifest = new Properties();
+        Path file = projectDir.resolve(MANIFEST);
+        if (Files.exists(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                manifest.load(in);
+            }
+        }
+        return manifest;
+    }
+
+    private void writePomIfMissing() throws IOException {
+        Path pom = projectDir.resolve("pom.xml");
+        if (Files.exists(pom)) {
+            return;
+        }
+        String content = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+                + "<project xmlns=\"http://maven.apache.org/POM/4.0.0\" xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\""
+                + " xsi:schemaLocation=\"http://maven.apache.org/POM/4.0.0 http://maven.apache.org/maven-v4_0_0.xsd\">\n"
+                + "  <modelVersion>4.0.0</modelVersion>\n"
+                + "  <groupId>" + basePackage + "</groupId>\n"
+                + "  <artifactId>" + artifactId() + "</artifactId>\n"
+                + "  <packaging>jar</packaging>\n"
+                + "  <version>" + VERSION + "</version>\n"
+                + "  <properties>\n"
+                + "    <maven.compiler.source>11</maven.compiler.source>\n"
+                + "    <maven.compiler.target>11</maven.compiler.target>\n"
+                + "    <project.build.sourceEncoding>UTF-8</project.build.sourceEncoding>\n"
+                + "  </properties>\n"
+                + "</project>\n";
+        Files.write(pom, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String artifactId() {
+        return basePackage.substring(basePackage.lastIndexOf('.') + 1);
+    }
+
+    /**
+     * Summary of a generation run.
+     */
+    public static final class GenerationResult {
+        private final List<String> regenerated;
+        private final List<String> removed;
+        private final int unchanged;
+
+        GenerationResult(List<String> regenerated, List<String> removed, int unchanged) {
+            this.regenerated = Collections.unmodifiableList(regenerated);
+            this.removed = Collections.unmodifiableList(removed);
+            this.unchanged = unchanged;
+        }
+
+        public int getRegenerated() {
+            return regenerated.size();
+        }
+
+        public int getRemoved() {
+            return removed.size();
+        }
+
+        /**
+         * @return the simple names of the classes whose sources were rewritten.
+         */
+        public List<String> getRegeneratedClasses() {
+            return regenerated;
+        }
+
+        /**
+         * @return the simple names of the classes whose sources were deleted.
+         */
+        public List<String> getRemovedClasses() {
+            return removed;
+        }
+
+        public int getUnchanged() {
+            return unchanged;
+        }
+
+        public boolean hasChanges() {
+            return !regenerated.isEmpty() || !removed.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "GenerationResult{" +
+                    "regenerated=" + regenerated.size() +
+                    ", removed=" + removed.size() +
+                    ", unchanged=" + unchanged +
+                    '}';
+        }
+    }
+}
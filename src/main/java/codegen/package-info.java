@@ -0,0 +1,4 @@
+/**
+ * Package for codegen.
+ */
+package codegen;
\ No newline at end of file
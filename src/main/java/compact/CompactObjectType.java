@@ -0,0 +1,51 @@
+package compact;
+
+/**
+ * One object type and all its attributes in primitive arrays, the attributes as a struct of
+ * arrays: attribute {@code i} is {@code attributeIds[i]}, {@code nameCodes[i]} and so on. Strings
+ * are dictionary codes, enums their ordinal as a byte (-1 for null) and timestamps microseconds
+ * since the epoch ({@link CompactOntology#NO_TIMESTAMP} for null), so an object type with twenty
+ * attributes is a dozen objects instead of well over a hundred.
+ */
+final class CompactObjectType {
+
+    static final byte REQUIRED = 1;
+    static final byte INDEXED = 2;
+
+    final int id;
+    final int nameCode;
+    final String description;
+    final int version;
+    final long createdAt;
+    final long updatedAt;
+
+    final int[] attributeIds;
+    final int[] nameCodes;
+    final byte[] dataTypes;
+    final byte[] flags;
+    final int[] defaultValueCodes;
+    final int[] enumValuesCodes;
+    final int[] usageCounts;
+    final int[] versions;
+
+    CompactObjectType(int id, int nameCode, String description, int version, long createdAt, long updatedAt, int attributeCount) {
+        this.id = id;
+        this.nameCode = nameCode;
+        this.description = description;
+        this.version = version;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+        this.attributeIds = new int[attributeCount];
+        this.nameCodes = new int[attributeCount];
+        this.dataTypes = new byte[attributeCount];
+        this.flags = new byte[attributeCount];
+        this.defaultValueCodes = new int[attributeCount];
+        this.enumValuesCodes = new int[attributeCount];
+        this.usageCounts = new int[attributeCount];
+        this.versions = new int[attributeCount];
+    }
+
+    int attributeCount() {
+        return attributeIds.length;
+    }
+}
@@ -0,0 +1,199 @@
+package compact;
+
+import model.Attributes;
+import model.ObjectType;
+import model.ObjectTypes;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A read-only ontology of object types and their attributes held in a fraction of the heap the
+ * model classes need. Names, default values and enum value lists are interned in dictionaries,
+ * timestamps are longs, enums bytes, and the attributes of each object type are a struct of
+ * primitive arrays rather than one object per attribute with its own strings and references.
+ * <p>
+ * The adapters return ordinary {@link ObjectTypes} and {@link Attributes}, built on demand, so
+ * code written against the model API can read from it unchanged. They are copies: changing one
+ * does not change the ontology, which is rebuilt with {@link #of(List, Map)} instead.
+ */
+public final class CompactOntology {
+
+    /**
+     * The encoding of a null timestamp.
+     */
+    static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private static final Attributes.DataTypes[] DATA_TYPES = Attributes.DataTypes.values();
+
+    private final Dictionary<String> strings;
+    private final Dictionary<List<String>> enumValueLists;
+    // Sorted by id, with the ids repeated in a primitive array for binary search
+    private final int[] ids;
+    private final CompactObjectType[] objectTypes;
+    private final int attributeCount;
+
+    private CompactOntology(Dictionary<String> strings, Dictionary<List<String>> enumValueLists, CompactObjectType[] objectTypes) {
+        this.strings = strings;
+        this.enumValueLists = enumValueLists;
+        this.objectTypes = objectTypes;
+        this.ids = new int[objectTypes.length];
+        int attributes = 0;
+        for (int i = 0; i < objectTypes.length; i++) {
+            ids[i] = objectTypes[i].id;
+            attributes += objectTypes[i].attributeCount();
+        }
+        this.attributeCount = attributes;
+    }
+
+    /**
+     * Builds the compact form, e.g. from {@code ObjectTypesDAO.getAllObjectTypes()} and
+     * {@code AttributesDAO.findAllAttributesByObjectType()}.
+     *
+     * @param attributesByObjectType attributes keyed by the id of their object type; object types
+     *                               without an entry have no attributes.
+     */
+    public static CompactOntology of(List<ObjectTypes> objectTypes, Map<Integer, List<Attributes>> attributesByObjectType) {
+        Dictionary.Builder<String> strings = new Dictionary.Builder<>();
+        Dictionary.Builder<List<String>> enumValueLists = new Dictionary.Builder<>();
+        List<ObjectTypes> sorted = new ArrayList<>(objectTypes);
+        sorted.sort(Comparator.comparingInt(ObjectTypes::getId));
+        CompactObjectType[] compact = new CompactObjectType[sorted.size()];
+        for (int i = 0; i < compact.length; i++) {
+            ObjectTypes objectType = sorted.get(i);
+            if (i > 0 && objectType.getId() == compact[i - 1].id) {
+                throw new IllegalArgumentException("Duplicate object type " + objectType.getId());
+            }
+            List<Attributes> attributes = attributesByObjectType.getOrDefault(objectType.getId(), Collections.emptyList());
+            CompactObjectType encoded = new CompactObjectType(objectType.getId(), strings.intern(objectType.getName()),
+                    objectType.getDescription(), objectType.getVersion(), encode(objectType.getCreatedAt()),
+                    encode(objectType.getUpdatedAt()), attributes.size());
+            for (int a = 0; a < attributes.size(); a++) {
+                Attributes attribute = attributes.get(a);
+                encoded.attributeIds[a] = attribute.getId();
+                encoded.nameCodes[a] = strings.intern(attribute.getName());
+                encoded.dataTypes[a] = attribute.getDataType() == null ? -1 : (byte) attribute.getDataType().ordinal();
+                encoded.flags[a] = (byte) ((attribute.isRequired() ? CompactObjectType.REQUIRED : 0)
+                        | (attribute.isIndexed() ? CompactObjectType.INDEXED : 0));
+                encoded.defaultValueCodes[a] = strings.intern(attribute.getDefaultValue());
+                encoded.enumValuesCodes[a] = enumValueLists.intern(enumValues(attribute.getEnumValues()));
+                encoded.usageCounts[a] = attribute.getAttributeUsageCount();
+                encoded.versions[a] = attribute.getVersion();
+            }
+            compact[i] = encoded;
+        }
+        return new CompactOntology(strings.build(), enumValueLists.build(), compact);
+    }
+
+    public int getObjectTypeCount() {
+        return objectTypes.length;
+    }
+
+    public int getAttributeCount() {
+        return attributeCount;
+    }
+
+    /**
+     * @return the number of distinct strings stored for all names and default values.
+     */
+    public int getDistinctStringCount() {
+        return strings.size();
+    }
+
+    public boolean containsObjectType(int id) {
+        return Arrays.binarySearch(ids, id) >= 0;
+    }
+
+    /**
+     * @return the object type with its attributes list filled in, or null if there is none with the id.
+     */
+    public ObjectTypes getObjectType(int id) {
+        int index = Arrays.binarySearch(ids, id);
+        return index < 0 ? null : toObjectType(objectTypes[index]);
+    }
+
+    /**
+     * @return all object types ordered by id, each with its attributes list filled in.
+     */
+    public List<ObjectTypes> getObjectTypes() {
+        List<ObjectTypes> all = new ArrayList<>(objectTypes.length);
+        for (CompactObjectType objectType : objectTypes) {
+            all.add(toObjectType(objectType));
+        }
+        return all;
+    }
+
+    /**
+     * @return the attributes of the object type in their original order, empty if it has none or does not exist.
+     */
+    public List<Attributes> getAttributes(int objectTypeId) {
+        int index = Arrays.binarySearch(ids, objectTypeId);
+        return index < 0 ? new ArrayList<>() : toAttributes(objectTypes[index]);
+    }
+
+    private ObjectTypes toObjectType(CompactObjectType compact) {
+        ObjectTypes objectType = new ObjectTypes();
+        objectType.setId(compact.id);
+        objectType.setName(strings.get(compact.nameCode));
+        objectType.setDescription(compact.description);
+        objectType.setVersion(compact.version);
+        objectType.setCreatedAt(decode(compact.createdAt));
+        objectType.setUpdatedAt(decode(compact.updatedAt));
+        objectType.setAttributesList(toAttributes(compact));
+        return objectType;
+    }
+
+    private List<Attributes> toAttributes(CompactObjectType compact) {
+        List<Attributes> attributes = new ArrayList<>(compact.attributeCount());
+        // The parent only carries its id, as when the attributes are read by object type id.
+        ObjectType parent = new ObjectType();
+        parent.setId(compact.id);
+        for (int a = 0; a < compact.attributeCount(); a++) {
+            Attributes attribute = new Attributes();
+            attribute.setId(compact.attributeIds[a]);
+            attribute.setObjectTypeId(parent);
+            attribute.setFkObjectType(parent);
+            attribute.setName(strings.get(compact.nameCodes[a]));
+            attribute.setDataType(compact.dataTypes[a] < 0 ? null : DATA_TYPES[compact.dataTypes[a]]);
+            attribute.setRequired((compact.flags[a] & CompactObjectType.REQUIRED) != 0);
+            attribute.setIndexed((compact.flags[a] & CompactObjectType.INDEXED) != 0);
+            attribute.setDefaultValue(strings.get(compact.defaultValueCodes[a]));
+            // The interned list is shared and unmodifiable, so each copy gets its own.
+            List<String> enumValues = enumValueLists.get(compact.enumValuesCodes[a]);
+            attribute.setEnumValues(enumValues == null ? null : new ArrayList<>(enumValues));
+            attribute.setAttributeUsageCount(compact.usageCounts[a]);
+            attribute.setVersion(compact.versions[a]);
+            attributes.add(attribute);
+        }
+        return attributes;
+    }
+
+    // An unmodifiable copy to intern; unlike List.copyOf it keeps null elements, which the column allows
+    private static List<String> enumValues(List<String> enumValues) {
+        return enumValues == null ? null : Collections.unmodifiableList(new ArrayList<>(enumValues));
+    }
+
+    /**
+     * Encodes a timestamp as microseconds since the epoch, the precision PostgreSQL stores.
+     */
+    static long encode(Timestamp timestamp) {
+        if (timestamp == null) {
+            return NO_TIMESTAMP;
+        }
+        return Math.floorDiv(timestamp.getTime(), 1000) * 1000000 + timestamp.getNanos() / 1000;
+    }
+
+    static Timestamp decode(long micros) {
+        if (micros == NO_TIMESTAMP) {
+            return null;
+        }
+        Timestamp timestamp = new Timestamp(Math.floorDiv(micros, 1000000) * 1000);
+        timestamp.setNanos((int) Math.floorMod(micros, 1000000) * 1000);
+        return timestamp;
+    }
+}
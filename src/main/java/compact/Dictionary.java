@@ -0,0 +1,56 @@
+package compact;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps repeated values, such as attribute names, to small int codes so that each distinct value
+ * is stored once. Codes are assigned while a {@link CompactOntology} is built; afterwards only
+ * the value array is kept, and decoding a code is one array access. Null is code -1.
+ *
+ * @param <T> the value type, with value-based equals and hashCode.
+ */
+final class Dictionary<T> {
+
+    static final int NULL = -1;
+
+    private final Object[] values;
+
+    private Dictionary(Object[] values) {
+        this.values = values;
+    }
+
+    @SuppressWarnings("unchecked")
+    T get(int code) {
+        return code == NULL ? null : (T) values[code];
+    }
+
+    int size() {
+        return values.length;
+    }
+
+    static final class Builder<T> {
+
+        private final Map<T, Integer> codes = new HashMap<>();
+        private final List<T> values = new ArrayList<>();
+
+        int intern(T value) {
+            if (value == null) {
+                return NULL;
+            }
+            Integer code = codes.get(value);
+            if (code == null) {
+                code = values.size();
+                codes.put(value, code);
+                values.add(value);
+            }
+            return code;
+        }
+
+        Dictionary<T> build() {
+            return new Dictionary<>(values.toArray());
+        }
+    }
+}
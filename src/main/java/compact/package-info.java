@@ -0,0 +1,4 @@
+/**
+ * Package for compact.
+ */
+package compact;
\ No newline at end of file
@@ -0,0 +1,139 @@
+package consistency;
+
+import events.ChangeEvent;
+import model.Attributes;
+import validation.ValidationPlan;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The tables whose rows are checked, with the columns each check reads and the rule logic.
+ * Every table references one parent table; a changed parent id makes its referencing rows
+ * due for a recheck.
+ */
+enum CheckedTable {
+
+    ATTRIBUTES(ChangeEvent.ATTRIBUTES, "id, fk_object_type_id, data_type, default_value, enum_values",
+            "fk_object_type_id", ChangeEvent.OBJECT_TYPES) {
+        @Override
+        void check(ResultSet row, IdBitSet objectTypeIds, IdBitSet relationshipIds, List<Violation> violations) throws SQLException {
+            int id = row.getInt(1);
+            int objectTypeId = row.getInt(2);
+            if (row.wasNull() || !objectTypeIds.get(objectTypeId)) {
+                violations.add(new Violation(Rule.ATTRIBUTE_OBJECT_TYPE_MISSING, id,
+                        "fk_object_type_id " + (row.wasNull() ? "null" : String.valueOf(objectTypeId))));
+            }
+            String dataTypeName = row.getString(3);
+            Attributes.DataTypes dataType = dataType(dataTypeName);
+            if (dataType == null) {
+                violations.add(new Violation(Rule.ATTRIBUTE_DATA_TYPE_UNKNOWN, id, "data_type " + dataTypeName));
+                return;
+            }
+            String defaultValue = row.getString(4);
+            boolean hasDefault = defaultValue != null && !defaultValue.trim().isEmpty();
+            Array array = row.getArray(5);
+            List<String> enumValues = array == null ? null : Arrays.asList((String[]) array.getArray());
+            boolean hasEnumValues = enumValues != null && !enumValues.isEmpty();
+            if (dataType == Attributes.DataTypes.ENUM) {
+                if (!hasEnumValues) {
+                    violations.add(new Violation(Rule.ENUM_VALUES_MISSING, id, "enum_values " + enumValues));
+                } else if (hasDefault && !enumValues.contains(defaultValue)) {
+                    violations.add(new Violation(Rule.ENUM_DEFAULT_NOT_ALLOWED, id,
+                            "default_value '" + defaultValue + "' not in " + enumValues));
+                }
+                return;
+            }
+            if (hasEnumValues) {
+                violations.add(new Violation(Rule.ENUM_VALUES_ON_NON_ENUM, id, dataType + " with enum_values " + enumValues));
+            }
+            if (hasDefault) {
+                String message = ValidationPlan.checkValue(dataType, defaultValue);
+                if (message != null) {
+                    violations.add(new Violation(Rule.ATTRIBUTE_DEFAULT_INVALID, id,
+                            "default_value '" + defaultValue + "' is " + message));
+                }
+            }
+        }
+    },
+
+    RELATIONSHIPS(ChangeEvent.RELATIONSHIPS, "id, filter_by_object_type_id", "filter_by_object_type_id", ChangeEvent.OBJECT_TYPES) {
+        @Override
+        void check(ResultSet row, IdBitSet objectTypeIds, IdBitSet relationshipIds, List<Violation> violations) throws SQLException {
+            int objectTypeId = row.getInt(2);
+            // Relationships without a filter are valid.
+            if (!row.wasNull() && !objectTypeIds.get(objectTypeId)) {
+                violations.add(new Violation(Rule.RELATIONSHIP_FILTER_OBJECT_TYPE_MISSING, row.getInt(1),
+                        "filter_by_object_type_id " + objectTypeId));
+            }
+        }
+    },
+
+    RELATIONSHIP_DEPENDENCIES(ChangeEvent.RELATIONSHIP_DEPENDENCIES, "id, relationship_id", "relationship_id", ChangeEvent.RELATIONSHIPS) {
+        @Override
+        void check(ResultSet row, IdBitSet objectTypeIds, IdBitSet relationshipIds, List<Violation> violations) throws SQLException {
+            int relationshipId = row.getInt(2);
+            if (row.wasNull() || !relationshipIds.get(relationshipId)) {
+                violations.add(new Violation(Rule.DEPENDENCY_RELATIONSHIP_MISSING, row.getInt(1),
+                        "relationship_id " + (row.wasNull() ? "null" : String.valueOf(relationshipId))));
+            }
+        }
+    };
+
+    private final String table;
+    private final String columns;
+    private final String parentColumn;
+    private final String parentTable;
+
+    CheckedTable(String table, String columns, String parentColumn, String parentTable) {
+        this.table = table;
+        this.columns = columns;
+        this.parentColumn = parentColumn;
+        this.parentTable = parentTable;
+    }
+
+    String getTable() {
+        return table;
+    }
+
+    /**
+     * @return the table the parent column references.
+     */
+    String getParentTable() {
+        return parentTable;
+    }
+
+    /**
+     * @return the query for the rows of an id range, with the bounds as parameters.
+     */
+    String rangeQuery() {
+        return "SELECT " + columns + " FROM " + table + " WHERE id >= ? AND id < ?";
+    }
+
+    /**
+     * @return the query for the rows with one of the ids or referencing one of the parent ids,
+     * with both as integer array parameters.
+     */
+    String changedQuery() {
+        return "SELECT " + columns + " FROM " + table + " WHERE id = ANY(?) OR " + parentColumn + " = ANY(?)";
+    }
+
+    /**
+     * Checks the current row, whose columns are those of the queries, and adds what it breaks.
+     */
+    abstract void check(ResultSet row, IdBitSet objectTypeIds, IdBitSet relationshipIds, List<Violation> violations) throws SQLException;
+
+    private static Attributes.DataTypes dataType(String name) {
+        if (name == null) {
+            return null;
+        }
+        try {
+            return Attributes.DataTypes.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,526 @@
+package consistency;
+
+import events.ChangeEvent;
+import metrics.Metrics;
+import metrics.OperationMetrics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Verifies the references and attribute definitions the database does not enforce, see {@link Rule}.
+ * <p>
+ * A full check splits each table into id ranges and scans them in parallel, each partition on its
+ * own connection. The ids of object types and relationships are collected into {@link IdBitSet}s
+ * first, then attributes, relationships and dependencies are checked against them. The bitsets,
+ * the violations and the last ontology_history seq covered are kept, so later checks are
+ * incremental: they read the entities changed since from the history, refresh their bits and
+ * recheck only the changed rows and the rows referencing a changed object type or relationship.
+ * <p>
+ * History seqs are assigned when a row is inserted but become visible when its transaction commits,
+ * so a seq below the covered one may still appear. Missing seqs are remembered and looked up again
+ * by later checks until they turn up or are old enough to belong to a rolled-back insert.
+ * <p>
+ * The default checker runs every {@code ontology.consistency.intervalSeconds} (default 300, 0 to
+ * disable) with {@code ontology.consistency.threads} scanning connections (default 4).
+ */
+public class ConsistencyChecker {
+
+    private static final Logger LOGGER = Logger.getLogger(ConsistencyChecker.class.getName());
+    private static final OperationMetrics SCAN_PARTITION = Metrics.operation("ConsistencyChecker.scanPartition");
+    private static final OperationMetrics CHECK_CHANGES = Metrics.operation("ConsistencyChecker.checkChanges");
+    private static final ConsistencyChecker DEFAULT = new ConsistencyChecker(
+            Integer.getInteger("ontology.consistency.threads", 4),
+            Integer.getInteger("ontology.consistency.partitionIds", 65_536));
+
+    // Seqs below the one a full check covers that are looked at for transactions not yet committed.
+    private static final int GAP_WINDOW = 10_000;
+    // How long a missing seq is looked for before it is taken for a rolled-back insert.
+    private static final long GAP_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    // Beyond this many history entries a full check is cheaper than looking up the changed rows.
+    private static final int MAX_INCREMENTAL_CHANGES = 500_000;
+    private static final int FETCH_SIZE = 4096;
+
+    private final int partitionIds;
+    private final ThreadPoolExecutor scanners;
+    private ScheduledExecutorService scheduler;
+
+    // The state of the last check, guarded by this.
+    private IdBitSet objectTypeIds;
+    private IdBitSet relationshipIds;
+    private final Map<String, Map<Integer, List<Violation>>> violations = new HashMap<>();
+    private long historySeq = -1;
+    private final Map<Long, Long> gaps = new HashMap<>();
+    private volatile ConsistencyReport lastReport;
+
+    /**
+     * @param threads      the number of partitions scanned at the same time, each on a connection.
+     * @param partitionIds the width of the id range of a partition, rounded up to a multiple of 64.
+     */
+    public ConsistencyChecker(int threads, int partitionIds) {
+        this.partitionIds = Math.max(64, (partitionIds + 63) & ~63);
+        this.scanners = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "ontology-consistency-scan");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.scanners.allowCoreThreadTimeOut(true);
+    }
+
+    public static ConsistencyChecker getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Schedules checks every {@code ontology.consistency.intervalSeconds}, the first one a full check
+     * after one interval. Calling start on a started checker has no effect.
+     */
+    public synchronized void start() {
+        long interval = Long.getLong("ontology.consistency.intervalSeconds", 300);
+        if (scheduler != null || interval <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ontology-consistency");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                check();
+            } catch (RuntimeException e) {
+                // Keeps the schedule alive; an uncaught exception would cancel it.
+                LOGGER.log(Level.SEVERE, "Consistency check failed", e);
+            }
+        }, interval, interval, TimeUnit.SECONDS);
+    }
+
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * @return the report of the last successful check, or null if there was none yet.
+     */
+    public ConsistencyReport getLastReport() {
+        return lastReport;
+    }
+
+    /**
+     * Checks the rows changed since the last check, or every row if there was no check yet or too
+     * much has changed since.
+     *
+     * @return the report, or null if the check failed.
+     */
+    public ConsistencyReport check() {
+        return run(false);
+    }
+
+    /**
+     * Checks every row, discarding what earlier checks found.
+     *
+     * @return the report, or null if the check failed.
+     */
+    public ConsistencyReport checkFull() {
+        return run(true);
+    }
+
+    private synchronized ConsistencyReport run(boolean full) {
+        long started = System.nanoTime();
+        Set<Violation> before = allViolations();
+        try {
+            long rows;
+            if (full || historySeq < 0) {
+                rows = checkAll();
+                full = true;
+            } else {
+                rows = checkChanges();
+                if (rows < 0) {
+                    rows = checkAll();
+                    full = true;
+                }
+            }
+            Set<Violation> after = allViolations();
+            int added = 0;
+            for (Violation violation : after) {
+                if (!before.contains(violation)) {
+                    added++;
+                }
+            }
+            int resolved = 0;
+            for (Violation violation : before) {
+                if (!after.contains(violation)) {
+                    resolved++;
+                }
+            }
+            List<Violation> sorted = new ArrayList<>(after);
+            sorted.sort(Comparator.comparing(Violation::getTable).thenComparing(Violation::getRule).thenComparingInt(Violation::getId));
+            ConsistencyReport report = new ConsistencyReport(full, System.currentTimeMillis(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), historySeq, rows,
+                    objectTypeIds.cardinality(), relationshipIds.cardinality(), sorted, added, resolved);
+            lastReport = report;
+            if (added > 0) {
+                LOGGER.log(Level.WARNING, "Consistency check found " + added + " new violations, " + sorted.size()
+                        + " in total, e.g. " + firstNew(sorted, before));
+            }
+            LOGGER.log(Level.INFO, (full ? "Full" : "Incremental") + " consistency check of " + rows + " rows took "
+                    + report.getDurationMillis() + " ms");
+            return report;
+        } catch (SQLException | ExecutionException e) {
+            LOGGER.log(Level.SEVERE, "Error checking ontology consistency", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    /**
+     * Scans every table in parallel partitions and replaces the state with the result.
+     *
+     * @return the number of rows checked.
+     */
+    private long checkAll() throws SQLException, ExecutionException, InterruptedException {
+        long seq;
+        Map<Long, Long> missing = new HashMap<>();
+        Map<String, int[]> bounds = new HashMap<>();
+        Connection connection = Metrics.connect(CHECK_CHANGES);
+        if (connection == null) {
+            throw new SQLException("No database connection");
+        }
+        try {
+            // Taken before scanning, so whatever changes during the scan is rechecked next time.
+            seq = currentSeq(connection);
+            long now = System.currentTimeMillis();
+            Set<Long> present = new HashSet<>();
+            try (PreparedStatement statement = connection.prepareStatement("SELECT seq FROM ontology_history WHERE seq > ? AND seq <= ?")) {
+                statement.setLong(1, seq - GAP_WINDOW);
+                statement.setLong(2, seq);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        present.add(resultSet.getLong(1));
+                    }
+                }
+            }
+            for (long s = Math.max(1, seq - GAP_WINDOW + 1); s <= seq; s++) {
+                if (!present.contains(s)) {
+                    missing.put(s, now);
+                }
+            }
+            for (String table : new String[]{ChangeEvent.OBJECT_TYPES, ChangeEvent.RELATIONSHIPS,
+                    ChangeEvent.ATTRIBUTES, ChangeEvent.RELATIONSHIP_DEPENDENCIES}) {
+                bounds.put(table, idBounds(connection, table));
+            }
+        } finally {
+            Metrics.disconnect(connection);
+        }
+
+        IdBitSet objectTypes = new IdBitSet(bounds.get(ChangeEvent.OBJECT_TYPES)[1]);
+        IdBitSet relationships = new IdBitSet(bounds.get(ChangeEvent.RELATIONSHIPS)[1]);
+        List<Callable<Partition>> tasks = new ArrayList<>();
+        for (long[] range : partitions(bounds.get(ChangeEvent.OBJECT_TYPES))) {
+            tasks.add(() -> collectIds(ChangeEvent.OBJECT_TYPES, range, objectTypes));
+        }
+        for (long[] range : partitions(bounds.get(ChangeEvent.RELATIONSHIPS))) {
+            tasks.add(() -> collectIds(ChangeEvent.RELATIONSHIPS, range, relationships));
+        }
+        // The bitsets are complete before any row is checked against them.
+        Partition ids = await(tasks);
+
+        tasks.clear();
+        for (CheckedTable table : CheckedTable.values()) {
+            for (long[] range : partitions(bounds.get(table.getTable()))) {
+                tasks.add(() -> checkRange(table, range, objectTypes, relationships));
+            }
+        }
+        Partition checked = await(tasks);
+
+        objectTypeIds = objectTypes;
+        relationshipIds = relationships;
+        violations.clear();
+        for (Violation violation : checked.violations) {
+            violations.computeIfAbsent(violation.getTable(), k -> new HashMap<>())
+                    .computeIfAbsent(violation.getId(), k -> new ArrayList<>(1)).add(violation);
+        }
+        historySeq = seq;
+        gaps.clear();
+        gaps.putAll(missing);
+        return ids.rows + checked.rows;
+    }
+
+    /**
+     * Rechecks the rows affected by the history entries after the covered seq and by the gaps.
+     *
+     * @return the number of rows checked, or -1 if there are too many changes for an incremental check.
+     */
+    private long checkChanges() throws SQLException {
+        long rows = 0;
+        Connection connection = Metrics.connect(CHECK_CHANGES);
+        if (connection == null) {
+            throw new SQLException("No database connection");
+        }
+        try {
+            long seq = currentSeq(connection);
+            if (seq - historySeq > MAX_INCREMENTAL_CHANGES) {
+                return -1;
+            }
+            long now = System.currentTimeMillis();
+            Map<String, Set<Integer>> changed = new HashMap<>();
+            Set<Long> present = new HashSet<>();
+            String sql = "SELECT seq, entity_table, entity_id FROM ontology_history WHERE seq > ? AND seq <= ? OR seq = ANY(?)";
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setLong(1, historySeq);
+                statement.setLong(2, seq);
+                statement.setArray(3, connection.createArrayOf("bigint", gaps.keySet().toArray()));
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        present.add(resultSet.getLong(1));
+                        changed.computeIfAbsent(resultSet.getString(2), k -> new HashSet<>()).add(resultSet.getInt(3));
+                    }
+                }
+            }
+
+            refreshIds(connection, ChangeEvent.OBJECT_TYPES, changed.get(ChangeEvent.OBJECT_TYPES), objectTypeIds);
+            refreshIds(connection, ChangeEvent.RELATIONSHIPS, changed.get(ChangeEvent.RELATIONSHIPS), relationshipIds);
+            for (CheckedTable table : CheckedTable.values()) {
+                rows += recheck(connection, table, changed.get(table.getTable()), changed.get(table.getParentTable()));
+            }
+
+            for (Iterator<Map.Entry<Long, Long>> gap = gaps.entrySet().iterator(); gap.hasNext(); ) {
+                Map.Entry<Long, Long> entry = gap.next();
+                if (present.contains(entry.getKey()) || now - entry.getValue() > GAP_TIMEOUT_MILLIS) {
+                    gap.remove();
+                }
+            }
+            for (long s = historySeq + 1; s <= seq; s++) {
+                if (!present.contains(s)) {
+                    gaps.put(s, now);
+                }
+            }
+            historySeq = seq;
+        } finally {
+            Metrics.disconnect(connection);
+        }
+        return rows;
+    }
+
+    /**
+     * Sets the bits of those of the ids that still exist in the table and clears the others.
+     */
+    private static void refreshIds(Connection connection, String table, Set<Integer> ids, IdBitSet bits) throws SQLException {
+        if (ids == null) {
+            return;
+        }
+        for (int id : ids) {
+            bits.clear(id);
+        }
+        try (PreparedStatement statement = connection.prepareStatement("SELECT id FROM " + table + " WHERE id = ANY(?)")) {
+            statement.setArray(1, connection.createArrayOf("integer", ids.toArray()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    bits.set(resultSet.getInt(1));
+                }
+            }
+        }
+    }
+
+    /**
+     * Replaces the violations of the changed rows and of the rows referencing a changed parent.
+     *
+     * @return the number of rows checked.
+     */
+    private long recheck(Connection connection, CheckedTable table, Set<Integer> ids, Set<Integer> parentIds) throws SQLException {
+        if (ids == null && parentIds == null) {
+            return 0;
+        }
+        Map<Integer, List<Violation>> byId = violations.computeIfAbsent(table.getTable(), k -> new HashMap<>());
+        if (ids != null) {
+            // Deleted rows are not returned below, so their violations go here.
+            for (int id : ids) {
+                byId.remove(id);
+            }
+        }
+        long rows = 0;
+        List<Violation> found = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(table.changedQuery())) {
+            statement.setArray(1, connection.createArrayOf("integer", ids == null ? new Object[0] : ids.toArray()));
+            statement.setArray(2, connection.createArrayOf("integer", parentIds == null ? new Object[0] : parentIds.toArray()));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    found.clear();
+                    table.check(resultSet, objectTypeIds, relationshipIds, found);
+                    if (found.isEmpty()) {
+                        byId.remove(resultSet.getInt(1));
+                    } else {
+                        byId.put(resultSet.getInt(1), new ArrayList<>(found));
+                    }
+                    rows++;
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static Partition collectIds(String table, long[] range, IdBitSet bits) throws SQLException {
+        Partition partition = new Partition();
+        partition.rows = scan("SELECT id FROM " + table + " WHERE id >= ? AND id < ?", range, resultSet -> bits.set(resultSet.getInt(1)));
+        return partition;
+    }
+
+    private static Partition checkRange(CheckedTable table, long[] range, IdBitSet objectTypes, IdBitSet relationships) throws SQLException {
+        Partition partition = new Partition();
+        partition.rows = scan(table.rangeQuery(), range, resultSet -> table.check(resultSet, objectTypes, relationships, partition.violations));
+        return partition;
+    }
+
+    /**
+     * Streams the rows of one partition to the visitor on a connection of its own.
+     *
+     * @return the number of rows.
+     */
+    private static long scan(String sql, long[] range, RowVisitor visitor) throws SQLException {
+        long started = System.nanoTime();
+        long rows = 0;
+        Connection connection = Metrics.connect(SCAN_PARTITION);
+        if (connection == null) {
+            throw new SQLException("No database connection");
+        }
+        try {
+            // Streaming with a fetch size needs a transaction.
+            connection.setAutoCommit(false);
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                statement.setFetchSize(FETCH_SIZE);
+                statement.setLong(1, range[0]);
+                statement.setLong(2, range[1]);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        visitor.visit(resultSet);
+                        rows++;
+                    }
+                }
+            }
+            connection.commit();
+        } catch (SQLException e) {
+            SCAN_PARTITION.error();
+            throw e;
+        } finally {
+            Metrics.disconnect(connection);
+            SCAN_PARTITION.record(started, rows);
+        }
+        return rows;
+    }
+
+    /**
+     * Runs the tasks on the scanning threads and waits for all of them. If one fails, the
+     * others are cancelled.
+     *
+     * @return the rows and violations of all tasks together.
+     */
+    private Partition await(List<Callable<Partition>> tasks) throws ExecutionException, InterruptedException {
+        List<Future<Partition>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<Partition> task : tasks) {
+                futures.add(scanners.submit(task));
+            }
+            Partition all = new Partition();
+            for (Future<Partition> future : futures) {
+                Partition partition = future.get();
+                all.rows += partition.rows;
+                all.violations.addAll(partition.violations);
+            }
+            return all;
+        } finally {
+            for (Future<Partition> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * @return the {@code {from, to}} id ranges of the partitions of a table with the given bounds.
+     * Both are multiples of 64, so partitions never share a word of an {@link IdBitSet}, except the
+     * end of the last range, which is the largest id so that no partition grows the bitset.
+     */
+    private List<long[]> partitions(int[] bounds) {
+        List<long[]> ranges = new ArrayList<>();
+        if (bounds[1] < bounds[0]) {
+            return ranges;
+        }
+        for (long from = bounds[0] & ~63L; from <= bounds[1]; from += partitionIds) {
+            ranges.add(new long[]{from, Math.min(from + partitionIds, bounds[1] + 1L)});
+        }
+        return ranges;
+    }
+
+    private static int[] idBounds(Connection connection, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT MIN(id), MAX(id) FROM " + table);
+             ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            int min = resultSet.getInt(1);
+            // An empty table has no bounds; report an empty range.
+            return resultSet.wasNull() ? new int[]{0, -1} : new int[]{Math.max(0, min), resultSet.getInt(2)};
+        }
+    }
+
+    private static long currentSeq(Connection connection) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT COALESCE(MAX(seq), 0) FROM ontology_history");
+             ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private Set<Violation> allViolations() {
+        Set<Violation> all = new HashSet<>();
+        for (Map<Integer, List<Violation>> byId : violations.values()) {
+            for (List<Violation> row : byId.values()) {
+                all.addAll(row);
+            }
+        }
+        return all;
+    }
+
+    private static Violation firstNew(Collection<Violation> violations, Set<Violation> before) {
+        for (Violation violation : violations) {
+            if (!before.contains(violation)) {
+                return violation;
+            }
+        }
+        return null;
+    }
+
+    private interface RowVisitor {
+        void visit(ResultSet resultSet) throws SQLException;
+    }
+
+    /**
+     * What scanning one or more partitions produced.
+     */
+    private static final class Partition {
+        private long rows;
+        private final List<Violation> violations = new ArrayList<>();
+    }
+}
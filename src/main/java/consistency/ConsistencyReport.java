@@ -0,0 +1,116 @@
+package consistency;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of one consistency check: every violation known after it, including those found by
+ * earlier checks of rows that have not changed since, and how that differs from the check before.
+ */
+public final class ConsistencyReport {
+
+    private final boolean full;
+    private final long finishedAt;
+    private final long durationMillis;
+    private final long historySeq;
+    private final long rowsChecked;
+    private final int objectTypes;
+    private final int relationships;
+    private final List<Violation> violations;
+    private final int added;
+    private final int resolved;
+
+    ConsistencyReport(boolean full, long finishedAt, long durationMillis, long historySeq, long rowsChecked,
+                      int objectTypes, int relationships, List<Violation> violations, int added, int resolved) {
+        this.full = full;
+        this.finishedAt = finishedAt;
+        this.durationMillis = durationMillis;
+        this.historySeq = historySeq;
+        this.rowsChecked = rowsChecked;
+        this.objectTypes = objectTypes;
+        this.relationships = relationships;
+        this.violations = Collections.unmodifiableList(violations);
+        this.added = added;
+        this.resolved = resolved;
+    }
+
+    /**
+     * @return true if every row was scanned, false if only rows changed since the previous check were.
+     */
+    public boolean isFull() {
+        return full;
+    }
+
+    /**
+     * @return when the check finished, in milliseconds since the epoch.
+     */
+    public long getFinishedAt() {
+        return finishedAt;
+    }
+
+    public long getDurationMillis() {
+        return durationMillis;
+    }
+
+    /**
+     * @return the last ontology_history seq whose change the check covers.
+     */
+    public long getHistorySeq() {
+        return historySeq;
+    }
+
+    public long getRowsChecked() {
+        return rowsChecked;
+    }
+
+    /**
+     * @return the number of existing object types.
+     */
+    public int getObjectTypes() {
+        return objectTypes;
+    }
+
+    /**
+     * @return the number of existing relationships.
+     */
+    public int getRelationships() {
+        return relationships;
+    }
+
+    /**
+     * @return all known violations, ordered by table, rule and id.
+     */
+    public List<Violation> getViolations() {
+        return violations;
+    }
+
+    /**
+     * @return the number of violations per rule, with every rule present.
+     */
+    public Map<Rule, Integer> countByRule() {
+        Map<Rule, Integer> counts = new EnumMap<>(Rule.class);
+        for (Rule rule : Rule.values()) {
+            counts.put(rule, 0);
+        }
+        for (Violation violation : violations) {
+            counts.merge(violation.getRule(), 1, Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * @return the number of violations the previous check did not report.
+     */
+    public int getAdded() {
+        return added;
+    }
+
+    /**
+     * @return the number of violations of the previous check that are gone.
+     */
+    public int getResolved() {
+        return resolved;
+    }
+}
@@ -0,0 +1,55 @@
+package consistency;
+
+import java.util.Arrays;
+
+/**
+ * The ids present in a table as one bit per possible id, so that the ids of a table of millions of
+ * rows take a few megabytes and a membership test is an array read. Ids are SERIAL values; negative
+ * ids are never present.
+ * <p>
+ * Not thread-safe, with one exception: {@link #set} may be called concurrently for ids in disjoint
+ * ranges that start and end on multiples of 64, because those ranges touch disjoint words. This
+ * is what lets partitions of a table be scanned in parallel into one set.
+ */
+final class IdBitSet {
+
+    private long[] words;
+
+    /**
+     * @param maxId the largest id expected; larger ids grow the set.
+     */
+    IdBitSet(int maxId) {
+        words = new long[Math.max(0, maxId >> 6) + 1];
+    }
+
+    boolean get(int id) {
+        int word = id >> 6;
+        return id >= 0 && word < words.length && (words[word] & (1L << id)) != 0;
+    }
+
+    void set(int id) {
+        if (id < 0) {
+            return;
+        }
+        int word = id >> 6;
+        if (word >= words.length) {
+            words = Arrays.copyOf(words, Math.max(word + 1, words.length * 2));
+        }
+        words[word] |= 1L << id;
+    }
+
+    void clear(int id) {
+        int word = id >> 6;
+        if (id >= 0 && word < words.length) {
+            words[word] &= ~(1L << id);
+        }
+    }
+
+    int cardinality() {
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,37 @@
+package consistency;
+
+import events.ChangeEvent;
+
+/**
+ * The invariants of the ontology tables that the database does not enforce itself.
+ */
+public enum Rule {
+
+    ATTRIBUTE_OBJECT_TYPE_MISSING(ChangeEvent.ATTRIBUTES, "references an object type that does not exist"),
+    ATTRIBUTE_DATA_TYPE_UNKNOWN(ChangeEvent.ATTRIBUTES, "has a data type the application does not know"),
+    ATTRIBUTE_DEFAULT_INVALID(ChangeEvent.ATTRIBUTES, "has a default value that does not match its data type"),
+    ENUM_VALUES_MISSING(ChangeEvent.ATTRIBUTES, "is an ENUM without allowed values"),
+    ENUM_DEFAULT_NOT_ALLOWED(ChangeEvent.ATTRIBUTES, "has a default value that is not one of its allowed values"),
+    ENUM_VALUES_ON_NON_ENUM(ChangeEvent.ATTRIBUTES, "has allowed values but is not an ENUM"),
+    RELATIONSHIP_FILTER_OBJECT_TYPE_MISSING(ChangeEvent.RELATIONSHIPS, "filters by an object type that does not exist"),
+    DEPENDENCY_RELATIONSHIP_MISSING(ChangeEvent.RELATIONSHIP_DEPENDENCIES, "belongs to a relationship that does not exist");
+
+    private final String table;
+    private final String description;
+
+    Rule(String table, String description) {
+        this.table = table;
+        this.description = description;
+    }
+
+    /**
+     * @return the table of the rows the rule applies to.
+     */
+    public String getTable() {
+        return table;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+}
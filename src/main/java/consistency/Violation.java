@@ -0,0 +1,63 @@
+package consistency;
+
+import java.util.Objects;
+
+/**
+ * A row that breaks a {@link Rule}.
+ */
+public final class Violation {
+
+    private final Rule rule;
+    private final int id;
+    private final String detail;
+
+    public Violation(Rule rule, int id, String detail) {
+        this.rule = rule;
+        this.id = id;
+        this.detail = detail;
+    }
+
+    public Rule getRule() {
+        return rule;
+    }
+
+    public String getTable() {
+        return rule.getTable();
+    }
+
+    /**
+     * @return the id of the offending row.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return the offending values, e.g. the missing id or the invalid default.
+     */
+    public String getDetail() {
+        return detail;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Violation)) {
+            return false;
+        }
+        Violation other = (Violation) o;
+        return rule == other.rule && id == other.id && Objects.equals(detail, other.detail);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(rule, id, detail);
+    }
+
+    @Override
+    public String toString() {
+        return rule.getTable() + " " + id + " " + rule.getDescription() + " (" + detail + ")";
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Package for consistency.
+ */
+package consistency;
\ No newline at end of file
@@ -1,71 +1,225 @@
 package dao;
 
 
+import events.ChangeEvent;
+import events.ChangeEvents;
+import metrics.Metrics;
+import metrics.OperationMetrics;
+import metrics.QueryProfiler;
 import model.*;
-import utils.DatabaseUtility;
 import java.sql.*;
 import java.util.logging.*;import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.sql.ResultSet;
 
 
 
 public class AttributesDAO {
 
+	private static final OperationMetrics CREATE_ATTRIBUTE = Metrics.operation("AttributesDAO.createAttribute");
+	private static final OperationMetrics UPDATE_ATTRIBUTE = Metrics.operation("AttributesDAO.updateAttribute");
+	private static final OperationMetrics UPDATE_ATTRIBUTE_ENUM_VALUES = Metrics.operation("AttributesDAO.updateAttributeEnumValues");
+	private static final OperationMetrics FIND_ATTRIBUTE_BY_ID = Metrics.operation("AttributesDAO.findAttributeById");
+	private static final OperationMetrics DELETE_ATTRIBUTE_BY_ID = Metrics.operation("AttributesDAO.deleteAttributeById");
+	private static final OperationMetrics FIND_ALL_ATTRIBUTES_BY_OBJECT_TYPE = Metrics.operation("AttributesDAO.findAllAttributesByObjectType");
+	private static final OperationMetrics FIND_ATTRIBUTES_BY_OBJECT_TYPE_ID = Metrics.operation("AttributesDAO.findAttributesByObjectTypeId");
+
+	// Every column mapAttribute reads; listing them keeps columns added later out of these reads
+	private static final String ATTRIBUTE_COLUMNS = "id, name, data_type, is_required, default_value, enum_values, is_indexed, attribute_usage_count, version";
+
+	// Outcomes of an attribute update
+	private static final int UPDATED = 0;
+	private static final int FAILED = 1;
+	private static final int STALE = 2;
+
 	
 	/**
 	 * Used in the 'Create Object Type' page for adding new attributes to an object type.
 	 */
-	public boolean createAttribute(String name, Attributes.DataTypes dataType, boolean isRequired, String defaultValue, boolean isIndexed, int attributeUsageCount, ObjectType fkObjectType) {
-	    Connection connection = DatabaseUtility.connect();
+	public boolean createAttribute(String name, Attributes.DataTypes dataType, boolean isRequired, String defaultValue, boolean isIndexed, ObjectType fkObjectType) {
+	    return createAttribute(name, dataType, isRequired, defaultValue, isIndexed, fkObjectType.getId());
+	}
+
+	/**
+	 * Adds an attribute to the object type with the given id; used by the REST API, which only has the id.
+	 */
+	public boolean createAttribute(String name, Attributes.DataTypes dataType, boolean isRequired, String defaultValue, boolean isIndexed, int objectTypeId) {
+	    long started = System.nanoTime();
+	    Connection connection = Metrics.connect(CREATE_ATTRIBUTE);
 	    try {
-	        String sql = "INSERT INTO attributes (name, data_type, is_required, default_value, is_indexed, attribute_usage_count, fk_object_type_id) VALUES (?, ?, ?, ?, ?, ?, ?)";
-	        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+	        // The notification must be sent in the same transaction as the write
+	        connection.setAutoCommit(false);
+	        lockObjectTypes(connection, List.of(objectTypeId), List.of());
+	        String sql = "INSERT INTO attributes (name, data_type, is_required, default_value, is_indexed, fk_object_type_id) VALUES (?, ?, ?, ?, ?, ?)";
+	        try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
 	            statement.setString(1, name);
 	            statement.setString(2, dataType.name());
 	            statement.setBoolean(3, isRequired);
 	            statement.setString(4, defaultValue);
 	            statement.setBoolean(5, isIndexed);
-	            statement.setInt(6, attributeUsageCount);
-	            statement.setInt(7, fkObjectType.getId());
+	            statement.setInt(6, objectTypeId);
 	
 	            int affectedRows = statement.executeUpdate();
+	            try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+	                if (generatedKeys.next()) {
+	                    ChangeEvents.publish(connection, ChangeEvent.ATTRIBUTES, generatedKeys.getInt(1), objectTypeId, ChangeEvent.Operation.INSERT);
+	                }
+	            }
+	            connection.commit();
 	            return affectedRows > 0;
 	        }
 	    } catch (SQLException e) {
+	        rollback(connection);
+	        CREATE_ATTRIBUTE.error();
 	        Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error creating attribute", e);
 	        return false;
 	    } finally {
-	        DatabaseUtility.disconnect(connection);
+	        Metrics.disconnect(connection);
+	        CREATE_ATTRIBUTE.record(started);
 	    }
 	}
 	
 	/*
 	 Method to update the details of an existing attribute.
 	 Used in the 'Edit Object Type' section for updating attribute details.
+	 The write is unconditional; see the overload taking an expected version for optimistic updates.
 	*/
-	public boolean updateAttribute(int id, String name, Attributes.DataTypes dataType, boolean isRequired, String defaultValue, boolean isIndexed, int attributeUsageCount) {
-	    Connection connection = DatabaseUtility.connect();
-	    boolean updateStatus = false;
-	    String query = "UPDATE attributes SET name = ?, data_type = ?, is_required = ?, default_value = ?, is_indexed = ?, attribute_usage_count = ? WHERE id = ?;";
+	public boolean updateAttribute(int id, String name, Attributes.DataTypes dataType, boolean isRequired, String defaultValue, boolean isIndexed) {
+	    return updateAttribute(id, null, name, dataType, isRequired, defaultValue, isIndexed) == UPDATED;
+	}
+	
+	/**
+	 * Updates an attribute only if it still has the version the caller read.
+	 * The version is checked in the UPDATE's WHERE clause, so no row lock is taken.
+	 *
+	 * @param id              the unique identifier of the attribute.
+	 * @param expectedVersion the version the caller read, see {@link Attributes#getVersion()}.
+	 * @return true if the attribute was updated, false if it does not exist or the update failed.
+	 * @throws VersionConflictException if the attribute was changed concurrently; carries the current attribute.
+	 */
+	public boolean updateAttribute(int id, int expectedVersion, String name, Attributes.DataTypes dataType, boolean isRequired, String defaultValue, boolean isIndexed) throws VersionConflictException {
+	    int result = updateAttribute(id, Integer.valueOf(expectedVersion), name, dataType, isRequired, defaultValue, isIndexed);
+	    if (result == STALE) {
+	        Attributes current = findAttributeById(id);
+	        if (current != null) {
+	            throw new VersionConflictException("Attribute " + id + " was modified concurrently, expected version "
+	                    + expectedVersion + " but found " + current.getVersion(), current);
+	        }
+	    }
+	    return result == UPDATED;
+	}
+	
+	private int updateAttribute(int id, Integer expectedVersion, String name, Attributes.DataTypes dataType, boolean isRequired, String defaultValue, boolean isIndexed) {
+	    long started = System.nanoTime();
+	    Connection connection = Metrics.connect(UPDATE_ATTRIBUTE);
+	    int result = FAILED;
+	    String query = "UPDATE attributes SET name = ?, data_type = ?, is_required = ?, default_value = ?, is_indexed = ?, version = version + 1 WHERE id = ?"
+	            + (expectedVersion != null ? " AND version = ?" : "") + " RETURNING fk_object_type_id, version;";
 	    try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+	        connection.setAutoCommit(false);
+	        lockObjectTypes(connection, List.of(), List.of(id));
 	        preparedStatement.setString(1, name);
 	        preparedStatement.setString(2, dataType.name());
 	        preparedStatement.setBoolean(3, isRequired);
 	        preparedStatement.setString(4, defaultValue);
 	        preparedStatement.setBoolean(5, isIndexed);
-	        preparedStatement.setInt(6, attributeUsageCount);
-	        preparedStatement.setInt(7, id);
-	        updateStatus = preparedStatement.executeUpdate() > 0;
+	        preparedStatement.setInt(6, id);
+	        if (expectedVersion != null) {
+	            preparedStatement.setInt(7, expectedVersion);
+	        }
+	        int outcome = FAILED;
+	        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+	            if (resultSet.next()) {
+	                outcome = UPDATED;
+	                ChangeEvents.publish(connection, new ChangeEvent(ChangeEvent.ATTRIBUTES, id, resultSet.getInt(1), ChangeEvent.Operation.UPDATE, resultSet.getInt(2)));
+	            } else if (expectedVersion != null) {
+	                outcome = STALE;
+	            }
+	        }
+	        connection.commit();
+	        result = outcome;
 	    } catch (SQLException e) {
+	        rollback(connection);
+	        UPDATE_ATTRIBUTE.error();
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error updating attribute with ID: " + id, e);
 	    } finally {
-	        DatabaseUtility.disconnect(connection);
+	        Metrics.disconnect(connection);
+	        UPDATE_ATTRIBUTE.record(started);
+	    }
+	    return result;
+	}
+	
+	/**
+	 * Replaces the allowed values of an ENUM attribute.
+	 *
+	 * @param id         The unique identifier of the attribute.
+	 * @param enumValues The allowed values, in display order.
+	 * @return true if the attribute was updated.
+	 */
+	public boolean updateAttributeEnumValues(int id, List<String> enumValues) {
+	    long started = System.nanoTime();
+	    Connection connection = Metrics.connect(UPDATE_ATTRIBUTE_ENUM_VALUES);
+	    boolean updateStatus = false;
+	    String query = "UPDATE attributes SET enum_values = ?, version = version + 1 WHERE id = ? RETURNING fk_object_type_id, version;";
+	    try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+	        connection.setAutoCommit(false);
+	        lockObjectTypes(connection, List.of(), List.of(id));
+	        preparedStatement.setArray(1, connection.createArrayOf("text", enumValues.toArray()));
+	        preparedStatement.setInt(2, id);
+	        boolean updated;
+	        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+	            updated = resultSet.next();
+	            if (updated) {
+	                ChangeEvents.publish(connection, new ChangeEvent(ChangeEvent.ATTRIBUTES, id, resultSet.getInt(1), ChangeEvent.Operation.UPDATE, resultSet.getInt(2)));
+	            }
+	        }
+	        connection.commit();
+	        updateStatus = updated;
+	    } catch (SQLException e) {
+	        rollback(connection);
+	        UPDATE_ATTRIBUTE_ENUM_VALUES.error();
+	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error updating enum values of attribute with ID: " + id, e);
+	    } finally {
+	        Metrics.disconnect(connection);
+	        UPDATE_ATTRIBUTE_ENUM_VALUES.record(started);
 	    }
 	    return updateStatus;
 	}
 	
+	/**
+	 * Fetches a single attribute by its unique ID. The owning object type is not loaded.
+	 *
+	 * @param id The unique identifier of the attribute.
+	 * @return The attribute, or null if it does not exist.
+	 */
+	public Attributes findAttributeById(int id) {
+	    long started = System.nanoTime();
+	    Attributes attribute = null;
+	    String query = "SELECT " + ATTRIBUTE_COLUMNS + " FROM attributes WHERE id = ?;";
+	    Connection connection = Metrics.connect(FIND_ATTRIBUTE_BY_ID);
+	    try (PreparedStatement ps = connection.prepareStatement(query)) {
+	        ps.setInt(1, id);
+	        long executed = System.nanoTime();
+	        ResultSet rs = ps.executeQuery();
+	        QueryProfiler.getDefault().observe(query, executed, id);
+	        if (rs.next()) {
+	            attribute = mapAttribute(rs);
+	        }
+	    } catch (SQLException e) {
+	        FIND_ATTRIBUTE_BY_ID.error();
+	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error fetching attribute with ID: " + id, e);
+	    } finally {
+	        Metrics.disconnect(connection);
+	        FIND_ATTRIBUTE_BY_ID.record(started);
+	    }
+	    return attribute;
+	}
 	
 	/**
 	 * Deletes an attribute from an existing object type based on its unique ID.
@@ -73,22 +227,34 @@ public class AttributesDAO {
 	 * @param id The unique identifier of the attribute to be deleted.
 	 */
 	public boolean deleteAttributeById(int id) {
+	    long started = System.nanoTime();
 	    Connection connection = null;
 	    PreparedStatement preparedStatement = null;
 	    boolean isDeleted = false;
 	    try {
-	        connection = DatabaseUtility.connect();
-	        String sql = "DELETE FROM attributes WHERE id = ?";
+	        connection = Metrics.connect(DELETE_ATTRIBUTE_BY_ID);
+	        connection.setAutoCommit(false);
+	        lockObjectTypes(connection, List.of(), List.of(id));
+	        String sql = "DELETE FROM attributes WHERE id = ? RETURNING fk_object_type_id";
 	        preparedStatement = connection.prepareStatement(sql);
 	        preparedStatement.setInt(1, id);
-	        int affectedRows = preparedStatement.executeUpdate();
-	        if (affectedRows > 0) {
-	            isDeleted = true;
+	        long executed = System.nanoTime();
+	        boolean deleted;
+	        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+	            QueryProfiler.getDefault().observe(sql, executed, id);
+	            deleted = resultSet.next();
+	            if (deleted) {
+	                ChangeEvents.publish(connection, ChangeEvent.ATTRIBUTES, id, resultSet.getInt(1), ChangeEvent.Operation.DELETE);
+	            }
 	        }
+	        connection.commit();
+	        isDeleted = deleted;
 	    } catch (SQLException e) {
+	        rollback(connection);
+	        DELETE_ATTRIBUTE_BY_ID.error();
 	        Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error deleting attribute by ID: " + id, e);
 	    } finally {
-	        DatabaseUtility.disconnect(connection);
+	        Metrics.disconnect(connection);
 	        if (preparedStatement != null) {
 	            try {
 	                preparedStatement.close();
@@ -96,10 +262,191 @@ public class AttributesDAO {
 	                Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error closing preparedStatement", e);
 	            }
 	        }
+	        DELETE_ATTRIBUTE_BY_ID.record(started);
 	    }
 	    return isDeleted;
 	}
 	
+	/**
+	 * Brings the attributes of an object type in line with an edited list, on the caller's connection
+	 * and in its transaction: attributes with an id are updated, bumping their version, those without
+	 * one are inserted, and the object type's other attributes are deleted. Deleting attributes the
+	 * editor never saw is prevented by the version of the object type, which every attribute edit
+	 * bumps (see V13__attribute_edits_bump_object_type.sql) and which the caller checks first. The
+	 * caller must hold the lock on the object type's row, see {@link #lockObjectTypes}. The usage
+	 * counts are derived and left as they are.
+	 *
+	 * @param connection    a connection with autocommit off.
+	 * @param checkVersions whether an update applies only if the attribute still has the version in the list.
+	 * @return false if an attribute in the list no longer belongs to the object type or, with
+	 * checkVersions, was changed since it was read; the caller must roll back.
+	 */
+	boolean replaceAttributesOfObjectType(Connection connection, int objectTypeId, List<Attributes> attributes, boolean checkVersions) throws SQLException {
+	    List<Integer> kept = new ArrayList<>();
+	    List<Attributes> created = new ArrayList<>();
+	    String update = "UPDATE attributes SET name = ?, data_type = ?, is_required = ?, default_value = ?, is_indexed = ?, "
+	            + "enum_values = COALESCE(?, enum_values), version = version + 1 WHERE id = ? AND fk_object_type_id = ?"
+	            + (checkVersions ? " AND version = ?" : "");
+	    try (PreparedStatement statement = connection.prepareStatement(update)) {
+	        for (Attributes attribute : attributes) {
+	            if (attribute.getId() == 0) {
+	                created.add(attribute);
+	                continue;
+	            }
+	            int index = bindAttribute(connection, statement, attribute);
+	            statement.setInt(index++, attribute.getId());
+	            statement.setInt(index++, objectTypeId);
+	            if (checkVersions) {
+	                statement.setInt(index, attribute.getVersion());
+	            }
+	            statement.addBatch();
+	            kept.add(attribute.getId());
+	        }
+	        if (!kept.isEmpty()) {
+	            for (int count : statement.executeBatch()) {
+	                if (count == 0) {
+	                    return false;
+	                }
+	            }
+	        }
+	    }
+
+	    List<Integer> deleted = new ArrayList<>();
+	    try (PreparedStatement statement = connection.prepareStatement(
+	            "DELETE FROM attributes WHERE fk_object_type_id = ? AND id <> ALL (?) RETURNING id")) {
+	        statement.setInt(1, objectTypeId);
+	        statement.setArray(2, connection.createArrayOf("integer", kept.toArray()));
+	        try (ResultSet resultSet = statement.executeQuery()) {
+	            while (resultSet.next()) {
+	                deleted.add(resultSet.getInt(1));
+	            }
+	        }
+	    }
+
+	    publish(connection, objectTypeId, kept, ChangeEvent.Operation.UPDATE);
+	    publish(connection, objectTypeId, deleted, ChangeEvent.Operation.DELETE);
+	    insertAttributes(connection, objectTypeId, created);
+	    return true;
+	}
+
+	/**
+	 * Inserts new attributes of an object type on the caller's connection and in its transaction,
+	 * and publishes their change events. Their ids are ignored; the database assigns new ones. The
+	 * caller must hold the lock on the object type's row, see {@link #lockObjectTypes}.
+	 *
+	 * @param connection a connection with autocommit off.
+	 */
+	void insertAttributes(Connection connection, int objectTypeId, List<Attributes> attributes) throws SQLException {
+	    if (attributes.isEmpty()) {
+	        return;
+	    }
+	    List<Integer> inserted = new ArrayList<>();
+	    String insert = "INSERT INTO attributes (name, data_type, is_required, default_value, is_indexed, enum_values, fk_object_type_id) "
+	            + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+	    try (PreparedStatement statement = connection.prepareStatement(insert, Statement.RETURN_GENERATED_KEYS)) {
+	        for (Attributes attribute : attributes) {
+	            int index = bindAttribute(connection, statement, attribute);
+	            statement.setInt(index, objectTypeId);
+	            statement.addBatch();
+	        }
+	        statement.executeBatch();
+	        try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+	            while (generatedKeys.next()) {
+	                inserted.add(generatedKeys.getInt(1));
+	            }
+	        }
+	    }
+	    publish(connection, objectTypeId, inserted, ChangeEvent.Operation.INSERT);
+	}
+
+	private static int bindAttribute(Connection connection, PreparedStatement statement, Attributes attribute) throws SQLException {
+	    statement.setString(1, attribute.getName());
+	    statement.setString(2, attribute.getDataType().name());
+	    statement.setBoolean(3, attribute.isRequired());
+	    statement.setString(4, attribute.getDefaultValue());
+	    statement.setBoolean(5, attribute.isIndexed());
+	    if (attribute.getEnumValues() != null) {
+	        statement.setArray(6, connection.createArrayOf("text", attribute.getEnumValues().toArray()));
+	    } else {
+	        statement.setNull(6, Types.ARRAY);
+	    }
+	    return 7;
+	}
+
+	/**
+	 * Locks object types, given directly or as the owners of attributes, in id order. Every attribute
+	 * write takes these locks before it touches an attribute row. Otherwise the V13 triggers lock the
+	 * object type after the attribute, the opposite order of an object type update, and the two
+	 * deadlock instead of one of them failing its version check.
+	 *
+	 * @param connection    a connection with autocommit off; the locks are held until it ends.
+	 * @param objectTypeIds object types whose attributes are inserted, or that are written themselves.
+	 * @param attributeIds  attributes that are updated or deleted.
+	 */
+	static void lockObjectTypes(Connection connection, Collection<Integer> objectTypeIds, Collection<Integer> attributeIds) throws SQLException {
+	    String sql = "SELECT id FROM object_types WHERE id = ANY(?) OR id IN (SELECT fk_object_type_id FROM attributes WHERE id = ANY(?))"
+	            + " ORDER BY id FOR UPDATE";
+	    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+	        statement.setArray(1, connection.createArrayOf("integer", objectTypeIds.toArray()));
+	        statement.setArray(2, connection.createArrayOf("integer", attributeIds.toArray()));
+	        statement.executeQuery().close();
+	    }
+	}
+
+	private static void publish(Connection connection, int objectTypeId, List<Integer> ids, ChangeEvent.Operation operation) throws SQLException {
+	    int[] parents = new int[ids.size()];
+	    Arrays.fill(parents, objectTypeId);
+	    ChangeEvents.publish(connection, ChangeEvent.ATTRIBUTES, ids.stream().mapToInt(Integer::intValue).toArray(), parents, operation);
+	}
+	
+	/**
+	 * Fetches every attribute in the system grouped by the id of its object type.
+	 * Used to build in-memory views of the whole ontology in one query instead of one per object type.
+	 *
+	 * @return attributes keyed by object type id, in id order.
+	 */
+	public Map<Integer, List<Attributes>> findAllAttributesByObjectType() {
+	    try {
+	        return loadAllAttributesByObjectType();
+	    } catch (SQLException e) {
+	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error fetching all attributes", e);
+	        return new LinkedHashMap<>();
+	    }
+	}
+	
+	/**
+	 * Fetches every attribute like {@link #findAllAttributesByObjectType()}, but fails instead of
+	 * returning an empty map, for in-memory views that must not be rebuilt from nothing.
+	 *
+	 * @throws SQLException if the attributes could not be read.
+	 */
+	public Map<Integer, List<Attributes>> loadAllAttributesByObjectType() throws SQLException {
+	    long started = System.nanoTime();
+	    Map<Integer, List<Attributes>> attributesByObjectType = new LinkedHashMap<>();
+	    int rowCount = 0;
+	    String query = "SELECT fk_object_type_id, " + ATTRIBUTE_COLUMNS + " FROM attributes ORDER BY fk_object_type_id, id;";
+	    Connection connection = Metrics.connect(FIND_ALL_ATTRIBUTES_BY_OBJECT_TYPE);
+	    if (connection == null) {
+	        throw new SQLException("No database connection");
+	    }
+	    try (PreparedStatement ps = connection.prepareStatement(query)) {
+	        long executed = System.nanoTime();
+	        ResultSet rs = ps.executeQuery();
+	        QueryProfiler.getDefault().observe(query, executed);
+	        while (rs.next()) {
+	            attributesByObjectType.computeIfAbsent(rs.getInt("fk_object_type_id"), k -> new ArrayList<>()).add(mapAttribute(rs));
+	            rowCount++;
+	        }
+	    } catch (SQLException e) {
+	        FIND_ALL_ATTRIBUTES_BY_OBJECT_TYPE.error();
+	        throw e;
+	    } finally {
+	        Metrics.disconnect(connection);
+	        FIND_ALL_ATTRIBUTES_BY_OBJECT_TYPE.record(started, rowCount);
+	    }
+	    return attributesByObjectType;
+	}
+	
 	/**
 	 * Fetches attributes associated with a specific object type.
 	 * Used in both the 'Object Type List' and 'Edit Object Type' pages.
@@ -107,31 +454,67 @@ public class AttributesDAO {
 	 * @return A list of Attributes associated with the given object type.
 	 */
 	public ArrayList<Attributes> findAttributesByObjectTypeId(ObjectType fkObjectType) {
+	    ArrayList<Attributes> attributesList = findAttributesByObjectTypeId(fkObjectType.getId());
+	    for (Attributes attribute : attributesList) {
+	        attribute.setFkObjectType(fkObjectType);
+	    }
+	    return attributesList;
+	}
+	
+	/**
+	 * Fetches the attributes of an object type by its id. The owning object type is not set on the attributes.
+	 * @param objectTypeId The unique identifier of the object type.
+	 * @return A list of Attributes associated with the given object type.
+	 */
+	public ArrayList<Attributes> findAttributesByObjectTypeId(int objectTypeId) {
+	    long started = System.nanoTime();
 	    ArrayList<Attributes> attributesList = new ArrayList<>();
-	    String query = "SELECT * FROM attributes WHERE fk_object_type_id = ?;";
-	    Connection connection = null;
-	    try {
-	        connection = DatabaseUtility.connect();
-	        PreparedStatement ps = connection.prepareStatement(query);
-	        ps.setInt(1, fkObjectType.getId());
-	        ResultSet rs = ps.executeQuery();
-	        while (rs.next()) {
-	            Attributes attribute = new Attributes();
-	            attribute.setId(rs.getInt("id"));
-	            attribute.setName(rs.getString("name"));
-	            attribute.setDataType(Attributes.DataTypes.valueOf(rs.getString("data_type").toUpperCase()));
-	            attribute.setRequired(rs.getBoolean("is_required"));
-	            attribute.setDefaultValue(rs.getString("default_value"));
-	            attribute.setIndexed(rs.getBoolean("is_indexed"));
-	            attribute.setAttributeUsageCount(rs.getInt("attribute_usage_count"));
-	            attribute.setFkObjectType(fkObjectType);
-	            attributesList.add(attribute);
+	    String query = "SELECT " + ATTRIBUTE_COLUMNS + " FROM attributes WHERE fk_object_type_id = ?;";
+	    Connection connection = Metrics.connect(FIND_ATTRIBUTES_BY_OBJECT_TYPE_ID);
+	    try (PreparedStatement ps = connection.prepareStatement(query)) {
+	        ps.setInt(1, objectTypeId);
+	        long executed = System.nanoTime();
+	        try (ResultSet rs = ps.executeQuery()) {
+	            QueryProfiler.getDefault().observe(query, executed, objectTypeId);
+	            while (rs.next()) {
+	                attributesList.add(mapAttribute(rs));
+	            }
 	        }
 	    } catch (SQLException e) {
+	        FIND_ATTRIBUTES_BY_OBJECT_TYPE_ID.error();
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
 	    } finally {
-	        DatabaseUtility.disconnect(connection);
+	        Metrics.disconnect(connection);
+	        FIND_ATTRIBUTES_BY_OBJECT_TYPE_ID.record(started, attributesList.size());
 	    }
 	    return attributesList;
 	}
+	
+	private Attributes mapAttribute(ResultSet rs) throws SQLException {
+	    Attributes attribute = new Attributes();
+	    attribute.setId(rs.getInt("id"));
+	    attribute.setName(rs.getString("name"));
+	    attribute.setDataType(Attributes.DataTypes.valueOf(rs.getString("data_type").toUpperCase()));
+	    attribute.setRequired(rs.getBoolean("is_required"));
+	    attribute.setDefaultValue(rs.getString("default_value"));
+	    Array enumValues = rs.getArray("enum_values");
+	    if (enumValues != null) {
+	        attribute.setEnumValues(Arrays.asList((String[]) enumValues.getArray()));
+	    }
+	    attribute.setIndexed(rs.getBoolean("is_indexed"));
+	    attribute.setAttributeUsageCount(rs.getInt("attribute_usage_count"));
+	    attribute.setVersion(rs.getInt("version"));
+	    return attribute;
+	}
+
+	private static void rollback(Connection connection) {
+	    if (connection == null) {
+	        return;
+	    }
+	    try {
+	        connection.rollback();
+	    } catch (SQLException e) {
+	        Logger.getLogger(AttributesDAO.class.getName()).log(Level.SEVERE, "Error rolling back", e);
+	    }
+	}
 }
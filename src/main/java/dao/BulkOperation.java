@@ -0,0 +1,173 @@
+package dao;
+
+import model.Attributes;
+import model.Facilities;
+import model.ObjectTypes;
+import model.RelationshipDependencies;
+
+/**
+ * One create, update or delete in a request to {@link BulkOperationsDAO#execute(java.util.List)}.
+ * A create may name its new row with a client-side temporary id; later operations in the same
+ * request refer to that row through {@link Ref#temp(String)} before its key is known.
+ */
+public class BulkOperation {
+
+    public enum Entity {
+        OBJECT_TYPE, ATTRIBUTE, FACILITY, RELATIONSHIP_DEPENDENCY
+    }
+
+    public enum Action {
+        CREATE, UPDATE, DELETE
+    }
+
+    /**
+     * A row id, either a key that already exists or the temporary id of an earlier create.
+     */
+    public static final class Ref {
+
+        private final int id;
+        private final String tempId;
+
+        private Ref(int id, String tempId) {
+            this.id = id;
+            this.tempId = tempId;
+        }
+
+        public static Ref id(int id) {
+            return new Ref(id, null);
+        }
+
+        public static Ref temp(String tempId) {
+            return new Ref(0, tempId);
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getTempId() {
+            return tempId;
+        }
+
+        public boolean isTemp() {
+            return tempId != null;
+        }
+
+        @Override
+        public String toString() {
+            return isTemp() ? "'" + tempId + "'" : String.valueOf(id);
+        }
+    }
+
+    private final Entity entity;
+    private final Action action;
+    private String tempId;
+    private Ref target;
+    private Ref parent;
+    private Integer expectedVersion;
+    private ObjectTypes objectType;
+    private Attributes attribute;
+    private Facilities facility;
+    private String organizationId;
+    private RelationshipDependencies dependency;
+
+    public BulkOperation(Entity entity, Action action) {
+        this.entity = entity;
+        this.action = action;
+    }
+
+    public Entity getEntity() {
+        return entity;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    // The temporary id a create assigns to its new row, or null
+    public String getTempId() {
+        return tempId;
+    }
+
+    public void setTempId(String tempId) {
+        this.tempId = tempId;
+    }
+
+    // The row an update or delete applies to
+    public Ref getTarget() {
+        return target;
+    }
+
+    public void setTarget(Ref target) {
+        this.target = target;
+    }
+
+    // The object type of a new attribute, or the relationship of a new dependency
+    public Ref getParent() {
+        return parent;
+    }
+
+    public void setParent(Ref parent) {
+        this.parent = parent;
+    }
+
+    // For updates of object types and attributes: the version the client read, or null for a blind write
+    public Integer getExpectedVersion() {
+        return expectedVersion;
+    }
+
+    public void setExpectedVersion(Integer expectedVersion) {
+        this.expectedVersion = expectedVersion;
+    }
+
+    public ObjectTypes getObjectType() {
+        return objectType;
+    }
+
+    public void setObjectType(ObjectTypes objectType) {
+        this.objectType = objectType;
+    }
+
+    public Attributes getAttribute() {
+        return attribute;
+    }
+
+    public void setAttribute(Attributes attribute) {
+        this.attribute = attribute;
+    }
+
+    public Facilities getFacility() {
+        return facility;
+    }
+
+    public void setFacility(Facilities facility) {
+        this.facility = facility;
+    }
+
+    public String getOrganizationId() {
+        return organizationId;
+    }
+
+    public void setOrganizationId(String organizationId) {
+        this.organizationId = organizationId;
+    }
+
+    public RelationshipDependencies getDependency() {
+        return dependency;
+    }
+
+    public void setDependency(RelationshipDependencies dependency) {
+        this.dependency = dependency;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkOperation{" +
+                "entity=" + entity +
+                ", action=" + action +
+                ", tempId='" + tempId + '\'' +
+                ", target=" + target +
+                ", parent=" + parent +
+                '}';
+    }
+}
@@ -0,0 +1,482 @@
+package dao;
+
+import dao.BulkOperation.Action;
+import dao.BulkOperation.Entity;
+import dao.BulkOperation.Ref;
+import events.ChangeEvent;
+import events.ChangeEvents;
+import metrics.Metrics;
+import metrics.OperationMetrics;
+import model.Attributes;
+import model.Facilities;
+import model.ObjectTypes;
+import model.RelationshipDependencies;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executes an ordered list of ontology writes in one transaction. Consecutive operations of the
+ * same kind (e.g. a run of attribute creates) are sent as one JDBC batch, and the keys generated
+ * by a batch of creates are bound to the client's temporary ids before the next batch runs.
+ * Operations can only refer to earlier creates, and a create never refers to a row of its own
+ * entity, so every reference is resolved by the time its batch is bound.
+ */
+public class BulkOperationsDAO {
+
+	private static final OperationMetrics EXECUTE = Metrics.operation("BulkOperationsDAO.execute");
+
+	/**
+	 * Aborts the transaction at the operation with the given index, or at none of them.
+	 */
+	private static final class BulkFailure extends Exception {
+
+	    // The failure cannot be pinned to one operation
+	    private static final int TRANSACTION = -1;
+
+	    private final int index;
+
+	    BulkFailure(int index, String message) {
+	        super(message);
+	        this.index = index;
+	    }
+	}
+
+	/**
+	 * Validates and executes the operations atomically: either all of them are committed or none.
+	 *
+	 * @param operations the operations, in the order they are to be applied.
+	 * @return one result per operation, in the same order, and the error of the transaction if it
+	 * failed without one operation to blame.
+	 */
+	public BulkOutcome execute(List<BulkOperation> operations) {
+	    try {
+	        validate(operations);
+	    } catch (BulkFailure failure) {
+	        return new BulkOutcome(failed(operations.size(), failure, false), null);
+	    }
+	    long started = System.nanoTime();
+	    Connection connection = Metrics.connect(EXECUTE);
+	    try {
+	        connection.setAutoCommit(false);
+	        lockObjectTypes(connection, operations);
+	        int[] ids = new int[operations.size()];
+	        Map<String, Integer> keys = new HashMap<>();
+	        int start = 0;
+	        while (start < operations.size()) {
+	            int end = start + 1;
+	            while (end < operations.size() && sameBatch(operations.get(start), operations.get(end))) {
+	                end++;
+	            }
+	            executeBatch(connection, operations, start, end, keys, ids);
+	            start = end;
+	        }
+	        connection.commit();
+	        List<BulkResult> results = new ArrayList<>(operations.size());
+	        for (int i = 0; i < operations.size(); i++) {
+	            results.add(new BulkResult(i, BulkResult.Status.OK, ids[i], null));
+	        }
+	        return new BulkOutcome(results, null);
+	    } catch (BulkFailure failure) {
+	        rollback(connection);
+	        return new BulkOutcome(failed(operations.size(), failure, true),
+	                failure.index == BulkFailure.TRANSACTION ? failure.getMessage() : null);
+	    } catch (SQLException e) {
+	        EXECUTE.error();
+	        Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error executing bulk operations", e);
+	        rollback(connection);
+	        return new BulkOutcome(failed(operations.size(), new BulkFailure(BulkFailure.TRANSACTION, ""), true),
+	                "Transaction failed: " + message(e));
+	    } finally {
+	        Metrics.disconnect(connection);
+	        EXECUTE.record(started, operations.size());
+	    }
+	}
+
+	/**
+	 * Locks every existing object type the operations write or write attributes of, in id order
+	 * and before the first write, see {@link AttributesDAO#lockObjectTypes}.
+	 */
+	private static void lockObjectTypes(Connection connection, List<BulkOperation> operations) throws SQLException {
+	    List<Integer> objectTypeIds = new ArrayList<>();
+	    List<Integer> attributeIds = new ArrayList<>();
+	    for (BulkOperation operation : operations) {
+	        if (operation.getEntity() == Entity.OBJECT_TYPE && operation.getAction() != Action.CREATE && !operation.getTarget().isTemp()) {
+	            objectTypeIds.add(operation.getTarget().getId());
+	        } else if (operation.getEntity() == Entity.ATTRIBUTE) {
+	            Ref ref = operation.getAction() == Action.CREATE ? operation.getParent() : operation.getTarget();
+	            if (!ref.isTemp()) {
+	                (operation.getAction() == Action.CREATE ? objectTypeIds : attributeIds).add(ref.getId());
+	            }
+	        }
+	    }
+	    if (!objectTypeIds.isEmpty() || !attributeIds.isEmpty()) {
+	        AttributesDAO.lockObjectTypes(connection, objectTypeIds, attributeIds);
+	    }
+	}
+
+	private static boolean sameBatch(BulkOperation first, BulkOperation next) {
+	    return first.getEntity() == next.getEntity() && first.getAction() == next.getAction()
+	            && (first.getExpectedVersion() == null) == (next.getExpectedVersion() == null);
+	}
+
+	/**
+	 * Checks every operation before anything is written, so malformed requests and dangling
+	 * temporary ids never open a transaction.
+	 */
+	private static void validate(List<BulkOperation> operations) throws BulkFailure {
+	    Map<String, Entity> temps = new HashMap<>();
+	    for (int i = 0; i < operations.size(); i++) {
+	        BulkOperation operation = operations.get(i);
+	        if (operation.getEntity() == null || operation.getAction() == null) {
+	            throw new BulkFailure(i, "Entity and action are required");
+	        }
+	        Entity entity = operation.getEntity();
+	        if (operation.getAction() == Action.CREATE) {
+	            requireValue(i, operation);
+	            if (entity == Entity.ATTRIBUTE) {
+	                requireRef(i, operation.getParent(), Entity.OBJECT_TYPE, temps, "an object type");
+	            } else if (entity == Entity.RELATIONSHIP_DEPENDENCY) {
+	                // Relationships are not created in bulk, so this must be an existing key.
+	                if (operation.getParent() == null || operation.getParent().isTemp()) {
+	                    throw new BulkFailure(i, "A dependency needs the id of an existing relationship");
+	                }
+	            }
+	            if (operation.getTempId() != null && temps.putIfAbsent(operation.getTempId(), entity) != null) {
+	                throw new BulkFailure(i, "Temporary id '" + operation.getTempId() + "' is used twice");
+	            }
+	        } else {
+	            requireRef(i, operation.getTarget(), entity, temps, "the row to " + operation.getAction().name().toLowerCase());
+	            if (operation.getAction() == Action.UPDATE) {
+	                requireValue(i, operation);
+	            }
+	        }
+	        if (operation.getExpectedVersion() != null
+	                && (operation.getAction() != Action.UPDATE || entity == Entity.FACILITY || entity == Entity.RELATIONSHIP_DEPENDENCY)) {
+	            throw new BulkFailure(i, "Version checks are only supported on object type and attribute updates");
+	        }
+	    }
+	}
+
+	private static void requireRef(int index, Ref ref, Entity entity, Map<String, Entity> temps, String description) throws BulkFailure {
+	    if (ref == null) {
+	        throw new BulkFailure(index, "The id of " + description + " is required");
+	    }
+	    if (ref.isTemp() && temps.get(ref.getTempId()) != entity) {
+	        throw new BulkFailure(index, "Temporary id " + ref + " does not name an earlier " + entity.name().toLowerCase() + " create");
+	    }
+	}
+
+	private static void requireValue(int index, BulkOperation operation) throws BulkFailure {
+	    switch (operation.getEntity()) {
+	        case OBJECT_TYPE:
+	            ObjectTypes objectType = operation.getObjectType();
+	            if (objectType == null || objectType.getName() == null) {
+	                throw new BulkFailure(index, "An object type needs a name");
+	            }
+	            break;
+	        case ATTRIBUTE:
+	            Attributes attribute = operation.getAttribute();
+	            if (attribute == null || attribute.getName() == null || attribute.getDataType() == null) {
+	                throw new BulkFailure(index, "An attribute needs a name and a data type");
+	            }
+	            break;
+	        case FACILITY:
+	            Facilities facility = operation.getFacility();
+	            if (facility == null || facility.getName() == null || facility.getFacilityType() == null || facility.getOperationalStatus() == null) {
+	                throw new BulkFailure(index, "A facility needs a name, a facility type and an operational status");
+	            }
+	            break;
+	        default:
+	            RelationshipDependencies dependency = operation.getDependency();
+	            if (dependency == null || dependency.getDependencyName() == null || dependency.getDependencyType() == null) {
+	                throw new BulkFailure(index, "A dependency needs a name and a dependency type");
+	            }
+	    }
+	}
+
+	private void executeBatch(Connection connection, List<BulkOperation> operations, int start, int end, Map<String, Integer> keys, int[] ids) throws SQLException, BulkFailure {
+	    BulkOperation first = operations.get(start);
+	    boolean create = first.getAction() == Action.CREATE;
+	    int[] parents = new int[end - start];
+	    for (int i = start; i < end; i++) {
+	        BulkOperation operation = operations.get(i);
+	        ids[i] = create ? 0 : resolve(operation.getTarget(), keys);
+	        parents[i - start] = operation.getParent() != null ? resolve(operation.getParent(), keys) : 0;
+	    }
+	    if (!create) {
+	        findParents(connection, first.getEntity(), ids, start, end, parents);
+	    }
+
+	    String sql = sql(first.getEntity(), first.getAction(), first.getExpectedVersion() != null);
+	    try (PreparedStatement statement = create ? connection.prepareStatement(sql, new String[] {"id"}) : connection.prepareStatement(sql)) {
+	        for (int i = start; i < end; i++) {
+	            bind(connection, statement, operations.get(i), ids[i], parents[i - start]);
+	            statement.addBatch();
+	        }
+	        int[] counts;
+	        try {
+	            counts = statement.executeBatch();
+	        } catch (BatchUpdateException e) {
+	            int failed = failedIndex(e.getUpdateCounts(), end - start);
+	            if (failed < 0) {
+	                throw new BulkFailure(BulkFailure.TRANSACTION, "Transaction failed: " + message(e));
+	            }
+	            throw new BulkFailure(start + failed, message(e));
+	        }
+	        if (create) {
+	            try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
+	                for (int i = start; i < end; i++) {
+	                    if (!generatedKeys.next()) {
+	                        throw new BulkFailure(i, "No id was generated");
+	                    }
+	                    ids[i] = generatedKeys.getInt(1);
+	                    String tempId = operations.get(i).getTempId();
+	                    if (tempId != null) {
+	                        keys.put(tempId, ids[i]);
+	                    }
+	                }
+	            }
+	        } else {
+	            for (int i = start; i < end; i++) {
+	                if (counts[i - start] == 0) {
+	                    Integer version = operations.get(i).getExpectedVersion();
+	                    throw new BulkFailure(i, describe(first.getEntity()) + " " + ids[i] + " does not exist"
+	                            + (version != null ? " or is no longer at version " + version : ""));
+	                }
+	            }
+	        }
+	    }
+
+	    int[] written = new int[end - start];
+	    System.arraycopy(ids, start, written, 0, written.length);
+	    ChangeEvents.publish(connection, table(first.getEntity()), written, parents, operation(first.getAction()));
+	}
+
+	private static int resolve(Ref ref, Map<String, Integer> keys) {
+	    return ref.isTemp() ? keys.get(ref.getTempId()) : ref.getId();
+	}
+
+	/**
+	 * Looks up the owning rows of the attributes or dependencies about to be updated or deleted,
+	 * for the change events, in one query; a missing row fails the operation before anything runs.
+	 */
+	private static void findParents(Connection connection, Entity entity, int[] ids, int start, int end, int[] parents) throws SQLException, BulkFailure {
+	    String sql;
+	    if (entity == Entity.ATTRIBUTE) {
+	        sql = "SELECT id, fk_object_type_id FROM attributes WHERE id = ANY(?)";
+	    } else if (entity == Entity.RELATIONSHIP_DEPENDENCY) {
+	        sql = "SELECT id, relationship_id FROM relationship_dependencies WHERE id = ANY(?)";
+	    } else {
+	        return;
+	    }
+	    Integer[] targets = new Integer[end - start];
+	    for (int i = start; i < end; i++) {
+	        targets[i - start] = ids[i];
+	    }
+	    Map<Integer, Integer> parentsById = new HashMap<>();
+	    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+	        statement.setArray(1, connection.createArrayOf("integer", targets));
+	        try (ResultSet resultSet = statement.executeQuery()) {
+	            while (resultSet.next()) {
+	                parentsById.put(resultSet.getInt(1), resultSet.getInt(2));
+	            }
+	        }
+	    }
+	    for (int i = start; i < end; i++) {
+	        Integer parent = parentsById.get(ids[i]);
+	        if (parent == null) {
+	            throw new BulkFailure(i, describe(entity) + " " + ids[i] + " does not exist");
+	        }
+	        parents[i - start] = parent;
+	    }
+	}
+
+	private static String sql(Entity entity, Action action, boolean versioned) {
+	    String versionCheck = versioned ? " AND version = ?" : "";
+	    switch (entity) {
+	        case OBJECT_TYPE:
+	            switch (action) {
+	                case CREATE:
+	                    return "INSERT INTO object_types (name, description) VALUES (?, ?)";
+	                case UPDATE:
+	                    return "UPDATE object_types SET name = ?, description = ?, version = version + 1, updated_at = CURRENT_TIMESTAMP WHERE id = ?" + versionCheck;
+	                default:
+	                    return "DELETE FROM object_types WHERE id = ?";
+	            }
+	        case ATTRIBUTE:
+	            switch (action) {
+	                case CREATE:
+	                    return "INSERT INTO attributes (name, data_type, is_required, default_value, is_indexed, enum_values, fk_object_type_id) VALUES (?, ?, ?, ?, ?, ?, ?)";
+	                case UPDATE:
+	                    return "UPDATE attributes SET name = ?, data_type = ?, is_required = ?, default_value = ?, is_indexed = ?, "
+	                            + "enum_values = COALESCE(?, enum_values), version = version + 1 WHERE id = ?" + versionCheck;
+	                default:
+	                    return "DELETE FROM attributes WHERE id = ?";
+	            }
+	        case FACILITY:
+	            switch (action) {
+	                case CREATE:
+	                    return "INSERT INTO facilities (name, location, size_in_square_footage, facility_type, operational_status, organization_id) "
+	                            + "VALUES (?, ?, ?, ?::facility_types, ?::operational_statuses, ?)";
+	                case UPDATE:
+	                    return "UPDATE facilities SET name = ?, location = ?, size_in_square_footage = ?, facility_type = ?::facility_types, operational_status = ?::operational_statuses WHERE id = ?";
+	                default:
+	                    return "DELETE FROM facilities WHERE id = ?";
+	            }
+	        default:
+	            switch (action) {
+	                case CREATE:
+	                    return "INSERT INTO relationship_dependencies (dependency_name, dependency_type, relationship_id) VALUES (?, ?::dependency_type, ?)";
+	                case UPDATE:
+	                    return "UPDATE relationship_dependencies SET dependency_name = ?, dependency_type = ?::dependency_type WHERE id = ?";
+	                default:
+	                    return "DELETE FROM relationship_dependencies WHERE id = ?";
+	            }
+	    }
+	}
+
+	private static void bind(Connection connection, PreparedStatement statement, BulkOperation operation, int id, int parent) throws SQLException {
+	    int index = 1;
+	    if (operation.getAction() != Action.DELETE) {
+	        switch (operation.getEntity()) {
+	            case OBJECT_TYPE:
+	                statement.setString(index++, operation.getObjectType().getName());
+	                statement.setString(index++, operation.getObjectType().getDescription());
+	                break;
+	            case ATTRIBUTE:
+	                Attributes attribute = operation.getAttribute();
+	                statement.setString(index++, attribute.getName());
+	                statement.setString(index++, attribute.getDataType().name());
+	                statement.setBoolean(index++, attribute.isRequired());
+	                statement.setString(index++, attribute.getDefaultValue());
+	                statement.setBoolean(index++, attribute.isIndexed());
+	                if (attribute.getEnumValues() != null) {
+	                    statement.setArray(index++, connection.createArrayOf("text", attribute.getEnumValues().toArray()));
+	                } else {
+	                    statement.setNull(index++, Types.ARRAY);
+	                }
+	                break;
+	            case FACILITY:
+	                Facilities facility = operation.getFacility();
+	                statement.setString(index++, facility.getName());
+	                statement.setString(index++, facility.getLocation());
+	                statement.setBigDecimal(index++, facility.getSizeInSquareFootage());
+	                statement.setString(index++, facility.getFacilityType().name());
+	                statement.setString(index++, facility.getOperationalStatus().name());
+	                if (operation.getAction() == Action.CREATE) {
+	                    statement.setString(index++, operation.getOrganizationId());
+	                }
+	                break;
+	            default:
+	                statement.setString(index++, operation.getDependency().getDependencyName());
+	                statement.setString(index++, operation.getDependency().getDependencyType().name());
+	        }
+	    }
+	    if (operation.getAction() == Action.CREATE) {
+	        if (operation.getEntity() == Entity.ATTRIBUTE || operation.getEntity() == Entity.RELATIONSHIP_DEPENDENCY) {
+	            statement.setInt(index, parent);
+	        }
+	    } else {
+	        statement.setInt(index++, id);
+	        if (operation.getExpectedVersion() != null) {
+	            statement.setInt(index, operation.getExpectedVersion());
+	        }
+	    }
+	}
+
+	/**
+	 * Finds the statement a failed batch stopped at; drivers report the statements before it as
+	 * executed and the rest as failed, or only return the counts of those that ran.
+	 *
+	 * @return the index in the batch, or -1 if the counts do not tell.
+	 */
+	private static int failedIndex(int[] counts, int size) {
+	    if (counts != null) {
+	        for (int i = 0; i < counts.length; i++) {
+	            if (counts[i] == Statement.EXECUTE_FAILED) {
+	                return i;
+	            }
+	        }
+	        if (counts.length < size) {
+	            return counts.length;
+	        }
+	    }
+	    return -1;
+	}
+
+	private static String message(SQLException e) {
+	    SQLException cause = e.getNextException() != null ? e.getNextException() : e;
+	    return cause.getMessage();
+	}
+
+	private static List<BulkResult> failed(int size, BulkFailure failure, boolean executed) {
+	    List<BulkResult> results = new ArrayList<>(size);
+	    for (int i = 0; i < size; i++) {
+	        if (failure.index == BulkFailure.TRANSACTION || i < failure.index) {
+	            results.add(new BulkResult(i, executed ? BulkResult.Status.ROLLED_BACK : BulkResult.Status.NOT_EXECUTED, 0, null));
+	        } else if (i == failure.index) {
+	            results.add(new BulkResult(i, BulkResult.Status.FAILED, 0, failure.getMessage()));
+	        } else {
+	            results.add(new BulkResult(i, BulkResult.Status.NOT_EXECUTED, 0, null));
+	        }
+	    }
+	    return results;
+	}
+
+	private static void rollback(Connection connection) {
+	    try {
+	        connection.rollback();
+	    } catch (SQLException e) {
+	        Logger.getLogger(BulkOperationsDAO.class.getName()).log(Level.SEVERE, "Error rolling back bulk operations", e);
+	    }
+	}
+
+	private static String table(Entity entity) {
+	    switch (entity) {
+	        case OBJECT_TYPE:
+	            return ChangeEvent.OBJECT_TYPES;
+	        case ATTRIBUTE:
+	            return ChangeEvent.ATTRIBUTES;
+	        case FACILITY:
+	            return ChangeEvent.FACILITIES;
+	        default:
+	            return ChangeEvent.RELATIONSHIP_DEPENDENCIES;
+	    }
+	}
+
+	private static ChangeEvent.Operation operation(Action action) {
+	    switch (action) {
+	        case CREATE:
+	            return ChangeEvent.Operation.INSERT;
+	        case UPDATE:
+	            return ChangeEvent.Operation.UPDATE;
+	        default:
+	            return ChangeEvent.Operation.DELETE;
+	    }
+	}
+
+	private static String describe(Entity entity) {
+	    switch (entity) {
+	        case OBJECT_TYPE:
+	            return "Object type";
+	        case ATTRIBUTE:
+	            return "Attribute";
+	        case FACILITY:
+	            return "Facility";
+	        default:
+	            return "Dependency";
+	    }
+	}
+}
@@ -0,0 +1,40 @@
+package dao;
+
+import java.util.List;
+
+/**
+ * The outcome of a bulk request: one {@link BulkResult} per operation and, if the transaction
+ * failed for a reason that cannot be pinned to one operation (a lost connection, a failed commit,
+ * a batch error the driver did not report counts for), that error.
+ */
+public class BulkOutcome {
+
+    private final List<BulkResult> results;
+    private final String error;
+
+    public BulkOutcome(List<BulkResult> results, String error) {
+        this.results = results;
+        this.error = error;
+    }
+
+    public List<BulkResult> getResults() {
+        return results;
+    }
+
+    // Why the whole transaction failed, or null if it committed or one operation failed
+    public String getError() {
+        return error;
+    }
+
+    public boolean isCommitted() {
+        return error == null && results.stream().allMatch(result -> result.getStatus() == BulkResult.Status.OK);
+    }
+
+    @Override
+    public String toString() {
+        return "BulkOutcome{" +
+                "results=" + results +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
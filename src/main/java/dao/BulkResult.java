@@ -0,0 +1,53 @@
+package dao;
+
+/**
+ * The outcome of one {@link BulkOperation}. Bulk requests are atomic, so once any operation
+ * fails the ones before it are reported as rolled back and the ones after it as not executed.
+ */
+public class BulkResult {
+
+    public enum Status {
+        OK, FAILED, ROLLED_BACK, NOT_EXECUTED
+    }
+
+    private final int index;
+    private final Status status;
+    private final int id;
+    private final String error;
+
+    public BulkResult(int index, Status status, int id, String error) {
+        this.index = index;
+        this.status = status;
+        this.id = id;
+        this.error = error;
+    }
+
+    // Position of the operation in the request
+    public int getIndex() {
+        return index;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    // The id of the row the operation wrote, including generated keys of creates; 0 if not executed
+    public int getId() {
+        return id;
+    }
+
+    // Why the operation failed, or null
+    public String getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "BulkResult{" +
+                "index=" + index +
+                ", status=" + status +
+                ", id=" + id +
+                ", error='" + error + '\'' +
+                '}';
+    }
+}
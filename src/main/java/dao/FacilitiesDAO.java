@@ -1,8 +1,12 @@
 package dao;
 
 
+import events.ChangeEvent;
+import events.ChangeEvents;
+import metrics.Metrics;
+import metrics.OperationMetrics;
+import metrics.QueryProfiler;
 import model.*;
-import utils.DatabaseUtility;
 import java.sql.*;
 import java.util.logging.*;import java.math.BigDecimal;
 import java.sql.PreparedStatement;
@@ -13,19 +17,27 @@ import java.sql.SQLException;
 
 public class FacilitiesDAO {
 
+	private static final OperationMetrics CREATE_FACILITY = Metrics.operation("FacilitiesDAO.createFacility");
+	private static final OperationMetrics UPDATE_FACILITY_DETAILS = Metrics.operation("FacilitiesDAO.updateFacilityDetails");
+	private static final OperationMetrics GET_FACILITY_DETAILS_BY_ID = Metrics.operation("FacilitiesDAO.getFacilityDetailsById");
+	private static final OperationMetrics DELETE_FACILITY = Metrics.operation("FacilitiesDAO.deleteFacility");
+
 	
 	/*
 	 * Creates a new facility record in the database with the provided details.
 	 * Used in 'Add Facility' page's 'Facility Details Form' section.
 	 */
 	public Facilities createFacility(String name, String location, BigDecimal sizeInSquareFootage, Facilities.FacilityType facilityType, Facilities.OperationalStatus operationalStatus, String organizationId) {
+	    long started = System.nanoTime();
 	    Connection connection = null;
 	    PreparedStatement preparedStatement = null;
 	    ResultSet resultSet = null;
 	    Facilities facility = new Facilities();
 	
 	    try {
-	        connection = DatabaseUtility.connect();
+	        connection = Metrics.connect(CREATE_FACILITY);
+	        // The notification must be sent in the same transaction as the write
+	        connection.setAutoCommit(false);
 	        String SQL_INSERT = "INSERT INTO facilities (name, location, size_in_square_footage, facility_type, operational_status, organization_id) VALUES (?, ?, ?, ?, ?, ?);";
 	        preparedStatement = connection.prepareStatement(SQL_INSERT, PreparedStatement.RETURN_GENERATED_KEYS);
 	        preparedStatement.setString(1, name);
@@ -42,7 +54,10 @@ public class FacilitiesDAO {
 	
 	        resultSet = preparedStatement.getGeneratedKeys();
 	        if (resultSet.next()) {
-	            facility.setId(resultSet.getInt(1));
+	            int id = resultSet.getInt(1);
+	            ChangeEvents.publish(connection, ChangeEvent.FACILITIES, id, 0, ChangeEvent.Operation.INSERT);
+	            connection.commit();
+	            facility.setId(id);
 	        } else {
 	            throw new SQLException("Creating facility failed, no ID obtained.");
 	        }
@@ -52,9 +67,12 @@ public class FacilitiesDAO {
 	        facility.setFacilityType(facilityType);
 	        facility.setOperationalStatus(operationalStatus);
 	    } catch (SQLException ex) {
+	        rollback(connection);
+	        CREATE_FACILITY.error();
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, ex);
 	    } finally {
-	        DatabaseUtility.disconnect(connection);
+	        Metrics.disconnect(connection);
+	        CREATE_FACILITY.record(started);
 	    }
 	    return facility;
 	}
@@ -70,9 +88,11 @@ public class FacilitiesDAO {
 	 * @return boolean indicating success (true) or failure (false) of the update operation.
 	 */
 	public boolean updateFacilityDetails(int facilityId, String name, String location, BigDecimal sizeInSquareFootage, Facilities.FacilityType facilityType, Facilities.OperationalStatus operationalStatus) {
-	    Connection connection = DatabaseUtility.connect();
-	    String sql = "UPDATE facilities SET name = ?, location = ?, size_in_square_footage = ?, facility_type = ::facility_types, operational_status = ::operational_statuses WHERE id = ?;";
+	    long started = System.nanoTime();
+	    Connection connection = Metrics.connect(UPDATE_FACILITY_DETAILS);
+	    String sql = "UPDATE facilities SET name = ?, location = ?, size_in_square_footage = ?, facility_type = ?::facility_types, operational_status = ?::operational_statuses WHERE id = ?;";
 	    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+	        connection.setAutoCommit(false);
 	        statement.setString(1, name);
 	        statement.setString(2, location);
 	        statement.setBigDecimal(3, sizeInSquareFootage);
@@ -80,12 +100,19 @@ public class FacilitiesDAO {
 	        statement.setString(5, operationalStatus.name());
 	        statement.setInt(6, facilityId);
 	        int rowsAffected = statement.executeUpdate();
-	        DatabaseUtility.disconnect(connection);
+	        if (rowsAffected > 0) {
+	            ChangeEvents.publish(connection, ChangeEvent.FACILITIES, facilityId, 0, ChangeEvent.Operation.UPDATE);
+	        }
+	        connection.commit();
 	        return rowsAffected > 0;
 	    } catch (SQLException e) {
+	        rollback(connection);
+	        UPDATE_FACILITY_DETAILS.error();
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
-	        DatabaseUtility.disconnect(connection);
 	        return false;
+	    } finally {
+	        Metrics.disconnect(connection);
+	        UPDATE_FACILITY_DETAILS.record(started);
 	    }
 	}
 	
@@ -97,12 +124,15 @@ public class FacilitiesDAO {
 	 * @return A Facilities object containing the facility's details, or null if not found.
 	 */
 	public Facilities getFacilityDetailsById(int facilityId) {
+	    long started = System.nanoTime();
 	    Facilities facility = null;
 	    String sql = "SELECT * FROM facilities WHERE id = ?;";
-	    Connection connection = DatabaseUtility.connect();
+	    Connection connection = Metrics.connect(GET_FACILITY_DETAILS_BY_ID);
 	    try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
 	        preparedStatement.setInt(1, facilityId);
+	        long executed = System.nanoTime();
 	        ResultSet resultSet = preparedStatement.executeQuery();
+	        QueryProfiler.getDefault().observe(sql, executed, facilityId);
 	        if (resultSet.next()) {
 	            facility = new Facilities();
 	            facility.setId(resultSet.getInt("id"));
@@ -119,9 +149,11 @@ public class FacilitiesDAO {
 	            facility.setOperationalStatus(operationalStatus);
 	        }
 	    } catch (SQLException ex) {
+	        GET_FACILITY_DETAILS_BY_ID.error();
 	        Logger.getLogger(FacilitiesDAO.class.getName()).log(Level.SEVERE, null, ex);
 	    } finally {
-	        DatabaseUtility.disconnect(connection);
+	        Metrics.disconnect(connection);
+	        GET_FACILITY_DETAILS_BY_ID.record(started);
 	    }
 	    return facility;
 	}
@@ -132,30 +164,50 @@ public class FacilitiesDAO {
 	 * Used in the 'Organization List > Delete Confirmation Modal' section to delete a facility.
 	 */
 	public boolean deleteFacility(int facilityId) {
+	    long started = System.nanoTime();
 	    Connection connection = null;
 	    PreparedStatement pstmt = null;
 	    boolean isDeleted = false;
 	    String sql = "DELETE FROM facilities WHERE id = ?;";
 	    try {
-	        connection = DatabaseUtility.connect();
+	        connection = Metrics.connect(DELETE_FACILITY);
+	        connection.setAutoCommit(false);
 	        pstmt = connection.prepareStatement(sql);
 	        pstmt.setInt(1, facilityId);
+	        long executed = System.nanoTime();
 	        int affectedRows = pstmt.executeUpdate();
+	        QueryProfiler.getDefault().observe(sql, executed, facilityId);
 	        if (affectedRows > 0) {
-	            isDeleted = true;
+	            ChangeEvents.publish(connection, ChangeEvent.FACILITIES, facilityId, 0, ChangeEvent.Operation.DELETE);
 	        }
+	        connection.commit();
+	        isDeleted = affectedRows > 0;
 	    } catch (SQLException e) {
+	        rollback(connection);
+	        DELETE_FACILITY.error();
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error executing delete for facility ID: " + facilityId, e);
 	    } finally {
 	        try {
 	            if (pstmt != null) {
 	                pstmt.close();
 	            }
-	            DatabaseUtility.disconnect(connection);
+	            Metrics.disconnect(connection);
 	        } catch (SQLException e) {
 	            Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error closing resources", e);
 	        }
+	        DELETE_FACILITY.record(started);
 	    }
 	    return isDeleted;
 	}
+
+	private static void rollback(Connection connection) {
+	    if (connection == null) {
+	        return;
+	    }
+	    try {
+	        connection.rollback();
+	    } catch (SQLException e) {
+	        Logger.getLogger(FacilitiesDAO.class.getName()).log(Level.SEVERE, "Error rolling back", e);
+	    }
+	}
 }
@@ -0,0 +1,72 @@
+package dao;
+
+import model.Attributes;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A typed, read-only view of the current row of an instance scan. The view is reused for
+ * every row and reads straight from the result set, so numeric columns are read without
+ * boxing; callers must not keep a reference to it after {@code visit} returns.
+ * Columns are addressed by the position of the attribute in the list given to the scan.
+ */
+public final class InstanceRow {
+
+    private final ResultSet resultSet;
+    private final List<Attributes> attributes;
+
+    InstanceRow(ResultSet resultSet, List<Attributes> attributes) {
+        this.resultSet = resultSet;
+        this.attributes = attributes;
+    }
+
+    public long getId() throws SQLException {
+        return resultSet.getLong(1);
+    }
+
+    public Attributes getAttribute(int index) {
+        return attributes.get(index);
+    }
+
+    public int getAttributeCount() {
+        return attributes.size();
+    }
+
+    public boolean isNull(int index) throws SQLException {
+        resultSet.getObject(index + 2);
+        return resultSet.wasNull();
+    }
+
+    /**
+     * Reads an INTEGER attribute; returns 0 for null, check {@link #isNull(int)} when it matters.
+     */
+    public long getLong(int index) throws SQLException {
+        return resultSet.getLong(index + 2);
+    }
+
+    /**
+     * Reads a FLOAT attribute; returns 0 for null, check {@link #isNull(int)} when it matters.
+     */
+    public double getDouble(int index) throws SQLException {
+        return resultSet.getDouble(index + 2);
+    }
+
+    /**
+     * Reads a VARCHAR, TEXT or ENUM attribute.
+     */
+    public String getString(int index) throws SQLException {
+        return resultSet.getString(index + 2);
+    }
+
+    public LocalDate getDate(int index) throws SQLException {
+        return resultSet.getObject(index + 2, LocalDate.class);
+    }
+
+    public LocalDateTime getDateTime(int index) throws SQLException {
+        return resultSet.getObject(index + 2, LocalDateTime.class);
+    }
+}
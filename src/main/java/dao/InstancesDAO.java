@@ -0,0 +1,328 @@
+package dao;
+
+
+import metrics.Metrics;
+import metrics.OperationMetrics;
+import model.*;
+import utils.DataTypeMapping;
+import java.sql.*;
+import java.util.logging.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+
+/**
+ * Stores instances of object types. Every object type gets its own table, instances_&lt;objectTypeId&gt;,
+ * with one typed column a_&lt;attributeId&gt; per attribute (see {@link DataTypeMapping#sqlType}), so
+ * reading all instances of a type is a sequential scan of one table rather than a join over
+ * entity-attribute-value rows. Table and column names are derived from ids only.
+ */
+public class InstancesDAO {
+
+	private static final OperationMetrics ENSURE_INSTANCE_TABLE = Metrics.operation("InstancesDAO.ensureInstanceTable");
+	private static final OperationMetrics DROP_ATTRIBUTE_COLUMN = Metrics.operation("InstancesDAO.dropAttributeColumn");
+	private static final OperationMetrics INSERT_INSTANCES = Metrics.operation("InstancesDAO.insertInstances");
+	private static final OperationMetrics SCAN_INSTANCES = Metrics.operation("InstancesDAO.scanInstances");
+	private static final OperationMetrics FIND_INSTANCE_BY_ID = Metrics.operation("InstancesDAO.findInstanceById");
+	private static final OperationMetrics DELETE_INSTANCE_BY_ID = Metrics.operation("InstancesDAO.deleteInstanceById");
+
+	private static final int BATCH_SIZE = 1000;
+	private static final int FETCH_SIZE = 10000;
+
+	/**
+	 * Callback receiving the rows of an instance scan.
+	 */
+	public interface InstanceRowVisitor {
+	    void visit(InstanceRow row) throws SQLException;
+	}
+
+	public static String tableName(int objectTypeId) {
+	    return "instances_" + objectTypeId;
+	}
+
+	public static String columnName(Attributes attribute) {
+	    return columnName(attribute.getId());
+	}
+
+	public static String columnName(int attributeId) {
+	    return "a_" + attributeId;
+	}
+
+	/**
+	 * @return the name of the index on an attribute's column, maintained by jobs.AttributeIndexJob.
+	 */
+	public static String indexName(int objectTypeId, int attributeId) {
+	    return tableName(objectTypeId) + "_" + columnName(attributeId) + "_idx";
+	}
+	
+	/**
+	 * @return the names of the columns of an object type's instance table, empty if it does not exist.
+	 */
+	public static Set<String> columnNames(Connection connection, int objectTypeId) throws SQLException {
+	    Set<String> columns = new HashSet<>();
+	    String sql = "SELECT attname FROM pg_attribute WHERE attrelid = to_regclass(?) AND attnum > 0 AND NOT attisdropped";
+	    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+	        statement.setString(1, tableName(objectTypeId));
+	        try (ResultSet resultSet = statement.executeQuery()) {
+	            while (resultSet.next()) {
+	                columns.add(resultSet.getString(1));
+	            }
+	        }
+	    }
+	    return columns;
+	}
+	
+	/**
+	 * Creates the instance table of an object type, or adds the columns of attributes created since.
+	 * Used after creating or editing an object type's attributes. The existing columns are read from
+	 * the catalog first, so a table that is already in line is not locked at all, and missing columns
+	 * are added in one ALTER TABLE.
+	 *
+	 * @param objectTypeId the object type.
+	 * @param attributes   its attributes.
+	 * @return true if the table is in line with the attributes.
+	 */
+	public boolean ensureInstanceTable(int objectTypeId, List<Attributes> attributes) {
+	    long started = System.nanoTime();
+	    Connection connection = Metrics.connect(ENSURE_INSTANCE_TABLE);
+	    try (Statement statement = connection.createStatement()) {
+	        Set<String> columns = columnNames(connection, objectTypeId);
+	        if (columns.isEmpty()) {
+	            statement.execute("CREATE TABLE IF NOT EXISTS " + tableName(objectTypeId)
+	                    + " (id BIGSERIAL PRIMARY KEY, created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+	        }
+	        StringBuilder alter = new StringBuilder("ALTER TABLE ").append(tableName(objectTypeId));
+	        int missing = 0;
+	        for (Attributes attribute : attributes) {
+	            if (columns.contains(columnName(attribute))) {
+	                continue;
+	            }
+	            // Required attributes are enforced on write; NOT NULL here would fail on tables that already hold rows.
+	            // IF NOT EXISTS covers a concurrent call that added the column after the catalog was read.
+	            alter.append(missing++ > 0 ? "," : "").append(" ADD COLUMN IF NOT EXISTS ")
+	                    .append(columnName(attribute)).append(' ').append(DataTypeMapping.sqlType(attribute.getDataType()));
+	        }
+	        if (missing > 0) {
+	            statement.execute(alter.toString());
+	        }
+	        return true;
+	    } catch (SQLException e) {
+	        ENSURE_INSTANCE_TABLE.error();
+	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error creating instance table for object type " + objectTypeId, e);
+	        return false;
+	    } finally {
+	        Metrics.disconnect(connection);
+	        ENSURE_INSTANCE_TABLE.record(started);
+	    }
+	}
+	
+	/**
+	 * Drops the column of a deleted attribute.
+	 *
+	 * @param objectTypeId the object type.
+	 * @param attribute    the deleted attribute.
+	 * @return true if the column no longer exists.
+	 */
+	public boolean dropAttributeColumn(int objectTypeId, Attributes attribute) {
+	    long started = System.nanoTime();
+	    Connection connection = Metrics.connect(DROP_ATTRIBUTE_COLUMN);
+	    try (Statement statement = connection.createStatement()) {
+	        statement.execute("ALTER TABLE " + tableName(objectTypeId) + " DROP COLUMN IF EXISTS " + columnName(attribute));
+	        return true;
+	    } catch (SQLException e) {
+	        DROP_ATTRIBUTE_COLUMN.error();
+	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error dropping column of attribute " + attribute.getId(), e);
+	        return false;
+	    } finally {
+	        Metrics.disconnect(connection);
+	        DROP_ATTRIBUTE_COLUMN.record(started);
+	    }
+	}
+	
+	/**
+	 * Inserts instances in JDBC batches within one transaction. Missing values are filled from the
+	 * attribute's default value, and rows missing a required value are rejected before anything is written.
+	 *
+	 * @param objectTypeId the object type.
+	 * @param attributes   its attributes; only these columns are written.
+	 * @param rows         the instances, values keyed by attribute name, as typed values or strings.
+	 * @return the generated instance ids, in row order.
+	 * @throws IllegalArgumentException if a row misses a required value or holds a value of the wrong type.
+	 */
+	public List<Long> insertInstances(int objectTypeId, List<Attributes> attributes, List<Map<String, Object>> rows) {
+	    long started = System.nanoTime();
+	    List<Object[]> values = new ArrayList<>(rows.size());
+	    for (int r = 0; r < rows.size(); r++) {
+	        values.add(toColumnValues(attributes, rows.get(r), r));
+	    }
+	
+	    StringBuilder sql = new StringBuilder("INSERT INTO ").append(tableName(objectTypeId)).append(" (");
+	    StringBuilder placeholders = new StringBuilder();
+	    for (int i = 0; i < attributes.size(); i++) {
+	        sql.append(i > 0 ? ", " : "").append(columnName(attributes.get(i)));
+	        placeholders.append(i > 0 ? ", ?" : "?");
+	    }
+	    sql.append(") VALUES (").append(placeholders).append(")");
+	    if (attributes.isEmpty()) {
+	        sql.setLength(0);
+	        sql.append("INSERT INTO ").append(tableName(objectTypeId)).append(" DEFAULT VALUES");
+	    }
+	
+	    List<Long> ids = new ArrayList<>(rows.size());
+	    Connection connection = Metrics.connect(INSERT_INSTANCES);
+	    try {
+	        connection.setAutoCommit(false);
+	        try (PreparedStatement statement = connection.prepareStatement(sql.toString(), new String[]{"id"})) {
+	            for (int r = 0; r < values.size(); r++) {
+	                Object[] row = values.get(r);
+	                for (int i = 0; i < row.length; i++) {
+	                    statement.setObject(i + 1, row[i]);
+	                }
+	                statement.addBatch();
+	                if ((r + 1) % BATCH_SIZE == 0 || r == values.size() - 1) {
+	                    statement.executeBatch();
+	                    try (ResultSet keys = statement.getGeneratedKeys()) {
+	                        while (keys.next()) {
+	                            ids.add(keys.getLong(1));
+	                        }
+	                    }
+	                }
+	            }
+	        }
+	        connection.commit();
+	    } catch (SQLException e) {
+	        INSERT_INSTANCES.error();
+	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error inserting instances of object type " + objectTypeId, e);
+	        try {
+	            connection.rollback();
+	        } catch (SQLException se) {
+	            Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, se);
+	        }
+	        ids.clear();
+	    } finally {
+	        Metrics.disconnect(connection);
+	        INSERT_INSTANCES.record(started, ids.size());
+	    }
+	    return ids;
+	}
+	
+	/**
+	 * Streams all instances of an object type through the visitor. The scan runs in a transaction
+	 * with a fetch size, so Postgres uses a cursor and the rows are never all held in memory.
+	 *
+	 * @param objectTypeId the object type.
+	 * @param attributes   the attributes to read, in the order the row view addresses them.
+	 * @param visitor      receives each row.
+	 * @return the number of rows visited, or -1 if the scan failed.
+	 */
+	public long scanInstances(int objectTypeId, List<Attributes> attributes, InstanceRowVisitor visitor) {
+	    long started = System.nanoTime();
+	    StringBuilder sql = new StringBuilder("SELECT id");
+	    for (Attributes attribute : attributes) {
+	        sql.append(", ").append(columnName(attribute));
+	    }
+	    sql.append(" FROM ").append(tableName(objectTypeId)).append(" ORDER BY id");
+	
+	    long count = 0;
+	    Connection connection = Metrics.connect(SCAN_INSTANCES);
+	    try {
+	        connection.setAutoCommit(false);
+	        try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+	            statement.setFetchSize(FETCH_SIZE);
+	            try (ResultSet resultSet = statement.executeQuery()) {
+	                InstanceRow row = new InstanceRow(resultSet, attributes);
+	                while (resultSet.next()) {
+	                    visitor.visit(row);
+	                    count++;
+	                }
+	            }
+	        }
+	        connection.commit();
+	    } catch (SQLException e) {
+	        SCAN_INSTANCES.error();
+	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error scanning instances of object type " + objectTypeId, e);
+	        count = -1;
+	    } finally {
+	        Metrics.disconnect(connection);
+	        SCAN_INSTANCES.record(started, Math.max(count, 0));
+	    }
+	    return count;
+	}
+	
+	/**
+	 * Fetches one instance with typed values keyed by attribute name.
+	 *
+	 * @return the values, or null if the instance does not exist.
+	 */
+	public Map<String, Object> findInstanceById(int objectTypeId, List<Attributes> attributes, long instanceId) {
+	    long started = System.nanoTime();
+	    StringBuilder sql = new StringBuilder("SELECT id");
+	    for (Attributes attribute : attributes) {
+	        sql.append(", ").append(columnName(attribute));
+	    }
+	    sql.append(" FROM ").append(tableName(objectTypeId)).append(" WHERE id = ?");
+	
+	    Map<String, Object> instance = null;
+	    Connection connection = Metrics.connect(FIND_INSTANCE_BY_ID);
+	    try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+	        statement.setLong(1, instanceId);
+	        try (ResultSet resultSet = statement.executeQuery()) {
+	            if (resultSet.next()) {
+	                instance = new LinkedHashMap<>();
+	                for (int i = 0; i < attributes.size(); i++) {
+	                    Attributes attribute = attributes.get(i);
+	                    instance.put(attribute.getName(), resultSet.getObject(i + 2, DataTypeMapping.javaType(attribute.getDataType())));
+	                }
+	            }
+	        }
+	    } catch (SQLException e) {
+	        FIND_INSTANCE_BY_ID.error();
+	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error fetching instance " + instanceId + " of object type " + objectTypeId, e);
+	    } finally {
+	        Metrics.disconnect(connection);
+	        FIND_INSTANCE_BY_ID.record(started);
+	    }
+	    return instance;
+	}
+	
+	/**
+	 * Deletes one instance.
+	 *
+	 * @return true if the instance existed.
+	 */
+	public boolean deleteInstanceById(int objectTypeId, long instanceId) {
+	    long started = System.nanoTime();
+	    Connection connection = Metrics.connect(DELETE_INSTANCE_BY_ID);
+	    try (PreparedStatement statement = connection.prepareStatement("DELETE FROM " + tableName(objectTypeId) + " WHERE id = ?")) {
+	        statement.setLong(1, instanceId);
+	        return statement.executeUpdate() > 0;
+	    } catch (SQLException e) {
+	        DELETE_INSTANCE_BY_ID.error();
+	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error deleting instance " + instanceId + " of object type " + objectTypeId, e);
+	        return false;
+	    } finally {
+	        Metrics.disconnect(connection);
+	        DELETE_INSTANCE_BY_ID.record(started);
+	    }
+	}
+	
+	private Object[] toColumnValues(List<Attributes> attributes, Map<String, Object> row, int rowIndex) {
+	    Object[] values = new Object[attributes.size()];
+	    for (int i = 0; i < attributes.size(); i++) {
+	        Attributes attribute = attributes.get(i);
+	        Object value = row.get(attribute.getName());
+	        if (value == null || (value instanceof String && ((String) value).isEmpty())) {
+	            value = attribute.getDefaultValue();
+	        }
+	        if (value == null && attribute.isRequired()) {
+	            throw new IllegalArgumentException("Row " + rowIndex + " has no value for required attribute '" + attribute.getName() + "'");
+	        }
+	        values[i] = DataTypeMapping.toJavaValue(attribute.getDataType(), value);
+	    }
+	    return values;
+	}
+}
@@ -1,10 +1,15 @@
 package dao;
 
 
+import events.ChangeEvent;
+import events.ChangeEvents;
+import metrics.Metrics;
+import metrics.OperationMetrics;
+import metrics.QueryProfiler;
 import model.*;
-import utils.DatabaseUtility;
 import java.sql.*;
-import java.util.logging.*;import java.util.List;
+import java.util.logging.*;import java.util.ArrayList;
+import java.util.List;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -12,40 +17,62 @@ import java.sql.SQLException;
 
 public class ObjectTypesDAO {
 
+	private static final OperationMetrics CREATE_OBJECT_TYPE = Metrics.operation("ObjectTypesDAO.createObjectType");
+	private static final OperationMetrics UPDATE_OBJECT_TYPE = Metrics.operation("ObjectTypesDAO.updateObjectType");
+	private static final OperationMetrics GET_OBJECT_TYPE_BY_ID = Metrics.operation("ObjectTypesDAO.getObjectTypeById");
+	private static final OperationMetrics DELETE_OBJECT_TYPE_BY_ID = Metrics.operation("ObjectTypesDAO.deleteObjectTypeById");
+	private static final OperationMetrics GET_ALL_OBJECT_TYPES = Metrics.operation("ObjectTypesDAO.getAllObjectTypes");
+
+	// Outcomes of an object type update
+	private static final int UPDATED = 0;
+	private static final int FAILED = 1;
+	private static final int STALE = 2;
+
 	
 	/**
 	 * Creates a new object type in the system with the specified name, description, and a list of attributes.
 	 * @param name the name of the object type.
 	 * @param description a detailed explanation of what the object type is used for.
 	 * @param attributes a list of attributes associated with the object type, each including details such as name, type, required status, default value, and constraints.
-	 * @return The id of the newly created object type.
+	 *                   They are inserted in the same transaction; their ids are ignored.
+	 * @return The id of the newly created object type, or 0 if nothing was created.
 	 */
 	public int createObjectType(String name, String description, List<Attributes> attributes) {
+	   long started = System.nanoTime();
 	   Connection connection = null;
 	   PreparedStatement pstmt = null;
 	   ResultSet rs = null;
 	   int objectId = 0;
 	   try {
-	       connection = DatabaseUtility.connect();
+	       connection = Metrics.connect(CREATE_OBJECT_TYPE);
+	       // The notification must be sent in the same transaction as the write
+	       connection.setAutoCommit(false);
 	       String sql = "INSERT INTO object_types (name, description) VALUES (?, ?) RETURNING id;";
 	       pstmt = connection.prepareStatement(sql);
 	       pstmt.setString(1, name);
 	       pstmt.setString(2, description);
 	       rs = pstmt.executeQuery();
+	       int created = 0;
 	       if (rs.next()) {
-	           objectId = rs.getInt(1);
-	           // Process attributes here if needed, you may need additional methods to handle this.
+	           created = rs.getInt(1);
+	           ChangeEvents.publish(connection, ChangeEvent.OBJECT_TYPES, created, 0, ChangeEvent.Operation.INSERT);
+	           new AttributesDAO().insertAttributes(connection, created, attributes);
 	       }
+	       connection.commit();
+	       objectId = created;
 	   } catch (SQLException e) {
+	       rollback(connection);
+	       CREATE_OBJECT_TYPE.error();
 	       Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
 	   } finally {
-	       DatabaseUtility.disconnect(connection);
+	       Metrics.disconnect(connection);
 	       try {
 	         if (rs != null) { rs.close(); }
 	         if (pstmt != null) { pstmt.close(); }
 	       } catch (SQLException e) {
 	           Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
 	       }
+	       CREATE_OBJECT_TYPE.record(started);
 	   }
 	   return objectId;
 	}
@@ -53,6 +80,8 @@ public class ObjectTypesDAO {
 	/**
 	 * Updates an existing object type's details including its name, description, and attributes based on the provided id.
 	 * Used in 'Edit Object Type Form' for updating an existing object type.
+	 * The write is unconditional; editors that must not overwrite concurrent changes should use
+	 * {@link #updateObjectTypeById(Integer, int, String, String, List)} instead.
 	 *
 	 * @param id         the unique identifier of the object type to be updated
 	 * @param name       the new name of the object type
@@ -61,39 +90,80 @@ public class ObjectTypesDAO {
 	 * @return boolean   returns true if the update was successful, otherwise false
 	 */
 	public boolean updateObjectTypeById(Integer id, String name, String description, List<Attributes> attributes) {
+	    return updateObjectType(id, null, name, description, attributes) == UPDATED;
+	}
+	
+	/**
+	 * Updates an existing object type only if nobody else has changed it since it was read.
+	 * The expected version is checked in the UPDATE's WHERE clause, so no row lock is held between read and write.
+	 * Every attribute edit bumps the object type's version, and each attribute in the list is only
+	 * updated if it still has the version it was read with, so concurrent attribute edits are not overwritten.
+	 *
+	 * @param id              the unique identifier of the object type to be updated
+	 * @param expectedVersion the version the caller read, see {@link ObjectTypes#getVersion()}
+	 * @param name            the new name of the object type
+	 * @param description     a new description for the object type
+	 * @param attributes      a list of updated or new attributes for the object type
+	 * @return true if the update was successful, false if the object type does not exist or the update failed
+	 * @throws VersionConflictException if the object type was changed concurrently; carries the current state
+	 */
+	public boolean updateObjectTypeById(Integer id, int expectedVersion, String name, String description, List<Attributes> attributes) throws VersionConflictException {
+	    int result = updateObjectType(id, expectedVersion, name, description, attributes);
+	    if (result == STALE) {
+	        ObjectTypes current = getObjectTypeById(id);
+	        if (current != null) {
+	            current.setAttributesList(new AttributesDAO().findAttributesByObjectTypeId(id));
+	            throw new VersionConflictException("Object type " + id + " or one of its attributes was modified concurrently, expected version "
+	                    + expectedVersion + " but found " + current.getVersion(), current);
+	        }
+	    }
+	    return result == UPDATED;
+	}
+	
+	private int updateObjectType(Integer id, Integer expectedVersion, String name, String description, List<Attributes> attributes) {
+	    long started = System.nanoTime();
 	    Connection connection = null;
 	    PreparedStatement pstmt = null;
-	    boolean updateSuccess = false;
+	    int result = FAILED;
 	
 	    try {
-	        connection = DatabaseUtility.connect();
+	        connection = Metrics.connect(UPDATE_OBJECT_TYPE);
 	        // Start transaction block
 	        connection.setAutoCommit(false);
 	
-	        // Update the object_types table
-	        String updateObjectTypeQuery = "UPDATE object_types SET name = ?, description = ?, updated_at = CURRENT_TIMESTAMP WHERE id = ?";
+	        // Update the object_types table first, bumping the version so concurrent optimistic writers detect the change.
+	        // This locks the row before any attribute, the order every attribute write follows (see AttributesDAO.lockObjectTypes).
+	        String updateObjectTypeQuery = "UPDATE object_types SET name = ?, description = ?, version = version + 1, updated_at = CURRENT_TIMESTAMP WHERE id = ?"
+	                + (expectedVersion != null ? " AND version = ?" : "") + " RETURNING version";
 	        pstmt = connection.prepareStatement(updateObjectTypeQuery);
 	        
 	        pstmt.setString(1, name);
 	        pstmt.setString(2, description);
 	        pstmt.setInt(3, id);
+	        if (expectedVersion != null) {
+	            pstmt.setInt(4, expectedVersion);
+	        }
 	
-	        int rowAffected = pstmt.executeUpdate();
-	        if (rowAffected == 1) {
-	            // If object type is updated successfully, update its attributes
-	            AttributesDao attributesDao = new AttributesDao();
-	            boolean attributesUpdated = attributesDao.updateAttributesByObjectTypeId(id, attributes, connection);
-	
-	            if (attributesUpdated) {
-	                // If both object type and attributes are successfully updated, commit the changes
-	                connection.commit();
-	                updateSuccess = true;
-	            } else {
-	                // If attributes update fails, rollback transaction
-	                connection.rollback();
-	            }
+	        boolean found;
+	        try (ResultSet rs = pstmt.executeQuery()) {
+	            found = rs.next();
+	        }
+	        if (!found) {
+	            connection.rollback();
+	            result = expectedVersion != null ? STALE : FAILED;
+	        } else if (!new AttributesDAO().replaceAttributesOfObjectType(connection, id, attributes, expectedVersion != null)) {
+	            // An attribute in the list was changed or deleted since the editor read it
+	            connection.rollback();
+	            result = expectedVersion != null ? STALE : FAILED;
+	        } else {
+	            // Attribute edits bump the version again, so the event carries the version as committed.
+	            // The notification is queued in the transaction and only delivered on commit.
+	            ChangeEvents.publish(connection, new ChangeEvent(ChangeEvent.OBJECT_TYPES, id, 0, ChangeEvent.Operation.UPDATE, currentVersion(connection, id)));
+	            connection.commit();
+	            result = UPDATED;
 	        }
 	    } catch (SQLException ex) {
+	        UPDATE_OBJECT_TYPE.error();
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, ex);
 	        try {
 	            if (connection != null) {
@@ -103,7 +173,7 @@ public class ObjectTypesDAO {
 	            Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, se);
 	        }
 	    } finally {
-	        DatabaseUtility.disconnect(connection);
+	        Metrics.disconnect(connection);
 	        if (pstmt != null) {
 	            try {
 	                pstmt.close();
@@ -111,8 +181,37 @@ public class ObjectTypesDAO {
 	                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
 	            }
 	        }
+	        UPDATE_OBJECT_TYPE.record(started);
+	    }
+	    return result;
+	}
+	
+	/**
+	 * Fetches a single object type by its id, without its attributes.
+	 * @param id the unique identifier of the object type
+	 * @return the object type, or null if it does not exist.
+	 */
+	public ObjectTypes getObjectTypeById(Integer id) {
+	    long started = System.nanoTime();
+	    ObjectTypes objectType = null;
+	    String sql = "SELECT id, name, description, version, created_at, updated_at FROM object_types WHERE id = ?";
+	    Connection connection = Metrics.connect(GET_OBJECT_TYPE_BY_ID);
+	    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+	        statement.setInt(1, id);
+	        long executed = System.nanoTime();
+	        ResultSet resultSet = statement.executeQuery();
+	        QueryProfiler.getDefault().observe(sql, executed, id);
+	        if (resultSet.next()) {
+	            objectType = mapObjectType(resultSet);
+	        }
+	    } catch (SQLException e) {
+	        GET_OBJECT_TYPE_BY_ID.error();
+	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
+	    } finally {
+	        Metrics.disconnect(connection);
+	        GET_OBJECT_TYPE_BY_ID.record(started);
 	    }
-	    return updateSuccess;
+	    return objectType;
 	}
 	
 	/**
@@ -121,18 +220,26 @@ public class ObjectTypesDAO {
 	 * @return true if the deletion was successful, otherwise false.
 	 */
 	public boolean deleteObjectTypeById(Integer id) {
-	    Connection connection = DatabaseUtility.connect();
+	    long started = System.nanoTime();
+	    Connection connection = Metrics.connect(DELETE_OBJECT_TYPE_BY_ID);
 	    PreparedStatement preparedStatement = null;
 	    boolean isDeleted = false;
 	    String sql = "DELETE FROM object_types WHERE id = ?;";
 	    try {
+	        connection.setAutoCommit(false);
 	        preparedStatement = connection.prepareStatement(sql);
 	        preparedStatement.setInt(1, id);
+	        long executed = System.nanoTime();
 	        int rowsAffected = preparedStatement.executeUpdate();
+	        QueryProfiler.getDefault().observe(sql, executed, id);
 	        if (rowsAffected > 0) {
-	            isDeleted = true;
+	            ChangeEvents.publish(connection, ChangeEvent.OBJECT_TYPES, id, 0, ChangeEvent.Operation.DELETE);
 	        }
+	        connection.commit();
+	        isDeleted = rowsAffected > 0;
 	    } catch (SQLException e) {
+	        rollback(connection);
+	        DELETE_OBJECT_TYPE_BY_ID.error();
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
 	    } finally {
 	        if (preparedStatement != null) {
@@ -142,7 +249,8 @@ public class ObjectTypesDAO {
 	                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
 	            }
 	        }
-	        DatabaseUtility.disconnect(connection);
+	        Metrics.disconnect(connection);
+	        DELETE_OBJECT_TYPE_BY_ID.record(started);
 	    }
 	    return isDeleted;
 	}
@@ -153,25 +261,73 @@ public class ObjectTypesDAO {
 	 * @return A List of ObjectTypes containing all object types in the system.
 	 */
 	public List<ObjectTypes> getAllObjectTypes() {
+	    try {
+	        return loadAllObjectTypes();
+	    } catch (SQLException e) {
+	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
+	        return new ArrayList<>();
+	    }
+	}
+	
+	/**
+	 * Fetches all object types like {@link #getAllObjectTypes()}, but fails instead of returning an
+	 * empty list, for in-memory views that must not be rebuilt from nothing.
+	 * @throws SQLException if the object types could not be read.
+	 */
+	public List<ObjectTypes> loadAllObjectTypes() throws SQLException {
+	    long started = System.nanoTime();
 	    List<ObjectTypes> objectTypes = new ArrayList<>();
-	    String sql = "SELECT id, name, description, created_at, updated_at FROM object_types";
-	    Connection connection = DatabaseUtility.connect();
+	    String sql = "SELECT id, name, description, version, created_at, updated_at FROM object_types";
+	    Connection connection = Metrics.connect(GET_ALL_OBJECT_TYPES);
+	    if (connection == null) {
+	        throw new SQLException("No database connection");
+	    }
 	    try (PreparedStatement statement = connection.prepareStatement(sql);) {
+	        long executed = System.nanoTime();
 	        ResultSet resultSet = statement.executeQuery();
+	        QueryProfiler.getDefault().observe(sql, executed);
 	        while (resultSet.next()) {
-	            ObjectTypes objectType = new ObjectTypes();
-	            objectType.setId(resultSet.getInt("id"));
-	            objectType.setName(resultSet.getString("name"));
-	            objectType.setDescription(resultSet.getString("description"));
-	            objectType.setCreatedAt(resultSet.getTimestamp("created_at"));
-	            objectType.setUpdatedAt(resultSet.getTimestamp("updated_at"));
-	            objectTypes.add(objectType);
+	            objectTypes.add(mapObjectType(resultSet));
 	        }
 	    } catch (SQLException e) {
-	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
+	        GET_ALL_OBJECT_TYPES.error();
+	        throw e;
 	    } finally {
-	        DatabaseUtility.disconnect(connection);
+	        Metrics.disconnect(connection);
+	        GET_ALL_OBJECT_TYPES.record(started, objectTypes.size());
 	    }
 	    return objectTypes;
 	}
+	
+	private static int currentVersion(Connection connection, int id) throws SQLException {
+	    try (PreparedStatement statement = connection.prepareStatement("SELECT version FROM object_types WHERE id = ?")) {
+	        statement.setInt(1, id);
+	        try (ResultSet resultSet = statement.executeQuery()) {
+	            resultSet.next();
+	            return resultSet.getInt(1);
+	        }
+	    }
+	}
+	
+	private ObjectTypes mapObjectType(ResultSet resultSet) throws SQLException {
+	    ObjectTypes objectType = new ObjectTypes();
+	    objectType.setId(resultSet.getInt("id"));
+	    objectType.setName(resultSet.getString("name"));
+	    objectType.setDescription(resultSet.getString("description"));
+	    objectType.setVersion(resultSet.getInt("version"));
+	    objectType.setCreatedAt(resultSet.getTimestamp("created_at"));
+	    objectType.setUpdatedAt(resultSet.getTimestamp("updated_at"));
+	    return objectType;
+	}
+
+	private static void rollback(Connection connection) {
+	    if (connection == null) {
+	        return;
+	    }
+	    try {
+	        connection.rollback();
+	    } catch (SQLException e) {
+	        Logger.getLogger(ObjectTypesDAO.class.getName()).log(Level.SEVERE, "Error rolling back", e);
+	    }
+	}
 }
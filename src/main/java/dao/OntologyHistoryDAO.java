@@ -0,0 +1,224 @@
+package dao;
+
+
+import events.ChangeEvent;
+import metrics.Metrics;
+import metrics.OperationMetrics;
+import metrics.QueryProfiler;
+import model.*;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import java.sql.*;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.TemporalAccessor;
+import java.util.logging.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * Reads the ontology change history recorded by the record_ontology_delta trigger
+ * (see db/migration/V4__ontology_history.sql) and reconstructs past versions from it.
+ */
+public class OntologyHistoryDAO {
+
+	private static final OperationMetrics FIND_HISTORY_BY_ENTITY = Metrics.operation("OntologyHistoryDAO.findHistoryByEntity");
+	private static final OperationMetrics GET_OBJECT_TYPE_AT = Metrics.operation("OntologyHistoryDAO.getObjectTypeAt");
+
+	
+	/**
+	 * Fetches the audit trail of a single entity, oldest change first.
+	 *
+	 * @param entityTable the table of the entity, e.g. object_types.
+	 * @param entityId    the id of the entity.
+	 * @return the recorded deltas and checkpoints.
+	 */
+	public List<OntologyHistory> findHistoryByEntity(String entityTable, int entityId) {
+	    long started = System.nanoTime();
+	    List<OntologyHistory> history = new ArrayList<>();
+	    String sql = "SELECT seq, entity_table, entity_id, root_object_type_id, operation, is_checkpoint, data::text AS data, changed_at "
+	            + "FROM ontology_history WHERE entity_table = ? AND entity_id = ? ORDER BY seq";
+	    Connection connection = Metrics.connect(FIND_HISTORY_BY_ENTITY);
+	    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+	        statement.setString(1, entityTable);
+	        statement.setInt(2, entityId);
+	        long executed = System.nanoTime();
+	        try (ResultSet resultSet = statement.executeQuery()) {
+	            QueryProfiler.getDefault().observe(sql, executed, entityTable, entityId);
+	            while (resultSet.next()) {
+	                OntologyHistory entry = new OntologyHistory();
+	                entry.setSeq(resultSet.getLong("seq"));
+	                entry.setEntityTable(resultSet.getString("entity_table"));
+	                entry.setEntityId(resultSet.getInt("entity_id"));
+	                entry.setRootObjectTypeId((Integer) resultSet.getObject("root_object_type_id"));
+	                entry.setOperation(OntologyHistory.Operation.fromCode(resultSet.getString("operation")));
+	                entry.setCheckpoint(resultSet.getBoolean("is_checkpoint"));
+	                entry.setData(resultSet.getString("data"));
+	                entry.setChangedAt(resultSet.getTimestamp("changed_at"));
+	                history.add(entry);
+	            }
+	        }
+	    } catch (SQLException e) {
+	        FIND_HISTORY_BY_ENTITY.error();
+	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error fetching history of " + entityTable + " " + entityId, e);
+	    } finally {
+	        Metrics.disconnect(connection);
+	        FIND_HISTORY_BY_ENTITY.record(started, history.size());
+	    }
+	    return history;
+	}
+	
+	/**
+	 * Reconstructs an object type with its attributes and relationships as of a point in time.
+	 * For every entity only the latest checkpoint at or before that time and the deltas after it are read,
+	 * so the cost is bounded by the checkpoint interval rather than by the length of the history.
+	 *
+	 * @param objectTypeId the id of the object type.
+	 * @param asOf         the point in time to reconstruct.
+	 * @return the revision, or null if the object type did not exist at that time.
+	 */
+	public ObjectTypeRevision getObjectTypeAt(int objectTypeId, Timestamp asOf) {
+	    long started = System.nanoTime();
+	    String sql = "WITH checkpoints AS ("
+	            + " SELECT entity_table, entity_id, MAX(seq) AS seq FROM ontology_history"
+	            + " WHERE root_object_type_id = ? AND is_checkpoint AND changed_at <= ?"
+	            + " GROUP BY entity_table, entity_id)"
+	            + " SELECT h.entity_table, h.entity_id, h.operation, h.data::text AS data FROM ontology_history h"
+	            + " JOIN checkpoints c ON c.entity_table = h.entity_table AND c.entity_id = h.entity_id"
+	            + " WHERE h.seq >= c.seq AND h.changed_at <= ?"
+	            + " ORDER BY h.entity_table, h.entity_id, h.seq";
+	    Map<String, JSONObject> rows = new LinkedHashMap<>();
+	    Connection connection = Metrics.connect(GET_OBJECT_TYPE_AT);
+	    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+	        statement.setInt(1, objectTypeId);
+	        statement.setTimestamp(2, asOf);
+	        statement.setTimestamp(3, asOf);
+	        try (ResultSet resultSet = statement.executeQuery()) {
+	            while (resultSet.next()) {
+	                String key = resultSet.getString("entity_table") + ":" + resultSet.getInt("entity_id");
+	                if ("D".equals(resultSet.getString("operation"))) {
+	                    rows.remove(key);
+	                    continue;
+	                }
+	                JSONObject data = new JSONObject(resultSet.getString("data"));
+	                JSONObject row = rows.get(key);
+	                if (row == null) {
+	                    rows.put(key, data);
+	                } else {
+	                    for (String column : data.keySet()) {
+	                        row.put(column, data.get(column));
+	                    }
+	                }
+	            }
+	        }
+	    } catch (SQLException e) {
+	        GET_OBJECT_TYPE_AT.error();
+	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error reconstructing object type " + objectTypeId + " as of " + asOf, e);
+	        return null;
+	    } finally {
+	        Metrics.disconnect(connection);
+	        GET_OBJECT_TYPE_AT.record(started);
+	    }
+	
+	    JSONObject objectTypeRow = rows.get(ChangeEvent.OBJECT_TYPES + ":" + objectTypeId);
+	    if (objectTypeRow == null) {
+	        return null;
+	    }
+	    ObjectTypes objectType = toObjectType(objectTypeRow);
+	    List<Attributes> attributes = new ArrayList<>();
+	    List<Relationships> relationships = new ArrayList<>();
+	    for (Map.Entry<String, JSONObject> entry : rows.entrySet()) {
+	        if (entry.getKey().startsWith(ChangeEvent.ATTRIBUTES + ":")) {
+	            attributes.add(toAttribute(entry.getValue()));
+	        } else if (entry.getKey().startsWith(ChangeEvent.RELATIONSHIPS + ":")) {
+	            Relationships relationship = toRelationship(entry.getValue());
+	            relationship.setFilterByObjectType(objectType);
+	            relationships.add(relationship);
+	        }
+	    }
+	    objectType.setAttributesList(attributes);
+	    return new ObjectTypeRevision(asOf, objectType, relationships);
+	}
+	
+	/**
+	 * Rolls an object type and its attributes back to the state they had at a point in time.
+	 * The rollback is itself an ordinary update, so it is recorded in the history and can be undone.
+	 *
+	 * @param objectTypeId the id of the object type.
+	 * @param asOf         the point in time to restore.
+	 * @return true if the object type existed at that time and was restored.
+	 */
+	public boolean rollbackObjectType(int objectTypeId, Timestamp asOf) {
+	    ObjectTypeRevision revision = getObjectTypeAt(objectTypeId, asOf);
+	    if (revision == null) {
+	        return false;
+	    }
+	    ObjectTypes objectType = revision.getObjectType();
+	    return new ObjectTypesDAO().updateObjectTypeById(objectTypeId, objectType.getName(), objectType.getDescription(), objectType.getAttributesList());
+	}
+	
+	private ObjectTypes toObjectType(JSONObject row) {
+	    ObjectTypes objectType = new ObjectTypes();
+	    objectType.setId(row.getInt("id"));
+	    objectType.setName(row.optString("name", null));
+	    objectType.setDescription(row.optString("description", null));
+	    objectType.setVersion(row.optInt("version"));
+	    objectType.setCreatedAt(toTimestamp(row, "created_at"));
+	    objectType.setUpdatedAt(toTimestamp(row, "updated_at"));
+	    return objectType;
+	}
+	
+	private Attributes toAttribute(JSONObject row) {
+	    Attributes attribute = new Attributes();
+	    attribute.setId(row.getInt("id"));
+	    attribute.setName(row.optString("name", null));
+	    attribute.setDataType(Attributes.DataTypes.valueOf(row.getString("data_type").toUpperCase()));
+	    attribute.setRequired(row.optBoolean("is_required"));
+	    attribute.setDefaultValue(row.isNull("default_value") ? null : row.optString("default_value", null));
+	    JSONArray enumValues = row.optJSONArray("enum_values");
+	    if (enumValues != null) {
+	        List<String> values = new ArrayList<>();
+	        for (int i = 0; i < enumValues.length(); i++) {
+	            values.add(enumValues.getString(i));
+	        }
+	        attribute.setEnumValues(values);
+	    }
+	    attribute.setIndexed(row.optBoolean("is_indexed"));
+	    attribute.setAttributeUsageCount(row.optInt("attribute_usage_count"));
+	    attribute.setVersion(row.optInt("version"));
+	    return attribute;
+	}
+	
+	private Relationships toRelationship(JSONObject row) {
+	    Relationships relationship = new Relationships();
+	    relationship.setId(row.getInt("id"));
+	    relationship.setRelationshipName(row.optString("relationship_name", null));
+	    if (!row.isNull("relationship_type")) {
+	        relationship.setRelationshipType(Relationships.RelationshipTypes.valueOf(row.getString("relationship_type")));
+	    }
+	    relationship.setRelationshipDescription(row.isNull("relationship_description") ? null : row.optString("relationship_description", null));
+	    relationship.setAttributesJson(row.isNull("attributes_json") ? null : String.valueOf(row.get("attributes_json")));
+	    relationship.setSortOrder(row.optInt("sort_order"));
+	    if (!row.isNull("filter_by_type")) {
+	        relationship.setFilterByType(Relationships.RelationshipTypes.valueOf(row.getString("filter_by_type")));
+	    }
+	    return relationship;
+	}
+	
+	private Timestamp toTimestamp(JSONObject row, String column) {
+	    if (row.isNull(column)) {
+	        return null;
+	    }
+	    // to_jsonb renders timestamps in ISO 8601 form, e.g. 2024-03-01T10:15:30.123, and timestamptz
+	    // columns with their offset, e.g. 2024-03-01T10:15:30.123+01:00
+	    TemporalAccessor value = DateTimeFormatter.ISO_DATE_TIME.parseBest(row.getString(column), OffsetDateTime::from, LocalDateTime::from);
+	    if (value instanceof OffsetDateTime) {
+	        return Timestamp.from(((OffsetDateTime) value).toInstant());
+	    }
+	    return Timestamp.valueOf((LocalDateTime) value);
+	}
+}
@@ -1,6 +1,11 @@
 package dao;
 
 
+import events.ChangeEvent;
+import events.ChangeEvents;
+import metrics.Metrics;
+import metrics.OperationMetrics;
+import metrics.QueryProfiler;
 import model.*;
 import utils.DatabaseUtility;
 import java.sql.*;
@@ -10,6 +15,11 @@ import java.util.List;
 
 public class RelationshipDependenciesDAO {
 
+	private static final OperationMetrics CREATE_RELATIONSHIP_DEPENDENCY = Metrics.operation("RelationshipDependenciesDAO.createRelationshipDependency");
+	private static final OperationMetrics DELETE_RELATIONSHIP_DEPENDENCY_BY_ID = Metrics.operation("RelationshipDependenciesDAO.deleteRelationshipDependencyById");
+	private static final OperationMetrics FIND_ALL_DEPENDENCIES_BY_RELATIONSHIP_ID = Metrics.operation("RelationshipDependenciesDAO.findAllDependenciesByRelationshipId");
+	private static final OperationMetrics UPDATE_RELATIONSHIP_DEPENDENCY = Metrics.operation("RelationshipDependenciesDAO.updateRelationshipDependency");
+
 	
 	/**
 	 * Creates a new relationship dependency in the system. This method is crucial for tracking specific dependencies when defining new relationships between object types.
@@ -19,13 +29,16 @@ public class RelationshipDependenciesDAO {
 	 * @return The created RelationshipDependencies object, or null if creation failed.
 	 */
 	public RelationshipDependencies createRelationshipDependency(String dependencyName, RelationshipDependencies.DependencyType dependencyType, int relationshipId) {
-	    Connection connection = DatabaseUtility.connect();
+	    long started = System.nanoTime();
+	    Connection connection = Metrics.connect(CREATE_RELATIONSHIP_DEPENDENCY);
 	    PreparedStatement preparedStatement = null;
 	    ResultSet generatedKeys = null;
 	    RelationshipDependencies relationshipDependency = null;
 	
 	    String sql = "INSERT INTO relationship_dependencies (dependency_name, dependency_type, relationship_id) VALUES (?, ?, ?)";
 	    try {
+	        // The notification must be sent in the same transaction as the write
+	        connection.setAutoCommit(false);
 	        preparedStatement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS);
 	        preparedStatement.setString(1, dependencyName);
 	        preparedStatement.setString(2, dependencyType.name());
@@ -38,19 +51,25 @@ public class RelationshipDependenciesDAO {
 	
 	        generatedKeys = preparedStatement.getGeneratedKeys();
 	        if (generatedKeys.next()) {
-	            relationshipDependency = new RelationshipDependencies();
-	            relationshipDependency.setId(generatedKeys.getInt(1));
-	            relationshipDependency.setDependencyName(dependencyName);
-	            relationshipDependency.setDependencyType(dependencyType);
-	            relationshipDependency.setRelationship(new Relationships());
-	            relationshipDependency.getRelationship().setId(relationshipId);
+	            RelationshipDependencies created = new RelationshipDependencies();
+	            created.setId(generatedKeys.getInt(1));
+	            created.setDependencyName(dependencyName);
+	            created.setDependencyType(dependencyType);
+	            created.setRelationship(new Relationships());
+	            created.getRelationship().setId(relationshipId);
+	            ChangeEvents.publish(connection, ChangeEvent.RELATIONSHIP_DEPENDENCIES, created.getId(), relationshipId, ChangeEvent.Operation.INSERT);
+	            connection.commit();
+	            relationshipDependency = created;
 	        }
 	    } catch (SQLException e) {
+	        rollback(connection);
+	        CREATE_RELATIONSHIP_DEPENDENCY.error();
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error creating relationship dependency", e);
 	    } finally {
-	        DatabaseUtility.disconnect(connection);
+	        Metrics.disconnect(connection);
 	        if (generatedKeys != null) try { generatedKeys.close(); } catch (SQLException e) { /* ignored */ }
 	        if (preparedStatement != null) try { preparedStatement.close(); } catch (SQLException e) { /* ignored */ }
+	        CREATE_RELATIONSHIP_DEPENDENCY.record(started);
 	    }
 	    return relationshipDependency;
 	}
@@ -63,23 +82,34 @@ public class RelationshipDependenciesDAO {
 	 * @param id The unique identifier for each record in the relationship_dependencies table.
 	 */
 	public boolean deleteRelationshipDependencyById(int id) {
+	    long started = System.nanoTime();
 	    Connection connection = null;
 	    PreparedStatement preparedStatement = null;
 	    boolean isDeleted = false;
-	    String sql = "DELETE FROM relationship_dependencies WHERE id = ?;";
+	    String sql = "DELETE FROM relationship_dependencies WHERE id = ? RETURNING relationship_id;";
 	    try {
-	        connection = DatabaseUtility.connect();
+	        connection = Metrics.connect(DELETE_RELATIONSHIP_DEPENDENCY_BY_ID);
+	        connection.setAutoCommit(false);
 	        preparedStatement = connection.prepareStatement(sql);
 	        preparedStatement.setInt(1, id);
 	
-	        int affectedRows = preparedStatement.executeUpdate();
-	        if (affectedRows > 0) {
-	            isDeleted = true;
+	        long executed = System.nanoTime();
+	        boolean deleted;
+	        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+	            QueryProfiler.getDefault().observe(sql, executed, id);
+	            deleted = resultSet.next();
+	            if (deleted) {
+	                ChangeEvents.publish(connection, ChangeEvent.RELATIONSHIP_DEPENDENCIES, id, resultSet.getInt(1), ChangeEvent.Operation.DELETE);
+	            }
 	        }
+	        connection.commit();
+	        isDeleted = deleted;
 	    } catch (SQLException e) {
+	        rollback(connection);
+	        DELETE_RELATIONSHIP_DEPENDENCY_BY_ID.error();
 	        Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error deleting relationship dependency with ID: " + id, e);
 	    } finally {
-	        DatabaseUtility.disconnect(connection);
+	        Metrics.disconnect(connection);
 	        if (preparedStatement != null) {
 	            try {
 	                preparedStatement.close();
@@ -87,6 +117,7 @@ public class RelationshipDependenciesDAO {
 	                Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Failed to close prepared statement.", e);
 	            }
 	        }
+	        DELETE_RELATIONSHIP_DEPENDENCY_BY_ID.record(started);
 	    }
 	    return isDeleted;
 	}
@@ -100,15 +131,18 @@ public class RelationshipDependenciesDAO {
 	 * @return A list of RelationshipDependencies associated with the given relationship ID.
 	 */
 	public List<RelationshipDependencies> findAllDependenciesByRelationshipId(int relationshipId) {
+	    long started = System.nanoTime();
 	    List<RelationshipDependencies> dependencies = new ArrayList<>();
-	    Connection connection = DatabaseUtility.connect();
+	    Connection connection = Metrics.connect(FIND_ALL_DEPENDENCIES_BY_RELATIONSHIP_ID);
 	    PreparedStatement preparedStatement = null;
 	    ResultSet resultSet = null;
 	    try {
 	        String sql = "SELECT * FROM relationship_dependencies WHERE relationship_id = ?";
 	        preparedStatement = connection.prepareStatement(sql);
 	        preparedStatement.setInt(1, relationshipId);
+	        long executed = System.nanoTime();
 	        resultSet = preparedStatement.executeQuery();
+	        QueryProfiler.getDefault().observe(sql, executed, relationshipId);
 	        while (resultSet.next()) {
 	            RelationshipDependencies dependency = new RelationshipDependencies();
 	            dependency.setId(resultSet.getInt("id"));
@@ -121,11 +155,13 @@ public class RelationshipDependenciesDAO {
 	            dependencies.add(dependency);
 	        }
 	    } catch (SQLException e) {
+	        FIND_ALL_DEPENDENCIES_BY_RELATIONSHIP_ID.error();
 	        Logger.getLogger(RelationshipDependenciesDAO.class.getName()).log(Level.SEVERE, null, e);
 	    } finally {
 	        DatabaseUtility.closeQuietly(resultSet);
 	        DatabaseUtility.closeQuietly(preparedStatement);
-	        DatabaseUtility.disconnect(connection);
+	        Metrics.disconnect(connection);
+	        FIND_ALL_DEPENDENCIES_BY_RELATIONSHIP_ID.record(started, dependencies.size());
 	    }
 	    return dependencies;
 	}
@@ -141,25 +177,34 @@ public class RelationshipDependenciesDAO {
 	 * @return boolean indicating success or failure of the update.
 	 */
 	public boolean updateRelationshipDependency(int id, String dependencyName, RelationshipDependencies.DependencyType dependencyType) {
+	    long started = System.nanoTime();
 	    Connection connection = null;
 	    PreparedStatement preparedStatement = null;
 	    boolean success = false;
 	    try {
-	        connection = DatabaseUtility.connect();
-	        String query = "UPDATE relationship_dependencies SET dependency_name = ?, dependency_type = ?::dependency_type WHERE id = ?;";
+	        connection = Metrics.connect(UPDATE_RELATIONSHIP_DEPENDENCY);
+	        connection.setAutoCommit(false);
+	        String query = "UPDATE relationship_dependencies SET dependency_name = ?, dependency_type = ?::dependency_type WHERE id = ? RETURNING relationship_id;";
 	        preparedStatement = connection.prepareStatement(query);
 	        preparedStatement.setString(1, dependencyName);
 	        preparedStatement.setString(2, dependencyType.name());
 	        preparedStatement.setInt(3, id);
 	
-	        int rowsAffected = preparedStatement.executeUpdate();
-	        if (rowsAffected > 0) {
-	            success = true;
+	        boolean updated;
+	        try (ResultSet resultSet = preparedStatement.executeQuery()) {
+	            updated = resultSet.next();
+	            if (updated) {
+	                ChangeEvents.publish(connection, ChangeEvent.RELATIONSHIP_DEPENDENCIES, id, resultSet.getInt(1), ChangeEvent.Operation.UPDATE);
+	            }
 	        }
+	        connection.commit();
+	        success = updated;
 	    } catch (SQLException e) {
+	        rollback(connection);
+	        UPDATE_RELATIONSHIP_DEPENDENCY.error();
 	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
 	    } finally {
-	        DatabaseUtility.disconnect(connection);
+	        Metrics.disconnect(connection);
 	        if (preparedStatement != null) {
 	            try {
 	                preparedStatement.close();
@@ -167,7 +212,19 @@ public class RelationshipDependenciesDAO {
 	                Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, null, e);
 	            }
 	        }
+	        UPDATE_RELATIONSHIP_DEPENDENCY.record(started);
 	    }
 	    return success;
 	}
+
+	private static void rollback(Connection connection) {
+	    if (connection == null) {
+	        return;
+	    }
+	    try {
+	        connection.rollback();
+	    } catch (SQLException e) {
+	        Logger.getLogger(RelationshipDependenciesDAO.class.getName()).log(Level.SEVERE, "Error rolling back", e);
+	    }
+	}
 }
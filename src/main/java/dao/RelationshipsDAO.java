@@ -0,0 +1,117 @@
+package dao;
+
+import metrics.Metrics;
+import metrics.OperationMetrics;
+import metrics.QueryProfiler;
+import model.ObjectTypes;
+import model.Relationships;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+public class RelationshipsDAO {
+
+	private static final OperationMetrics LOAD_ALL_RELATIONSHIPS = Metrics.operation("RelationshipsDAO.loadAllRelationships");
+	private static final OperationMetrics FIND_RELATIONSHIP_BY_ID = Metrics.operation("RelationshipsDAO.findRelationshipById");
+
+	private static final String RELATIONSHIP_COLUMNS = "id, relationship_name, relationship_type, relationship_description, attributes_json, sort_order, filter_by_type, filter_by_object_type_id";
+
+	/**
+	 * Fetches every relationship, for in-memory views of the whole ontology. The filter object type
+	 * only carries its id.
+	 *
+	 * @return the relationships in id order.
+	 * @throws SQLException if they could not be read, so that a view is not rebuilt from nothing.
+	 */
+	public List<Relationships> loadAllRelationships() throws SQLException {
+	    long started = System.nanoTime();
+	    List<Relationships> relationships = new ArrayList<>();
+	    String sql = "SELECT " + RELATIONSHIP_COLUMNS + " FROM relationships ORDER BY id";
+	    Connection connection = Metrics.connect(LOAD_ALL_RELATIONSHIPS);
+	    if (connection == null) {
+	        throw new SQLException("No database connection");
+	    }
+	    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+	        long executed = System.nanoTime();
+	        try (ResultSet resultSet = statement.executeQuery()) {
+	            QueryProfiler.getDefault().observe(sql, executed);
+	            while (resultSet.next()) {
+	                relationships.add(mapRelationship(resultSet));
+	            }
+	        }
+	    } catch (SQLException e) {
+	        LOAD_ALL_RELATIONSHIPS.error();
+	        throw e;
+	    } finally {
+	        Metrics.disconnect(connection);
+	        LOAD_ALL_RELATIONSHIPS.record(started, relationships.size());
+	    }
+	    return relationships;
+	}
+
+	/**
+	 * Fetches a single relationship by its id.
+	 *
+	 * @return the relationship, or null if it does not exist or could not be read.
+	 */
+	public Relationships findRelationshipById(int id) {
+	    long started = System.nanoTime();
+	    Relationships relationship = null;
+	    String sql = "SELECT " + RELATIONSHIP_COLUMNS + " FROM relationships WHERE id = ?";
+	    Connection connection = Metrics.connect(FIND_RELATIONSHIP_BY_ID);
+	    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+	        statement.setInt(1, id);
+	        long executed = System.nanoTime();
+	        try (ResultSet resultSet = statement.executeQuery()) {
+	            QueryProfiler.getDefault().observe(sql, executed, id);
+	            if (resultSet.next()) {
+	                relationship = mapRelationship(resultSet);
+	            }
+	        }
+	    } catch (SQLException e) {
+	        FIND_RELATIONSHIP_BY_ID.error();
+	        Logger.getLogger(this.getClass().getName()).log(Level.SEVERE, "Error fetching relationship with ID: " + id, e);
+	    } finally {
+	        Metrics.disconnect(connection);
+	        FIND_RELATIONSHIP_BY_ID.record(started);
+	    }
+	    return relationship;
+	}
+
+	private static Relationships mapRelationship(ResultSet resultSet) throws SQLException {
+	    Relationships relationship = new Relationships();
+	    relationship.setId(resultSet.getInt("id"));
+	    relationship.setRelationshipName(resultSet.getString("relationship_name"));
+	    relationship.setRelationshipType(relationshipType(resultSet.getString("relationship_type")));
+	    relationship.setRelationshipDescription(resultSet.getString("relationship_description"));
+	    relationship.setAttributesJson(resultSet.getString("attributes_json"));
+	    relationship.setSortOrder(resultSet.getInt("sort_order"));
+	    relationship.setFilterByType(relationshipType(resultSet.getString("filter_by_type")));
+	    int filterByObjectTypeId = resultSet.getInt("filter_by_object_type_id");
+	    if (!resultSet.wasNull()) {
+	        ObjectTypes filterByObjectType = new ObjectTypes();
+	        filterByObjectType.setId(filterByObjectTypeId);
+	        relationship.setFilterByObjectType(filterByObjectType);
+	    }
+	    return relationship;
+	}
+
+	// Unknown names are left for the consistency checker to report rather than failing the read
+	private static Relationships.RelationshipTypes relationshipType(String name) {
+	    if (name == null) {
+	        return null;
+	    }
+	    try {
+	        return Relationships.RelationshipTypes.valueOf(name);
+	    } catch (IllegalArgumentException e) {
+	        return null;
+	    }
+	}
+}
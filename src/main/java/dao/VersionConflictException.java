@@ -0,0 +1,29 @@
+package dao;
+
+/**
+ * Thrown by optimistic updates when the row was changed by someone else after the caller read it.
+ * The state found in the database at the time of the conflict is attached so the editor can
+ * show it, merge, or retry against the new version without another round trip.
+ */
+public class VersionConflictException extends Exception {
+
+    private final Object currentState;
+
+    /**
+     * @param message      a description of the conflict.
+     * @param currentState the current row, e.g. an {@link model.ObjectTypes} or {@link model.Attributes}.
+     */
+    public VersionConflictException(String message, Object currentState) {
+        super(message);
+        this.currentState = currentState;
+    }
+
+    /**
+     * Gets the state of the row as it was when the conflict was detected.
+     *
+     * @return the current row.
+     */
+    public Object getCurrentState() {
+        return currentState;
+    }
+}
@@ -0,0 +1,90 @@
+package diff;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * One statement of a change set. An insert carries every value, an update only the values that
+ * differ and a delete none; all carry the natural key of the entity.
+ */
+public final class Change {
+
+    public enum Operation {
+        INSERT, UPDATE, DELETE
+    }
+
+    private final Operation operation;
+    private final EntityKind kind;
+    private final String[] key;
+    private final String[] values;
+    private final boolean[] included;
+
+    Change(Operation operation, EntityKind kind, String[] key, String[] values, boolean[] included) {
+        this.operation = operation;
+        this.kind = kind;
+        this.key = key;
+        this.values = values;
+        this.included = included;
+    }
+
+    static Change insert(Entity entity) {
+        boolean[] included = new boolean[entity.values().length];
+        Arrays.fill(included, true);
+        return new Change(Operation.INSERT, entity.getKind(), entity.key(), entity.values(), included);
+    }
+
+    /**
+     * @return the update turning the current entity into the desired one, or null if they are equal.
+     */
+    static Change update(Entity current, Entity desired) {
+        boolean[] included = new boolean[desired.values().length];
+        boolean changed = false;
+        for (int i = 0; i < included.length; i++) {
+            included[i] = !Objects.equals(current.values()[i], desired.values()[i]);
+            changed |= included[i];
+        }
+        return changed ? new Change(Operation.UPDATE, desired.getKind(), desired.key(), desired.values(), included) : null;
+    }
+
+    static Change delete(Entity entity) {
+        return new Change(Operation.DELETE, entity.getKind(), entity.key(), new String[entity.values().length],
+                new boolean[entity.values().length]);
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public EntityKind getKind() {
+        return kind;
+    }
+
+    String[] key() {
+        return key;
+    }
+
+    String[] values() {
+        return values;
+    }
+
+    /**
+     * @return whether the change sets the value column at the index.
+     */
+    public boolean isIncluded(int column) {
+        return included[column];
+    }
+
+    /**
+     * @return the position of the change in the order a change set is applied in: inserts and
+     * updates parents first, then deletes children first, so every reference exists when it is needed.
+     */
+    int phase() {
+        int kinds = EntityKind.values().length;
+        return operation == Operation.DELETE ? 2 * kinds - 1 - kind.ordinal() : kind.ordinal();
+    }
+
+    @Override
+    public String toString() {
+        return operation + " " + kind + Arrays.toString(key);
+    }
+}
@@ -0,0 +1,181 @@
+package diff;
+
+import com.google.gson.JsonObject;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Change set files: the changes turning one ontology into another, one per line in the order they
+ * are applied in (see {@link Change#phase()}), so a change set is reviewed as text and applied in
+ * a single pass.
+ *
+ * <pre>
+ * {"format":"ontology-changes","version":1}
+ * {"operation":"UPDATE","kind":"ATTRIBUTE","key":{"objectType":"Pump","name":"flow"},"values":{"required":"true"}}
+ * {"operation":"DELETE","kind":"OBJECT_TYPE","key":{"name":"Valve"},"values":{}}
+ * </pre>
+ */
+public final class ChangeSet {
+
+    static final String FORMAT = "ontology-changes";
+
+    private ChangeSet() {
+    }
+
+    /**
+     * @return a reader of the change set, which it reads exactly once.
+     */
+    public static Reader read(BufferedReader in) {
+        return new Reader(in);
+    }
+
+    /**
+     * Writes changes produced in comparison order, kind by kind, into apply order. Inserts and
+     * updates already come parents first and are written straight away; deletes are spooled to a
+     * temporary file per kind and appended children first by {@link #finish()}.
+     */
+    static final class Writer implements Closeable {
+
+        private final BufferedWriter out;
+        private final Path[] spools = new Path[EntityKind.values().length];
+        private final BufferedWriter[] spoolWriters = new BufferedWriter[EntityKind.values().length];
+        private final ChangeSummary summary = new ChangeSummary();
+
+        Writer(Path file) throws IOException {
+            out = Files.newBufferedWriter(file, StandardCharsets.UTF_8);
+            out.write(JsonLines.header(FORMAT));
+            out.write('\n');
+        }
+
+        void add(Change change) throws IOException {
+            BufferedWriter target = out;
+            if (change.getOperation() == Change.Operation.DELETE) {
+                int kind = change.getKind().ordinal();
+                if (spoolWriters[kind] == null) {
+                    spools[kind] = Files.createTempFile("ontology-deletes-", ".ndjson");
+                    spoolWriters[kind] = Files.newBufferedWriter(spools[kind], StandardCharsets.UTF_8);
+                }
+                target = spoolWriters[kind];
+            }
+            JsonObject line = new JsonObject();
+            line.addProperty("operation", change.getOperation().name());
+            line.addProperty("kind", change.getKind().name());
+            line.add("key", JsonLines.columns(change.getKind().getKeyColumns(), change.key(), null));
+            boolean[] included = new boolean[change.values().length];
+            for (int i = 0; i < included.length; i++) {
+                included[i] = change.isIncluded(i);
+            }
+            line.add("values", JsonLines.columns(change.getKind().getValueColumns(), change.values(), included));
+            target.write(line.toString());
+            target.write('\n');
+            summary.record(change);
+        }
+
+        /**
+         * Appends the spooled deletes and closes the change set.
+         *
+         * @return the number of changes written.
+         */
+        ChangeSummary finish() throws IOException {
+            for (int kind = spools.length - 1; kind >= 0; kind--) {
+                if (spoolWriters[kind] != null) {
+                    spoolWriters[kind].close();
+                    spoolWriters[kind] = null;
+                    try (BufferedReader in = Files.newBufferedReader(spools[kind], StandardCharsets.UTF_8)) {
+                        in.transferTo(out);
+                    }
+                }
+            }
+            close();
+            return summary;
+        }
+
+        /**
+         * Closes the change set and removes the spools, leaving an unfinished change set incomplete.
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                out.close();
+            } finally {
+                for (int kind = 0; kind < spools.length; kind++) {
+                    if (spoolWriters[kind] != null) {
+                        spoolWriters[kind].close();
+                        spoolWriters[kind] = null;
+                    }
+                    if (spools[kind] != null) {
+                        Files.deleteIfExists(spools[kind]);
+                        spools[kind] = null;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads changes and checks they come in apply order.
+     */
+    public static final class Reader {
+
+        private final BufferedReader in;
+        private long lineNumber;
+        private int phase;
+
+        private Reader(BufferedReader in) {
+            this.in = in;
+        }
+
+        /**
+         * @return the next change, or null after the last one.
+         * @throws IOException if the change set is malformed or out of order.
+         */
+        public Change next() throws IOException {
+            if (lineNumber == 0) {
+                String header = in.readLine();
+                lineNumber++;
+                if (header == null) {
+                    throw new IOException("Empty change set");
+                }
+                JsonLines.checkHeader(header, FORMAT);
+            }
+            String line;
+            do {
+                line = in.readLine();
+                lineNumber++;
+            } while (line != null && line.isEmpty());
+            if (line == null) {
+                return null;
+            }
+            JsonObject object = JsonLines.parse(line, lineNumber);
+            Change.Operation operation;
+            try {
+                operation = Change.Operation.valueOf(object.get("operation").getAsString());
+            } catch (RuntimeException e) {
+                throw new IOException("Unknown operation on line " + lineNumber, e);
+            }
+            EntityKind kind = JsonLines.kind(object.get("kind"), lineNumber);
+            String[] key = JsonLines.columns(object.getAsJsonObject("key"), kind.getKeyColumns(), null, lineNumber);
+            boolean[] included = new boolean[kind.getValueColumns().size()];
+            String[] values = JsonLines.columns(object.getAsJsonObject("values"), kind.getValueColumns(), included, lineNumber);
+            if (operation == Change.Operation.INSERT) {
+                for (int i = 0; i < included.length; i++) {
+                    if (!included[i]) {
+                        throw new IOException("Insert without " + kind.getValueColumns().get(i).getLabel() + " on line " + lineNumber);
+                    }
+                }
+            }
+            Change change = new Change(operation, kind, key, values, included);
+            if (change.phase() < phase) {
+                throw new IOException(change + " on line " + lineNumber + " is out of apply order");
+            }
+            phase = change.phase();
+            return change;
+        }
+    }
+}
@@ -0,0 +1,354 @@
+package diff;
+
+import events.ChangeEvent;
+import events.ChangeEvents;
+import metrics.Metrics;
+import metrics.OperationMetrics;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Applies a change set to a database as JDBC batches, in the order the change set is written in:
+ * inserts and updates parents first, then deletes children first. Changes of the same kind and
+ * operation that set the same columns share a statement; all batches of a phase are executed
+ * before the next phase starts, so the rows a change references are always in place.
+ * <p>
+ * The whole change set is one transaction. Entities are found by natural key, so a change set
+ * computed against one snapshot is only valid as long as the target has not changed since; an
+ * update or delete that finds no row, or an insert whose reference does not resolve, rolls the
+ * transaction back instead of applying half of the change set.
+ * <p>
+ * Change events for the written rows are published just before the commit. Beyond a threshold
+ * a single reset is published instead, so a large promotion costs one notification rather than
+ * one per row, and listeners rebuild once instead of applying thousands of events.
+ */
+public final class ChangeSetApplier {
+
+    private static final OperationMetrics APPLY = Metrics.operation("ChangeSetApplier.apply");
+
+    private final int batchSize;
+    private final int resetThreshold;
+
+    /**
+     * @param batchSize      the number of changes executed in one JDBC batch.
+     * @param resetThreshold the number of written rows above which one reset is published
+     *                       instead of a change event per row.
+     */
+    public ChangeSetApplier(int batchSize, int resetThreshold) {
+        this.batchSize = batchSize;
+        this.resetThreshold = resetThreshold;
+    }
+
+    /**
+     * @param connection the connection to the target database; its auto-commit mode is restored afterwards.
+     * @param changes    the change set.
+     * @return the number of changes applied per kind and operation.
+     * @throws SQLException if a statement fails or the target no longer matches the change set;
+     *                      nothing is applied.
+     * @throws IOException  if the change set cannot be read; nothing is applied.
+     */
+    public ChangeSummary apply(Connection connection, ChangeSet.Reader changes) throws SQLException, IOException {
+        long started = System.nanoTime();
+        boolean autoCommit = connection.getAutoCommit();
+        Map<String, Batch> batches = new LinkedHashMap<>();
+        ChangeSummary summary = new ChangeSummary();
+        Events events = new Events(resetThreshold);
+        try {
+            connection.setAutoCommit(false);
+            lockObjectTypes(connection);
+            int phase = -1;
+            for (Change change = changes.next(); change != null; change = changes.next()) {
+                if (change.phase() != phase) {
+                    flush(batches);
+                    phase = change.phase();
+                }
+                String sql = sql(change);
+                Batch batch = batches.get(sql);
+                if (batch == null) {
+                    batch = new Batch(connection, sql, change, events);
+                    batches.put(sql, batch);
+                }
+                batch.add(change);
+                if (batch.pending.size() >= batchSize) {
+                    batch.execute();
+                }
+                summary.record(change);
+            }
+            flush(batches);
+            events.publish(connection);
+            connection.commit();
+            APPLY.record(started, summary.getTotal());
+            return summary;
+        } catch (SQLException | IOException | RuntimeException e) {
+            APPLY.error();
+            try {
+                connection.rollback();
+            } catch (SQLException rollback) {
+                e.addSuppressed(rollback);
+            }
+            throw e;
+        } finally {
+            for (Batch batch : batches.values()) {
+                batch.close();
+            }
+            try {
+                connection.setAutoCommit(autoCommit);
+            } catch (SQLException e) {
+                Logger.getLogger(ChangeSetApplier.class.getName()).log(Level.WARNING, "Error restoring auto-commit", e);
+            }
+        }
+    }
+
+    /**
+     * Locks every object type in id order before anything is written. Attribute writes elsewhere lock
+     * their object type first (see dao.AttributesDAO), and a change set can write attributes of any
+     * object type, so taking all of them up front keeps the lock order the same and cannot deadlock.
+     */
+    private static void lockObjectTypes(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.executeQuery("SELECT id FROM object_types ORDER BY id FOR UPDATE").close();
+        }
+    }
+
+    /**
+     * Executes and closes the batches of the phase that is complete.
+     */
+    private static void flush(Map<String, Batch> batches) throws SQLException {
+        try {
+            for (Batch batch : batches.values()) {
+                batch.execute();
+            }
+        } finally {
+            for (Batch batch : batches.values()) {
+                batch.close();
+            }
+            batches.clear();
+        }
+    }
+
+    /**
+     * @return the statement applying the change; changes with the same statement are batched together.
+     */
+    static String sql(Change change) {
+        EntityKind kind = change.getKind();
+        StringBuilder sql = new StringBuilder();
+        switch (change.getOperation()) {
+            case INSERT: {
+                StringBuilder columns = new StringBuilder();
+                StringBuilder expressions = new StringBuilder();
+                StringBuilder resolved = new StringBuilder();
+                for (EntityKind.Column column : kind.getKeyColumns()) {
+                    append(columns, expressions, column);
+                    if (isReference(column)) {
+                        resolved.append(resolved.length() == 0 ? " WHERE " : " AND ")
+                                .append(column.getExpression()).append(" IS NOT NULL");
+                    }
+                }
+                for (EntityKind.Column column : kind.getValueColumns()) {
+                    append(columns, expressions, column);
+                }
+                // An unresolved reference inserts nothing rather than a null foreign key, and is then reported.
+                sql.append("INSERT INTO ").append(kind.getTable()).append(" (").append(columns)
+                        .append(") SELECT ").append(expressions).append(resolved);
+                break;
+            }
+            case UPDATE: {
+                sql.append("UPDATE ").append(kind.getTable()).append(" SET ");
+                List<EntityKind.Column> values = kind.getValueColumns();
+                boolean first = true;
+                for (int i = 0; i < values.size(); i++) {
+                    if (change.isIncluded(i)) {
+                        sql.append(first ? "" : ", ").append(values.get(i).getColumn()).append(" = ").append(values.get(i).getExpression());
+                        first = false;
+                    }
+                }
+                sql.append(kind.getUpdateSuffix());
+                appendKey(sql, kind);
+                break;
+            }
+            default:
+                sql.append("DELETE FROM ").append(kind.getTable());
+                appendKey(sql, kind);
+        }
+        return sql.toString();
+    }
+
+    private static void append(StringBuilder columns, StringBuilder expressions, EntityKind.Column column) {
+        if (columns.length() > 0) {
+            columns.append(", ");
+            expressions.append(", ");
+        }
+        columns.append(column.getColumn());
+        expressions.append(column.getExpression());
+    }
+
+    private static void appendKey(StringBuilder sql, EntityKind kind) {
+        boolean first = true;
+        for (EntityKind.Column column : kind.getKeyColumns()) {
+            sql.append(first ? " WHERE " : " AND ").append(column.getColumn()).append(" = ").append(column.getExpression());
+            first = false;
+        }
+    }
+
+    private static boolean isReference(EntityKind.Column column) {
+        return column.getExpression().startsWith("(");
+    }
+
+    /**
+     * The change events of the rows written so far, held until the transaction is about to commit.
+     * Once there are more than the threshold they are dropped for a single reset, so at most the
+     * threshold is ever held.
+     */
+    private static final class Events {
+
+        private final int threshold;
+        private final List<Written> written = new ArrayList<>();
+        private long rows;
+
+        Events(int threshold) {
+            this.threshold = threshold;
+        }
+
+        void add(String table, int[] ids, int[] parentIds, ChangeEvent.Operation operation) {
+            rows += ids.length;
+            if (rows > threshold) {
+                written.clear();
+            } else if (ids.length > 0) {
+                written.add(new Written(table, ids, parentIds, operation));
+            }
+        }
+
+        void publish(Connection connection) throws SQLException {
+            if (rows > threshold) {
+                ChangeEvents.publishReset(connection);
+                return;
+            }
+            for (Written batch : written) {
+                ChangeEvents.publish(connection, batch.table, batch.ids, batch.parentIds, batch.operation);
+            }
+        }
+    }
+
+    /**
+     * The rows one executed batch wrote.
+     */
+    private static final class Written {
+
+        private final String table;
+        private final int[] ids;
+        private final int[] parentIds;
+        private final ChangeEvent.Operation operation;
+
+        Written(String table, int[] ids, int[] parentIds, ChangeEvent.Operation operation) {
+            this.table = table;
+            this.ids = ids;
+            this.parentIds = parentIds;
+            this.operation = operation;
+        }
+    }
+
+    /**
+     * The pending changes of one statement.
+     */
+    private static final class Batch {
+
+        private final PreparedStatement statement;
+        private final EntityKind kind;
+        private final ChangeEvent.Operation operation;
+        private final List<Change> pending = new ArrayList<>();
+
+        private final Events events;
+
+        Batch(Connection connection, String sql, Change first, Events events) throws SQLException {
+            this.events = events;
+            this.kind = first.getKind();
+            this.operation = ChangeEvent.Operation.valueOf(first.getOperation().name());
+            String[] returned = kind.getParentColumn() == null ? new String[]{"id"} : new String[]{"id", kind.getParentColumn()};
+            this.statement = connection.prepareStatement(sql, returned);
+        }
+
+        void add(Change change) throws SQLException {
+            List<EntityKind.Column> keys = kind.getKeyColumns();
+            List<EntityKind.Column> values = kind.getValueColumns();
+            int index = 1;
+            if (change.getOperation() == Change.Operation.INSERT) {
+                for (int i = 0; i < keys.size(); i++) {
+                    keys.get(i).bind(statement, index++, change.key()[i]);
+                }
+                for (int i = 0; i < values.size(); i++) {
+                    values.get(i).bind(statement, index++, change.values()[i]);
+                }
+                for (int i = 0; i < keys.size(); i++) {
+                    if (isReference(keys.get(i))) {
+                        keys.get(i).bind(statement, index++, change.key()[i]);
+                    }
+                }
+            } else {
+                for (int i = 0; i < values.size(); i++) {
+                    if (change.isIncluded(i)) {
+                        values.get(i).bind(statement, index++, change.values()[i]);
+                    }
+                }
+                for (int i = 0; i < keys.size(); i++) {
+                    keys.get(i).bind(statement, index++, change.key()[i]);
+                }
+            }
+            statement.addBatch();
+            pending.add(change);
+        }
+
+        void execute() throws SQLException {
+            if (pending.isEmpty()) {
+                return;
+            }
+            int[] counts = statement.executeBatch();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    Change change = pending.get(i);
+                    throw new SQLException(change.getOperation() == Change.Operation.INSERT
+                            ? "Cannot apply " + change + ": an entity it references does not exist"
+                            : "Cannot apply " + change + ": the entity does not exist, the target changed since the diff");
+                }
+                if (counts[i] > 1) {
+                    throw new SQLException("Cannot apply " + pending.get(i) + ": its natural key matches " + counts[i] + " rows");
+                }
+            }
+            int[] ids = new int[pending.size()];
+            int[] parentIds = new int[pending.size()];
+            int rows = 0;
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                while (keys.next() && rows < ids.length) {
+                    ids[rows] = keys.getInt(1);
+                    parentIds[rows] = kind.getParentColumn() == null ? 0 : keys.getInt(2);
+                    rows++;
+                }
+            }
+            if (rows < ids.length) {
+                ids = Arrays.copyOf(ids, rows);
+                parentIds = Arrays.copyOf(parentIds, rows);
+            }
+            events.add(kind.getTable(), ids, parentIds, operation);
+            pending.clear();
+        }
+
+        void close() {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                Logger.getLogger(ChangeSetApplier.class.getName()).log(Level.WARNING, "Error closing statement", e);
+            }
+        }
+    }
+}
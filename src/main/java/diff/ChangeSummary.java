@@ -0,0 +1,41 @@
+package diff;
+
+/**
+ * The number of changes per kind and operation in a change set, or applied from one.
+ */
+public final class ChangeSummary {
+
+    private final long[][] counts = new long[EntityKind.values().length][Change.Operation.values().length];
+
+    void record(Change change) {
+        counts[change.getKind().ordinal()][change.getOperation().ordinal()]++;
+    }
+
+    public long get(EntityKind kind, Change.Operation operation) {
+        return counts[kind.ordinal()][operation.ordinal()];
+    }
+
+    public long getTotal() {
+        long total = 0;
+        for (long[] kind : counts) {
+            for (long count : kind) {
+                total += count;
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (EntityKind kind : EntityKind.values()) {
+            if (text.length() > 0) {
+                text.append(", ");
+            }
+            text.append(kind).append(" +").append(get(kind, Change.Operation.INSERT))
+                    .append(" ~").append(get(kind, Change.Operation.UPDATE))
+                    .append(" -").append(get(kind, Change.Operation.DELETE));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,105 @@
+package diff;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Reads the ontology of a database. All kinds are read in one repeatable-read transaction, so
+ * they come from one snapshot and every reference between them resolves, however long the
+ * comparison takes. Rows are streamed with a fetch size, never loaded at once.
+ * <p>
+ * A natural key the database has twice, which only the unique constraints of the ontology tables
+ * rule out for some kinds, fails the read with {@link #DUPLICATE_KEY}.
+ * <p>
+ * The connection is borrowed: {@link #close()} ends the transaction and restores its settings,
+ * but does not close it.
+ */
+public final class DatabaseSource implements OntologySource, AutoCloseable {
+
+    /**
+     * The SQLSTATE of the error reading a natural key that is in the database more than once,
+     * PostgreSQL's unique_violation.
+     */
+    public static final String DUPLICATE_KEY = "23505";
+
+    private static final int FETCH_SIZE = 2000;
+
+    private final Connection connection;
+    private final boolean autoCommit;
+    private final int isolation;
+    private PreparedStatement statement;
+    private ResultSet resultSet;
+
+    public DatabaseSource(Connection connection) throws SQLException {
+        this.connection = connection;
+        this.autoCommit = connection.getAutoCommit();
+        this.isolation = connection.getTransactionIsolation();
+        connection.setAutoCommit(false);
+        connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+    }
+
+    @Override
+    public Cursor open(EntityKind kind) throws SQLException {
+        closeCursor();
+        statement = connection.prepareStatement(kind.getSelectSql());
+        statement.setFetchSize(FETCH_SIZE);
+        ResultSet rows = statement.executeQuery();
+        resultSet = rows;
+        List<EntityKind.Column> keyColumns = kind.getKeyColumns();
+        List<EntityKind.Column> valueColumns = kind.getValueColumns();
+        return new Cursor() {
+
+            private String[] previous;
+
+            @Override
+            public Entity next() throws SQLException {
+                if (!rows.next()) {
+                    return null;
+                }
+                String[] key = new String[keyColumns.size()];
+                for (int i = 0; i < key.length; i++) {
+                    key[i] = keyColumns.get(i).read(rows, i + 1);
+                }
+                String[] values = new String[valueColumns.size()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = valueColumns.get(i).read(rows, key.length + i + 1);
+                }
+                Entity entity = new Entity(kind, key, values);
+                if (previous != null && NaturalKeyOrder.compare(previous, key) == 0) {
+                    throw new SQLException("The database has " + entity + " more than once; remove the duplicates"
+                            + " before promoting", DUPLICATE_KEY);
+                }
+                previous = key;
+                return entity;
+            }
+        };
+    }
+
+    /**
+     * Ends the read transaction, which changed nothing, and restores the connection settings.
+     */
+    @Override
+    public void close() throws SQLException {
+        try {
+            closeCursor();
+            connection.rollback();
+        } finally {
+            connection.setTransactionIsolation(isolation);
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private void closeCursor() throws SQLException {
+        if (resultSet != null) {
+            resultSet.close();
+            resultSet = null;
+        }
+        if (statement != null) {
+            statement.close();
+            statement = null;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package diff;
+
+import java.util.Arrays;
+
+/**
+ * One entity as compared: its natural key and its values, in the column order of its kind.
+ */
+public final class Entity {
+
+    private final EntityKind kind;
+    private final String[] key;
+    private final String[] values;
+
+    public Entity(EntityKind kind, String[] key, String[] values) {
+        if (key.length != kind.getKeyColumns().size() || values.length != kind.getValueColumns().size()) {
+            throw new IllegalArgumentException("Expected " + kind.getKeyColumns().size() + " key and "
+                    + kind.getValueColumns().size() + " value columns for " + kind);
+        }
+        this.kind = kind;
+        this.key = key;
+        this.values = values;
+    }
+
+    public EntityKind getKind() {
+        return kind;
+    }
+
+    String[] key() {
+        return key;
+    }
+
+    String[] values() {
+        return values;
+    }
+
+    public String getKey(int column) {
+        return key[column];
+    }
+
+    public String getValue(int column) {
+        return values[column];
+    }
+
+    @Override
+    public String toString() {
+        return kind + Arrays.toString(key);
+    }
+}
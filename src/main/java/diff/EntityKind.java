@@ -0,0 +1,238 @@
+package diff;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonParser;
+import events.ChangeEvent;
+
+import java.sql.Array;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The kinds of ontology entities that are compared, in foreign key order: each kind references
+ * only kinds before it. An entity is identified across databases by its natural key, never by its
+ * id; references to other entities are natural keys too, resolved to ids when a change is applied.
+ * Ids, versions, timestamps and usage counts are left out, as in the git-backed export.
+ */
+public enum EntityKind {
+
+    OBJECT_TYPE(ChangeEvent.OBJECT_TYPES, null, ", version = version + 1, updated_at = CURRENT_TIMESTAMP",
+            "SELECT name, description FROM object_types ORDER BY name COLLATE \"C\"",
+            new Column[]{Column.text("name", "name")},
+            new Column[]{Column.text("description", "description")}),
+
+    ATTRIBUTE(ChangeEvent.ATTRIBUTES, "fk_object_type_id", ", version = version + 1",
+            "SELECT o.name, a.name, a.data_type, a.is_required, a.default_value, a.is_indexed, a.enum_values"
+                    + " FROM attributes a JOIN object_types o ON o.id = a.fk_object_type_id"
+                    + " ORDER BY o.name COLLATE \"C\", a.name COLLATE \"C\"",
+            new Column[]{Column.reference("objectType", "fk_object_type_id", "SELECT id FROM object_types WHERE name = ?"),
+                    Column.text("name", "name")},
+            new Column[]{Column.text("dataType", "data_type"), Column.bool("required", "is_required"),
+                    Column.text("defaultValue", "default_value"), Column.bool("indexed", "is_indexed"),
+                    Column.textArray("enumValues", "enum_values")}),
+
+    RELATIONSHIP(ChangeEvent.RELATIONSHIPS, null, "",
+            "SELECT r.relationship_name, r.relationship_type::text, r.relationship_description, r.attributes_json::text,"
+                    + " r.sort_order, r.filter_by_type::text, o.name"
+                    + " FROM relationships r LEFT JOIN object_types o ON o.id = r.filter_by_object_type_id"
+                    + " ORDER BY r.relationship_name COLLATE \"C\"",
+            new Column[]{Column.text("name", "relationship_name")},
+            new Column[]{Column.text("type", "relationship_type"), Column.text("description", "relationship_description"),
+                    Column.text("attributesJson", "attributes_json"), Column.integer("sortOrder", "sort_order"),
+                    Column.text("filterByType", "filter_by_type"),
+                    Column.reference("filterByObjectType", "filter_by_object_type_id", "SELECT id FROM object_types WHERE name = ?")}),
+
+    DEPENDENCY(ChangeEvent.RELATIONSHIP_DEPENDENCIES, "relationship_id", "",
+            "SELECT r.relationship_name, d.dependency_type::text, d.dependency_name"
+                    + " FROM relationship_dependencies d JOIN relationships r ON r.id = d.relationship_id"
+                    + " ORDER BY r.relationship_name COLLATE \"C\", d.dependency_type::text COLLATE \"C\", d.dependency_name COLLATE \"C\"",
+            new Column[]{Column.reference("relationship", "relationship_id", "SELECT id FROM relationships WHERE relationship_name = ?"),
+                    Column.cast("type", "dependency_type", "dependency_type"), Column.text("name", "dependency_name")},
+            new Column[0]);
+
+    private final String table;
+    private final String parentColumn;
+    private final String updateSuffix;
+    private final String selectSql;
+    private final List<Column> keyColumns;
+    private final List<Column> valueColumns;
+
+    EntityKind(String table, String parentColumn, String updateSuffix, String selectSql, Column[] keyColumns, Column[] valueColumns) {
+        this.table = table;
+        this.parentColumn = parentColumn;
+        this.updateSuffix = updateSuffix;
+        this.selectSql = selectSql;
+        this.keyColumns = Arrays.asList(keyColumns);
+        this.valueColumns = Arrays.asList(valueColumns);
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    /**
+     * @return the column referencing the owning row, reported with change events, or null if none.
+     */
+    String getParentColumn() {
+        return parentColumn;
+    }
+
+    /**
+     * @return what every update of the table sets besides the changed columns, e.g. the row version.
+     */
+    String getUpdateSuffix() {
+        return updateSuffix;
+    }
+
+    /**
+     * @return the query returning the key columns and then the value columns of every entity,
+     * ordered by natural key in {@link NaturalKeyOrder}.
+     */
+    String getSelectSql() {
+        return selectSql;
+    }
+
+    public List<Column> getKeyColumns() {
+        return keyColumns;
+    }
+
+    public List<Column> getValueColumns() {
+        return valueColumns;
+    }
+
+    /**
+     * A column of an entity: its name in exports and change sets, its column in the table and how
+     * a value is read and bound. Every value is held as a string, or null.
+     */
+    public static final class Column {
+
+        enum Type {
+            TEXT, BOOLEAN, INTEGER, TEXT_ARRAY
+        }
+
+        private final String label;
+        private final String column;
+        private final Type type;
+        private final String expression;
+
+        private Column(String label, String column, Type type, String expression) {
+            this.label = label;
+            this.column = column;
+            this.type = type;
+            this.expression = expression;
+        }
+
+        static Column text(String label, String column) {
+            return new Column(label, column, Type.TEXT, "?");
+        }
+
+        static Column cast(String label, String column, String sqlType) {
+            return new Column(label, column, Type.TEXT, "?::" + sqlType);
+        }
+
+        static Column bool(String label, String column) {
+            return new Column(label, column, Type.BOOLEAN, "?");
+        }
+
+        static Column integer(String label, String column) {
+            return new Column(label, column, Type.INTEGER, "?");
+        }
+
+        static Column textArray(String label, String column) {
+            return new Column(label, column, Type.TEXT_ARRAY, "?");
+        }
+
+        /**
+         * A foreign key, held as the natural key of the referenced row and bound through the query
+         * that finds its id.
+         */
+        static Column reference(String label, String column, String idQuery) {
+            return new Column(label, column, Type.TEXT, "(" + idQuery + ")");
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        String getColumn() {
+            return column;
+        }
+
+        Type getType() {
+            return type;
+        }
+
+        /**
+         * @return the SQL expression with one placeholder that a value of the column is bound to.
+         */
+        String getExpression() {
+            return expression;
+        }
+
+        /**
+         * @return the value of the column at the index of the result set, as it is compared.
+         */
+        String read(ResultSet resultSet, int index) throws SQLException {
+            switch (type) {
+                case BOOLEAN:
+                    boolean bool = resultSet.getBoolean(index);
+                    return resultSet.wasNull() ? null : String.valueOf(bool);
+                case INTEGER:
+                    int number = resultSet.getInt(index);
+                    return resultSet.wasNull() ? null : String.valueOf(number);
+                case TEXT_ARRAY:
+                    Array array = resultSet.getArray(index);
+                    if (array == null) {
+                        return null;
+                    }
+                    JsonArray json = new JsonArray();
+                    for (Object element : (Object[]) array.getArray()) {
+                        json.add(element == null ? null : element.toString());
+                    }
+                    return json.toString();
+                default:
+                    return resultSet.getString(index);
+            }
+        }
+
+        /**
+         * Binds a value of the column, as returned by {@link #read}, to the placeholder at the index.
+         */
+        void bind(PreparedStatement statement, int index, String value) throws SQLException {
+            switch (type) {
+                case BOOLEAN:
+                    if (value == null) {
+                        statement.setNull(index, Types.BOOLEAN);
+                    } else {
+                        statement.setBoolean(index, Boolean.parseBoolean(value));
+                    }
+                    break;
+                case INTEGER:
+                    if (value == null) {
+                        statement.setNull(index, Types.INTEGER);
+                    } else {
+                        statement.setInt(index, Integer.parseInt(value));
+                    }
+                    break;
+                case TEXT_ARRAY:
+                    if (value == null) {
+                        statement.setNull(index, Types.ARRAY);
+                    } else {
+                        JsonArray json = JsonParser.parseString(value).getAsJsonArray();
+                        String[] elements = new String[json.size()];
+                        for (int i = 0; i < elements.length; i++) {
+                            elements[i] = json.get(i).isJsonNull() ? null : json.get(i).getAsString();
+                        }
+                        statement.setArray(index, statement.getConnection().createArrayOf("text", elements));
+                    }
+                    break;
+                default:
+                    statement.setString(index, value);
+            }
+        }
+    }
+}
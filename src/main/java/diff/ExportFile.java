@@ -0,0 +1,121 @@
+package diff;
+
+import com.google.gson.JsonObject;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.SQLException;
+
+/**
+ * Export files: the ontology of a source written out in the order it is compared in, one entity
+ * per line, so a file taken from one environment can be compared with another environment later
+ * without a connection to the first.
+ *
+ * <pre>
+ * {"format":"ontology-export","version":1}
+ * {"kind":"OBJECT_TYPE","key":{"name":"Pump"},"values":{"description":"A pump"}}
+ * {"kind":"ATTRIBUTE","key":{"objectType":"Pump","name":"flow"},"values":{"dataType":"FLOAT",...}}
+ * </pre>
+ */
+public final class ExportFile {
+
+    static final String FORMAT = "ontology-export";
+
+    private ExportFile() {
+    }
+
+    /**
+     * Streams every entity of the source to the writer.
+     *
+     * @return the number of entities written.
+     */
+    public static long write(OntologySource source, Writer out) throws IOException, SQLException {
+        out.write(JsonLines.header(FORMAT));
+        out.write('\n');
+        long count = 0;
+        for (EntityKind kind : EntityKind.values()) {
+            OntologySource.Cursor cursor = source.open(kind);
+            for (Entity entity = cursor.next(); entity != null; entity = cursor.next()) {
+                JsonObject line = new JsonObject();
+                line.addProperty("kind", kind.name());
+                line.add("key", JsonLines.columns(kind.getKeyColumns(), entity.key(), null));
+                line.add("values", JsonLines.columns(kind.getValueColumns(), entity.values(), null));
+                out.write(line.toString());
+                out.write('\n');
+                count++;
+            }
+        }
+        out.flush();
+        return count;
+    }
+
+    /**
+     * @return a source reading the export file from the reader, which it reads exactly once.
+     */
+    public static OntologySource read(BufferedReader in) {
+        return new FileSource(in);
+    }
+
+    private static final class FileSource implements OntologySource {
+
+        private final BufferedReader in;
+        private long lineNumber;
+        private Entity pending;
+        private boolean exhausted;
+
+        FileSource(BufferedReader in) {
+            this.in = in;
+        }
+
+        @Override
+        public Cursor open(EntityKind kind) throws IOException {
+            if (lineNumber == 0) {
+                String header = in.readLine();
+                lineNumber++;
+                if (header == null) {
+                    throw new IOException("Empty export file");
+                }
+                JsonLines.checkHeader(header, FORMAT);
+            }
+            return () -> {
+                if (pending == null && !readNext()) {
+                    return null;
+                }
+                if (pending.getKind().compareTo(kind) > 0) {
+                    // The first entity of a later kind stays for the cursor of that kind.
+                    return null;
+                }
+                if (pending.getKind() != kind) {
+                    // Skipping it would make a comparison take the entity for deleted.
+                    throw new IOException(pending + " on line " + lineNumber + " comes after the entities of a later kind");
+                }
+                Entity entity = pending;
+                pending = null;
+                return entity;
+            };
+        }
+
+        private boolean readNext() throws IOException {
+            if (exhausted) {
+                return false;
+            }
+            String line = in.readLine();
+            lineNumber++;
+            while (line != null && line.isEmpty()) {
+                line = in.readLine();
+                lineNumber++;
+            }
+            if (line == null) {
+                exhausted = true;
+                return false;
+            }
+            JsonObject object = JsonLines.parse(line, lineNumber);
+            EntityKind kind = JsonLines.kind(object.get("kind"), lineNumber);
+            String[] key = JsonLines.columns(object.getAsJsonObject("key"), kind.getKeyColumns(), null, lineNumber);
+            String[] values = JsonLines.columns(object.getAsJsonObject("values"), kind.getValueColumns(), null, lineNumber);
+            pending = new Entity(kind, key, values);
+            return true;
+        }
+    }
+}
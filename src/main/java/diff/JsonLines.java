@@ -0,0 +1,90 @@
+package diff;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonNull;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The line format of export files and change sets: one JSON object per line after a header line
+ * naming the format, so both are streamed line by line and stay readable and diffable as text.
+ */
+final class JsonLines {
+
+    static final int VERSION = 1;
+
+    private JsonLines() {
+    }
+
+    static String header(String format) {
+        JsonObject header = new JsonObject();
+        header.addProperty("format", format);
+        header.addProperty("version", VERSION);
+        return header.toString();
+    }
+
+    static void checkHeader(String line, String format) throws IOException {
+        JsonObject header = parse(line, 1);
+        if (!format.equals(string(header.get("format"))) || header.get("version") == null
+                || header.get("version").getAsInt() != VERSION) {
+            throw new IOException("Not an " + format + " version " + VERSION + " file: " + line);
+        }
+    }
+
+    static JsonObject parse(String line, long lineNumber) throws IOException {
+        try {
+            return JsonParser.parseString(line).getAsJsonObject();
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed line " + lineNumber + ": " + line, e);
+        }
+    }
+
+    /**
+     * @param included which values to write, or null for all.
+     */
+    static JsonObject columns(List<EntityKind.Column> columns, String[] values, boolean[] included) {
+        JsonObject object = new JsonObject();
+        for (int i = 0; i < values.length; i++) {
+            if (included == null || included[i]) {
+                object.add(columns.get(i).getLabel(), values[i] == null ? JsonNull.INSTANCE : new JsonPrimitive(values[i]));
+            }
+        }
+        return object;
+    }
+
+    /**
+     * @param included receives which columns are present, or null if all must be.
+     */
+    static String[] columns(JsonObject object, List<EntityKind.Column> columns, boolean[] included, long lineNumber) throws IOException {
+        if (object == null) {
+            throw new IOException("Missing columns on line " + lineNumber);
+        }
+        String[] values = new String[columns.size()];
+        for (int i = 0; i < values.length; i++) {
+            String label = columns.get(i).getLabel();
+            if (included != null) {
+                included[i] = object.has(label);
+            } else if (!object.has(label)) {
+                throw new IOException("Missing " + label + " on line " + lineNumber);
+            }
+            values[i] = string(object.get(label));
+        }
+        return values;
+    }
+
+    static EntityKind kind(JsonElement element, long lineNumber) throws IOException {
+        try {
+            return EntityKind.valueOf(element.getAsString());
+        } catch (RuntimeException e) {
+            throw new IOException("Unknown kind on line " + lineNumber, e);
+        }
+    }
+
+    private static String string(JsonElement element) {
+        return element == null || element.isJsonNull() ? null : element.getAsString();
+    }
+}
@@ -0,0 +1,43 @@
+package diff;
+
+/**
+ * The order of natural keys shared by every {@link OntologySource}: column by column, each compared
+ * by Unicode code point, with null last as PostgreSQL sorts ascending. Code point order is the byte order of UTF-8, so it is what
+ * PostgreSQL's {@code COLLATE "C"} sorts by in a UTF-8 database. {@link String#compareTo} differs
+ * from it for characters outside the Basic Multilingual Plane, and locale collations differ everywhere.
+ */
+final class NaturalKeyOrder {
+
+    private NaturalKeyOrder() {
+    }
+
+    static int compare(String[] a, String[] b) {
+        for (int i = 0; i < a.length; i++) {
+            int result = compare(a[i], b[i]);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    static int compare(String a, String b) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : 1) : -1;
+        }
+        int length = Math.min(a.length(), b.length());
+        for (int i = 0; i < length; i++) {
+            char x = a.charAt(i);
+            char y = b.charAt(i);
+            if (x != y) {
+                // A surrogate stands for a code point above every BMP character.
+                boolean xSurrogate = Character.isSurrogate(x);
+                if (xSurrogate != Character.isSurrogate(y)) {
+                    return xSurrogate ? 1 : -1;
+                }
+                return x - y;
+            }
+        }
+        return a.length() - b.length();
+    }
+}
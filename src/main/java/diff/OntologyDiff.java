@@ -0,0 +1,84 @@
+package diff;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+/**
+ * Computes the minimal change set between two ontologies by a sorted merge: both sources stream
+ * each kind in natural key order and the two streams are walked side by side, so memory use does
+ * not depend on the size of the ontologies. An entity only in the current source is deleted, one
+ * only in the desired source inserted, and one in both updated in the columns that differ.
+ */
+public final class OntologyDiff {
+
+    private OntologyDiff() {
+    }
+
+    /**
+     * @param current   the ontology to change, e.g. the production database.
+     * @param desired   the ontology it should become, e.g. an export of staging.
+     * @param changeSet the file receiving the change set; replaced if it exists.
+     * @return the number of changes per kind and operation.
+     * @throws IOException if a source is not in natural key order or has a natural key twice.
+     */
+    public static ChangeSummary diff(OntologySource current, OntologySource desired, Path changeSet) throws IOException, SQLException {
+        try (ChangeSet.Writer writer = new ChangeSet.Writer(changeSet)) {
+            for (EntityKind kind : EntityKind.values()) {
+                OrderedCursor from = new OrderedCursor(current.open(kind), "current");
+                OrderedCursor to = new OrderedCursor(desired.open(kind), "desired");
+                Entity a = from.next();
+                Entity b = to.next();
+                while (a != null || b != null) {
+                    int order = a == null ? 1 : b == null ? -1 : NaturalKeyOrder.compare(a.key(), b.key());
+                    if (order < 0) {
+                        writer.add(Change.delete(a));
+                        a = from.next();
+                    } else if (order > 0) {
+                        writer.add(Change.insert(b));
+                        b = to.next();
+                    } else {
+                        Change update = Change.update(a, b);
+                        if (update != null) {
+                            writer.add(update);
+                        }
+                        a = from.next();
+                        b = to.next();
+                    }
+                }
+            }
+            return writer.finish();
+        }
+    }
+
+    /**
+     * Checks that a cursor is strictly ordered, which the merge relies on: out of order or
+     * repeated keys would silently turn into spurious inserts and deletes.
+     */
+    private static final class OrderedCursor {
+
+        private final OntologySource.Cursor cursor;
+        private final String side;
+        private Entity previous;
+
+        OrderedCursor(OntologySource.Cursor cursor, String side) {
+            this.cursor = cursor;
+            this.side = side;
+        }
+
+        Entity next() throws IOException, SQLException {
+            Entity entity = cursor.next();
+            if (entity != null && previous != null) {
+                int order = NaturalKeyOrder.compare(previous.key(), entity.key());
+                if (order == 0) {
+                    throw new IOException("The " + side + " ontology has " + entity + " more than once; natural keys must be unique");
+                }
+                if (order > 0) {
+                    throw new IOException("The " + side + " ontology is not in natural key order at " + previous + ", " + entity);
+                }
+            }
+            previous = entity;
+            return entity;
+        }
+    }
+}
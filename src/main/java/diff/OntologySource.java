@@ -0,0 +1,28 @@
+package diff;
+
+import java.io.IOException;
+import java.sql.SQLException;
+
+/**
+ * One side of a comparison: a database or an export file. Each kind is read as a stream of
+ * entities in {@link NaturalKeyOrder}, so two sources are compared without holding either in memory.
+ * Kinds are opened one at a time in {@link EntityKind} order, each after the previous cursor is exhausted.
+ */
+public interface OntologySource {
+
+    /**
+     * @return the entities of the kind, ordered by natural key.
+     */
+    Cursor open(EntityKind kind) throws IOException, SQLException;
+
+    /**
+     * A forward-only stream of entities.
+     */
+    interface Cursor {
+
+        /**
+         * @return the next entity, or null after the last one.
+         */
+        Entity next() throws IOException, SQLException;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Package for diff.
+ */
+package diff;
\ No newline at end of file
@@ -0,0 +1,107 @@
+package events;
+
+/**
+ * A compact record describing a single committed write to one of the ontology tables.
+ * Change events are published by the DAOs through Postgres NOTIFY and delivered to every node
+ * listening on {@link ChangeEvents#CHANNEL}, where they are used to invalidate local caches.
+ */
+public final class ChangeEvent {
+
+    public static final String OBJECT_TYPES = "object_types";
+    public static final String ATTRIBUTES = "attributes";
+    public static final String FACILITIES = "facilities";
+    public static final String RELATIONSHIPS = "relationships";
+    public static final String RELATIONSHIP_DEPENDENCIES = "relationship_dependencies";
+
+    // Enum for the kind of write that produced the event; DERIVED only recomputed derived columns,
+    // such as attribute_usage_count, and left the definition of the row as it was
+    public enum Operation {
+        INSERT, UPDATE, DELETE, DERIVED
+    }
+
+    private static final char SEPARATOR = '|';
+
+    private final String table;
+    private final int id;
+    private final int parentId;
+    private final Operation operation;
+    private final long version;
+
+    /**
+     * @param table     the table that was written.
+     * @param id        the primary key of the written row.
+     * @param parentId  the owning row (object type of an attribute, relationship of a dependency), or 0 if none.
+     * @param operation the kind of write.
+     * @param version   a monotonically increasing version of the row (the writing transaction id if the table has no version column).
+     */
+    public ChangeEvent(String table, int id, int parentId, Operation operation, long version) {
+        this.table = table;
+        this.id = id;
+        this.parentId = parentId;
+        this.operation = operation;
+        this.version = version;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getParentId() {
+        return parentId;
+    }
+
+    public Operation getOperation() {
+        return operation;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Encodes the event as the NOTIFY payload, e.g. {@code attributes|42|7|UPDATE|90211}.
+     *
+     * @return the compact payload string.
+     */
+    public String toPayload() {
+        return payloadPrefix(table, id, parentId, operation) + version;
+    }
+
+    /**
+     * Parses a payload produced by {@link #toPayload()}.
+     *
+     * @param payload the NOTIFY payload.
+     * @return the decoded event, or null if the payload is malformed.
+     */
+    public static ChangeEvent fromPayload(String payload) {
+        String[] parts = payload.split("\\" + SEPARATOR);
+        if (parts.length != 5) {
+            return null;
+        }
+        try {
+            return new ChangeEvent(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]),
+                    Operation.valueOf(parts[3]), Long.parseLong(parts[4]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    static String payloadPrefix(String table, int id, int parentId, Operation operation) {
+        return table + SEPARATOR + id + SEPARATOR + parentId + SEPARATOR + operation.name() + SEPARATOR;
+    }
+
+    @Override
+    public String toString() {
+        return "ChangeEvent{" +
+                "table='" + table + '\'' +
+                ", id=" + id +
+                ", parentId=" + parentId +
+                ", operation=" + operation +
+                ", version=" + version +
+                '}';
+    }
+}
@@ -0,0 +1,27 @@
+package events;
+
+/**
+ * Receives change events delivered by the {@link ChangeFeed}.
+ * Implementations are called on the feed's listener thread and must not block.
+ */
+public interface ChangeEventListener {
+
+    /**
+     * Called for every change committed by any node, including this one.
+     * <p>
+     * Deleting an object type removes its attributes through ON DELETE CASCADE, and only the
+     * object type's DELETE is published. Listeners that hold attributes must drop the attributes
+     * of a deleted object type themselves, and likewise the dependencies of a deleted relationship.
+     *
+     * @param event the change that was committed.
+     */
+    void onChange(ChangeEvent event);
+
+    /**
+     * Called after the feed lost its connection and re-subscribed, or when a write too large to
+     * announce row by row committed, see {@link ChangeEvents#publishReset}. Events committed in
+     * between may have been missed, so listeners holding derived state should discard all of it.
+     */
+    default void onReset() {
+    }
+}
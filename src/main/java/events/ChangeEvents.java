@@ -0,0 +1,101 @@
+package events;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Publishes change events from the DAOs. The notification is sent on the DAO's own connection,
+ * so Postgres delivers it only once the surrounding transaction commits and drops it on rollback.
+ * A failed NOTIFY aborts that transaction, so the error is thrown for the caller to roll back.
+ */
+public final class ChangeEvents {
+
+    /**
+     * The LISTEN/NOTIFY channel shared by all nodes.
+     */
+    public static final String CHANNEL = "ontology_changes";
+
+    /**
+     * The payload telling every node to discard what it derived from earlier events, see
+     * {@link ChangeEventListener#onReset()}.
+     */
+    public static final String RESET = "reset";
+
+    private static final String NOTIFY_WITH_TXID = "SELECT pg_notify(?, ? || txid_current());";
+    private static final String NOTIFY = "SELECT pg_notify(?, ?);";
+    private static final String NOTIFY_ALL_WITH_TXID = "SELECT pg_notify(?, prefix || txid_current()) FROM unnest(?::text[]) AS prefix;";
+
+    private ChangeEvents() {
+    }
+
+    /**
+     * Publishes a change using the writing transaction id as the version.
+     *
+     * @param connection the connection the write was executed on.
+     * @param table      the table that was written.
+     * @param id         the primary key of the written row.
+     * @param parentId   the owning row, or 0 if none.
+     * @param operation  the kind of write.
+     * @throws SQLException if the notification could not be queued; the transaction is aborted.
+     */
+    public static void publish(Connection connection, String table, int id, int parentId, ChangeEvent.Operation operation) throws SQLException {
+        send(connection, NOTIFY_WITH_TXID, ChangeEvent.payloadPrefix(table, id, parentId, operation));
+    }
+
+    /**
+     * Publishes a change carrying an explicit row version.
+     *
+     * @param connection the connection the write was executed on.
+     * @param event      the change to publish.
+     * @throws SQLException if the notification could not be queued; the transaction is aborted.
+     */
+    public static void publish(Connection connection, ChangeEvent event) throws SQLException {
+        send(connection, NOTIFY, event.toPayload());
+    }
+
+    /**
+     * Publishes the same kind of change for many rows of one table in a single round trip,
+     * e.g. after a JDBC batch. Each row gets its own notification.
+     *
+     * @param connection the connection the writes were executed on.
+     * @param table      the table that was written.
+     * @param ids        the primary keys of the written rows.
+     * @param parentIds  the owning row of each written row, or 0 if none.
+     * @param operation  the kind of write.
+     * @throws SQLException if the notification could not be queued; the transaction is aborted.
+     */
+    public static void publish(Connection connection, String table, int[] ids, int[] parentIds, ChangeEvent.Operation operation) throws SQLException {
+        if (ids.length == 0) {
+            return;
+        }
+        String[] prefixes = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            prefixes[i] = ChangeEvent.payloadPrefix(table, ids[i], parentIds[i], operation);
+        }
+        try (PreparedStatement statement = connection.prepareStatement(NOTIFY_ALL_WITH_TXID)) {
+            statement.setString(1, CHANNEL);
+            statement.setArray(2, connection.createArrayOf("text", prefixes));
+            statement.execute();
+        }
+    }
+
+    /**
+     * Publishes a single reset instead of one change per row, for writes too large to announce
+     * row by row, e.g. an applied change set. Listeners rebuild as after a lost connection.
+     *
+     * @param connection the connection the writes were executed on.
+     * @throws SQLException if the notification could not be queued; the transaction is aborted.
+     */
+    public static void publishReset(Connection connection) throws SQLException {
+        send(connection, NOTIFY, RESET);
+    }
+
+    private static void send(Connection connection, String sql, String payload) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, CHANNEL);
+            statement.setString(2, payload);
+            statement.execute();
+        }
+    }
+}
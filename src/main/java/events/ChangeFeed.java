@@ -0,0 +1,167 @@
+package events;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import utils.DatabaseUtility;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Node-wide subscriber to the ontology change channel. A single daemon thread holds a dedicated
+ * connection that has issued LISTEN, blocks on the socket until notifications arrive and dispatches
+ * them to the registered listeners. There is no polling of the tables themselves. A listener or
+ * payload that fails is logged and skipped; the feed keeps running.
+ */
+public class ChangeFeed {
+
+    private static final Logger LOGGER = Logger.getLogger(ChangeFeed.class.getName());
+    private static final ChangeFeed DEFAULT = new ChangeFeed();
+
+    // How long a single wait on the socket may block before the running flag is re-checked.
+    private static final int WAIT_MILLIS = 500;
+    private static final long MAX_RECONNECT_DELAY_MILLIS = 30_000;
+
+    private final List<ChangeEventListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Gets the feed shared by the whole web application.
+     *
+     * @return the default feed.
+     */
+    public static ChangeFeed getDefault() {
+        return DEFAULT;
+    }
+
+    public void addListener(ChangeEventListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ChangeEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Starts the listener thread. Calling start on a running feed has no effect.
+     */
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "ontology-change-feed");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stops the listener thread and waits for it to release its connection.
+     */
+    public synchronized void stop() {
+        running = false;
+        if (thread != null) {
+            thread.interrupt();
+            try {
+                thread.join(WAIT_MILLIS * 4L);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            thread = null;
+        }
+    }
+
+    /**
+     * Delivers an event to the local listeners only. Used when events are received from
+     * another transport, and by tests that do not run a database.
+     *
+     * @param event the event to dispatch.
+     */
+    public void dispatch(ChangeEvent event) {
+        for (ChangeEventListener listener : listeners) {
+            try {
+                listener.onChange(event);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Change listener failed for " + event, e);
+            }
+        }
+    }
+
+    private void dispatchReset() {
+        for (ChangeEventListener listener : listeners) {
+            try {
+                listener.onReset();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.SEVERE, "Change listener failed on reset", e);
+            }
+        }
+    }
+
+    private void deliver(String payload) {
+        if (ChangeEvents.RESET.equals(payload)) {
+            dispatchReset();
+            return;
+        }
+        ChangeEvent event = ChangeEvent.fromPayload(payload);
+        if (event != null) {
+            dispatch(event);
+        } else {
+            LOGGER.log(Level.WARNING, "Ignoring malformed change payload: " + payload);
+        }
+    }
+
+    private void run() {
+        long reconnectDelay = 100;
+        boolean subscribedBefore = false;
+        while (running) {
+            Connection connection = null;
+            try {
+                connection = DatabaseUtility.connect();
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + ChangeEvents.CHANNEL);
+                }
+                if (subscribedBefore) {
+                    // Anything committed while we were disconnected was not delivered.
+                    dispatchReset();
+                }
+                subscribedBefore = true;
+                reconnectDelay = 100;
+                while (running) {
+                    PGNotification[] notifications = pgConnection.getNotifications(WAIT_MILLIS);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        try {
+                            deliver(notification.getParameter());
+                        } catch (RuntimeException e) {
+                            // One bad notification must not end the feed for the life of the node.
+                            LOGGER.log(Level.SEVERE, "Could not deliver change payload: " + notification.getParameter(), e);
+                        }
+                    }
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                LOGGER.log(Level.SEVERE, "Change feed connection lost, reconnecting in " + reconnectDelay + " ms", e);
+                try {
+                    Thread.sleep(reconnectDelay);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                reconnectDelay = Math.min(reconnectDelay * 2, MAX_RECONNECT_DELAY_MILLIS);
+            } finally {
+                DatabaseUtility.disconnect(connection);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package events;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * A node-local cache of values derived from one ontology table, kept fresh by change events.
+ * Entries are keyed either by the row id, or by the parent id (e.g. the attribute list of an
+ * object type keyed by object type id), and only the affected key is evicted on each change.
+ *
+ * @param <V> the cached value type.
+ */
+public class EntityCache<V> implements ChangeEventListener {
+
+    private final String table;
+    private final boolean keyedByParent;
+    private final Map<Integer, V> entries = new ConcurrentHashMap<>();
+    // Bumped on every eviction so a load that raced with an invalidation is not cached.
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param table         the table whose changes evict entries.
+     * @param keyedByParent true if entries are keyed by {@link ChangeEvent#getParentId()} rather than the row id.
+     */
+    public EntityCache(String table, boolean keyedByParent) {
+        this.table = table;
+        this.keyedByParent = keyedByParent;
+    }
+
+    /**
+     * Returns the cached value for the key, loading it on a miss.
+     *
+     * @param key    the row or parent id.
+     * @param loader loads the value from the database; may return null, which is not cached.
+     * @return the cached or freshly loaded value.
+     */
+    public V get(int key, IntFunction<V> loader) {
+        V value = entries.get(key);
+        if (value != null) {
+            return value;
+        }
+        long stamp = invalidations.get();
+        value = loader.apply(key);
+        if (value != null && invalidations.get() == stamp) {
+            entries.putIfAbsent(key, value);
+        }
+        return value;
+    }
+
+    public void invalidate(int key) {
+        invalidations.incrementAndGet();
+        entries.remove(key);
+    }
+
+    public void clear() {
+        invalidations.incrementAndGet();
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    @Override
+    public void onChange(ChangeEvent event) {
+        if (table.equals(event.getTable())) {
+            invalidate(keyedByParent ? event.getParentId() : event.getId());
+        }
+    }
+
+    @Override
+    public void onReset() {
+        clear();
+    }
+}
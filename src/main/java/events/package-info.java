@@ -0,0 +1,4 @@
+/**
+ * Package for events.
+ */
+package events;
\ No newline at end of file
@@ -0,0 +1,110 @@
+package jobs;
+
+import dao.InstancesDAO;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Brings the indexes of the instance tables in line with is_indexed: an attribute flagged as
+ * indexed gets a b-tree index on its column, see {@link InstancesDAO#indexName}, and the index of
+ * an attribute no longer flagged is dropped. Indexes are built and dropped CONCURRENTLY, so writes
+ * to the instance table keep going. Drops run with a short lock_timeout, so the job never queues
+ * them behind itself. Builds run without one: CREATE INDEX CONCURRENTLY waits for every
+ * transaction older than itself, which a lock_timeout would turn into a failed attempt on any busy
+ * table. A build that fails anyway leaves an invalid index, which the next attempt drops and
+ * builds again.
+ */
+public class AttributeIndexJob extends ObjectTypeJob {
+
+    public static final String TYPE = "attribute-indexes";
+
+    private static final long LOCK_TIMEOUT_MILLIS = Long.getLong("ontology.jobs.lockTimeoutMillis", 2000);
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public boolean isTransactional() {
+        return false;
+    }
+
+    @Override
+    protected void processObjectType(Connection connection, int objectTypeId) throws SQLException {
+        Map<Integer, Boolean> attributes = new LinkedHashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT id, is_indexed FROM attributes WHERE fk_object_type_id = ? ORDER BY id")) {
+            statement.setInt(1, objectTypeId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    attributes.put(resultSet.getInt(1), resultSet.getBoolean(2));
+                }
+            }
+        }
+        Set<String> columns = instanceColumns(connection, objectTypeId);
+        if (columns.isEmpty()) {
+            return;
+        }
+        Map<String, Boolean> indexes = attributeIndexes(connection, objectTypeId);
+        String table = InstancesDAO.tableName(objectTypeId);
+        try (Statement statement = connection.createStatement()) {
+            for (Map.Entry<Integer, Boolean> attribute : attributes.entrySet()) {
+                String column = InstancesDAO.columnName(attribute.getKey());
+                String index = InstancesDAO.indexName(objectTypeId, attribute.getKey());
+                Boolean valid = indexes.remove(index);
+                if (!attribute.getValue() || !columns.contains(column)) {
+                    if (valid != null) {
+                        drop(statement, index);
+                    }
+                } else if (valid == null || !valid) {
+                    if (valid != null) {
+                        drop(statement, index);
+                    }
+                    statement.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + index + " ON " + table + " (" + column + ")");
+                }
+            }
+            // Left over from attributes deleted while their column stayed behind.
+            for (String index : indexes.keySet()) {
+                drop(statement, index);
+            }
+        }
+    }
+
+    private static void drop(Statement statement, String index) throws SQLException {
+        statement.execute("SET lock_timeout = " + LOCK_TIMEOUT_MILLIS);
+        try {
+            statement.execute("DROP INDEX CONCURRENTLY IF EXISTS " + index);
+        } finally {
+            // The connection goes back to the pool, so nothing of the session may stay behind.
+            statement.execute("RESET lock_timeout");
+        }
+    }
+
+    /**
+     * @return the attribute indexes of the instance table by name, and whether each is valid.
+     */
+    private static Map<String, Boolean> attributeIndexes(Connection connection, int objectTypeId) throws SQLException {
+        Map<String, Boolean> indexes = new HashMap<>();
+        String sql = "SELECT c.relname, i.indisvalid FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid"
+                + " WHERE i.indrelid = to_regclass(?) AND c.relname LIKE ?";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, InstancesDAO.tableName(objectTypeId));
+            statement.setString(2, InstancesDAO.tableName(objectTypeId) + "\\_a\\_%\\_idx");
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    indexes.put(resultSet.getString(1), resultSet.getBoolean(2));
+                }
+            }
+        }
+        return indexes;
+    }
+}
@@ -0,0 +1,120 @@
+package jobs;
+
+import dao.InstancesDAO;
+import events.ChangeEvent;
+import events.ChangeEvents;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Recomputes attribute_usage_count as the number of instances holding a value for the attribute,
+ * counting all attributes of an object type in one scan of its instance table. The scan runs
+ * outside any transaction and only the update of the counts is one, per object type, so no row
+ * lock on attributes is held while instance tables are scanned. The count is derived data, so the
+ * row version is left alone and a client editing the attribute meanwhile gets no conflict; a
+ * {@link ChangeEvent.Operation#DERIVED} event is published for every attribute whose count changed.
+ */
+public class AttributeUsageCountJob extends ObjectTypeJob {
+
+    public static final String TYPE = "attribute-usage-counts";
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    public boolean isTransactional() {
+        return false;
+    }
+
+    @Override
+    protected void processObjectType(Connection connection, int objectTypeId) throws SQLException {
+        List<Integer> attributeIds = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(
+                "SELECT id FROM attributes WHERE fk_object_type_id = ? ORDER BY id")) {
+            statement.setInt(1, objectTypeId);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    attributeIds.add(resultSet.getInt(1));
+                }
+            }
+        }
+        if (attributeIds.isEmpty()) {
+            return;
+        }
+        long[] counts = count(connection, objectTypeId, attributeIds);
+
+        connection.setAutoCommit(false);
+        try {
+            update(connection, objectTypeId, attributeIds, counts);
+            connection.commit();
+        } catch (SQLException | RuntimeException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    private static void update(Connection connection, int objectTypeId, List<Integer> attributeIds, long[] counts) throws SQLException {
+        String sql = "UPDATE attributes SET attribute_usage_count = ? WHERE id = ? AND attribute_usage_count <> ?";
+        int[] updated;
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < counts.length; i++) {
+                int count = (int) Math.min(counts[i], Integer.MAX_VALUE);
+                statement.setInt(1, count);
+                statement.setInt(2, attributeIds.get(i));
+                statement.setInt(3, count);
+                statement.addBatch();
+            }
+            updated = statement.executeBatch();
+        }
+        int[] changed = new int[updated.length];
+        int changes = 0;
+        for (int i = 0; i < updated.length; i++) {
+            if (updated[i] > 0) {
+                changed[changes++] = attributeIds.get(i);
+            }
+        }
+        int[] parents = new int[changes];
+        Arrays.fill(parents, objectTypeId);
+        ChangeEvents.publish(connection, ChangeEvent.ATTRIBUTES, Arrays.copyOf(changed, changes), parents, ChangeEvent.Operation.DERIVED);
+    }
+
+    /**
+     * @return the non-null values per attribute, 0 for attributes without a column yet.
+     */
+    private static long[] count(Connection connection, int objectTypeId, List<Integer> attributeIds) throws SQLException {
+        long[] counts = new long[attributeIds.size()];
+        Set<String> columns = instanceColumns(connection, objectTypeId);
+        List<Integer> counted = new ArrayList<>();
+        StringBuilder sql = new StringBuilder("SELECT ");
+        for (int i = 0; i < attributeIds.size(); i++) {
+            String column = InstancesDAO.columnName(attributeIds.get(i));
+            if (columns.contains(column)) {
+                sql.append(counted.isEmpty() ? "" : ", ").append("COUNT(").append(column).append(')');
+                counted.add(i);
+            }
+        }
+        if (counted.isEmpty()) {
+            return counts;
+        }
+        sql.append(" FROM ").append(InstancesDAO.tableName(objectTypeId));
+        try (PreparedStatement statement = connection.prepareStatement(sql.toString());
+             ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            for (int i = 0; i < counted.size(); i++) {
+                counts[counted.get(i)] = resultSet.getLong(i + 1);
+            }
+        }
+        return counts;
+    }
+}
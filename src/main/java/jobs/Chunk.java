@@ -0,0 +1,45 @@
+package jobs;
+
+/**
+ * The outcome of one {@link JobHandler#process} call: the cursor to resume after and the units of
+ * work it completed, or that the job is done.
+ */
+public final class Chunk {
+
+    private final String cursor;
+    private final long units;
+    private final boolean finished;
+
+    private Chunk(String cursor, long units, boolean finished) {
+        this.cursor = cursor;
+        this.units = units;
+        this.finished = finished;
+    }
+
+    /**
+     * @param cursor where the next chunk starts.
+     * @param units  the units of work this chunk completed.
+     */
+    public static Chunk next(String cursor, long units) {
+        return new Chunk(cursor, units, false);
+    }
+
+    /**
+     * @param units the units of work the last chunk completed.
+     */
+    public static Chunk finished(String cursor, long units) {
+        return new Chunk(cursor, units, true);
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public long getUnits() {
+        return units;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+}
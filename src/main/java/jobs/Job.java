@@ -0,0 +1,145 @@
+package jobs;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.sql.Timestamp;
+
+/**
+ * A row of the jobs table. The cursor and progress of a job being run are advanced by the
+ * {@link JobScheduler} after each chunk.
+ */
+public final class Job {
+
+    private final long id;
+    private final String type;
+    private final String dedupeKey;
+    private final String parameters;
+    private final JobStatus status;
+    private final int attempts;
+    private final int maxAttempts;
+    private final String lockedBy;
+    private final String lastError;
+    private final Timestamp createdAt;
+    private final Timestamp startedAt;
+    private final Timestamp finishedAt;
+    private String cursor;
+    private long unitsDone;
+    private Long unitsTotal;
+
+    Job(long id, String type, String dedupeKey, String parameters, JobStatus status, String cursor, long unitsDone,
+        Long unitsTotal, int attempts, int maxAttempts, String lockedBy, String lastError, Timestamp createdAt,
+        Timestamp startedAt, Timestamp finishedAt) {
+        this.id = id;
+        this.type = type;
+        this.dedupeKey = dedupeKey;
+        this.parameters = parameters;
+        this.status = status;
+        this.cursor = cursor;
+        this.unitsDone = unitsDone;
+        this.unitsTotal = unitsTotal;
+        this.attempts = attempts;
+        this.maxAttempts = maxAttempts;
+        this.lockedBy = lockedBy;
+        this.lastError = lastError;
+        this.createdAt = createdAt;
+        this.startedAt = startedAt;
+        this.finishedAt = finishedAt;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getDedupeKey() {
+        return dedupeKey;
+    }
+
+    /**
+     * @return the parameters as stored, a JSON object.
+     */
+    public String getParameters() {
+        return parameters;
+    }
+
+    public JsonObject parameters() {
+        return JsonParser.parseString(parameters).getAsJsonObject();
+    }
+
+    /**
+     * @return the status when the job was read; a running job's own copy keeps saying RUNNING.
+     */
+    public JobStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * @return where the next chunk starts, or null before the first one.
+     */
+    public String getCursor() {
+        return cursor;
+    }
+
+    public long getUnitsDone() {
+        return unitsDone;
+    }
+
+    /**
+     * @return the estimated units of work, or null if not estimated yet or unknown.
+     */
+    public Long getUnitsTotal() {
+        return unitsTotal;
+    }
+
+    /**
+     * @return the attempts started so far, including a running one.
+     */
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return the node running the job, or null if it is not running.
+     */
+    public String getLockedBy() {
+        return lockedBy;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public Timestamp getCreatedAt() {
+        return createdAt;
+    }
+
+    public Timestamp getStartedAt() {
+        return startedAt;
+    }
+
+    public Timestamp getFinishedAt() {
+        return finishedAt;
+    }
+
+    void setUnitsTotal(Long unitsTotal) {
+        this.unitsTotal = unitsTotal;
+    }
+
+    void advance(Chunk chunk) {
+        cursor = chunk.getCursor();
+        unitsDone += chunk.getUnits();
+    }
+
+    @Override
+    public String toString() {
+        return type + " job " + id;
+    }
+}
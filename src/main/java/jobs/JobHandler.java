@@ -0,0 +1,40 @@
+package jobs;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Runs the jobs of one type in chunks. After each chunk the scheduler stores its cursor, so a job
+ * that fails or whose node goes away resumes after the last completed chunk rather than from the
+ * start; a chunk may therefore be run again and must be idempotent.
+ */
+public interface JobHandler {
+
+    /**
+     * @return the job type, as stored in jobs.job_type.
+     */
+    String getType();
+
+    /**
+     * Says whether a chunk runs in a transaction together with its checkpoint, so its work and
+     * cursor commit or roll back together. Handlers issuing statements that cannot run in a
+     * transaction, such as CREATE INDEX CONCURRENTLY, return false and are called in autocommit.
+     */
+    default boolean isTransactional() {
+        return true;
+    }
+
+    /**
+     * Estimates the units of work of the job for its progress, called once before the first chunk.
+     *
+     * @return the units, or -1 if unknown.
+     */
+    long estimate(Connection connection, Job job) throws SQLException;
+
+    /**
+     * Processes the chunk after the job's cursor.
+     *
+     * @param chunkSize the units of work a chunk should hold.
+     */
+    Chunk process(Connection connection, Job job, int chunkSize) throws SQLException;
+}
@@ -0,0 +1,377 @@
+package jobs;
+
+import events.ChangeEvent;
+import events.ChangeEventListener;
+import metrics.Metrics;
+import metrics.OperationMetrics;
+
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs the heavy maintenance of the ontology, such as recounting attribute usage or building
+ * indexes, as background jobs instead of in request threads.
+ * <p>
+ * Jobs are rows of the jobs table, see {@link JobStore}, so they survive restarts and are shared
+ * by every node: each node polls for due jobs and claims only as many as it has idle workers,
+ * which bounds the database load a node adds no matter how many jobs are queued. A job runs in
+ * chunks, see {@link JobHandler}; after each chunk its cursor and progress are checkpointed and its
+ * lease extended, and the poller renews the leases of long chunks. A job whose node dies is
+ * returned to the queue once its lease expires and resumes after its last checkpoint. A failed
+ * attempt is retried with exponential backoff and jitter until the job runs out of attempts.
+ * <p>
+ * The default scheduler runs {@code ontology.jobs.workers} jobs at a time (default 2, 0 to run
+ * none on this node), polls every {@code ontology.jobs.pollMillis} (default 1000), leases jobs for
+ * {@code ontology.jobs.leaseSeconds} (default 60) and queues every job type once per
+ * {@code ontology.jobs.maintenanceMinutes} (default 360, 0 to disable) across all nodes. As a
+ * change feed listener it queues an {@link AttributeIndexJob} for the object type of every
+ * attribute created or updated, which is how a changed is_indexed reaches the instance table,
+ * and one for all object types on a reset, when it cannot tell which attributes changed. The
+ * listener only notes the object type in memory; each poll queues one job per object type noted
+ * since the last one, so a burst of attribute edits costs one insert per object type, not per edit.
+ */
+public class JobScheduler implements ChangeEventListener {
+
+    private static final Logger LOGGER = Logger.getLogger(JobScheduler.class.getName());
+    private static final OperationMetrics RUN = Metrics.operation("JobScheduler.run");
+    private static final JobScheduler DEFAULT = new JobScheduler(new JobStore(),
+            Integer.getInteger("ontology.jobs.workers", 2),
+            Long.getLong("ontology.jobs.pollMillis", 1000),
+            TimeUnit.SECONDS.toMillis(Long.getLong("ontology.jobs.leaseSeconds", 60)),
+            Integer.getInteger("ontology.jobs.chunkSize", 50),
+            TimeUnit.MINUTES.toMillis(Long.getLong("ontology.jobs.maintenanceMinutes", 360)),
+            new AttributeUsageCountJob(), new AttributeIndexJob(), new ObjectTypeStatsJob());
+
+    private static final int DEFAULT_MAX_ATTEMPTS = Integer.getInteger("ontology.jobs.maxAttempts", 5);
+    private static final long RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(Long.getLong("ontology.jobs.retryDelaySeconds", 10));
+    private static final long MAX_RETRY_DELAY_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final long RETENTION_MILLIS = TimeUnit.DAYS.toMillis(Long.getLong("ontology.jobs.retentionDays", 7));
+    private static final long HOUSEKEEPING_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static final long SHUTDOWN_WAIT_MILLIS = 10_000;
+    private static final int MAX_ERROR_LENGTH = 2000;
+
+    private final JobStore store;
+    private final int workers;
+    private final long pollMillis;
+    private final long leaseMillis;
+    private final int chunkSize;
+    private final long maintenanceMillis;
+    private final Map<String, JobHandler> handlers = new ConcurrentHashMap<>();
+    private final String workerId;
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+    // Object types with attribute changes not yet queued for an AttributeIndexJob, or all after a reset.
+    private final Set<Integer> dirtyObjectTypes = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean allObjectTypesDirty = new AtomicBoolean();
+    private final AtomicLong succeeded = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private ScheduledExecutorService poller;
+    private ExecutorService executor;
+    private volatile boolean stopping;
+    private long lastHousekeeping;
+
+    /**
+     * @param workers           the jobs run at the same time, each on a connection.
+     * @param pollMillis        the delay between polls for due jobs.
+     * @param leaseMillis       how long a job stays with its node without a checkpoint or renewal.
+     * @param chunkSize         the units of work per chunk, passed to the handlers.
+     * @param maintenanceMillis how often every job type is queued, or 0 for never.
+     */
+    public JobScheduler(JobStore store, int workers, long pollMillis, long leaseMillis, int chunkSize, long maintenanceMillis,
+                        JobHandler... handlers) {
+        this.store = store;
+        this.workers = Math.max(0, workers);
+        this.pollMillis = pollMillis;
+        this.leaseMillis = leaseMillis;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.maintenanceMillis = maintenanceMillis;
+        for (JobHandler handler : handlers) {
+            this.handlers.put(handler.getType(), handler);
+        }
+        this.workerId = workerId();
+    }
+
+    public static JobScheduler getDefault() {
+        return DEFAULT;
+    }
+
+    public JobStore getStore() {
+        return store;
+    }
+
+    public Set<String> getTypes() {
+        return Collections.unmodifiableSet(handlers.keySet());
+    }
+
+    /**
+     * Starts polling for jobs. Calling start on a started scheduler has no effect.
+     */
+    public synchronized void start() {
+        if (poller != null || workers == 0) {
+            return;
+        }
+        stopping = false;
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "ontology-job-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "ontology-job-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(() -> {
+            try {
+                poll();
+            } catch (RuntimeException e) {
+                // Keeps the schedule alive; an uncaught exception would cancel it.
+                LOGGER.log(Level.SEVERE, "Job poll failed", e);
+            }
+        }, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        LOGGER.info("Job scheduler started as " + workerId + " with " + workers + " workers");
+    }
+
+    /**
+     * Stops polling and waits briefly for the running jobs, which hand their job back to the queue
+     * after their current chunk.
+     */
+    public synchronized void stop() {
+        if (poller == null) {
+            return;
+        }
+        stopping = true;
+        poller.shutdownNow();
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                LOGGER.warning(running.size() + " jobs still running at shutdown; they are retried once their lease expires");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        poller = null;
+        executor = null;
+        dirtyObjectTypes.clear();
+        allObjectTypesDirty.set(false);
+    }
+
+    /**
+     * Queues a job of a registered type, unless one with the same key is pending already.
+     *
+     * @param dedupeKey  the key, or null to always queue.
+     * @param parameters a JSON object, or null for none.
+     * @return the id of the queued or pending job, or -1 on error.
+     * @throws IllegalArgumentException if no handler is registered for the type.
+     */
+    public long enqueue(String type, String dedupeKey, String parameters) {
+        if (!handlers.containsKey(type)) {
+            throw new IllegalArgumentException("Unknown job type '" + type + "'");
+        }
+        return store.enqueue(type, dedupeKey, parameters == null ? "{}" : parameters, DEFAULT_MAX_ATTEMPTS);
+    }
+
+    @Override
+    public void onChange(ChangeEvent event) {
+        // A recount by a job is DERIVED and does not touch is_indexed, so it queues nothing.
+        if (ChangeEvent.ATTRIBUTES.equals(event.getTable()) && (event.getOperation() == ChangeEvent.Operation.INSERT
+                || event.getOperation() == ChangeEvent.Operation.UPDATE) && event.getParentId() > 0 && isStarted()) {
+            dirtyObjectTypes.add(event.getParentId());
+        }
+    }
+
+    @Override
+    public void onReset() {
+        if (isStarted()) {
+            allObjectTypesDirty.set(true);
+        }
+    }
+
+    private synchronized boolean isStarted() {
+        return poller != null;
+    }
+
+    /**
+     * Queues the AttributeIndexJobs noted by the listener since the last poll.
+     */
+    private void queueDirtyObjectTypes() {
+        if (allObjectTypesDirty.getAndSet(false)) {
+            // The job for all object types covers the ones noted so far.
+            dirtyObjectTypes.clear();
+            if (enqueue(AttributeIndexJob.TYPE, AttributeIndexJob.TYPE, "{}") < 0) {
+                allObjectTypesDirty.set(true);
+            }
+            return;
+        }
+        for (Iterator<Integer> objectTypeIds = dirtyObjectTypes.iterator(); objectTypeIds.hasNext(); ) {
+            int objectTypeId = objectTypeIds.next();
+            // Removed before queuing, so a change noted meanwhile is queued by the next poll.
+            objectTypeIds.remove();
+            // Every node sees the event; the key keeps it to one pending job per object type.
+            if (enqueue(AttributeIndexJob.TYPE, AttributeIndexJob.TYPE + ":" + objectTypeId,
+                    "{\"objectTypeId\":" + objectTypeId + "}") < 0) {
+                // Tried again on the next poll.
+                dirtyObjectTypes.add(objectTypeId);
+            }
+        }
+    }
+
+    /**
+     * @return the jobs running on this node.
+     */
+    public int getRunning() {
+        return running.size();
+    }
+
+    /**
+     * @return the jobs this node finished successfully since it started.
+     */
+    public long getSucceeded() {
+        return succeeded.get();
+    }
+
+    /**
+     * @return the attempts that failed on this node since it started.
+     */
+    public long getFailed() {
+        return failed.get();
+    }
+
+    // Package-private so tests can poll without waiting for the schedule
+    void poll() {
+        queueDirtyObjectTypes();
+        store.renewLeases(workerId, new ArrayList<>(running), leaseMillis);
+        long now = System.currentTimeMillis();
+        if (now - lastHousekeeping >= HOUSEKEEPING_MILLIS) {
+            lastHousekeeping = now;
+            store.reapExpired();
+            store.purge(RETENTION_MILLIS);
+            if (maintenanceMillis > 0) {
+                // Every node queues the same key for a period, so each period's jobs are queued once.
+                long period = now / maintenanceMillis;
+                for (String type : handlers.keySet()) {
+                    store.enqueueOnce(type, "maintenance:" + type + ":" + period, "{}", DEFAULT_MAX_ATTEMPTS);
+                }
+            }
+        }
+        int idle = workers - running.size();
+        if (idle <= 0 || stopping) {
+            return;
+        }
+        for (Job job : store.claim(workerId, handlers.keySet(), idle, leaseMillis)) {
+            running.add(job.getId());
+            executor.execute(() -> run(job));
+        }
+    }
+
+    private void run(Job job) {
+        JobHandler handler = handlers.get(job.getType());
+        long started = System.nanoTime();
+        long chunks = 0;
+        Connection connection = Metrics.connect(RUN);
+        if (connection == null) {
+            running.remove(job.getId());
+            store.fail(job, workerId, "No database connection", retryDelay(job.getAttempts()));
+            return;
+        }
+        try {
+            connection.setAutoCommit(!handler.isTransactional());
+            if (job.getUnitsTotal() == null) {
+                long estimate = handler.estimate(connection, job);
+                job.setUnitsTotal(estimate < 0 ? null : estimate);
+            }
+            while (true) {
+                if (stopping) {
+                    rollback(connection);
+                    store.release(job, workerId);
+                    LOGGER.info(job + " handed back at shutdown after " + job.getUnitsDone() + " units");
+                    return;
+                }
+                Chunk chunk = handler.process(connection, job, chunkSize);
+                job.advance(chunk);
+                chunks++;
+                boolean held = chunk.isFinished() ? store.complete(connection, job, workerId)
+                        : store.checkpoint(connection, job, workerId, leaseMillis);
+                if (!held) {
+                    rollback(connection);
+                    LOGGER.warning(job + " was cancelled or its lease expired; stopped after " + job.getUnitsDone() + " units");
+                    return;
+                }
+                if (handler.isTransactional()) {
+                    connection.commit();
+                }
+                if (chunk.isFinished()) {
+                    succeeded.incrementAndGet();
+                    LOGGER.info(job + " finished " + job.getUnitsDone() + " units in " + chunks + " chunks");
+                    return;
+                }
+            }
+        } catch (SQLException | RuntimeException e) {
+            RUN.error();
+            failed.incrementAndGet();
+            rollback(connection);
+            long delay = retryDelay(job.getAttempts());
+            LOGGER.log(Level.WARNING, job + " failed in attempt " + job.getAttempts() + " of " + job.getMaxAttempts()
+                    + (job.getAttempts() < job.getMaxAttempts() ? ", retrying in " + delay + " ms" : ""), e);
+            store.fail(job, workerId, truncate(e.toString()), delay);
+        } finally {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Error resetting autocommit", e);
+            }
+            Metrics.disconnect(connection);
+            running.remove(job.getId());
+            RUN.record(started, chunks);
+        }
+    }
+
+    private static void rollback(Connection connection) {
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error rolling back job chunk", e);
+        }
+    }
+
+    private static long retryDelay(int attempt) {
+        long delay = RETRY_DELAY_MILLIS << Math.min(attempt - 1, 20);
+        delay = Math.min(delay, MAX_RETRY_DELAY_MILLIS);
+        return delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private static String truncate(String error) {
+        return error.length() <= MAX_ERROR_LENGTH ? error : error.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    private static String workerId() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            host = "unknown";
+        }
+        // The JVM name is pid@host; the random suffix tells apart restarts reusing a pid.
+        return host + ":" + ManagementFactory.getRuntimeMXBean().getName().split("@")[0]
+                + ":" + Long.toHexString(ThreadLocalRandom.current().nextLong() & 0xffffffL);
+    }
+}
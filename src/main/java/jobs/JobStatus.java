@@ -0,0 +1,13 @@
+package jobs;
+
+/**
+ * The states of a {@link Job}. A job is pending until a node claims it and running while that node
+ * holds its lease; a failed attempt returns it to pending until it runs out of attempts.
+ */
+public enum JobStatus {
+    PENDING, RUNNING, SUCCEEDED, FAILED, CANCELLED;
+
+    public boolean isFinished() {
+        return this == SUCCEEDED || this == FAILED || this == CANCELLED;
+    }
+}
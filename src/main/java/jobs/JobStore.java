@@ -0,0 +1,426 @@
+package jobs;
+
+import metrics.Metrics;
+import metrics.OperationMetrics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads and writes the jobs table. Every node polls it, claiming pending jobs with
+ * {@code SELECT ... FOR UPDATE SKIP LOCKED}, so concurrent claims pass over each other's rows
+ * instead of waiting for them or claiming them twice. A claimed job is leased to its node until
+ * lease_until; the checkpoints, completion and failure of a job only take effect while the node
+ * still holds it, so a node that lost its lease, e.g. after a long pause, cannot overwrite the
+ * progress of the node that took the job over.
+ */
+public class JobStore {
+
+    private static final Logger LOGGER = Logger.getLogger(JobStore.class.getName());
+
+    private static final OperationMetrics ENQUEUE = Metrics.operation("JobStore.enqueue");
+    private static final OperationMetrics CLAIM = Metrics.operation("JobStore.claim");
+    private static final OperationMetrics FAIL = Metrics.operation("JobStore.fail");
+    private static final OperationMetrics RELEASE = Metrics.operation("JobStore.release");
+    private static final OperationMetrics RENEW_LEASES = Metrics.operation("JobStore.renewLeases");
+    private static final OperationMetrics REAP_EXPIRED = Metrics.operation("JobStore.reapExpired");
+    private static final OperationMetrics PURGE = Metrics.operation("JobStore.purge");
+    private static final OperationMetrics FIND_JOB_BY_ID = Metrics.operation("JobStore.findJobById");
+    private static final OperationMetrics FIND_JOBS = Metrics.operation("JobStore.findJobs");
+    private static final OperationMetrics CANCEL = Metrics.operation("JobStore.cancel");
+
+    private static final String COLUMNS = "id, job_type, dedupe_key, parameters, status, job_cursor, units_done, units_total,"
+            + " attempts, max_attempts, locked_by, last_error, created_at, started_at, finished_at";
+
+    // Rounds of insert and lookup before enqueue gives up on a key whose pending job keeps being claimed.
+    private static final int ENQUEUE_ATTEMPTS = 3;
+
+    // Only one job per key may be pending, so a job going back to pending gives its key up to one queued meanwhile.
+    private static final String REQUEUE_DEDUPE_KEY = "dedupe_key = CASE WHEN EXISTS (SELECT 1 FROM jobs p"
+            + " WHERE p.dedupe_key = jobs.dedupe_key AND p.status = 'PENDING') THEN NULL ELSE dedupe_key END";
+
+    /**
+     * Queues a job, unless one with the same key is pending already.
+     *
+     * @param dedupeKey   the key, or null to always queue.
+     * @param parameters  a JSON object.
+     * @param maxAttempts how often the job is tried before it fails for good.
+     * @return the id of the queued job or of the pending one with the key, or -1 on error.
+     */
+    public long enqueue(String type, String dedupeKey, String parameters, int maxAttempts) {
+        long started = System.nanoTime();
+        Connection connection = Metrics.connect(ENQUEUE);
+        String insert = "INSERT INTO jobs (job_type, dedupe_key, parameters, max_attempts) VALUES (?, ?, ?, ?)"
+                + " ON CONFLICT (dedupe_key) WHERE status = 'PENDING' DO NOTHING RETURNING id";
+        try (PreparedStatement statement = connection.prepareStatement(insert);
+             PreparedStatement pending = connection.prepareStatement("SELECT id FROM jobs WHERE dedupe_key = ? AND status = 'PENDING'")) {
+            statement.setString(1, type);
+            statement.setString(2, dedupeKey);
+            statement.setString(3, parameters);
+            statement.setInt(4, maxAttempts);
+            pending.setString(1, dedupeKey);
+            for (int attempt = 1; attempt <= ENQUEUE_ATTEMPTS; attempt++) {
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (resultSet.next()) {
+                        return resultSet.getLong(1);
+                    }
+                }
+                try (ResultSet resultSet = pending.executeQuery()) {
+                    if (resultSet.next()) {
+                        return resultSet.getLong(1);
+                    }
+                }
+                // Claimed in between: that run may have started before the caller's change, so queue another.
+            }
+            ENQUEUE.error();
+            LOGGER.warning("Gave up queuing " + type + " job " + dedupeKey + ": its pending job was claimed "
+                    + ENQUEUE_ATTEMPTS + " times in a row");
+            return -1;
+        } catch (SQLException e) {
+            ENQUEUE.error();
+            LOGGER.log(Level.SEVERE, "Error queuing " + type + " job", e);
+            return -1;
+        } finally {
+            Metrics.disconnect(connection);
+            ENQUEUE.record(started);
+        }
+    }
+
+    /**
+     * Queues a job unless a job with the key exists in any state, for periodic jobs that every node
+     * queues for the same period.
+     *
+     * @return true if the job was queued.
+     */
+    public boolean enqueueOnce(String type, String dedupeKey, String parameters, int maxAttempts) {
+        long started = System.nanoTime();
+        Connection connection = Metrics.connect(ENQUEUE);
+        String insert = "INSERT INTO jobs (job_type, dedupe_key, parameters, max_attempts) SELECT ?, ?, ?, ?"
+                + " WHERE NOT EXISTS (SELECT 1 FROM jobs WHERE dedupe_key = ?)"
+                + " ON CONFLICT (dedupe_key) WHERE status = 'PENDING' DO NOTHING";
+        try (PreparedStatement statement = connection.prepareStatement(insert)) {
+            statement.setString(1, type);
+            statement.setString(2, dedupeKey);
+            statement.setString(3, parameters);
+            statement.setInt(4, maxAttempts);
+            statement.setString(5, dedupeKey);
+            return statement.executeUpdate() == 1;
+        } catch (SQLException e) {
+            ENQUEUE.error();
+            LOGGER.log(Level.SEVERE, "Error queuing " + type + " job", e);
+            return false;
+        } finally {
+            Metrics.disconnect(connection);
+            ENQUEUE.record(started);
+        }
+    }
+
+    /**
+     * Claims up to {@code limit} due jobs of the given types, oldest first, and leases them to the worker.
+     *
+     * @return the claimed jobs, empty on error.
+     */
+    List<Job> claim(String workerId, Collection<String> types, int limit, long leaseMillis) {
+        long started = System.nanoTime();
+        List<Job> jobs = new ArrayList<>();
+        Connection connection = Metrics.connect(CLAIM);
+        String sql = "UPDATE jobs SET status = 'RUNNING', locked_by = ?, lease_until = now() + ? * INTERVAL '1 millisecond',"
+                + " attempts = attempts + 1, started_at = COALESCE(started_at, now()), updated_at = now()"
+                + " WHERE id IN (SELECT id FROM jobs WHERE status = 'PENDING' AND run_after <= now() AND job_type = ANY (?)"
+                + " ORDER BY run_after, id LIMIT ? FOR UPDATE SKIP LOCKED)"
+                + " RETURNING " + COLUMNS;
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, workerId);
+            statement.setLong(2, leaseMillis);
+            statement.setArray(3, connection.createArrayOf("text", types.toArray()));
+            statement.setInt(4, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    jobs.add(mapJob(resultSet));
+                }
+            }
+        } catch (SQLException e) {
+            CLAIM.error();
+            LOGGER.log(Level.SEVERE, "Error claiming jobs", e);
+        } finally {
+            Metrics.disconnect(connection);
+            CLAIM.record(started, jobs.size());
+        }
+        return jobs;
+    }
+
+    /**
+     * Stores the cursor and progress of a running job and extends its lease, on the connection, and
+     * in the transaction, of the chunk.
+     *
+     * @return false if the worker no longer holds the job, because its lease expired or it was
+     * cancelled; the chunk must then be rolled back.
+     */
+    boolean checkpoint(Connection connection, Job job, String workerId, long leaseMillis) throws SQLException {
+        String sql = "UPDATE jobs SET job_cursor = ?, units_done = ?, units_total = ?,"
+                + " lease_until = now() + ? * INTERVAL '1 millisecond', updated_at = now()"
+                + " WHERE id = ? AND locked_by = ? AND status = 'RUNNING'";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, job.getCursor());
+            statement.setLong(2, job.getUnitsDone());
+            statement.setObject(3, job.getUnitsTotal());
+            statement.setLong(4, leaseMillis);
+            statement.setLong(5, job.getId());
+            statement.setString(6, workerId);
+            return statement.executeUpdate() == 1;
+        }
+    }
+
+    /**
+     * Marks a running job as succeeded, on the connection, and in the transaction, of its last chunk.
+     *
+     * @return false if the worker no longer holds the job.
+     */
+    boolean complete(Connection connection, Job job, String workerId) throws SQLException {
+        String sql = "UPDATE jobs SET status = 'SUCCEEDED', job_cursor = ?, units_done = ?, locked_by = NULL, lease_until = NULL,"
+                + " last_error = NULL, finished_at = now(), updated_at = now()"
+                + " WHERE id = ? AND locked_by = ? AND status = 'RUNNING'";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, job.getCursor());
+            statement.setLong(2, job.getUnitsDone());
+            statement.setLong(3, job.getId());
+            statement.setString(4, workerId);
+            return statement.executeUpdate() == 1;
+        }
+    }
+
+    /**
+     * Records a failed attempt. The job goes back to pending, due after the delay and resuming from
+     * its last checkpoint, or fails for good once it used up its attempts.
+     */
+    void fail(Job job, String workerId, String error, long retryDelayMillis) {
+        long started = System.nanoTime();
+        Connection connection = Metrics.connect(FAIL);
+        String sql = "UPDATE jobs SET status = CASE WHEN attempts >= max_attempts THEN 'FAILED' ELSE 'PENDING' END,"
+                + " finished_at = CASE WHEN attempts >= max_attempts THEN now() END,"
+                + " run_after = now() + ? * INTERVAL '1 millisecond', last_error = ?, locked_by = NULL, lease_until = NULL,"
+                + " updated_at = now(), " + REQUEUE_DEDUPE_KEY
+                + " WHERE id = ? AND locked_by = ? AND status = 'RUNNING'";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, retryDelayMillis);
+            statement.setString(2, error);
+            statement.setLong(3, job.getId());
+            statement.setString(4, workerId);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            // The lease runs out and the job is retried all the same.
+            FAIL.error();
+            LOGGER.log(Level.SEVERE, "Error recording failure of " + job, e);
+        } finally {
+            Metrics.disconnect(connection);
+            FAIL.record(started);
+        }
+    }
+
+    /**
+     * Hands a running job back without counting the attempt, e.g. when the node shuts down.
+     */
+    void release(Job job, String workerId) {
+        long started = System.nanoTime();
+        Connection connection = Metrics.connect(RELEASE);
+        String sql = "UPDATE jobs SET status = 'PENDING', attempts = attempts - 1, run_after = now(), locked_by = NULL,"
+                + " lease_until = NULL, updated_at = now(), " + REQUEUE_DEDUPE_KEY
+                + " WHERE id = ? AND locked_by = ? AND status = 'RUNNING'";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, job.getId());
+            statement.setString(2, workerId);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            RELEASE.error();
+            LOGGER.log(Level.SEVERE, "Error releasing " + job, e);
+        } finally {
+            Metrics.disconnect(connection);
+            RELEASE.record(started);
+        }
+    }
+
+    /**
+     * Extends the leases of the jobs the worker is running, between their checkpoints.
+     */
+    void renewLeases(String workerId, Collection<Long> ids, long leaseMillis) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        long started = System.nanoTime();
+        Connection connection = Metrics.connect(RENEW_LEASES);
+        String sql = "UPDATE jobs SET lease_until = now() + ? * INTERVAL '1 millisecond'"
+                + " WHERE id = ANY (?) AND locked_by = ? AND status = 'RUNNING'";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, leaseMillis);
+            statement.setArray(2, connection.createArrayOf("bigint", ids.toArray()));
+            statement.setString(3, workerId);
+            statement.executeUpdate();
+        } catch (SQLException e) {
+            RENEW_LEASES.error();
+            LOGGER.log(Level.SEVERE, "Error renewing job leases", e);
+        } finally {
+            Metrics.disconnect(connection);
+            RENEW_LEASES.record(started, ids.size());
+        }
+    }
+
+    /**
+     * Returns the running jobs whose lease expired, because their node died or lost the database,
+     * to pending; the expired attempt counts.
+     *
+     * @return the number of jobs returned, or -1 on error.
+     */
+    int reapExpired() {
+        long started = System.nanoTime();
+        int reaped = 0;
+        Connection connection = Metrics.connect(REAP_EXPIRED);
+        String sql = "UPDATE jobs SET status = CASE WHEN attempts >= max_attempts THEN 'FAILED' ELSE 'PENDING' END,"
+                + " finished_at = CASE WHEN attempts >= max_attempts THEN now() END,"
+                + " last_error = 'Lease of ' || locked_by || ' expired', run_after = now(), locked_by = NULL, lease_until = NULL,"
+                + " updated_at = now(), " + REQUEUE_DEDUPE_KEY
+                + " WHERE status = 'RUNNING' AND lease_until < now()";
+        try (Statement statement = connection.createStatement()) {
+            reaped = statement.executeUpdate(sql);
+            if (reaped > 0) {
+                LOGGER.warning("Returned " + reaped + " jobs with an expired lease to the queue");
+            }
+            return reaped;
+        } catch (SQLException e) {
+            REAP_EXPIRED.error();
+            LOGGER.log(Level.SEVERE, "Error reaping expired jobs", e);
+            return -1;
+        } finally {
+            Metrics.disconnect(connection);
+            REAP_EXPIRED.record(started, reaped);
+        }
+    }
+
+    /**
+     * Deletes the jobs that finished more than the given time ago.
+     *
+     * @return the number of jobs deleted, or -1 on error.
+     */
+    int purge(long retentionMillis) {
+        long started = System.nanoTime();
+        int purged = 0;
+        Connection connection = Metrics.connect(PURGE);
+        String sql = "DELETE FROM jobs WHERE finished_at < now() - ? * INTERVAL '1 millisecond'";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, retentionMillis);
+            purged = statement.executeUpdate();
+            return purged;
+        } catch (SQLException e) {
+            PURGE.error();
+            LOGGER.log(Level.SEVERE, "Error purging finished jobs", e);
+            return -1;
+        } finally {
+            Metrics.disconnect(connection);
+            PURGE.record(started, purged);
+        }
+    }
+
+    /**
+     * @return the job, or null if it does not exist or on error.
+     */
+    public Job findJobById(long id) {
+        long started = System.nanoTime();
+        Connection connection = Metrics.connect(FIND_JOB_BY_ID);
+        try (PreparedStatement statement = connection.prepareStatement("SELECT " + COLUMNS + " FROM jobs WHERE id = ?")) {
+            statement.setLong(1, id);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? mapJob(resultSet) : null;
+            }
+        } catch (SQLException e) {
+            FIND_JOB_BY_ID.error();
+            LOGGER.log(Level.SEVERE, "Error finding job " + id, e);
+            return null;
+        } finally {
+            Metrics.disconnect(connection);
+            FIND_JOB_BY_ID.record(started);
+        }
+    }
+
+    /**
+     * @param status the status to list, or null for all.
+     * @return the most recently queued jobs, newest first, or an empty list on error.
+     */
+    public List<Job> findJobs(JobStatus status, int limit) {
+        long started = System.nanoTime();
+        List<Job> jobs = new ArrayList<>();
+        Connection connection = Metrics.connect(FIND_JOBS);
+        String sql = "SELECT " + COLUMNS + " FROM jobs WHERE ?::text IS NULL OR status = ? ORDER BY id DESC LIMIT ?";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            String name = status == null ? null : status.name();
+            statement.setString(1, name);
+            statement.setString(2, name);
+            statement.setInt(3, limit);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    jobs.add(mapJob(resultSet));
+                }
+            }
+            return jobs;
+        } catch (SQLException e) {
+            FIND_JOBS.error();
+            LOGGER.log(Level.SEVERE, "Error listing jobs", e);
+            return Collections.emptyList();
+        } finally {
+            Metrics.disconnect(connection);
+            FIND_JOBS.record(started, jobs.size());
+        }
+    }
+
+    /**
+     * Cancels a pending or running job. A running job stops at its next checkpoint, rolling back
+     * the chunk in progress if it runs in a transaction.
+     *
+     * @return true if the job was cancelled, false if it does not exist, has finished or on error.
+     */
+    public boolean cancel(long id) {
+        long started = System.nanoTime();
+        Connection connection = Metrics.connect(CANCEL);
+        String sql = "UPDATE jobs SET status = 'CANCELLED', locked_by = NULL, lease_until = NULL, finished_at = now(),"
+                + " updated_at = now() WHERE id = ? AND status IN ('PENDING', 'RUNNING')";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, id);
+            return statement.executeUpdate() == 1;
+        } catch (SQLException e) {
+            CANCEL.error();
+            LOGGER.log(Level.SEVERE, "Error cancelling job " + id, e);
+            return false;
+        } finally {
+            Metrics.disconnect(connection);
+            CANCEL.record(started);
+        }
+    }
+
+    private static Job mapJob(ResultSet resultSet) throws SQLException {
+        long unitsTotal = resultSet.getLong("units_total");
+        Long estimated = resultSet.wasNull() ? null : unitsTotal;
+        return new Job(
+                resultSet.getLong("id"),
+                resultSet.getString("job_type"),
+                resultSet.getString("dedupe_key"),
+                resultSet.getString("parameters"),
+                JobStatus.valueOf(resultSet.getString("status")),
+                resultSet.getString("job_cursor"),
+                resultSet.getLong("units_done"),
+                estimated,
+                resultSet.getInt("attempts"),
+                resultSet.getInt("max_attempts"),
+                resultSet.getString("locked_by"),
+                resultSet.getString("last_error"),
+                resultSet.getTimestamp("created_at"),
+                resultSet.getTimestamp("started_at"),
+                resultSet.getTimestamp("finished_at"));
+    }
+}
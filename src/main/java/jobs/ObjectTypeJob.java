@@ -0,0 +1,79 @@
+package jobs;
+
+import com.google.gson.JsonElement;
+import dao.InstancesDAO;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A job that works through the object types in id order, {@code chunkSize} of them per chunk,
+ * with the last id done as its cursor. The optional parameter {@code objectTypeId} restricts it
+ * to one object type.
+ */
+abstract class ObjectTypeJob implements JobHandler {
+
+    private static final String FILTER = "(?::integer IS NULL OR id = ?)";
+
+    @Override
+    public long estimate(Connection connection, Job job) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM object_types WHERE " + FILTER)) {
+            setFilter(statement, 1, objectTypeId(job));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        }
+    }
+
+    @Override
+    public Chunk process(Connection connection, Job job, int chunkSize) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        String sql = "SELECT id FROM object_types WHERE id > ? AND " + FILTER + " ORDER BY id LIMIT ?";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, job.getCursor() == null ? 0 : Integer.parseInt(job.getCursor()));
+            setFilter(statement, 2, objectTypeId(job));
+            statement.setInt(4, chunkSize);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getInt(1));
+                }
+            }
+        }
+        for (int id : ids) {
+            processObjectType(connection, id);
+        }
+        if (ids.size() < chunkSize) {
+            return Chunk.finished(ids.isEmpty() ? job.getCursor() : String.valueOf(ids.get(ids.size() - 1)), ids.size());
+        }
+        return Chunk.next(String.valueOf(ids.get(ids.size() - 1)), ids.size());
+    }
+
+    /**
+     * Does the job's work for one object type, which may have been deleted since it was listed.
+     */
+    protected abstract void processObjectType(Connection connection, int objectTypeId) throws SQLException;
+
+    /**
+     * @return the columns of the object type's instance table, empty if it has none yet.
+     */
+    protected static Set<String> instanceColumns(Connection connection, int objectTypeId) throws SQLException {
+        return InstancesDAO.columnNames(connection, objectTypeId);
+    }
+
+    private static Integer objectTypeId(Job job) {
+        JsonElement id = job.parameters().get("objectTypeId");
+        return id == null || id.isJsonNull() ? null : id.getAsInt();
+    }
+
+    private static void setFilter(PreparedStatement statement, int index, Integer objectTypeId) throws SQLException {
+        statement.setObject(index, objectTypeId, Types.INTEGER);
+        statement.setObject(index + 1, objectTypeId, Types.INTEGER);
+    }
+}
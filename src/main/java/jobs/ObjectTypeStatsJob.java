@@ -0,0 +1,50 @@
+package jobs;
+
+import dao.InstancesDAO;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Refreshes the aggregates in object_type_stats: the attributes, indexed attributes, relationships
+ * filtering by the object type and instances of each object type. Counting instances scans the
+ * instance table, which is why the aggregates are kept rather than computed per request.
+ */
+public class ObjectTypeStatsJob extends ObjectTypeJob {
+
+    public static final String TYPE = "object-type-stats";
+
+    @Override
+    public String getType() {
+        return TYPE;
+    }
+
+    @Override
+    protected void processObjectType(Connection connection, int objectTypeId) throws SQLException {
+        long instances = 0;
+        if (!instanceColumns(connection, objectTypeId).isEmpty()) {
+            try (PreparedStatement statement = connection.prepareStatement("SELECT COUNT(*) FROM " + InstancesDAO.tableName(objectTypeId));
+                 ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                instances = resultSet.getLong(1);
+            }
+        }
+        // Selecting from object_types writes nothing for an object type deleted since it was listed.
+        String sql = "INSERT INTO object_type_stats (object_type_id, attribute_count, indexed_attribute_count, relationship_count, instance_count)"
+                + " SELECT o.id,"
+                + " (SELECT COUNT(*) FROM attributes a WHERE a.fk_object_type_id = o.id),"
+                + " (SELECT COUNT(*) FROM attributes a WHERE a.fk_object_type_id = o.id AND a.is_indexed),"
+                + " (SELECT COUNT(*) FROM relationships r WHERE r.filter_by_object_type_id = o.id), ?"
+                + " FROM object_types o WHERE o.id = ?"
+                + " ON CONFLICT (object_type_id) DO UPDATE SET attribute_count = EXCLUDED.attribute_count,"
+                + " indexed_attribute_count = EXCLUDED.indexed_attribute_count, relationship_count = EXCLUDED.relationship_count,"
+                + " instance_count = EXCLUDED.instance_count, refreshed_at = now()";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setLong(1, instances);
+            statement.setInt(2, objectTypeId);
+            statement.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Package for the background job scheduler and its jobs.
+ */
+package jobs;
\ No newline at end of file
@@ -0,0 +1,92 @@
+package metrics;
+
+import utils.DatabaseUtility;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Registry of operation metrics and instrumented access to {@link DatabaseUtility}.
+ * DAOs call {@link #connect(OperationMetrics)} and {@link #disconnect(Connection)} in place of
+ * the utility so that connection wait, connect/disconnect latency and open connections are tracked.
+ */
+public final class Metrics {
+
+    private static final ConcurrentMap<String, OperationMetrics> OPERATIONS = new ConcurrentHashMap<>();
+    private static final OperationMetrics CONNECT = operation("DatabaseUtility.connect");
+    private static final OperationMetrics DISCONNECT = operation("DatabaseUtility.disconnect");
+    private static final LongAdder OPEN_CONNECTIONS = new LongAdder();
+    private static final ThreadLocal<long[]> THREAD_CONNECTS = ThreadLocal.withInitial(() -> new long[1]);
+
+    private Metrics() {
+    }
+
+    /**
+     * @param name the operation name, by convention {@code ClassName.methodName}.
+     * @return the handle for the name, created on first use.
+     */
+    public static OperationMetrics operation(String name) {
+        return OPERATIONS.computeIfAbsent(name, OperationMetrics::new);
+    }
+
+    /**
+     * @return all operations, sorted by name.
+     */
+    public static List<OperationMetrics> getOperations() {
+        Collection<OperationMetrics> values = OPERATIONS.values();
+        List<OperationMetrics> operations = new ArrayList<>(values);
+        operations.sort((a, b) -> a.getName().compareTo(b.getName()));
+        return operations;
+    }
+
+    /**
+     * Opens a connection for the operation, recording how long it took to get one.
+     * A failure to connect counts as an error of the operation.
+     */
+    public static Connection connect(OperationMetrics operation) {
+        long started = System.nanoTime();
+        Connection connection = DatabaseUtility.connect();
+        long waited = System.nanoTime() - started;
+        THREAD_CONNECTS.get()[0]++;
+        operation.connectionWait(waited);
+        CONNECT.getLatency().record(waited);
+        if (connection == null) {
+            operation.error();
+            CONNECT.error();
+        } else {
+            OPEN_CONNECTIONS.increment();
+        }
+        return connection;
+    }
+
+    /**
+     * @return the connections the current thread has asked for so far; comparing two readings tells
+     * whether the work in between reached the database or was answered from memory.
+     */
+    public static long getConnectsOnCurrentThread() {
+        return THREAD_CONNECTS.get()[0];
+    }
+
+    public static void disconnect(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        long started = System.nanoTime();
+        DatabaseUtility.disconnect(connection);
+        DISCONNECT.record(started);
+        OPEN_CONNECTIONS.decrement();
+    }
+
+    /**
+     * @return connections obtained through {@link #connect(OperationMetrics)} and not yet returned.
+     * A value that keeps growing under steady load points at a leak.
+     */
+    public static long getOpenConnections() {
+        return OPEN_CONNECTIONS.sum();
+    }
+}
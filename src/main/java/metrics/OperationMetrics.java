@@ -0,0 +1,67 @@
+package metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Measurements of one named operation, usually a DAO method: call latency, time spent waiting
+ * for a database connection, rows touched and failures. Handles are obtained once through
+ * {@link Metrics#operation(String)} and kept in static fields, so recording costs a few atomic
+ * additions and no allocation.
+ */
+public class OperationMetrics {
+
+    private final String name;
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LatencyHistogram connectionWait = new LatencyHistogram();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Records a finished call.
+     *
+     * @param startedNanos the {@link System#nanoTime()} taken when the call started.
+     */
+    public void record(long startedNanos) {
+        latency.record(System.nanoTime() - startedNanos);
+    }
+
+    /**
+     * Records a finished call that read or wrote the given number of rows.
+     */
+    public void record(long startedNanos, long rowCount) {
+        latency.record(System.nanoTime() - startedNanos);
+        rows.add(rowCount);
+    }
+
+    public void error() {
+        errors.increment();
+    }
+
+    void connectionWait(long nanos) {
+        connectionWait.record(nanos);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    public LatencyHistogram getConnectionWait() {
+        return connectionWait;
+    }
+
+    public long getRows() {
+        return rows.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+}
@@ -0,0 +1,94 @@
+package metrics;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Slow executions of one normalised statement, together with the most recent captured plan.
+ */
+public class QueryProfile {
+
+    private final String statement;
+    private final LongAdder slowExecutions = new LongAdder();
+    private final LongAdder slowNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+    private final Set<String> sequentialScans = ConcurrentHashMap.newKeySet();
+    // Time of the last EXPLAIN request, used to sample at most one plan per interval.
+    private final AtomicLong lastExplainRequested = new AtomicLong(Long.MIN_VALUE);
+    private volatile String plan;
+    private volatile long planCapturedAt;
+    private volatile double planningMillis;
+    private volatile double executionMillis;
+
+    QueryProfile(String statement) {
+        this.statement = statement;
+    }
+
+    void recordSlow(long nanos) {
+        slowExecutions.increment();
+        slowNanos.add(nanos);
+        long current = maxNanos.get();
+        while (nanos > current && !maxNanos.compareAndSet(current, nanos)) {
+            current = maxNanos.get();
+        }
+    }
+
+    boolean claimExplain(long now, long intervalNanos) {
+        long last = lastExplainRequested.get();
+        return (last == Long.MIN_VALUE || now - last >= intervalNanos) && lastExplainRequested.compareAndSet(last, now);
+    }
+
+    void planCaptured(String plan, double planningMillis, double executionMillis, Set<String> sequentialScans) {
+        this.plan = plan;
+        this.planningMillis = planningMillis;
+        this.executionMillis = executionMillis;
+        this.planCapturedAt = System.currentTimeMillis();
+        this.sequentialScans.addAll(sequentialScans);
+    }
+
+    public String getStatement() {
+        return statement;
+    }
+
+    public long getSlowExecutions() {
+        return slowExecutions.sum();
+    }
+
+    public double getMeanSlowMillis() {
+        long count = slowExecutions.sum();
+        return count == 0 ? 0 : slowNanos.sum() / 1e6 / count;
+    }
+
+    public double getMaxMillis() {
+        return maxNanos.get() / 1e6;
+    }
+
+    /**
+     * @return the tables above the size threshold that a captured plan read with a sequential scan.
+     */
+    public Set<String> getSequentialScans() {
+        return Collections.unmodifiableSet(sequentialScans);
+    }
+
+    /**
+     * @return the last captured plan in EXPLAIN's JSON format, or null if none was captured yet.
+     */
+    public String getPlan() {
+        return plan;
+    }
+
+    public long getPlanCapturedAt() {
+        return planCapturedAt;
+    }
+
+    public double getPlanningMillis() {
+        return planningMillis;
+    }
+
+    public double getExecutionMillis() {
+        return executionMillis;
+    }
+}
@@ -0,0 +1,244 @@
+package metrics;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import utils.DatabaseUtility;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+
+/**
+ * Detects slow statements in the DAO layer and captures their plans.
+ * <p>
+ * DAOs report each execution through {@link #observe(String, long, Object...)}. Executions under the
+ * threshold cost one clock read and a comparison. Slow ones are aggregated by normalised statement.
+ * At most one plan per statement and interval is captured. The capture runs
+ * {@code EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON)} with the same parameters on a background thread and
+ * its own connection, in a read-only transaction that is rolled back. Statements that modify data
+ * are explained without ANALYZE so they are never executed twice. Plans that read a table of more
+ * than {@code largeTableRows} rows with a sequential scan are flagged and logged.
+ * The request thread never waits: when the capture queue is full the sample is dropped.
+ */
+public class QueryProfiler {
+
+    private static final Logger LOGGER = Logger.getLogger(QueryProfiler.class.getName());
+    private static final QueryProfiler DEFAULT = new QueryProfiler(
+            Long.getLong("ontology.slowQueryMillis", 200),
+            Long.getLong("ontology.seqScanTableRows", 10_000),
+            TimeUnit.MINUTES.toNanos(Long.getLong("ontology.explainIntervalMinutes", 5)));
+
+    private static final int QUEUE_CAPACITY = 16;
+    private static final int EXPLAIN_TIMEOUT_MILLIS = 30_000;
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private final ConcurrentMap<String, QueryProfile> profiles = new ConcurrentHashMap<>();
+    private final Map<String, Long> tableSizes = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor executor;
+    private volatile long thresholdNanos;
+    private final long largeTableRows;
+    private final long explainIntervalNanos;
+
+    /**
+     * @param thresholdMillis      executions at least this slow are recorded.
+     * @param largeTableRows       sequential scans of tables with more rows than this are flagged.
+     * @param explainIntervalNanos minimum time between two plan captures of the same statement.
+     */
+    public QueryProfiler(long thresholdMillis, long largeTableRows, long explainIntervalNanos) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.largeTableRows = largeTableRows;
+        this.explainIntervalNanos = explainIntervalNanos;
+        this.executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(QUEUE_CAPACITY), runnable -> {
+            Thread thread = new Thread(runnable, "query-profiler");
+            thread.setDaemon(true);
+            return thread;
+        }, new ThreadPoolExecutor.DiscardPolicy());
+    }
+
+    public static QueryProfiler getDefault() {
+        return DEFAULT;
+    }
+
+    public void setThresholdMillis(long thresholdMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    /**
+     * Reports one execution of a statement.
+     *
+     * @param sql          the statement as prepared, with ? placeholders.
+     * @param startedNanos the {@link System#nanoTime()} taken just before the statement was executed.
+     * @param parameters   the bound parameters, in placeholder order; used to explain a slow execution.
+     */
+    public void observe(String sql, long startedNanos, Object... parameters) {
+        long now = System.nanoTime();
+        long elapsed = now - startedNanos;
+        if (elapsed < thresholdNanos) {
+            return;
+        }
+        String statement = normalise(sql);
+        QueryProfile profile = profiles.computeIfAbsent(statement, QueryProfile::new);
+        profile.recordSlow(elapsed);
+        if (profile.claimExplain(now, explainIntervalNanos)) {
+            executor.execute(() -> explain(profile, sql, parameters));
+        }
+    }
+
+    /**
+     * @return the profiles of all statements seen slow, slowest total first.
+     */
+    public List<QueryProfile> getProfiles() {
+        List<QueryProfile> result = new ArrayList<>(profiles.values());
+        result.sort((a, b) -> Double.compare(b.getMeanSlowMillis() * b.getSlowExecutions(), a.getMeanSlowMillis() * a.getSlowExecutions()));
+        return result;
+    }
+
+    public void reset() {
+        profiles.clear();
+        tableSizes.clear();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void explain(QueryProfile profile, String sql, Object[] parameters) {
+        boolean readOnly = isReadOnly(sql);
+        String explain = "EXPLAIN (" + (readOnly ? "ANALYZE, BUFFERS, " : "") + "FORMAT JSON) " + sql;
+        Connection connection = DatabaseUtility.connect();
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.setAutoCommit(false);
+            connection.setReadOnly(readOnly);
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET LOCAL statement_timeout = " + EXPLAIN_TIMEOUT_MILLIS);
+            }
+            String plan;
+            try (PreparedStatement statement = connection.prepareStatement(explain)) {
+                for (int i = 0; i < parameters.length; i++) {
+                    statement.setObject(i + 1, parameters[i]);
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (!resultSet.next()) {
+                        return;
+                    }
+                    plan = resultSet.getString(1);
+                }
+            }
+            JsonObject root = JsonParser.parseString(plan).getAsJsonArray().get(0).getAsJsonObject();
+            Set<String> scanned = new HashSet<>();
+            collectSequentialScans(root.getAsJsonObject("Plan"), scanned);
+            Set<String> flagged = new HashSet<>();
+            for (String table : scanned) {
+                if (tableSize(connection, table) > largeTableRows) {
+                    flagged.add(table);
+                }
+            }
+            profile.planCaptured(plan, number(root, "Planning Time"), number(root, "Execution Time"), flagged);
+            if (!flagged.isEmpty()) {
+                LOGGER.log(Level.WARNING, "Sequential scan of " + flagged + " in slow statement (max "
+                        + profile.getMaxMillis() + " ms): " + profile.getStatement());
+            }
+        } catch (SQLException | RuntimeException e) {
+            LOGGER.log(Level.FINE, "Could not explain statement: " + profile.getStatement(), e);
+        } finally {
+            try {
+                connection.rollback();
+                connection.setReadOnly(false);
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                LOGGER.log(Level.FINE, "Could not reset profiler connection", e);
+            }
+            DatabaseUtility.disconnect(connection);
+        }
+    }
+
+    private static void collectSequentialScans(JsonObject node, Set<String> tables) {
+        if (node == null) {
+            return;
+        }
+        JsonElement type = node.get("Node Type");
+        JsonElement relation = node.get("Relation Name");
+        if (type != null && "Seq Scan".equals(type.getAsString()) && relation != null) {
+            tables.add(relation.getAsString());
+        }
+        JsonArray children = node.getAsJsonArray("Plans");
+        if (children != null) {
+            for (JsonElement child : children) {
+                collectSequentialScans(child.getAsJsonObject(), tables);
+            }
+        }
+    }
+
+    // Estimated row count from the statistics, cached; the exact size does not matter for the flag.
+    private long tableSize(Connection connection, String table) throws SQLException {
+        Long cached = tableSizes.get(table);
+        if (cached != null) {
+            return cached;
+        }
+        long rows = 0;
+        try (PreparedStatement statement = connection.prepareStatement("SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass(?)")) {
+            statement.setString(1, table);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (resultSet.next()) {
+                    rows = resultSet.getLong(1);
+                }
+            }
+        }
+        tableSizes.put(table, rows);
+        return rows;
+    }
+
+    private static double number(JsonObject object, String member) {
+        JsonElement value = object.get(member);
+        return value == null ? 0 : value.getAsDouble();
+    }
+
+    static boolean isReadOnly(String sql) {
+        String lower = sql.trim().toLowerCase(Locale.ROOT);
+        if (!lower.startsWith("select") && !lower.startsWith("with")) {
+            return false;
+        }
+        for (String keyword : new String[] {"insert ", "update ", "delete ", " for update", " for share"}) {
+            if (lower.contains(keyword)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reduces a statement to its shape: literals become ?, parameter lists collapse and whitespace is
+     * folded, so executions with different values are aggregated together.
+     */
+    static String normalise(String sql) {
+        String normalised = STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalised = NUMBER_LITERAL.matcher(normalised).replaceAll("?");
+        normalised = PARAMETER_LIST.matcher(normalised).replaceAll("(...)");
+        normalised = WHITESPACE.matcher(normalised).replaceAll(" ").trim();
+        return normalised.endsWith(";") ? normalised.substring(0, normalised.length() - 1).trim() : normalised;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Package for metrics.
+ */
+package metrics;
\ No newline at end of file
@@ -0,0 +1,75 @@
+package migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.logging.Logger;
+
+/**
+ * Rewrites or derives data in a large table in batches of consecutive ids, each its own short
+ * transaction, so locks are held for one batch at a time and replicas and vacuum keep up. Between
+ * batches the runner pauses in proportion to how long the batch took, capping the share of time
+ * the backfill keeps the database busy. The batch statement must be idempotent: after a failure
+ * or restart the migration runs again from the first id.
+ */
+public final class BackfillMigration extends Migration {
+
+    private static final Logger LOGGER = Logger.getLogger(BackfillMigration.class.getName());
+
+    private final String table;
+    private final String batchSql;
+
+    /**
+     * @param table    the table whose id range is walked.
+     * @param batchSql the statement for one batch, with the first id and the id after the last as parameters.
+     */
+    public BackfillMigration(int version, String description, String table, String batchSql) {
+        super(version, description);
+        this.table = table;
+        this.batchSql = batchSql;
+    }
+
+    @Override
+    public String getChecksum() {
+        return sha256(table + " " + batchSql);
+    }
+
+    @Override
+    void apply(Connection connection, MigrationRunner runner) throws SQLException {
+        long min;
+        long max;
+        try (PreparedStatement statement = connection.prepareStatement("SELECT MIN(id), MAX(id) FROM " + table);
+             ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            min = resultSet.getLong(1);
+            if (resultSet.wasNull()) {
+                return;
+            }
+            max = resultSet.getLong(2);
+        }
+        int batchSize = runner.getBatchSize();
+        long rows = 0;
+        long batches = (max - min) / batchSize + 1;
+        long batch = 0;
+        try (PreparedStatement statement = connection.prepareStatement(batchSql)) {
+            for (long from = min; from <= max; from += batchSize) {
+                long started = System.nanoTime();
+                long first = from;
+                long[] written = new long[1];
+                runner.retry(this + " at id " + first, () -> {
+                    statement.setLong(1, first);
+                    statement.setLong(2, first + batchSize);
+                    written[0] = statement.executeUpdate();
+                });
+                rows += written[0];
+                batch++;
+                if (batch % 100 == 0) {
+                    LOGGER.info(this + ": " + batch + " of " + batches + " batches, " + rows + " rows");
+                }
+                runner.throttle(System.nanoTime() - started);
+            }
+        }
+        LOGGER.info(this + ": " + rows + " rows in " + batch + " batches");
+    }
+}
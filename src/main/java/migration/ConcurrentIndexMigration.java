@@ -0,0 +1,67 @@
+package migration;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Builds an index with CREATE INDEX CONCURRENTLY, which reads and writes to the table keep going
+ * during. The build still has to wait for transactions that started before it; when lock_timeout
+ * ends that wait, PostgreSQL leaves an invalid index behind, which is dropped, again concurrently,
+ * before the next attempt. A unique index fails to build while the table has duplicates, which
+ * fails the migration until they are removed.
+ */
+public final class ConcurrentIndexMigration extends Migration {
+
+    private final String index;
+    private final String definition;
+    private final boolean unique;
+
+    /**
+     * @param index      the name of the index.
+     * @param definition what follows the index name in CREATE INDEX, e.g. {@code ON attributes (fk_object_type_id)}.
+     */
+    public ConcurrentIndexMigration(int version, String description, String index, String definition) {
+        this(version, description, index, definition, false);
+    }
+
+    /**
+     * @param unique whether to build a unique index.
+     */
+    public ConcurrentIndexMigration(int version, String description, String index, String definition, boolean unique) {
+        super(version, description);
+        this.index = index;
+        this.definition = definition;
+        this.unique = unique;
+    }
+
+    @Override
+    public String getChecksum() {
+        return sha256((unique ? "UNIQUE " : "") + index + " " + definition);
+    }
+
+    @Override
+    void apply(Connection connection, MigrationRunner runner) throws SQLException {
+        runner.retry(toString(), () -> {
+            try (Statement statement = connection.createStatement()) {
+                if (isInvalid(connection)) {
+                    statement.execute("DROP INDEX CONCURRENTLY IF EXISTS " + index);
+                }
+                statement.execute("CREATE " + (unique ? "UNIQUE " : "") + "INDEX CONCURRENTLY IF NOT EXISTS " + index + " " + definition);
+            }
+        });
+    }
+
+    private boolean isInvalid(Connection connection) throws SQLException {
+        String sql = "SELECT NOT i.indisvalid FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid"
+                + " WHERE c.relname = ? AND pg_table_is_visible(c.oid)";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, index);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() && resultSet.getBoolean(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package migration;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * One versioned change to the database schema or its data. Migrations are applied once each, in
+ * version order, and recorded in schema_migrations with a checksum of their content, so a
+ * migration that is edited after it was applied is noticed rather than silently skipped.
+ */
+public abstract class Migration {
+
+    private final int version;
+    private final String description;
+
+    Migration(int version, String description) {
+        this.version = version;
+        this.description = description;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * @return a fingerprint of what the migration does.
+     */
+    public abstract String getChecksum();
+
+    /**
+     * Applies the migration on a connection in auto-commit mode that has lock_timeout set. Lock
+     * timeouts are retried through the runner, so each unit of work must be safe to repeat.
+     */
+    abstract void apply(Connection connection, MigrationRunner runner) throws SQLException;
+
+    static String sha256(String content) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(content.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "V" + version + " " + description;
+    }
+}
@@ -0,0 +1,269 @@
+package migration;
+
+import metrics.Metrics;
+import metrics.OperationMetrics;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Applies the pending {@link Migrations} at startup and records them in schema_migrations.
+ * <p>
+ * Nodes starting together take turns through a session-level advisory lock, so each migration is
+ * applied once. Every statement runs with a short lock_timeout: DDL waiting behind a long-running
+ * transaction would otherwise queue every query on the table behind itself, stalling production
+ * traffic for as long as that transaction lasts. A statement that times out is retried with
+ * exponential backoff and jitter until it finds a gap.
+ */
+public class MigrationRunner {
+
+    private static final Logger LOGGER = Logger.getLogger(MigrationRunner.class.getName());
+    private static final OperationMetrics MIGRATE = Metrics.operation("MigrationRunner.migrate");
+    private static final MigrationRunner DEFAULT = new MigrationRunner(Migrations.all(),
+            Long.getLong("ontology.migration.lockTimeoutMillis", 2000),
+            Integer.getInteger("ontology.migration.retries", 20),
+            Long.getLong("ontology.migration.retryDelayMillis", 500),
+            Integer.getInteger("ontology.migration.batchSize", 5000),
+            Integer.getInteger("ontology.migration.backfillDutyPercent", 50));
+
+    // Key of the advisory lock serialising migrations, "ontology" in ASCII.
+    private static final long LOCK_KEY = 0x6f6e746f6c6f6779L;
+    private static final long LOCK_WAIT_SECONDS = Long.getLong("ontology.migration.lockWaitSeconds", 600);
+    private static final long MAX_RETRY_DELAY_MILLIS = 30_000;
+
+    private static final String CREATE_TABLE_SQL = "CREATE TABLE IF NOT EXISTS schema_migrations ("
+            + " version INTEGER PRIMARY KEY,"
+            + " description TEXT NOT NULL,"
+            + " checksum TEXT NOT NULL,"
+            + " applied_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,"
+            + " execution_millis BIGINT NOT NULL)";
+
+    private final List<Migration> migrations;
+    private final long lockTimeoutMillis;
+    private final int retries;
+    private final long retryDelayMillis;
+    private final int batchSize;
+    private final int dutyPercent;
+    private volatile int currentVersion;
+
+    /**
+     * @param migrations        the migrations in version order.
+     * @param lockTimeoutMillis how long a statement may wait for a lock before it is retried.
+     * @param retries           how often a statement is retried after a lock timeout.
+     * @param retryDelayMillis  the delay before the first retry, doubled for each further one.
+     * @param batchSize         the ids per batch of a {@link BackfillMigration}.
+     * @param dutyPercent       the share of time a backfill may keep the database busy.
+     */
+    public MigrationRunner(List<Migration> migrations, long lockTimeoutMillis, int retries, long retryDelayMillis,
+                           int batchSize, int dutyPercent) {
+        this.migrations = migrations;
+        this.lockTimeoutMillis = lockTimeoutMillis;
+        this.retries = retries;
+        this.retryDelayMillis = retryDelayMillis;
+        this.batchSize = batchSize;
+        this.dutyPercent = Math.max(1, Math.min(100, dutyPercent));
+    }
+
+    public static MigrationRunner getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Applies every migration that has not been applied yet, waiting while another node migrates.
+     * A migration changed after it was applied stops the run: the schema would silently differ
+     * from what the code expects.
+     *
+     * @return true if the schema is up to date.
+     */
+    public boolean migrate() {
+        long started = System.nanoTime();
+        int applied = 0;
+        Connection connection = Metrics.connect(MIGRATE);
+        if (connection == null) {
+            LOGGER.severe("Cannot migrate the schema: no database connection");
+            return false;
+        }
+        boolean locked = false;
+        try {
+            connection.setAutoCommit(true);
+            locked = lock(connection);
+            if (!locked) {
+                MIGRATE.error();
+                LOGGER.severe("Timed out after " + LOCK_WAIT_SECONDS + " s waiting for another node to finish migrating");
+                return false;
+            }
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("SET lock_timeout = " + lockTimeoutMillis);
+                statement.execute(CREATE_TABLE_SQL);
+            }
+            Map<Integer, String> checksums = appliedChecksums(connection);
+            for (Migration migration : migrations) {
+                String checksum = checksums.get(migration.getVersion());
+                if (checksum != null) {
+                    if (!checksum.equals(migration.getChecksum())) {
+                        MIGRATE.error();
+                        LOGGER.severe("Migration " + migration + " was changed after it was applied; restore it"
+                                + " and make the change in a new migration");
+                        return false;
+                    }
+                    currentVersion = migration.getVersion();
+                    continue;
+                }
+                long migrationStarted = System.nanoTime();
+                LOGGER.info("Applying migration " + migration);
+                migration.apply(connection, this);
+                long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - migrationStarted);
+                record(connection, migration, millis);
+                currentVersion = migration.getVersion();
+                applied++;
+                LOGGER.info("Applied migration " + migration + " in " + millis + " ms");
+            }
+            return true;
+        } catch (SQLException | RuntimeException e) {
+            MIGRATE.error();
+            LOGGER.log(Level.SEVERE, "Error migrating the schema, it is at version " + currentVersion, e);
+            return false;
+        } finally {
+            release(connection, locked);
+            Metrics.disconnect(connection);
+            MIGRATE.record(started, applied);
+        }
+    }
+
+    /**
+     * @return the version of the last migration applied, or 0 before {@link #migrate()} has run.
+     */
+    public int getCurrentVersion() {
+        return currentVersion;
+    }
+
+    int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * A unit of work that is repeated after a lock timeout.
+     */
+    interface SqlAction {
+        void run() throws SQLException;
+    }
+
+    /**
+     * Runs the action, retrying it with exponential backoff while it fails to get its locks.
+     *
+     * @param what the action, for the log.
+     */
+    void retry(String what, SqlAction action) throws SQLException {
+        long delay = retryDelayMillis;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                action.run();
+                return;
+            } catch (SQLException e) {
+                if (!isRetryable(e) || attempt > retries) {
+                    throw e;
+                }
+                long sleep = delay + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+                LOGGER.warning(what + " failed (" + e.getMessage() + "), retry " + attempt + " of " + retries + " in " + sleep + " ms");
+                sleep(sleep);
+                delay = Math.min(delay * 2, MAX_RETRY_DELAY_MILLIS);
+            }
+        }
+    }
+
+    /**
+     * Pauses a backfill after a batch that took the given time, so that it keeps the database
+     * busy for at most the configured share of the time.
+     */
+    void throttle(long batchNanos) throws SQLException {
+        if (dutyPercent < 100) {
+            sleep(TimeUnit.NANOSECONDS.toMillis(batchNanos) * (100 - dutyPercent) / dutyPercent);
+        }
+    }
+
+    /**
+     * @return whether the error is a lock timeout, deadlock or serialization failure, which
+     * succeed when repeated later.
+     */
+    static boolean isRetryable(SQLException e) {
+        String state = e.getSQLState();
+        return "55P03".equals(state) || "40P01".equals(state) || "40001".equals(state);
+    }
+
+    private static boolean lock(Connection connection) throws SQLException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(LOCK_WAIT_SECONDS);
+        try (PreparedStatement statement = connection.prepareStatement("SELECT pg_try_advisory_lock(?)")) {
+            statement.setLong(1, LOCK_KEY);
+            boolean logged = false;
+            while (true) {
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    if (resultSet.getBoolean(1)) {
+                        return true;
+                    }
+                }
+                if (System.nanoTime() > deadline) {
+                    return false;
+                }
+                if (!logged) {
+                    LOGGER.info("Waiting for another node to finish migrating the schema");
+                    logged = true;
+                }
+                sleep(1000);
+            }
+        }
+    }
+
+    private static void release(Connection connection, boolean locked) {
+        // The connection goes back to the pool, so nothing of the session may stay behind.
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("RESET lock_timeout");
+            if (locked) {
+                statement.execute("SELECT pg_advisory_unlock(" + LOCK_KEY + ")");
+            }
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error releasing the migration lock", e);
+        }
+    }
+
+    private static Map<Integer, String> appliedChecksums(Connection connection) throws SQLException {
+        Map<Integer, String> checksums = new HashMap<>();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT version, checksum FROM schema_migrations");
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                checksums.put(resultSet.getInt(1), resultSet.getString(2));
+            }
+        }
+        return checksums;
+    }
+
+    private static void record(Connection connection, Migration migration, long millis) throws SQLException {
+        String sql = "INSERT INTO schema_migrations (version, description, checksum, execution_millis) VALUES (?, ?, ?, ?)";
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setInt(1, migration.getVersion());
+            statement.setString(2, migration.getDescription());
+            statement.setString(3, migration.getChecksum());
+            statement.setLong(4, millis);
+            statement.executeUpdate();
+        }
+    }
+
+    private static void sleep(long millis) throws SQLException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while migrating", e);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package migration;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Every migration, in version order. New migrations are appended with the next version; applied
+ * ones are never edited, since the runner compares their checksums.
+ */
+public final class Migrations {
+
+    private Migrations() {
+    }
+
+    public static List<Migration> all() {
+        return Collections.unmodifiableList(Arrays.asList(
+                new SqlScriptMigration(1, "base schema", "db/migration/V1__base_schema.sql"),
+                new SqlScriptMigration(2, "row versions", "db/migration/V2__version_columns.sql"),
+                new SqlScriptMigration(3, "attribute enum values", "db/migration/V3__attribute_enum_values.sql"),
+                new SqlScriptMigration(4, "ontology history", "db/migration/V4__ontology_history.sql"),
+                new ConcurrentIndexMigration(5, "attributes by object type",
+                        "attributes_object_type_idx", "ON attributes (fk_object_type_id)"),
+                new ConcurrentIndexMigration(6, "dependencies by relationship",
+                        "relationship_dependencies_relationship_idx", "ON relationship_dependencies (relationship_id)"),
+                new ConcurrentIndexMigration(7, "relationships by filter object type",
+                        "relationships_filter_object_type_idx", "ON relationships (filter_by_object_type_id)"),
+                historyCheckpoints(8, "object_types", "t.id"),
+                historyCheckpoints(9, "attributes", "t.fk_object_type_id"),
+                historyCheckpoints(10, "relationships", "t.filter_by_object_type_id"),
+                historyCheckpoints(11, "relationship_dependencies", "NULL::INTEGER"),
+                new SqlScriptMigration(12, "background jobs", "db/migration/V12__jobs.sql"),
+                new SqlScriptMigration(13, "attribute edits bump object type version",
+                        "db/migration/V13__attribute_edits_bump_object_type.sql"),
+                // Natural keys of the promotion diff; duplicates have to be removed before these build.
+                new ConcurrentIndexMigration(14, "unique object type names",
+                        "object_types_name_key", "ON object_types (name)", true),
+                new ConcurrentIndexMigration(15, "unique relationship names",
+                        "relationships_relationship_name_key", "ON relationships (relationship_name)", true)));
+    }
+
+    /**
+     * Records a checkpoint for every row written before the history triggers existed, without
+     * which the history cannot reconstruct it. FOR SHARE waits for concurrent writers of the batch,
+     * so the checkpoint is taken after, and holds, any delta they record.
+     */
+    private static Migration historyCheckpoints(int version, String table, String rootObjectTypeId) {
+        return new BackfillMigration(version, "history checkpoints of " + table, table,
+                "INSERT INTO ontology_history (entity_table, entity_id, root_object_type_id, operation, is_checkpoint, data)"
+                        + " SELECT '" + table + "', t.id, " + rootObjectTypeId + ", 'U', TRUE, to_jsonb(t) FROM " + table + " t"
+                        + " WHERE t.id >= ? AND t.id < ? AND NOT EXISTS (SELECT 1 FROM ontology_history h"
+                        + " WHERE h.entity_table = '" + table + "' AND h.entity_id = t.id AND h.is_checkpoint)"
+                        + " FOR SHARE OF t");
+    }
+}
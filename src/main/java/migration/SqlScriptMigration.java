@@ -0,0 +1,141 @@
+package migration;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A SQL script on the class path, run as one transaction. A statement that cannot get its lock
+ * within lock_timeout rolls the whole script back and it is retried from the start, so a DDL
+ * statement never waits in the lock queue, where it would block every query behind it.
+ * <p>
+ * Scripts should only take locks briefly: adding a nullable column or one with a constant
+ * default does not rewrite the table, building an index on a populated table does and belongs
+ * in a {@link ConcurrentIndexMigration}.
+ */
+public final class SqlScriptMigration extends Migration {
+
+    private final String resource;
+    private final String script;
+
+    public SqlScriptMigration(int version, String description, String resource) {
+        super(version, description);
+        this.resource = resource;
+        try (InputStream in = SqlScriptMigration.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Migration script " + resource + " is not on the class path");
+            }
+            this.script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Error reading migration script " + resource, e);
+        }
+    }
+
+    @Override
+    public String getChecksum() {
+        return sha256(script);
+    }
+
+    @Override
+    void apply(Connection connection, MigrationRunner runner) throws SQLException {
+        List<String> statements = split(script);
+        runner.retry(this + " (" + resource + ")", () -> {
+            connection.setAutoCommit(false);
+            try (Statement statement = connection.createStatement()) {
+                for (String sql : statements) {
+                    statement.execute(sql);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        });
+    }
+
+    /**
+     * Splits a script into statements at semicolons outside comments, quoted strings and
+     * identifiers, and dollar-quoted function bodies.
+     */
+    static List<String> split(String script) {
+        List<String> statements = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        int i = 0;
+        int length = script.length();
+        while (i < length) {
+            char c = script.charAt(i);
+            if (c == '-' && script.startsWith("--", i)) {
+                int end = script.indexOf('\n', i);
+                i = end < 0 ? length : end;
+            } else if (c == '/' && script.startsWith("/*", i)) {
+                int end = script.indexOf("*/", i + 2);
+                i = end < 0 ? length : end + 2;
+                current.append(' ');
+            } else if (c == '\'' || c == '"') {
+                int end = i + 1;
+                while (end < length) {
+                    if (script.charAt(end) == c) {
+                        // A doubled quote is an escaped one.
+                        if (end + 1 < length && script.charAt(end + 1) == c) {
+                            end += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    end++;
+                }
+                end = Math.min(end + 1, length);
+                current.append(script, i, end);
+                i = end;
+            } else if (c == '$' && dollarTag(script, i) != null) {
+                String tag = dollarTag(script, i);
+                int end = script.indexOf(tag, i + tag.length());
+                end = end < 0 ? length : end + tag.length();
+                current.append(script, i, end);
+                i = end;
+            } else if (c == ';') {
+                addStatement(statements, current);
+                i++;
+            } else {
+                current.append(c);
+                i++;
+            }
+        }
+        addStatement(statements, current);
+        return statements;
+    }
+
+    /**
+     * @return the tag, e.g. {@code $$} or {@code $body$}, if a dollar quote starts at the position.
+     */
+    private static String dollarTag(String script, int start) {
+        int i = start + 1;
+        while (i < script.length() && (Character.isLetterOrDigit(script.charAt(i)) || script.charAt(i) == '_')) {
+            i++;
+        }
+        if (i >= script.length() || script.charAt(i) != '$') {
+            return null;
+        }
+        // $1 is a parameter reference, not a tag.
+        if (i > start + 1 && Character.isDigit(script.charAt(start + 1))) {
+            return null;
+        }
+        return script.substring(start, i + 1);
+    }
+
+    private static void addStatement(List<String> statements, StringBuilder current) {
+        String statement = current.toString().trim();
+        if (!statement.isEmpty()) {
+            statements.add(statement);
+        }
+        current.setLength(0);
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Package for migration.
+ */
+package migration;
\ No newline at end of file
@@ -1,5 +1,6 @@
 package model;
 
+import java.util.List;
 import java.util.Objects;
 
 /**
@@ -14,8 +15,10 @@ public class Attributes {
     private DataTypes dataType;
     private boolean isRequired;
     private String defaultValue;
+    private List<String> enumValues;
     private boolean isIndexed;
     private int attributeUsageCount;
+    private int version;
     private ObjectType fkObjectType;
 
     // Enum for data types
@@ -78,6 +81,15 @@ public class Attributes {
         this.defaultValue = defaultValue;
     }
 
+    // Allowed values of an ENUM attribute; null for other data types
+    public List<String> getEnumValues() {
+        return enumValues;
+    }
+
+    public void setEnumValues(List<String> enumValues) {
+        this.enumValues = enumValues;
+    }
+
     public boolean isIndexed() {
         return isIndexed;
     }
@@ -94,6 +106,14 @@ public class Attributes {
         this.attributeUsageCount = attributeUsageCount;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public ObjectType getFkObjectType() {
         return fkObjectType;
     }
@@ -112,8 +132,10 @@ public class Attributes {
                 ", dataType=" + dataType +
                 ", isRequired=" + isRequired +
                 ", defaultValue='" + defaultValue + '\'' +
+                ", enumValues=" + enumValues +
                 ", isIndexed=" + isIndexed +
                 ", attributeUsageCount=" + attributeUsageCount +
+                ", version=" + version +
                 ", fkObjectType=" + fkObjectType +
                 '}';
     }
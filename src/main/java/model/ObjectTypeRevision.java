@@ -0,0 +1,57 @@
+package model;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+/**
+ * An object type as it existed at a point in time, reconstructed from the change history,
+ * together with its attributes and the relationships filtered by it.
+ */
+public class ObjectTypeRevision {
+
+    private final Timestamp asOf;
+    private final ObjectTypes objectType;
+    private final List<Relationships> relationships;
+
+    public ObjectTypeRevision(Timestamp asOf, ObjectTypes objectType, List<Relationships> relationships) {
+        this.asOf = asOf;
+        this.objectType = objectType;
+        this.relationships = relationships;
+    }
+
+    /**
+     * Gets the point in time the revision was reconstructed for.
+     *
+     * @return the timestamp.
+     */
+    public Timestamp getAsOf() {
+        return asOf;
+    }
+
+    /**
+     * Gets the object type, with its attributes in {@link ObjectTypes#getAttributesList()}.
+     *
+     * @return the object type.
+     */
+    public ObjectTypes getObjectType() {
+        return objectType;
+    }
+
+    /**
+     * Gets the relationships that referenced the object type at that time.
+     *
+     * @return the relationships.
+     */
+    public List<Relationships> getRelationships() {
+        return relationships;
+    }
+
+    @Override
+    public String toString() {
+        return "ObjectTypeRevision{" +
+                "asOf=" + asOf +
+                ", objectType=" + objectType +
+                ", relationships=" + relationships +
+                '}';
+    }
+}
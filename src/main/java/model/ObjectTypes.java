@@ -10,6 +10,7 @@ public class ObjectTypes {
     private int id;
     private String name;
     private String description;
+    private int version;
     private Timestamp createdAt;
     private Timestamp updatedAt;
     private List<Attributes> attributesList;
@@ -71,6 +72,25 @@ public class ObjectTypes {
         this.description = description;
     }
 
+    /**
+     * Gets the version of the object type record, incremented on every update.
+     * Used for optimistic concurrency control when editing.
+     *
+     * @return An integer representing the version.
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    /**
+     * Sets the version of the object type record.
+     *
+     * @param version An integer containing the version.
+     */
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     /**
      * Gets the creation timestamp of the object type record.
      *
@@ -131,6 +151,7 @@ public class ObjectTypes {
                 "id=" + id +
                 ", name='" + name + '\'' +
                 ", description='" + description + '\'' +
+                ", version=" + version +
                 ", createdAt=" + createdAt +
                 ", updatedAt=" + updatedAt +
                 ", attributesList=" + attributesList +
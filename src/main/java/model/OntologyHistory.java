@@ -0,0 +1,195 @@
+package model;
+
+import java.sql.Timestamp;
+
+/**
+ * Represents one entry of the ontology change history: either a delta holding only the
+ * columns changed by a write, or a checkpoint holding the full row.
+ */
+public class OntologyHistory {
+
+    private long seq;
+    private String entityTable;
+    private int entityId;
+    private Integer rootObjectTypeId;
+    private Operation operation;
+    private boolean checkpoint;
+    private String data;
+    private Timestamp changedAt;
+
+    // Enum for the kind of write recorded
+    public enum Operation {
+        INSERT, UPDATE, DELETE;
+
+        public static Operation fromCode(String code) {
+            switch (code) {
+                case "I":
+                    return INSERT;
+                case "U":
+                    return UPDATE;
+                case "D":
+                    return DELETE;
+                default:
+                    throw new IllegalArgumentException("Unknown history operation: " + code);
+            }
+        }
+    }
+
+    /**
+     * Gets the position of the entry in the global history.
+     *
+     * @return the sequence number.
+     */
+    public long getSeq() {
+        return seq;
+    }
+
+    /**
+     * Sets the position of the entry in the global history.
+     *
+     * @param seq the sequence number.
+     */
+    public void setSeq(long seq) {
+        this.seq = seq;
+    }
+
+    /**
+     * Gets the table of the changed entity.
+     *
+     * @return the table name.
+     */
+    public String getEntityTable() {
+        return entityTable;
+    }
+
+    /**
+     * Sets the table of the changed entity.
+     *
+     * @param entityTable the table name.
+     */
+    public void setEntityTable(String entityTable) {
+        this.entityTable = entityTable;
+    }
+
+    /**
+     * Gets the id of the changed entity.
+     *
+     * @return the entity id.
+     */
+    public int getEntityId() {
+        return entityId;
+    }
+
+    /**
+     * Sets the id of the changed entity.
+     *
+     * @param entityId the entity id.
+     */
+    public void setEntityId(int entityId) {
+        this.entityId = entityId;
+    }
+
+    /**
+     * Gets the object type the entity belongs to, or null for entities outside an object type.
+     *
+     * @return the owning object type id.
+     */
+    public Integer getRootObjectTypeId() {
+        return rootObjectTypeId;
+    }
+
+    /**
+     * Sets the object type the entity belongs to.
+     *
+     * @param rootObjectTypeId the owning object type id.
+     */
+    public void setRootObjectTypeId(Integer rootObjectTypeId) {
+        this.rootObjectTypeId = rootObjectTypeId;
+    }
+
+    /**
+     * Gets the kind of write recorded.
+     *
+     * @return the operation.
+     */
+    public Operation getOperation() {
+        return operation;
+    }
+
+    /**
+     * Sets the kind of write recorded.
+     *
+     * @param operation the operation.
+     */
+    public void setOperation(Operation operation) {
+        this.operation = operation;
+    }
+
+    /**
+     * Tells whether the entry holds the full row rather than a delta.
+     *
+     * @return true for checkpoints.
+     */
+    public boolean isCheckpoint() {
+        return checkpoint;
+    }
+
+    /**
+     * Sets whether the entry holds the full row rather than a delta.
+     *
+     * @param checkpoint true for checkpoints.
+     */
+    public void setCheckpoint(boolean checkpoint) {
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Gets the changed columns, or the full row for checkpoints, as a JSON object keyed by column name.
+     *
+     * @return the JSON data.
+     */
+    public String getData() {
+        return data;
+    }
+
+    /**
+     * Sets the changed columns as a JSON object keyed by column name.
+     *
+     * @param data the JSON data.
+     */
+    public void setData(String data) {
+        this.data = data;
+    }
+
+    /**
+     * Gets the time the change was written.
+     *
+     * @return the change timestamp.
+     */
+    public Timestamp getChangedAt() {
+        return changedAt;
+    }
+
+    /**
+     * Sets the time the change was written.
+     *
+     * @param changedAt the change timestamp.
+     */
+    public void setChangedAt(Timestamp changedAt) {
+        this.changedAt = changedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "OntologyHistory{" +
+                "seq=" + seq +
+                ", entityTable='" + entityTable + '\'' +
+                ", entityId=" + entityId +
+                ", rootObjectTypeId=" + rootObjectTypeId +
+                ", operation=" + operation +
+                ", checkpoint=" + checkpoint +
+                ", data='" + data + '\'' +
+                ", changedAt=" + changedAt +
+                '}';
+    }
+}
@@ -0,0 +1,111 @@
+package offheap;
+
+import model.Attributes;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flyweight over an attribute record, which also holds the id of its object type.
+ */
+public final class AttributeRecord extends Record {
+
+    private static final Attributes.DataTypes[] DATA_TYPES = Attributes.DataTypes.values();
+    private static final byte REQUIRED = 1;
+    private static final byte INDEXED = 2;
+
+    private static final int OBJECT_TYPE_ID = 0;
+    private static final int VERSION = 4;
+    private static final int USAGE_COUNT = 8;
+    private static final int DATA_TYPE = 12;
+    private static final int ATTRIBUTE_FLAGS = 13;
+    private static final int NAME = 14;
+
+    @Override
+    RecordKind kind() {
+        return RecordKind.ATTRIBUTE;
+    }
+
+    static void encode(RecordEncoder encoder, Attributes attribute, int objectTypeId) {
+        encoder.start(RecordKind.ATTRIBUTE, attribute.getId(), (byte) 0)
+                .putInt(objectTypeId)
+                .putInt(attribute.getVersion())
+                .putInt(attribute.getAttributeUsageCount())
+                .putEnum(attribute.getDataType())
+                .putByte((byte) ((attribute.isRequired() ? REQUIRED : 0) | (attribute.isIndexed() ? INDEXED : 0)))
+                .putString(attribute.getName())
+                .putString(attribute.getDefaultValue());
+        List<String> enumValues = attribute.getEnumValues();
+        encoder.putInt(enumValues == null ? -1 : enumValues.size());
+        if (enumValues != null) {
+            for (String value : enumValues) {
+                encoder.putString(value);
+            }
+        }
+    }
+
+    public int getObjectTypeId() {
+        return buffer.getInt(payload() + OBJECT_TYPE_ID);
+    }
+
+    public int getVersion() {
+        return buffer.getInt(payload() + VERSION);
+    }
+
+    public int getAttributeUsageCount() {
+        return buffer.getInt(payload() + USAGE_COUNT);
+    }
+
+    public Attributes.DataTypes getDataType() {
+        byte dataType = buffer.get(payload() + DATA_TYPE);
+        return dataType < 0 ? null : DATA_TYPES[dataType];
+    }
+
+    public boolean isRequired() {
+        return (buffer.get(payload() + ATTRIBUTE_FLAGS) & REQUIRED) != 0;
+    }
+
+    public boolean isIndexed() {
+        return (buffer.get(payload() + ATTRIBUTE_FLAGS) & INDEXED) != 0;
+    }
+
+    public String getName() {
+        return stringAt(payload() + NAME);
+    }
+
+    public String getDefaultValue() {
+        return stringAt(skipString(payload() + NAME));
+    }
+
+    /**
+     * @return the allowed values of an ENUM attribute, or null if it has none.
+     */
+    public List<String> getEnumValues() {
+        int position = skipString(skipString(payload() + NAME));
+        int count = buffer.getInt(position);
+        if (count < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>(count);
+        position += 4;
+        for (int i = 0; i < count; i++) {
+            values.add(stringAt(position));
+            position = skipString(position);
+        }
+        return values;
+    }
+
+    public Attributes toModel() {
+        Attributes attribute = new Attributes();
+        attribute.setId(getId());
+        attribute.setName(getName());
+        attribute.setDataType(getDataType());
+        attribute.setRequired(isRequired());
+        attribute.setIndexed(isIndexed());
+        attribute.setDefaultValue(getDefaultValue());
+        attribute.setEnumValues(getEnumValues());
+        attribute.setAttributeUsageCount(getAttributeUsageCount());
+        attribute.setVersion(getVersion());
+        return attribute;
+    }
+}
@@ -0,0 +1,71 @@
+package offheap;
+
+import model.RelationshipDependencies;
+import model.Relationships;
+
+import java.sql.Timestamp;
+
+/**
+ * Flyweight over a relationship dependency record, which also holds the id of its relationship.
+ */
+public final class DependencyRecord extends Record {
+
+    private static final RelationshipDependencies.DependencyType[] TYPES = RelationshipDependencies.DependencyType.values();
+
+    private static final int RELATIONSHIP_ID = 0;
+    private static final int CREATED_AT = 4;
+    private static final int UPDATED_AT = 12;
+    private static final int TYPE = 20;
+    private static final int NAME = 21;
+
+    @Override
+    RecordKind kind() {
+        return RecordKind.RELATIONSHIP_DEPENDENCY;
+    }
+
+    static void encode(RecordEncoder encoder, RelationshipDependencies dependency, int relationshipId) {
+        encoder.start(RecordKind.RELATIONSHIP_DEPENDENCY, dependency.getId(), (byte) 0)
+                .putInt(relationshipId)
+                .putLong(encodeTimestamp(dependency.getCreatedAt()))
+                .putLong(encodeTimestamp(dependency.getUpdatedAt()))
+                .putEnum(dependency.getDependencyType())
+                .putString(dependency.getDependencyName());
+    }
+
+    public int getRelationshipId() {
+        return buffer.getInt(payload() + RELATIONSHIP_ID);
+    }
+
+    public Timestamp getCreatedAt() {
+        return decodeTimestamp(buffer.getLong(payload() + CREATED_AT));
+    }
+
+    public Timestamp getUpdatedAt() {
+        return decodeTimestamp(buffer.getLong(payload() + UPDATED_AT));
+    }
+
+    public RelationshipDependencies.DependencyType getDependencyType() {
+        byte type = buffer.get(payload() + TYPE);
+        return type < 0 ? null : TYPES[type];
+    }
+
+    public String getDependencyName() {
+        return stringAt(payload() + NAME);
+    }
+
+    /**
+     * @return a model object with the record's fields; its relationship carries only the id.
+     */
+    public RelationshipDependencies toModel() {
+        RelationshipDependencies dependency = new RelationshipDependencies();
+        dependency.setId(getId());
+        dependency.setDependencyName(getDependencyName());
+        dependency.setDependencyType(getDependencyType());
+        dependency.setCreatedAt(getCreatedAt());
+        dependency.setUpdatedAt(getUpdatedAt());
+        Relationships relationship = new Relationships();
+        relationship.setId(getRelationshipId());
+        dependency.setRelationship(relationship);
+        return dependency;
+    }
+}
@@ -0,0 +1,64 @@
+package offheap;
+
+import model.ObjectTypes;
+
+import java.sql.Timestamp;
+
+/**
+ * Flyweight over an object type record.
+ */
+public final class ObjectTypeRecord extends Record {
+
+    private static final int VERSION = 0;
+    private static final int CREATED_AT = 4;
+    private static final int UPDATED_AT = 12;
+    private static final int NAME = 20;
+
+    @Override
+    RecordKind kind() {
+        return RecordKind.OBJECT_TYPE;
+    }
+
+    static void encode(RecordEncoder encoder, ObjectTypes objectType) {
+        encoder.start(RecordKind.OBJECT_TYPE, objectType.getId(), (byte) 0)
+                .putInt(objectType.getVersion())
+                .putLong(encodeTimestamp(objectType.getCreatedAt()))
+                .putLong(encodeTimestamp(objectType.getUpdatedAt()))
+                .putString(objectType.getName())
+                .putString(objectType.getDescription());
+    }
+
+    public int getVersion() {
+        return buffer.getInt(payload() + VERSION);
+    }
+
+    public Timestamp getCreatedAt() {
+        return decodeTimestamp(buffer.getLong(payload() + CREATED_AT));
+    }
+
+    public Timestamp getUpdatedAt() {
+        return decodeTimestamp(buffer.getLong(payload() + UPDATED_AT));
+    }
+
+    public String getName() {
+        return stringAt(payload() + NAME);
+    }
+
+    public String getDescription() {
+        return stringAt(skipString(payload() + NAME));
+    }
+
+    /**
+     * @return a model object with the record's fields; its attributes list is not filled in.
+     */
+    public ObjectTypes toModel() {
+        ObjectTypes objectType = new ObjectTypes();
+        objectType.setId(getId());
+        objectType.setName(getName());
+        objectType.setDescription(getDescription());
+        objectType.setVersion(getVersion());
+        objectType.setCreatedAt(getCreatedAt());
+        objectType.setUpdatedAt(getUpdatedAt());
+        return objectType;
+    }
+}
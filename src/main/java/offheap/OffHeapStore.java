@@ -0,0 +1,436 @@
+package offheap;
+
+import model.Attributes;
+import model.ObjectTypes;
+import model.RelationshipDependencies;
+import model.Relationships;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Optional off-heap storage for ontology records, so that a very large ontology is a few buffers
+ * and index arrays to the garbage collector instead of millions of small objects. Records live in
+ * a direct buffer or a memory-mapped file and are read through reusable {@link Record} flyweights;
+ * model objects are only created when a caller asks for one with {@code toModel()}.
+ * <p>
+ * The store is an append-only log. Putting a record appends its new version and points the id at
+ * it, deleting appends a tombstone; nothing already written is ever changed, which is what keeps
+ * flyweights valid without locking. The space of replaced and deleted records is reclaimed by
+ * compaction, which copies the live records into a fresh buffer. It runs automatically once the
+ * dead bytes reach {@value #COMPACTION_MIN_DEAD_BYTES} and exceed the live ones, or on
+ * {@link #compact()}. A file-backed store replays its log on {@link #open(Path, int)}, so it
+ * survives restarts; {@link #force()} makes the appended records durable.
+ * <p>
+ * Offsets are ints, so a store holds up to 2 GB. All methods are thread-safe; writes are
+ * serialised and lookups take a read lock only for the index.
+ */
+public final class OffHeapStore implements Closeable {
+
+    private static final Logger LOGGER = Logger.getLogger(OffHeapStore.class.getName());
+
+    static final long COMPACTION_MIN_DEAD_BYTES = 1 << 20;
+
+    private static final int MAGIC = 0x4F4E5431;
+    private static final int MAGIC_OFFSET = 0;
+    private static final int END_OFFSET = 4;
+    private static final int FIRST_RECORD = 16;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private final Path path;
+    private final int initialCapacity;
+    private final OffsetIndex[] indexes = new OffsetIndex[RecordKind.values().length];
+    private final RecordEncoder encoder = new RecordEncoder();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private int end = FIRST_RECORD;
+    private long liveBytes;
+    private long deadBytes;
+    private int compactions;
+
+    private OffHeapStore(Path path, int initialCapacity) {
+        this.path = path;
+        this.initialCapacity = Math.max(FIRST_RECORD * 64, initialCapacity);
+        for (int i = 0; i < indexes.length; i++) {
+            indexes[i] = new OffsetIndex(1024);
+        }
+    }
+
+    /**
+     * Creates an empty store in direct memory, gone when the store is no longer referenced.
+     */
+    public static OffHeapStore allocate(int initialCapacity) {
+        OffHeapStore store = new OffHeapStore(null, initialCapacity);
+        store.buffer = ByteBuffer.allocateDirect(store.initialCapacity);
+        store.writeHeader(store.buffer);
+        return store;
+    }
+
+    /**
+     * Opens the store in the file, creating it if it does not exist and replaying its records if it does.
+     */
+    public static OffHeapStore open(Path path, int initialCapacity) throws IOException {
+        OffHeapStore store = new OffHeapStore(path, initialCapacity);
+        store.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        long size = store.channel.size();
+        store.buffer = store.channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, store.initialCapacity));
+        if (size == 0) {
+            store.writeHeader(store.buffer);
+        } else {
+            store.replay();
+        }
+        return store;
+    }
+
+    public void put(ObjectTypes objectType) {
+        lock.writeLock().lock();
+        try {
+            ObjectTypeRecord.encode(encoder, objectType);
+            append(RecordKind.OBJECT_TYPE, objectType.getId(), encoder.finish());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param objectTypeId the owning object type, which the model class does not carry reliably.
+     */
+    public void put(Attributes attribute, int objectTypeId) {
+        lock.writeLock().lock();
+        try {
+            AttributeRecord.encode(encoder, attribute, objectTypeId);
+            append(RecordKind.ATTRIBUTE, attribute.getId(), encoder.finish());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(Relationships relationship) {
+        lock.writeLock().lock();
+        try {
+            RelationshipRecord.encode(encoder, relationship);
+            append(RecordKind.RELATIONSHIP, relationship.getId(), encoder.finish());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void put(RelationshipDependencies dependency, int relationshipId) {
+        lock.writeLock().lock();
+        try {
+            DependencyRecord.encode(encoder, dependency, relationshipId);
+            append(RecordKind.RELATIONSHIP_DEPENDENCY, dependency.getId(), encoder.finish());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @return true if there was a record to delete.
+     */
+    public boolean delete(RecordKind kind, int id) {
+        lock.writeLock().lock();
+        try {
+            if (indexes[kind.ordinal()].get(id) < 0) {
+                return false;
+            }
+            append(kind, id, encoder.start(kind, id, Record.TOMBSTONE).finish());
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Points the flyweight at the current version of the record with the id.
+     *
+     * @return false, leaving the flyweight unchanged, if there is no such record.
+     */
+    public boolean get(int id, Record flyweight) {
+        lock.readLock().lock();
+        try {
+            int offset = indexes[flyweight.kind().ordinal()].get(id);
+            if (offset < 0) {
+                return false;
+            }
+            flyweight.wrap(buffer, offset);
+            return true;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Points the flyweight at every record of its kind in turn, in no particular order. The
+     * records are those present when the call started; the action may modify the store.
+     */
+    public <R extends Record> void forEach(R flyweight, Consumer<? super R> action) {
+        ByteBuffer current;
+        int[] offsets;
+        lock.readLock().lock();
+        try {
+            current = buffer;
+            offsets = indexes[flyweight.kind().ordinal()].offsets();
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int offset : offsets) {
+            flyweight.wrap(current, offset);
+            action.accept(flyweight);
+        }
+    }
+
+    public int size(RecordKind kind) {
+        lock.readLock().lock();
+        try {
+            return indexes[kind.ordinal()].size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the bytes of the current version of every record.
+     */
+    public long getLiveBytes() {
+        lock.readLock().lock();
+        try {
+            return liveBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the bytes of replaced records and tombstones that compaction would reclaim.
+     */
+    public long getDeadBytes() {
+        lock.readLock().lock();
+        try {
+            return deadBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the size of the buffer, which includes room for appending.
+     */
+    public int getCapacity() {
+        lock.readLock().lock();
+        try {
+            return buffer.capacity();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getCompactions() {
+        lock.readLock().lock();
+        try {
+            return compactions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Copies the live records into a fresh buffer, or file, and drops everything else.
+     * Flyweights positioned before keep reading the old copy.
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            compactLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Writes the appended records of a file-backed store to the storage device.
+     */
+    public void force() {
+        lock.writeLock().lock();
+        try {
+            if (buffer instanceof java.nio.MappedByteBuffer) {
+                ((java.nio.MappedByteBuffer) buffer).force();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Closes the file of a file-backed store. The mapping, and flyweights reading it, stay valid
+     * until they are garbage collected; the store itself must not be used any more.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (channel != null) {
+                force();
+                channel.close();
+                channel = null;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void append(RecordKind kind, int id, ByteBuffer record) {
+        int length = record.remaining();
+        ensureCapacity(length);
+        ByteBuffer target = buffer.duplicate();
+        target.position(end);
+        target.put(record);
+        int offset = end;
+        end += length;
+        buffer.putInt(END_OFFSET, end);
+        index(kind, id, offset, length, (record.get(Record.FLAGS) & Record.TOMBSTONE) != 0);
+        if (deadBytes >= COMPACTION_MIN_DEAD_BYTES && deadBytes > liveBytes) {
+            compactLocked();
+        }
+    }
+
+    /**
+     * Updates the index and the live and dead byte counts for a record written at the offset.
+     */
+    private void index(RecordKind kind, int id, int offset, int length, boolean tombstone) {
+        OffsetIndex index = indexes[kind.ordinal()];
+        int previous = tombstone ? index.remove(id) : index.put(id, offset);
+        if (previous >= 0) {
+            int previousLength = buffer.getInt(previous + Record.LENGTH);
+            liveBytes -= previousLength;
+            deadBytes += previousLength;
+        }
+        if (tombstone) {
+            deadBytes += length;
+        } else {
+            liveBytes += length;
+        }
+    }
+
+    private void ensureCapacity(int length) {
+        if ((long) end + length <= buffer.capacity()) {
+            return;
+        }
+        long required = (long) end + length;
+        if (required > MAX_CAPACITY) {
+            throw new IllegalStateException("Off-heap store is full at " + end + " bytes");
+        }
+        int capacity = (int) Math.min(MAX_CAPACITY, Math.max(required, (long) buffer.capacity() * 2));
+        ByteBuffer grown;
+        if (channel != null) {
+            try {
+                grown = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        } else {
+            grown = ByteBuffer.allocateDirect(capacity);
+            ByteBuffer source = buffer.duplicate();
+            source.position(0).limit(end);
+            grown.put(source);
+        }
+        buffer = grown;
+    }
+
+    private void compactLocked() {
+        long started = System.nanoTime();
+        long live = liveBytes;
+        int capacity = (int) Math.min(MAX_CAPACITY, Math.max(initialCapacity, FIRST_RECORD + live + live / 2));
+        Path target = path == null ? null : path.resolveSibling(path.getFileName() + ".compacting");
+        FileChannel targetChannel = null;
+        try {
+            ByteBuffer compacted;
+            if (target != null) {
+                targetChannel = FileChannel.open(target, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                        StandardOpenOption.READ, StandardOpenOption.WRITE);
+                compacted = targetChannel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            } else {
+                compacted = ByteBuffer.allocateDirect(capacity);
+            }
+            writeHeader(compacted);
+            compacted.position(FIRST_RECORD);
+            ByteBuffer source = buffer.duplicate();
+            OffsetIndex[] compactedIndexes = new OffsetIndex[indexes.length];
+            for (int kind = 0; kind < indexes.length; kind++) {
+                compactedIndexes[kind] = new OffsetIndex(indexes[kind].size());
+                for (int offset : indexes[kind].offsets()) {
+                    int length = buffer.getInt(offset + Record.LENGTH);
+                    source.limit(offset + length).position(offset);
+                    compactedIndexes[kind].put(buffer.getInt(offset + Record.ID), compacted.position());
+                    compacted.put(source);
+                }
+            }
+            int compactedEnd = compacted.position();
+            compacted.putInt(END_OFFSET, compactedEnd);
+            if (targetChannel != null) {
+                ((java.nio.MappedByteBuffer) compacted).force();
+                Files.move(target, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                channel.close();
+                channel = targetChannel;
+                targetChannel = null;
+            }
+            System.arraycopy(compactedIndexes, 0, indexes, 0, indexes.length);
+            LOGGER.log(Level.FINE, "Compacted off-heap store from " + end + " to " + compactedEnd + " bytes in "
+                    + (System.nanoTime() - started) / 1000000 + " ms");
+            buffer = compacted;
+            end = compactedEnd;
+            deadBytes = 0;
+            compactions++;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            if (targetChannel != null) {
+                try {
+                    targetChannel.close();
+                    Files.deleteIfExists(target);
+                } catch (IOException e) {
+                    LOGGER.log(Level.WARNING, "Error removing " + target, e);
+                }
+            }
+        }
+    }
+
+    private void writeHeader(ByteBuffer target) {
+        target.putInt(MAGIC_OFFSET, MAGIC);
+        target.putInt(END_OFFSET, FIRST_RECORD);
+    }
+
+    private void replay() throws IOException {
+        if (buffer.getInt(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException(path + " is not an off-heap ontology store");
+        }
+        int recorded = buffer.getInt(END_OFFSET);
+        int position = FIRST_RECORD;
+        while (position < recorded) {
+            int length = buffer.getInt(position + Record.LENGTH);
+            int kind = buffer.get(position + Record.KIND);
+            if (length < Record.HEADER || position + length > recorded || kind < 0 || kind >= indexes.length) {
+                // An append cut short by a crash; everything before it is intact.
+                LOGGER.log(Level.WARNING, "Truncating " + path + " at corrupt record at offset " + position);
+                break;
+            }
+            index(RecordKind.values()[kind], buffer.getInt(position + Record.ID), position, length,
+                    (buffer.get(position + Record.FLAGS) & Record.TOMBSTONE) != 0);
+            position += length;
+        }
+        end = position;
+        buffer.putInt(END_OFFSET, end);
+    }
+}
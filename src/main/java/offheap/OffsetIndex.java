@@ -0,0 +1,127 @@
+package offheap;
+
+import java.util.Arrays;
+
+/**
+ * Maps record ids to their offsets in the store with open addressing over two int arrays, so the
+ * index of a million records is two arrays rather than a million map entries for the collector
+ * to trace. Offsets are never negative; -1 marks a free slot. Not thread-safe.
+ */
+final class OffsetIndex {
+
+    private static final int FREE = -1;
+
+    private int[] keys;
+    private int[] offsets;
+    private int size;
+
+    OffsetIndex(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        keys = new int[capacity];
+        offsets = new int[capacity];
+        Arrays.fill(offsets, FREE);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the offset of the id, or -1 if it is not indexed.
+     */
+    int get(int id) {
+        int mask = keys.length - 1;
+        for (int slot = mix(id) & mask; ; slot = (slot + 1) & mask) {
+            if (offsets[slot] == FREE) {
+                return FREE;
+            }
+            if (keys[slot] == id) {
+                return offsets[slot];
+            }
+        }
+    }
+
+    /**
+     * @return the offset the id had before, or -1 if it was not indexed.
+     */
+    int put(int id, int offset) {
+        if ((size + 1) * 2 > keys.length) {
+            resize(keys.length * 2);
+        }
+        int mask = keys.length - 1;
+        for (int slot = mix(id) & mask; ; slot = (slot + 1) & mask) {
+            if (offsets[slot] == FREE) {
+                keys[slot] = id;
+                offsets[slot] = offset;
+                size++;
+                return FREE;
+            }
+            if (keys[slot] == id) {
+                int previous = offsets[slot];
+                offsets[slot] = offset;
+                return previous;
+            }
+        }
+    }
+
+    /**
+     * @return the offset the id had, or -1 if it was not indexed.
+     */
+    int remove(int id) {
+        int mask = keys.length - 1;
+        int slot = mix(id) & mask;
+        while (offsets[slot] != FREE && keys[slot] != id) {
+            slot = (slot + 1) & mask;
+        }
+        int previous = offsets[slot];
+        if (previous == FREE) {
+            return FREE;
+        }
+        // Shift later entries of the probe sequence back so lookups never stop at the hole.
+        int hole = slot;
+        for (int next = (hole + 1) & mask; offsets[next] != FREE; next = (next + 1) & mask) {
+            int home = mix(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                keys[hole] = keys[next];
+                offsets[hole] = offsets[next];
+                hole = next;
+            }
+        }
+        offsets[hole] = FREE;
+        size--;
+        return previous;
+    }
+
+    /**
+     * @return the offsets of all indexed records, in no particular order.
+     */
+    int[] offsets() {
+        int[] all = new int[size];
+        int count = 0;
+        for (int offset : offsets) {
+            if (offset != FREE) {
+                all[count++] = offset;
+            }
+        }
+        return all;
+    }
+
+    private void resize(int capacity) {
+        int[] oldKeys = keys;
+        int[] oldOffsets = offsets;
+        keys = new int[capacity];
+        offsets = new int[capacity];
+        Arrays.fill(offsets, FREE);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldOffsets[i] != FREE) {
+                put(oldKeys[i], oldOffsets[i]);
+            }
+        }
+    }
+
+    private static int mix(int id) {
+        int hash = id * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,88 @@
+package offheap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+
+/**
+ * A flyweight over one record of an {@link OffHeapStore}: it holds no data of its own, only the
+ * buffer and offset it currently points at, and reads each field from there when asked. One
+ * instance can be repositioned over any number of records, so reading needs no allocation apart
+ * from the strings a caller actually asks for.
+ * <p>
+ * Every record starts with its total length, kind byte, flags byte and id; the payload layout is
+ * up to the subclass. Fixed-size fields come first so they are read at constant offsets; strings
+ * follow as a byte length (-1 for null) and UTF-8 bytes. Records are never modified once written,
+ * so a positioned flyweight stays valid and consistent even if the record is replaced, deleted or
+ * moved by compaction afterwards; it then shows the version it was positioned on.
+ */
+public abstract class Record {
+
+    static final int LENGTH = 0;
+    static final int KIND = 4;
+    static final int FLAGS = 5;
+    static final int ID = 6;
+    static final int HEADER = 10;
+
+    static final byte TOMBSTONE = 1;
+    static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    ByteBuffer buffer;
+    int offset;
+
+    /**
+     * @return the kind of record this flyweight reads.
+     */
+    abstract RecordKind kind();
+
+    final void wrap(ByteBuffer buffer, int offset) {
+        this.buffer = buffer;
+        this.offset = offset;
+    }
+
+    public int getId() {
+        return buffer.getInt(offset + ID);
+    }
+
+    final int payload() {
+        return offset + HEADER;
+    }
+
+    /**
+     * @return the string at the absolute position.
+     */
+    final String stringAt(int position) {
+        int length = buffer.getInt(position);
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            bytes[i] = buffer.get(position + 4 + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the position after the string at the absolute position.
+     */
+    final int skipString(int position) {
+        return position + 4 + Math.max(0, buffer.getInt(position));
+    }
+
+    static Timestamp decodeTimestamp(long micros) {
+        if (micros == NO_TIMESTAMP) {
+            return null;
+        }
+        Timestamp timestamp = new Timestamp(Math.floorDiv(micros, 1000000) * 1000);
+        timestamp.setNanos((int) Math.floorMod(micros, 1000000) * 1000);
+        return timestamp;
+    }
+
+    static long encodeTimestamp(Timestamp timestamp) {
+        if (timestamp == null) {
+            return NO_TIMESTAMP;
+        }
+        return Math.floorDiv(timestamp.getTime(), 1000) * 1000000 + timestamp.getNanos() / 1000;
+    }
+}
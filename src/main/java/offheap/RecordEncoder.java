@@ -0,0 +1,73 @@
+package offheap;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serialises one record into a reusable heap buffer before the store appends it, in the layout
+ * described by {@link Record}.
+ */
+final class RecordEncoder {
+
+    private ByteBuffer scratch = ByteBuffer.allocate(1024);
+
+    RecordEncoder start(RecordKind kind, int id, byte flags) {
+        scratch.clear();
+        scratch.putInt(0);
+        scratch.put((byte) kind.ordinal());
+        scratch.put(flags);
+        scratch.putInt(id);
+        return this;
+    }
+
+    RecordEncoder putInt(int value) {
+        ensure(4);
+        scratch.putInt(value);
+        return this;
+    }
+
+    RecordEncoder putLong(long value) {
+        ensure(8);
+        scratch.putLong(value);
+        return this;
+    }
+
+    RecordEncoder putByte(byte value) {
+        ensure(1);
+        scratch.put(value);
+        return this;
+    }
+
+    RecordEncoder putEnum(Enum<?> value) {
+        return putByte(value == null ? -1 : (byte) value.ordinal());
+    }
+
+    RecordEncoder putString(String value) {
+        if (value == null) {
+            return putInt(-1);
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        ensure(4 + bytes.length);
+        scratch.putInt(bytes.length);
+        scratch.put(bytes);
+        return this;
+    }
+
+    /**
+     * Fills in the length and returns the encoded record, ready to be copied.
+     */
+    ByteBuffer finish() {
+        scratch.putInt(Record.LENGTH, scratch.position());
+        scratch.flip();
+        return scratch;
+    }
+
+    private void ensure(int bytes) {
+        if (scratch.remaining() < bytes) {
+            ByteBuffer larger = ByteBuffer.allocate(Math.max(scratch.capacity() * 2, scratch.position() + bytes));
+            scratch.flip();
+            larger.put(scratch);
+            scratch = larger;
+        }
+    }
+}
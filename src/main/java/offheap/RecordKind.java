@@ -0,0 +1,9 @@
+package offheap;
+
+/**
+ * The kinds of record an {@link OffHeapStore} holds, each with its own id space. The ordinal is
+ * the kind byte written into every record, so constants may only be added at the end.
+ */
+public enum RecordKind {
+    OBJECT_TYPE, ATTRIBUTE, RELATIONSHIP, RELATIONSHIP_DEPENDENCY
+}
@@ -0,0 +1,80 @@
+package offheap;
+
+import model.ObjectTypes;
+import model.Relationships;
+
+/**
+ * Flyweight over a relationship record. The object type it filters by is kept as an id, 0 if
+ * there is none.
+ */
+public final class RelationshipRecord extends Record {
+
+    private static final Relationships.RelationshipTypes[] TYPES = Relationships.RelationshipTypes.values();
+
+    private static final int SORT_ORDER = 0;
+    private static final int FILTER_BY_OBJECT_TYPE_ID = 4;
+    private static final int TYPE = 8;
+    private static final int FILTER_BY_TYPE = 9;
+    private static final int NAME = 10;
+
+    @Override
+    RecordKind kind() {
+        return RecordKind.RELATIONSHIP;
+    }
+
+    static void encode(RecordEncoder encoder, Relationships relationship) {
+        encoder.start(RecordKind.RELATIONSHIP, relationship.getId(), (byte) 0)
+                .putInt(relationship.getSortOrder())
+                .putInt(relationship.getFilterByObjectType() == null ? 0 : relationship.getFilterByObjectType().getId())
+                .putEnum(relationship.getRelationshipType())
+                .putEnum(relationship.getFilterByType())
+                .putString(relationship.getRelationshipName())
+                .putString(relationship.getRelationshipDescription())
+                .putString(relationship.getAttributesJson());
+    }
+
+    public int getSortOrder() {
+        return buffer.getInt(payload() + SORT_ORDER);
+    }
+
+    public int getFilterByObjectTypeId() {
+        return buffer.getInt(payload() + FILTER_BY_OBJECT_TYPE_ID);
+    }
+
+    public Relationships.RelationshipTypes getRelationshipType() {
+        return type(buffer.get(payload() + TYPE));
+    }
+
+    public Relationships.RelationshipTypes getFilterByType() {
+        return type(buffer.get(payload() + FILTER_BY_TYPE));
+    }
+
+    public String getRelationshipName() {
+        return stringAt(payload() + NAME);
+    }
+
+    public String getRelationshipDescription() {
+        return stringAt(skipString(payload() + NAME));
+    }
+
+    public String getAttributesJson() {
+        return stringAt(skipString(skipString(payload() + NAME)));
+    }
+
+    /**
+     * @return a model object with the record's fields; the filter object type, if any, carries only its id.
+     */
+    public Relationships toModel() {
+        ObjectTypes filterByObjectType = null;
+        if (getFilterByObjectTypeId() != 0) {
+            filterByObjectType = new ObjectTypes();
+            filterByObjectType.setId(getFilterByObjectTypeId());
+        }
+        return new Relationships(getId(), getRelationshipName(), getRelationshipType(), getRelationshipDescription(),
+                getAttributesJson(), getSortOrder(), getFilterByType(), filterByObjectType);
+    }
+
+    private static Relationships.RelationshipTypes type(byte ordinal) {
+        return ordinal < 0 ? null : TYPES[ordinal];
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Package for offheap.
+ */
+package offheap;
\ No newline at end of file
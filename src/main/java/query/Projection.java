@@ -0,0 +1,141 @@
+package query;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A requested field selection such as {@code objectType{id,name,attributes{name,dataType}}}.
+ * Each node is a field name; a node with sub-fields selects a nested entity. Fields may be
+ * separated by commas or whitespace, as in GraphQL.
+ */
+public final class Projection {
+
+    private static final int MAX_DEPTH = 8;
+    private static final int MAX_LENGTH = 4096;
+
+    private final String name;
+    private final List<Projection> fields;
+
+    private Projection(String name, List<Projection> fields) {
+        this.name = name;
+        this.fields = fields;
+    }
+
+    /**
+     * Parses a projection.
+     *
+     * @param text the projection, e.g. {@code facility{id,name}}.
+     * @return the root node.
+     * @throws IllegalArgumentException if the text is not a well-formed projection.
+     */
+    public static Projection parse(String text) {
+        if (text == null || text.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException("A projection of at most " + MAX_LENGTH + " characters is required");
+        }
+        Parser parser = new Parser(text);
+        Projection root = parser.selection(0);
+        parser.skipSeparators();
+        if (parser.position < text.length()) {
+            throw parser.error("Unexpected '" + text.charAt(parser.position) + "'");
+        }
+        return root;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the selected sub-fields in request order; empty for a scalar field.
+     */
+    public List<Projection> getFields() {
+        return fields;
+    }
+
+    public boolean isLeaf() {
+        return fields.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        if (isLeaf()) {
+            return name;
+        }
+        StringBuilder builder = new StringBuilder(name).append('{');
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(fields.get(i));
+        }
+        return builder.append('}').toString();
+    }
+
+    private static final class Parser {
+
+        private final String text;
+        private int position;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Projection selection(int depth) {
+            if (depth > MAX_DEPTH) {
+                throw error("Projection is nested deeper than " + MAX_DEPTH + " levels");
+            }
+            skipSeparators();
+            String name = identifier();
+            skipSeparators();
+            if (position >= text.length() || text.charAt(position) != '{') {
+                return new Projection(name, Collections.emptyList());
+            }
+            position++;
+            List<Projection> fields = new ArrayList<>();
+            while (true) {
+                skipSeparators();
+                if (position >= text.length()) {
+                    throw error("Missing '}' after the fields of " + name);
+                }
+                if (text.charAt(position) == '}') {
+                    position++;
+                    break;
+                }
+                Projection field = selection(depth + 1);
+                for (Projection existing : fields) {
+                    if (existing.name.equals(field.name)) {
+                        throw error("Field " + field.name + " is selected twice in " + name);
+                    }
+                }
+                fields.add(field);
+            }
+            if (fields.isEmpty()) {
+                throw error("No fields selected in " + name);
+            }
+            return new Projection(name, Collections.unmodifiableList(fields));
+        }
+
+        private String identifier() {
+            int start = position;
+            while (position < text.length()
+                    && (Character.isLetterOrDigit(text.charAt(position)) || text.charAt(position) == '_')) {
+                position++;
+            }
+            if (start == position) {
+                throw error(position < text.length() ? "Unexpected '" + text.charAt(position) + "'" : "Missing field name");
+            }
+            return text.substring(start, position);
+        }
+
+        void skipSeparators() {
+            while (position < text.length() && (text.charAt(position) == ',' || Character.isWhitespace(text.charAt(position)))) {
+                position++;
+            }
+        }
+
+        IllegalArgumentException error(String message) {
+            return new IllegalArgumentException(message + " at position " + position);
+        }
+    }
+}
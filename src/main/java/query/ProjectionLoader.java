@@ -0,0 +1,218 @@
+package query;
+
+import metrics.Metrics;
+import metrics.OperationMetrics;
+import metrics.QueryProfiler;
+import query.ProjectionResult.Level;
+import query.ProjectionResult.Row;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Compiles a {@link Projection} into SQL that reads only the selected columns, and loads it.
+ * The root entity is one query; every nested list is one more query for all parents at once
+ * ({@code WHERE fk = ANY(?)}), so a projection costs one round trip per level no matter how
+ * many rows it returns.
+ */
+public class ProjectionLoader {
+
+    private static final OperationMetrics LOAD = Metrics.operation("ProjectionLoader.load");
+
+    /**
+     * Loads the selected fields of the root entity and of its nested lists.
+     *
+     * @param projection the selection, e.g. {@code objectType{id,name,attributes{name}}}.
+     * @param ids        the root rows to load, or null for all of them.
+     * @param limit      the maximum number of root rows, or 0 for no limit.
+     * @return the loaded rows, or null if the database could not be read.
+     * @throws IllegalArgumentException if the projection names an unknown entity or field.
+     */
+    public ProjectionResult load(Projection projection, List<Integer> ids, int limit) {
+        Level root = compile(projection);
+        long started = System.nanoTime();
+        int rowCount = 0;
+        Connection connection = Metrics.connect(LOAD);
+        try {
+            root.rows = loadRoot(connection, root, ids, limit);
+            rowCount = root.rows.size() + loadChildren(connection, root, root.rows);
+            return new ProjectionResult(root);
+        } catch (SQLException e) {
+            LOAD.error();
+            Logger.getLogger(getClass().getName()).log(java.util.logging.Level.SEVERE, "Error loading projection " + projection, e);
+            return null;
+        } finally {
+            Metrics.disconnect(connection);
+            LOAD.record(started, rowCount);
+        }
+    }
+
+    private static Level compile(Projection projection) {
+        if (projection.isLeaf()) {
+            throw new IllegalArgumentException("Select at least one field of " + projection.getName());
+        }
+        return compile(projection, ProjectionSchema.root(projection.getName()), null);
+    }
+
+    private static Level compile(Projection projection, ProjectionSchema.Table table, ProjectionSchema.Child link) {
+        Level level = new Level(table, link);
+        for (Projection field : projection.getFields()) {
+            ProjectionSchema.Column column = table.columns.get(field.getName());
+            ProjectionSchema.Child child = table.children.get(field.getName());
+            if (column != null && field.isLeaf()) {
+                level.columns.add(column);
+                level.selections.add(column);
+            } else if (child != null && !field.isLeaf()) {
+                Level childLevel = compile(field, child.table, child);
+                level.children.add(childLevel);
+                level.selections.add(childLevel);
+            } else if (column != null) {
+                throw new IllegalArgumentException(field.getName() + " of " + projection.getName() + " has no fields to select");
+            } else if (child != null) {
+                throw new IllegalArgumentException("Select the fields of " + field.getName() + ", e.g. " + field.getName() + "{id}");
+            } else {
+                Set<String> known = new LinkedHashSet<>(table.columns.keySet());
+                known.addAll(table.children.keySet());
+                throw new IllegalArgumentException("Unknown field " + field.getName() + " of " + projection.getName() + ", expected one of " + known);
+            }
+        }
+        return level;
+    }
+
+    private static List<Row> loadRoot(Connection connection, Level root, List<Integer> ids, int limit) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT ");
+        appendColumns(sql, root, null);
+        sql.append(" FROM ").append(root.table.name);
+        if (ids != null) {
+            sql.append(" WHERE ").append(root.table.key).append(" = ANY(?)");
+        }
+        sql.append(" ORDER BY ").append(root.table.key);
+        if (limit > 0) {
+            sql.append(" LIMIT ?");
+        }
+        List<Object> parameters = new ArrayList<>();
+        if (ids != null) {
+            parameters.add(ids.toArray(new Integer[0]));
+        }
+        if (limit > 0) {
+            parameters.add(limit);
+        }
+        List<Row> rows = new ArrayList<>();
+        query(connection, sql.toString(), parameters, root, false, rows::add);
+        return rows;
+    }
+
+    /**
+     * Loads every child level of the given rows, one query per level.
+     *
+     * @return the number of child rows loaded.
+     */
+    private static int loadChildren(Connection connection, Level level, List<Row> parentRows) throws SQLException {
+        if (level.children.isEmpty() || parentRows.isEmpty()) {
+            return 0;
+        }
+        Integer[] parentKeys = new Integer[parentRows.size()];
+        for (int i = 0; i < parentKeys.length; i++) {
+            parentKeys[i] = parentRows.get(i).key;
+        }
+        int loaded = 0;
+        for (Level child : level.children) {
+            StringBuilder sql = new StringBuilder("SELECT ");
+            appendColumns(sql, child, child.link.foreignKey);
+            sql.append(" FROM ").append(child.table.name)
+                    .append(" WHERE ").append(child.link.foreignKey).append(" = ANY(?)")
+                    .append(" ORDER BY ").append(child.link.foreignKey).append(", ").append(child.table.key);
+            List<Row> childRows = new ArrayList<>();
+            List<Object> parameters = new ArrayList<>();
+            parameters.add(parentKeys);
+            query(connection, sql.toString(), parameters, child, true, childRows::add);
+            loaded += childRows.size() + loadChildren(connection, child, childRows);
+        }
+        return loaded;
+    }
+
+    private static void query(Connection connection, String sql, List<Object> parameters, Level level, boolean grouped, Consumer<Row> consumer) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (int i = 0; i < parameters.size(); i++) {
+                Object parameter = parameters.get(i);
+                if (parameter instanceof Integer[]) {
+                    statement.setArray(i + 1, connection.createArrayOf("integer", (Integer[]) parameter));
+                } else {
+                    statement.setObject(i + 1, parameter);
+                }
+            }
+            int keyColumn = level.needsKey() ? level.keyColumn() : -1;
+            boolean readsKey = level.needsKey() && keyColumn < 0;
+            long executed = System.nanoTime();
+            try (ResultSet resultSet = statement.executeQuery()) {
+                QueryProfiler.getDefault().observe(sql, executed, parameters.toArray());
+                while (resultSet.next()) {
+                    int index = 1;
+                    int parent = grouped ? resultSet.getInt(index++) : 0;
+                    int key = readsKey ? resultSet.getInt(index++) : 0;
+                    Object[] values = new Object[level.columns.size()];
+                    for (int i = 0; i < values.length; i++) {
+                        values[i] = read(resultSet, index++, level.columns.get(i).type);
+                    }
+                    if (keyColumn >= 0) {
+                        key = (Integer) values[keyColumn];
+                    }
+                    Row row = new Row(key, values);
+                    if (grouped) {
+                        level.rowsByParent.computeIfAbsent(parent, k -> new ArrayList<>()).add(row);
+                    }
+                    consumer.accept(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends the foreign key (for child levels), the row key if children hang off this level
+     * and it was not selected anyway, and the selected columns.
+     */
+    private static void appendColumns(StringBuilder sql, Level level, String foreignKey) {
+        List<String> columns = new ArrayList<>();
+        if (foreignKey != null) {
+            columns.add(foreignKey);
+        }
+        if (level.needsKey() && level.keyColumn() < 0) {
+            columns.add(level.table.key);
+        }
+        for (ProjectionSchema.Column column : level.columns) {
+            columns.add(column.column);
+        }
+        sql.append(String.join(", ", columns));
+    }
+
+    private static Object read(ResultSet resultSet, int index, ProjectionSchema.Type type) throws SQLException {
+        Object value;
+        switch (type) {
+            case INTEGER:
+                value = resultSet.getInt(index);
+                break;
+            case BOOLEAN:
+                value = resultSet.getBoolean(index);
+                break;
+            case DECIMAL:
+                return resultSet.getBigDecimal(index);
+            case TIMESTAMP:
+                return resultSet.getTimestamp(index);
+            case TEXT_ARRAY:
+                Array array = resultSet.getArray(index);
+                return array == null ? null : (String[]) array.getArray();
+            default:
+                return resultSet.getString(index);
+        }
+        return resultSet.wasNull() ? null : value;
+    }
+}
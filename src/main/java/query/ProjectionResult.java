@@ -0,0 +1,126 @@
+package query;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The rows loaded for a {@link Projection}, holding only the selected columns. It is written out
+ * after the database connection has been released.
+ */
+public final class ProjectionResult {
+
+    /**
+     * One entity level of a compiled projection and the rows loaded for it.
+     */
+    static final class Level {
+
+        final ProjectionSchema.Table table;
+        final ProjectionSchema.Child link;
+        // Columns and child levels, in the order the client listed them
+        final List<Object> selections = new ArrayList<>();
+        final List<ProjectionSchema.Column> columns = new ArrayList<>();
+        final List<Level> children = new ArrayList<>();
+
+        List<Row> rows = Collections.emptyList();
+        Map<Integer, List<Row>> rowsByParent = new HashMap<>();
+
+        Level(ProjectionSchema.Table table, ProjectionSchema.Child link) {
+            this.table = table;
+            this.link = link;
+        }
+
+        /**
+         * @return true if the row key has to be read to attach child rows.
+         */
+        boolean needsKey() {
+            return !children.isEmpty();
+        }
+
+        /**
+         * @return the position of the row key among the selected columns, or -1 if it is not selected.
+         */
+        int keyColumn() {
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.get(i).column.equals(table.key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    static final class Row {
+
+        final int key;
+        final Object[] values;
+
+        Row(int key, Object[] values) {
+            this.key = key;
+            this.values = values;
+        }
+    }
+
+    private final Level root;
+
+    ProjectionResult(Level root) {
+        this.root = root;
+    }
+
+    public int getRowCount() {
+        return root.rows.size();
+    }
+
+    /**
+     * Writes the rows as a JSON array of objects with the selected fields, nested lists included.
+     */
+    public void write(JsonWriter writer) throws IOException {
+        writeRows(writer, root, root.rows);
+    }
+
+    private static void writeRows(JsonWriter writer, Level level, List<Row> rows) throws IOException {
+        writer.beginArray();
+        for (Row row : rows) {
+            writer.beginObject();
+            int column = 0;
+            for (Object selection : level.selections) {
+                if (selection instanceof Level) {
+                    Level child = (Level) selection;
+                    writer.name(child.link.field);
+                    writeRows(writer, child, child.rowsByParent.getOrDefault(row.key, Collections.emptyList()));
+                } else {
+                    writer.name(((ProjectionSchema.Column) selection).field);
+                    writeValue(writer, row.values[column++]);
+                }
+            }
+            writer.endObject();
+        }
+        writer.endArray();
+    }
+
+    private static void writeValue(JsonWriter writer, Object value) throws IOException {
+        if (value == null) {
+            writer.nullValue();
+        } else if (value instanceof Boolean) {
+            writer.value((Boolean) value);
+        } else if (value instanceof Number) {
+            writer.value((Number) value);
+        } else if (value instanceof Timestamp) {
+            writer.value(((Timestamp) value).toInstant().toString());
+        } else if (value instanceof String[]) {
+            writer.beginArray();
+            for (String item : (String[]) value) {
+                writer.value(item);
+            }
+            writer.endArray();
+        } else {
+            writer.value(value.toString());
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package query;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The entities a {@link Projection} can select from, and the column behind every field. Only
+ * fields listed here can be requested, so projections never reach arbitrary SQL.
+ */
+final class ProjectionSchema {
+
+    enum Type {
+        INTEGER, TEXT, BOOLEAN, DECIMAL, TIMESTAMP, TEXT_ARRAY
+    }
+
+    static final class Column {
+
+        final String field;
+        final String column;
+        final Type type;
+
+        Column(String field, String column, Type type) {
+            this.field = field;
+            this.column = column;
+            this.type = type;
+        }
+    }
+
+    /**
+     * A nested list of rows of another table that point at the parent through a foreign key.
+     */
+    static final class Child {
+
+        final String field;
+        final Table table;
+        final String foreignKey;
+
+        Child(String field, Table table, String foreignKey) {
+            this.field = field;
+            this.table = table;
+            this.foreignKey = foreignKey;
+        }
+    }
+
+    static final class Table {
+
+        final String name;
+        final String key = "id";
+        final Map<String, Column> columns = new LinkedHashMap<>();
+        final Map<String, Child> children = new LinkedHashMap<>();
+
+        Table(String name) {
+            this.name = name;
+        }
+
+        Table column(String field, String column, Type type) {
+            columns.put(field, new Column(field, column, type));
+            return this;
+        }
+
+        Table child(String field, Table table, String foreignKey) {
+            children.put(field, new Child(field, table, foreignKey));
+            return this;
+        }
+    }
+
+    static final Table ATTRIBUTES = new Table("attributes")
+            .column("id", "id", Type.INTEGER)
+            .column("objectTypeId", "fk_object_type_id", Type.INTEGER)
+            .column("name", "name", Type.TEXT)
+            .column("dataType", "data_type", Type.TEXT)
+            .column("required", "is_required", Type.BOOLEAN)
+            .column("defaultValue", "default_value", Type.TEXT)
+            .column("indexed", "is_indexed", Type.BOOLEAN)
+            .column("usageCount", "attribute_usage_count", Type.INTEGER)
+            .column("enumValues", "enum_values", Type.TEXT_ARRAY)
+            .column("version", "version", Type.INTEGER);
+
+    static final Table OBJECT_TYPES = new Table("object_types")
+            .column("id", "id", Type.INTEGER)
+            .column("name", "name", Type.TEXT)
+            .column("description", "description", Type.TEXT)
+            .column("version", "version", Type.INTEGER)
+            .column("createdAt", "created_at", Type.TIMESTAMP)
+            .column("updatedAt", "updated_at", Type.TIMESTAMP)
+            .child("attributes", ATTRIBUTES, "fk_object_type_id");
+
+    static final Table FACILITIES = new Table("facilities")
+            .column("id", "id", Type.INTEGER)
+            .column("name", "name", Type.TEXT)
+            .column("location", "location", Type.TEXT)
+            .column("sizeInSquareFootage", "size_in_square_footage", Type.DECIMAL)
+            .column("facilityType", "facility_type", Type.TEXT)
+            .column("operationalStatus", "operational_status", Type.TEXT);
+
+    private ProjectionSchema() {
+    }
+
+    /**
+     * Looks up the table a root projection names, in singular or plural form.
+     *
+     * @throws IllegalArgumentException for an unknown entity.
+     */
+    static Table root(String name) {
+        switch (name) {
+            case "objectType":
+            case "objectTypes":
+                return OBJECT_TYPES;
+            case "attribute":
+            case "attributes":
+                return ATTRIBUTES;
+            case "facility":
+            case "facilities":
+                return FACILITIES;
+            default:
+                throw new IllegalArgumentException("Unknown entity " + name + ", expected objectType, attribute or facility");
+        }
+    }
+}
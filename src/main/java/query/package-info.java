@@ -0,0 +1,4 @@
+/**
+ * Package for query.
+ */
+package query;
\ No newline at end of file
@@ -0,0 +1,525 @@
+package search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-process search over the names and descriptions of object types, attributes and relationships.
+ * <ul>
+ * <li>Prefix autocompletion walks a sorted map of normalised names, costing O(log n + k).</li>
+ * <li>Search matches every query word against the vocabulary of indexed words, either exactly, as a
+ * prefix or within a bounded edit distance. Typo candidates come from a trigram index over the
+ * vocabulary, which is far smaller than the documents, and are verified with a banded Levenshtein.</li>
+ * <li>Documents are found by intersecting the sorted posting lists of the matched words, driven by the
+ * rarest query word.</li>
+ * </ul>
+ * Removed documents are tombstoned and skipped; postings are compacted by {@link #compact()}.
+ */
+public class OntologySearchIndex {
+
+    private static final int MAX_CANDIDATES = 5_000;
+    private static final int MAX_PREFIX_EXPANSIONS = 64;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final List<Document> documents = new ArrayList<>();
+    private final Map<String, Integer> ordinals = new HashMap<>();
+    private final NavigableMap<String, Integer> names = new TreeMap<>();
+    private final NavigableMap<String, IntList> words = new TreeMap<>();
+    private final List<String> vocabulary = new ArrayList<>();
+    private final Map<Long, IntList> trigrams = new HashMap<>();
+    private int tombstones;
+
+    /**
+     * Adds or replaces a document.
+     *
+     * @param kind        the kind of entity.
+     * @param id          the entity id.
+     * @param parentId    the owning object type of an attribute, or 0.
+     * @param name        the name to match and complete.
+     * @param description optional description text, searched by whole words.
+     */
+    public void put(SearchResult.Kind kind, int id, int parentId, String name, String description) {
+        lock.writeLock().lock();
+        try {
+            putLocked(kind, id, parentId, name, description);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void putLocked(SearchResult.Kind kind, int id, int parentId, String name, String description) {
+        removeLocked(kind, id);
+        int ordinal = documents.size();
+        String normalised = normalise(name);
+        Document document = new Document(kind, id, parentId, name == null ? "" : name, normalised, description);
+        documents.add(document);
+        ordinals.put(key(kind, id), ordinal);
+        names.put(nameKey(normalised, ordinal), ordinal);
+        Set<String> tokens = new HashSet<>(tokensOf(normalised));
+        tokens.addAll(tokensOf(normalise(description)));
+        for (String token : tokens) {
+            IntList postings = words.get(token);
+            if (postings == null) {
+                postings = new IntList();
+                words.put(token, postings);
+                addToVocabulary(token);
+            }
+            postings.add(ordinal);
+        }
+    }
+
+    private void addToVocabulary(String token) {
+        int wordId = vocabulary.size();
+        vocabulary.add(token);
+        for (long trigram : trigramsOf(token)) {
+            trigrams.computeIfAbsent(trigram, t -> new IntList()).add(wordId);
+        }
+    }
+
+    public void remove(SearchResult.Kind kind, int id) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(kind, id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes the documents of one kind owned by a parent, e.g. the attributes of a deleted object type.
+     */
+    public void removeByParent(SearchResult.Kind kind, int parentId) {
+        lock.writeLock().lock();
+        try {
+            for (Document document : documents) {
+                if (!document.removed && document.kind == kind && document.parentId == parentId) {
+                    removeLocked(kind, document.id);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            clearLocked();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void clearLocked() {
+        documents.clear();
+        ordinals.clear();
+        names.clear();
+        words.clear();
+        vocabulary.clear();
+        trigrams.clear();
+        tombstones = 0;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size() - tombstones;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the removed documents still taking up space until the next {@link #compact()}.
+     */
+    public int getTombstones() {
+        lock.readLock().lock();
+        try {
+            return tombstones;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Completes a name prefix, e.g. for the object type dropdown of the 'Define Relationship Form'.
+     *
+     * @param prefix the typed prefix.
+     * @param kind   the kind of entity to complete, or null for all kinds.
+     * @param limit  the maximum number of results.
+     * @return matching documents in name order.
+     */
+    public List<SearchResult> autocomplete(String prefix, SearchResult.Kind kind, int limit) {
+        String normalised = normalise(prefix);
+        List<SearchResult> results = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, Integer> entry : names.tailMap(normalised, true).entrySet()) {
+                if (results.size() >= limit || !entry.getKey().startsWith(normalised)) {
+                    break;
+                }
+                Document document = documents.get(entry.getValue());
+                if (kind == null || document.kind == kind) {
+                    results.add(document.toResult(document.normalised.length() == normalised.length() ? 0 : 1));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return results;
+    }
+
+    /**
+     * Searches names and descriptions, tolerating typos and incomplete words. Lower scores are better:
+     * 0 is an exact name, 1 a name prefix, and from 2 on every word match adds its cost (0 exact,
+     * 1 prefix, 2 plus the edit distance for a typo) and a match outside the name adds 2.
+     *
+     * @param query the search text.
+     * @param kind  the kind of entity to search, or null for all kinds.
+     * @param limit the maximum number of results.
+     * @return the best matches, best first.
+     */
+    public List<SearchResult> search(String query, SearchResult.Kind kind, int limit) {
+        String normalised = normalise(query);
+        if (normalised.isEmpty()) {
+            return new ArrayList<>();
+        }
+        Map<Integer, Integer> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            scoreNames(normalised, scores);
+            scoreWords(tokensOf(normalised), scores);
+
+            List<SearchResult> results = new ArrayList<>();
+            for (Map.Entry<Integer, Integer> entry : scores.entrySet()) {
+                Document document = documents.get(entry.getKey());
+                if (!document.removed && (kind == null || document.kind == kind)) {
+                    results.add(document.toResult(entry.getValue()));
+                }
+            }
+            results.sort(Comparator.comparingInt(SearchResult::getScore)
+                    .thenComparingInt(result -> result.getName().length())
+                    .thenComparing(SearchResult::getName));
+            return results.size() > limit ? new ArrayList<>(results.subList(0, limit)) : results;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Rebuilds the index without tombstoned documents. Worth calling after many removals.
+     */
+    public void compact() {
+        lock.writeLock().lock();
+        try {
+            List<Document> live = new ArrayList<>();
+            for (Document document : documents) {
+                if (!document.removed) {
+                    live.add(document);
+                }
+            }
+            clearLocked();
+            for (Document document : live) {
+                putLocked(document.kind, document.id, document.parentId, document.name, document.description);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void scoreNames(String query, Map<Integer, Integer> scores) {
+        for (Map.Entry<String, Integer> entry : names.tailMap(query, true).entrySet()) {
+            if (!entry.getKey().startsWith(query) || scores.size() >= MAX_CANDIDATES) {
+                break;
+            }
+            int ordinal = entry.getValue();
+            scores.merge(ordinal, documents.get(ordinal).normalised.length() == query.length() ? 0 : 1, Math::min);
+        }
+    }
+
+    private void scoreWords(List<String> tokens, Map<Integer, Integer> scores) {
+        List<List<Expansion>> expansions = new ArrayList<>();
+        for (String token : tokens) {
+            List<Expansion> matches = expand(token);
+            if (matches.isEmpty()) {
+                return;
+            }
+            expansions.add(matches);
+        }
+        // Drive the intersection from the query word with the fewest postings.
+        int driver = 0;
+        long driverSize = Long.MAX_VALUE;
+        for (int i = 0; i < expansions.size(); i++) {
+            long size = 0;
+            for (Expansion expansion : expansions.get(i)) {
+                size += expansion.postings.size;
+            }
+            if (size < driverSize) {
+                driver = i;
+                driverSize = size;
+            }
+        }
+        int found = 0;
+        Set<Integer> seen = new HashSet<>();
+        for (Expansion start : expansions.get(driver)) {
+            for (int p = 0; p < start.postings.size && found < MAX_CANDIDATES; p++) {
+                int ordinal = start.postings.values[p];
+                if (documents.get(ordinal).removed || !seen.add(ordinal)) {
+                    continue;
+                }
+                int cost = start.cost;
+                for (int i = 0; i < expansions.size() && cost >= 0; i++) {
+                    if (i != driver) {
+                        int best = bestCost(expansions.get(i), ordinal);
+                        cost = best < 0 ? -1 : cost + best;
+                    }
+                }
+                if (cost >= 0) {
+                    found++;
+                    int penalty = inName(documents.get(ordinal).normalised, tokens) ? 0 : 2;
+                    scores.merge(ordinal, 2 + cost + penalty, Math::min);
+                }
+            }
+        }
+    }
+
+    // Words of the vocabulary a query word may stand for, cheapest first.
+    private List<Expansion> expand(String token) {
+        Map<String, Integer> costs = new HashMap<>();
+        if (words.containsKey(token)) {
+            costs.put(token, 0);
+        }
+        int expanded = 0;
+        for (String word : words.tailMap(token, false).keySet()) {
+            if (!word.startsWith(token) || expanded++ >= MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            costs.putIfAbsent(word, 1);
+        }
+        if (token.length() >= 3) {
+            int maxEdits = token.length() <= 5 ? 1 : 2;
+            long[] queryTrigrams = trigramsOf(token);
+            // An edit destroys at most three trigrams and a transposition four, so a match within maxEdits
+            // shares at least this many.
+            int required = Math.max(1, queryTrigrams.length - 4 * maxEdits);
+            Map<Integer, Integer> hits = new HashMap<>();
+            for (long trigram : queryTrigrams) {
+                IntList wordIds = trigrams.get(trigram);
+                if (wordIds != null) {
+                    for (int i = 0; i < wordIds.size; i++) {
+                        hits.merge(wordIds.values[i], 1, Integer::sum);
+                    }
+                }
+            }
+            for (Map.Entry<Integer, Integer> hit : hits.entrySet()) {
+                String word = vocabulary.get(hit.getKey());
+                if (hit.getValue() >= required && !costs.containsKey(word)) {
+                    int distance = boundedLevenshtein(token, word, maxEdits);
+                    if (distance <= maxEdits) {
+                        costs.put(word, 2 + distance);
+                    }
+                }
+            }
+        }
+        List<Expansion> expansions = new ArrayList<>();
+        for (Map.Entry<String, Integer> entry : costs.entrySet()) {
+            expansions.add(new Expansion(words.get(entry.getKey()), entry.getValue()));
+        }
+        expansions.sort(Comparator.comparingInt(expansion -> expansion.cost));
+        return expansions;
+    }
+
+    // Cheapest expansion whose postings contain the document, or -1.
+    private static int bestCost(List<Expansion> expansions, int ordinal) {
+        for (Expansion expansion : expansions) {
+            if (expansion.postings.contains(ordinal)) {
+                return expansion.cost;
+            }
+        }
+        return -1;
+    }
+
+    // Whether every query word starts, or is within an edit of, some word of the name.
+    private static boolean inName(String name, List<String> tokens) {
+        List<String> nameTokens = tokensOf(name);
+        for (String token : tokens) {
+            boolean matched = false;
+            for (String nameToken : nameTokens) {
+                if (nameToken.startsWith(token) || boundedLevenshtein(token, nameToken, 2) <= 2) {
+                    matched = true;
+                    break;
+                }
+            }
+            if (!matched) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Edit distance counting an adjacent transposition as one edit (optimal string alignment),
+     * restricted to a diagonal band; returns max + 1 once the bound is exceeded.
+     */
+    static int boundedLevenshtein(String a, String b, int max) {
+        if (Math.abs(a.length() - b.length()) > max) {
+            return max + 1;
+        }
+        int[] beforePrevious = new int[b.length() + 1];
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int from = Math.max(1, i - max);
+            int to = Math.min(b.length(), i + max);
+            current[0] = i;
+            if (from > 1) {
+                current[from - 1] = max + 1;
+            }
+            int rowMin = from > 1 ? max + 1 : i;
+            for (int j = from; j <= to; j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                int value = Math.min(previous[j - 1] + cost, Math.min(previous[j] + 1, current[j - 1] + 1));
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    value = Math.min(value, beforePrevious[j - 2] + 1);
+                }
+                current[j] = value;
+                rowMin = Math.min(rowMin, value);
+            }
+            if (to < b.length()) {
+                current[to + 1] = max + 1;
+            }
+            if (rowMin > max) {
+                return max + 1;
+            }
+            int[] swap = beforePrevious;
+            beforePrevious = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], max + 1);
+    }
+
+    private void removeLocked(SearchResult.Kind kind, int id) {
+        Integer ordinal = ordinals.remove(key(kind, id));
+        if (ordinal != null) {
+            Document document = documents.get(ordinal);
+            document.removed = true;
+            names.remove(nameKey(document.normalised, ordinal));
+            tombstones++;
+        }
+    }
+
+    static String normalise(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringBuilder normalised = new StringBuilder(text.length());
+        boolean space = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                if (space && normalised.length() > 0) {
+                    normalised.append(' ');
+                }
+                normalised.append(Character.toLowerCase(c));
+                space = false;
+            } else {
+                space = true;
+            }
+        }
+        return normalised.toString();
+    }
+
+    private static List<String> tokensOf(String normalised) {
+        return normalised.isEmpty() ? new ArrayList<>() : Arrays.asList(normalised.split(" "));
+    }
+
+    // Trigrams of each word padded like pg_trgm ("  word "), packed three chars to a long.
+    static long[] trigramsOf(String normalised) {
+        Set<Long> result = new HashSet<>();
+        for (String token : tokensOf(normalised)) {
+            String padded = "  " + token + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                result.add(((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2));
+            }
+        }
+        long[] packed = new long[result.size()];
+        int i = 0;
+        for (long trigram : result) {
+            packed[i++] = trigram;
+        }
+        return packed;
+    }
+
+    private static String key(SearchResult.Kind kind, int id) {
+        return kind.name() + ':' + id;
+    }
+
+    // Names are not unique, so the ordinal is appended to keep one sorted entry per document.
+    private static String nameKey(String normalised, int ordinal) {
+        return normalised + '\u0000' + ordinal;
+    }
+
+    private static final class Document {
+        private final SearchResult.Kind kind;
+        private final int id;
+        private final int parentId;
+        private final String name;
+        private final String normalised;
+        private final String description;
+        private boolean removed;
+
+        private Document(SearchResult.Kind kind, int id, int parentId, String name, String normalised, String description) {
+            this.kind = kind;
+            this.id = id;
+            this.parentId = parentId;
+            this.name = name;
+            this.normalised = normalised;
+            this.description = description;
+        }
+
+        private SearchResult toResult(int score) {
+            return new SearchResult(kind, id, parentId, name, score);
+        }
+    }
+
+    private static final class Expansion {
+        private final IntList postings;
+        private final int cost;
+
+        private Expansion(IntList postings, int cost) {
+            this.postings = postings;
+            this.cost = cost;
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        // Values are appended in increasing order, so the list is sorted.
+        private boolean contains(int value) {
+            return Arrays.binarySearch(values, 0, size, value) >= 0;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+package search;
+
+import dao.AttributesDAO;
+import dao.ObjectTypesDAO;
+import dao.RelationshipsDAO;
+import events.ChangeEvent;
+import events.ChangeEventListener;
+import model.Attributes;
+import model.ObjectTypes;
+import model.Relationships;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps an {@link OntologySearchIndex} in line with the database. Change events are applied
+ * incrementally by reloading only the changed row; a feed reset triggers a full rebuild into a new
+ * index, which replaces the current one only once everything was loaded, so searches keep working
+ * on the old index meanwhile and after a failed load. Database work and the periodic compaction of
+ * removed documents run on a private thread so the change feed is never blocked.
+ */
+public class SearchIndexMaintainer implements ChangeEventListener {
+
+    private static final Logger LOGGER = Logger.getLogger(SearchIndexMaintainer.class.getName());
+    private static final long COMPACT_MINUTES = Long.getLong("ontology.search.compactMinutes", 10);
+
+    private static final SearchIndexMaintainer DEFAULT = new SearchIndexMaintainer(new OntologySearchIndex());
+
+    private volatile OntologySearchIndex index;
+    private final ObjectTypesDAO objectTypesDAO = new ObjectTypesDAO();
+    private final AttributesDAO attributesDAO = new AttributesDAO();
+    private final RelationshipsDAO relationshipsDAO = new RelationshipsDAO();
+    private ScheduledExecutorService executor;
+
+    public SearchIndexMaintainer(OntologySearchIndex index) {
+        this.index = index;
+    }
+
+    /**
+     * @return the maintainer of the application-wide index, started by the context listener.
+     */
+    public static SearchIndexMaintainer getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return the current index; a rebuild replaces it, so callers should not hold on to it.
+     */
+    public OntologySearchIndex getIndex() {
+        return index;
+    }
+
+    /**
+     * Starts the worker thread and schedules the initial load of the index and its compaction.
+     */
+    public synchronized void start() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ontology-search-index");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.execute(this::rebuild);
+            executor.scheduleWithFixedDelay(this::compact, COMPACT_MINUTES, COMPACT_MINUTES, TimeUnit.MINUTES);
+        }
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Loads all object types, attributes and relationships into a new index and swaps it in.
+     * If any of them cannot be loaded the current index is kept.
+     */
+    public void rebuild() {
+        List<ObjectTypes> objectTypes;
+        Map<Integer, List<Attributes>> attributes;
+        List<Relationships> relationships;
+        try {
+            objectTypes = objectTypesDAO.loadAllObjectTypes();
+            attributes = attributesDAO.loadAllAttributesByObjectType();
+            relationships = relationshipsDAO.loadAllRelationships();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error loading the ontology, keeping the current search index", e);
+            return;
+        }
+        OntologySearchIndex rebuilt = new OntologySearchIndex();
+        for (ObjectTypes objectType : objectTypes) {
+            rebuilt.put(SearchResult.Kind.OBJECT_TYPE, objectType.getId(), 0, objectType.getName(), objectType.getDescription());
+        }
+        for (Map.Entry<Integer, List<Attributes>> entry : attributes.entrySet()) {
+            for (Attributes attribute : entry.getValue()) {
+                rebuilt.put(SearchResult.Kind.ATTRIBUTE, attribute.getId(), entry.getKey(), attribute.getName(), null);
+            }
+        }
+        for (Relationships relationship : relationships) {
+            indexRelationship(rebuilt, relationship);
+        }
+        index = rebuilt;
+        LOGGER.log(Level.INFO, "Search index rebuilt with " + rebuilt.size() + " documents");
+    }
+
+    public void indexRelationship(Relationships relationship) {
+        indexRelationship(index, relationship);
+    }
+
+    private static void indexRelationship(OntologySearchIndex target, Relationships relationship) {
+        target.put(SearchResult.Kind.RELATIONSHIP, relationship.getId(), 0, relationship.getRelationshipName(), relationship.getRelationshipDescription());
+    }
+
+    /**
+     * Drops the removed documents once they make up a quarter of the index.
+     */
+    private void compact() {
+        OntologySearchIndex current = index;
+        if (current.getTombstones() > current.size() / 4) {
+            current.compact();
+        }
+    }
+
+    @Override
+    public void onChange(ChangeEvent event) {
+        submit(() -> apply(event));
+    }
+
+    @Override
+    public void onReset() {
+        submit(this::rebuild);
+    }
+
+    private synchronized void submit(Runnable task) {
+        if (executor != null) {
+            executor.execute(task);
+        }
+    }
+
+    private void apply(ChangeEvent event) {
+        OntologySearchIndex current = index;
+        switch (event.getTable()) {
+            case ChangeEvent.OBJECT_TYPES:
+                ObjectTypes objectType = event.getOperation() == ChangeEvent.Operation.DELETE ? null : objectTypesDAO.getObjectTypeById(event.getId());
+                if (objectType == null) {
+                    current.remove(SearchResult.Kind.OBJECT_TYPE, event.getId());
+                    // Its attributes are deleted by the cascade, which publishes no events of its own.
+                    current.removeByParent(SearchResult.Kind.ATTRIBUTE, event.getId());
+                } else {
+                    current.put(SearchResult.Kind.OBJECT_TYPE, objectType.getId(), 0, objectType.getName(), objectType.getDescription());
+                }
+                break;
+            case ChangeEvent.ATTRIBUTES:
+                Attributes attribute = event.getOperation() == ChangeEvent.Operation.DELETE ? null : attributesDAO.findAttributeById(event.getId());
+                if (attribute == null) {
+                    current.remove(SearchResult.Kind.ATTRIBUTE, event.getId());
+                } else {
+                    current.put(SearchResult.Kind.ATTRIBUTE, attribute.getId(), event.getParentId(), attribute.getName(), null);
+                }
+                break;
+            case ChangeEvent.RELATIONSHIPS:
+                Relationships relationship = event.getOperation() == ChangeEvent.Operation.DELETE ? null : relationshipsDAO.findRelationshipById(event.getId());
+                if (relationship == null) {
+                    current.remove(SearchResult.Kind.RELATIONSHIP, event.getId());
+                } else {
+                    indexRelationship(current, relationship);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package search;
+
+/**
+ * One hit of an ontology search. Lower scores rank first: exact name matches score 0,
+ * name prefixes 1, word prefixes 2, description word matches 3 and fuzzy matches 4 plus
+ * their edit distance.
+ */
+public final class SearchResult {
+
+    // Enum for the kind of entity a result refers to
+    public enum Kind {
+        OBJECT_TYPE, ATTRIBUTE, RELATIONSHIP
+    }
+
+    private final Kind kind;
+    private final int id;
+    private final int parentId;
+    private final String name;
+    private final int score;
+
+    public SearchResult(Kind kind, int id, int parentId, String name, int score) {
+        this.kind = kind;
+        this.id = id;
+        this.parentId = parentId;
+        this.name = name;
+        this.score = score;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Gets the object type of an attribute result, or 0 for other kinds.
+     */
+    public int getParentId() {
+        return parentId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    @Override
+    public String toString() {
+        return "SearchResult{" +
+                "kind=" + kind +
+                ", id=" + id +
+                ", parentId=" + parentId +
+                ", name='" + name + '\'' +
+                ", score=" + score +
+                '}';
+    }
+}
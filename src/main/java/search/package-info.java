@@ -0,0 +1,4 @@
+/**
+ * Package for search.
+ */
+package search;
\ No newline at end of file
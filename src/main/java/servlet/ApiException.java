@@ -0,0 +1,18 @@
+package servlet;
+
+/**
+ * Ends a REST API request with the given status and message, e.g. a 404 for an unknown id.
+ */
+public class ApiException extends RuntimeException {
+
+    private final int status;
+
+    public ApiException(int status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
@@ -0,0 +1,68 @@
+package servlet;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The bounded pool the REST API runs its database work on, so container request threads are
+ * handed back while a query is in flight. The pool is sized to roughly the connection budget;
+ * once its queue is full new requests are rejected rather than piling up behind slow ones.
+ */
+public final class ApiExecutor {
+
+    private static final ApiExecutor DEFAULT = new ApiExecutor(
+            Integer.getInteger("ontology.api.threads", 16),
+            Integer.getInteger("ontology.api.queue", 256));
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param threads       the number of worker threads.
+     * @param queueCapacity the number of requests that may wait for a worker.
+     */
+    public ApiExecutor(int threads, int queueCapacity) {
+        AtomicInteger sequence = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+                    Thread thread = new Thread(runnable, "api-worker-" + sequence.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public static ApiExecutor getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Queues a task.
+     *
+     * @param task the request work.
+     * @throws java.util.concurrent.RejectedExecutionException if the queue is full or the pool is shut down.
+     */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * @return the number of requests waiting for a worker.
+     */
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(5, TimeUnit.SECONDS)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
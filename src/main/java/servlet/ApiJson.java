@@ -0,0 +1,249 @@
+package servlet;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import jobs.Job;
+import model.Attributes;
+import model.Facilities;
+import model.ObjectTypes;
+import model.RelationshipDependencies;
+import search.SearchResult;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Streams the ontology model to and from the REST API's JSON representation. Writers go field by
+ * field through a {@link JsonWriter} so a list of any length is never held as one string; request
+ * bodies are small and are read into a tree first.
+ */
+final class ApiJson {
+
+    private ApiJson() {
+    }
+
+    static void writeObjectType(JsonWriter writer, ObjectTypes objectType) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(objectType.getId());
+        writer.name("name").value(objectType.getName());
+        writer.name("description").value(objectType.getDescription());
+        writer.name("version").value(objectType.getVersion());
+        writeTimestamp(writer, "createdAt", objectType.getCreatedAt());
+        writeTimestamp(writer, "updatedAt", objectType.getUpdatedAt());
+        if (objectType.getAttributesList() != null) {
+            writer.name("attributes").beginArray();
+            for (Attributes attribute : objectType.getAttributesList()) {
+                writeAttribute(writer, attribute);
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+    }
+
+    static void writeAttribute(JsonWriter writer, Attributes attribute) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(attribute.getId());
+        if (attribute.getFkObjectType() != null) {
+            writer.name("objectTypeId").value(attribute.getFkObjectType().getId());
+        }
+        writer.name("name").value(attribute.getName());
+        writer.name("dataType").value(attribute.getDataType() == null ? null : attribute.getDataType().name());
+        writer.name("required").value(attribute.isRequired());
+        writer.name("defaultValue").value(attribute.getDefaultValue());
+        writer.name("indexed").value(attribute.isIndexed());
+        writer.name("usageCount").value(attribute.getAttributeUsageCount());
+        writer.name("version").value(attribute.getVersion());
+        if (attribute.getEnumValues() != null) {
+            writer.name("enumValues").beginArray();
+            for (String value : attribute.getEnumValues()) {
+                writer.value(value);
+            }
+            writer.endArray();
+        }
+        writer.endObject();
+    }
+
+    static void writeFacility(JsonWriter writer, Facilities facility) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(facility.getId());
+        writer.name("name").value(facility.getName());
+        writer.name("location").value(facility.getLocation());
+        writer.name("sizeInSquareFootage").value(facility.getSizeInSquareFootage());
+        writer.name("facilityType").value(facility.getFacilityType() == null ? null : facility.getFacilityType().name());
+        writer.name("operationalStatus").value(facility.getOperationalStatus() == null ? null : facility.getOperationalStatus().name());
+        writer.endObject();
+    }
+
+    static void writeDependency(JsonWriter writer, RelationshipDependencies dependency) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(dependency.getId());
+        if (dependency.getRelationship() != null) {
+            writer.name("relationshipId").value(dependency.getRelationship().getId());
+        }
+        writer.name("dependencyName").value(dependency.getDependencyName());
+        writer.name("dependencyType").value(dependency.getDependencyType() == null ? null : dependency.getDependencyType().name());
+        writeTimestamp(writer, "createdAt", dependency.getCreatedAt());
+        writeTimestamp(writer, "updatedAt", dependency.getUpdatedAt());
+        writer.endObject();
+    }
+
+    static void writeSearchResult(JsonWriter writer, SearchResult result) throws IOException {
+        writer.beginObject();
+        writer.name("kind").value(result.getKind().name());
+        writer.name("id").value(result.getId());
+        if (result.getParentId() != 0) {
+            writer.name("parentId").value(result.getParentId());
+        }
+        writer.name("name").value(result.getName());
+        writer.name("score").value(result.getScore());
+        writer.endObject();
+    }
+
+    static void writeJob(JsonWriter writer, Job job) throws IOException {
+        writer.beginObject();
+        writer.name("id").value(job.getId());
+        writer.name("type").value(job.getType());
+        writer.name("key").value(job.getDedupeKey());
+        writer.name("parameters").jsonValue(job.getParameters());
+        writer.name("status").value(job.getStatus().name());
+        writer.name("unitsDone").value(job.getUnitsDone());
+        writer.name("unitsTotal").value(job.getUnitsTotal());
+        writer.name("attempts").value(job.getAttempts());
+        writer.name("maxAttempts").value(job.getMaxAttempts());
+        writer.name("lockedBy").value(job.getLockedBy());
+        writer.name("lastError").value(job.getLastError());
+        writeTimestamp(writer, "createdAt", job.getCreatedAt());
+        writeTimestamp(writer, "startedAt", job.getStartedAt());
+        writeTimestamp(writer, "finishedAt", job.getFinishedAt());
+        writer.endObject();
+    }
+
+    /**
+     * Writes the row attached to a {@link dao.VersionConflictException}.
+     */
+    static void writeCurrentState(JsonWriter writer, Object state) throws IOException {
+        if (state instanceof ObjectTypes) {
+            writeObjectType(writer, (ObjectTypes) state);
+        } else if (state instanceof Attributes) {
+            writeAttribute(writer, (Attributes) state);
+        } else {
+            writer.nullValue();
+        }
+    }
+
+    private static void writeTimestamp(JsonWriter writer, String name, Timestamp timestamp) throws IOException {
+        if (timestamp != null) {
+            writer.name(name).value(timestamp.toInstant().toString());
+        }
+    }
+
+    // Request bodies
+
+    static String requireString(JsonObject body, String name) {
+        String value = optString(body, name, null);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("'" + name + "' is required");
+        }
+        return value;
+    }
+
+    static String optString(JsonObject body, String name, String defaultValue) {
+        JsonElement element = body.get(name);
+        return element == null || element.isJsonNull() ? defaultValue : read(name, element, JsonElement::getAsString);
+    }
+
+    static boolean optBoolean(JsonObject body, String name, boolean defaultValue) {
+        JsonElement element = body.get(name);
+        return element == null || element.isJsonNull() ? defaultValue : read(name, element, JsonElement::getAsBoolean);
+    }
+
+    static int optInt(JsonObject body, String name, int defaultValue) {
+        JsonElement element = body.get(name);
+        return element == null || element.isJsonNull() ? defaultValue : read(name, element, JsonElement::getAsInt);
+    }
+
+    static Integer optInteger(JsonObject body, String name) {
+        JsonElement element = body.get(name);
+        return element == null || element.isJsonNull() ? null : read(name, element, JsonElement::getAsInt);
+    }
+
+    static BigDecimal optDecimal(JsonObject body, String name) {
+        JsonElement element = body.get(name);
+        return element == null || element.isJsonNull() ? null : read(name, element, JsonElement::getAsBigDecimal);
+    }
+
+    static <E extends Enum<E>> E requireEnum(JsonObject body, String name, Class<E> type) {
+        String value = requireString(body, name);
+        try {
+            return Enum.valueOf(type, value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("'" + name + "' is not a valid " + type.getSimpleName() + ": " + value);
+        }
+    }
+
+    static <E extends Enum<E>> E optEnum(JsonObject body, String name, Class<E> type, E defaultValue) {
+        return optString(body, name, null) == null ? defaultValue : requireEnum(body, name, type);
+    }
+
+    static List<String> optStrings(JsonObject body, String name) {
+        JsonElement element = body.get(name);
+        if (element == null || element.isJsonNull()) {
+            return null;
+        }
+        JsonArray array = read(name, element, JsonElement::getAsJsonArray);
+        List<String> values = new ArrayList<>(array.size());
+        for (JsonElement value : array) {
+            values.add(read(name, value, JsonElement::getAsString));
+        }
+        return values;
+    }
+
+    /**
+     * Reads the attributes of an object type body, as sent on create and on update.
+     *
+     * @return the attributes, or null if the body has no {@code attributes} member.
+     */
+    static List<Attributes> optAttributes(JsonObject body) {
+        JsonElement element = body.get("attributes");
+        if (element == null || element.isJsonNull()) {
+            return null;
+        }
+        List<Attributes> attributes = new ArrayList<>();
+        for (JsonElement item : read("attributes", element, JsonElement::getAsJsonArray)) {
+            attributes.add(readAttribute(read("attributes", item, JsonElement::getAsJsonObject)));
+        }
+        return attributes;
+    }
+
+    static Attributes readAttribute(JsonObject body) {
+        Attributes attribute = new Attributes();
+        attribute.setId(optInt(body, "id", 0));
+        attribute.setName(requireString(body, "name"));
+        attribute.setDataType(requireEnum(body, "dataType", Attributes.DataTypes.class));
+        attribute.setRequired(optBoolean(body, "required", false));
+        attribute.setDefaultValue(optString(body, "defaultValue", null));
+        attribute.setIndexed(optBoolean(body, "indexed", false));
+        attribute.setVersion(optInt(body, "version", 0));
+        attribute.setEnumValues(optStrings(body, "enumValues"));
+        return attribute;
+    }
+
+    /**
+     * Reads a member through a Gson accessor. Gson signals a value of the wrong type, e.g. an
+     * object where a string is expected, with IllegalStateException or UnsupportedOperationException;
+     * that is the client's mistake, so it becomes an IllegalArgumentException and a 400.
+     */
+    private static <T> T read(String name, JsonElement element, Function<JsonElement, T> accessor) {
+        try {
+            return accessor.apply(element);
+        } catch (IllegalStateException | UnsupportedOperationException e) {
+            throw new IllegalArgumentException("'" + name + "' has the wrong type", e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package servlet;
+
+import admission.AdmissionController;
+import consistency.ConsistencyChecker;
+import events.ChangeFeed;
+import jobs.JobScheduler;
+import metrics.QueryProfiler;
+import migration.MigrationRunner;
+import search.SearchIndexMaintainer;
+import snapshot.SnapshotMaintainer;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+import javax.websocket.DeploymentException;
+import javax.websocket.server.ServerContainer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Starts and stops the application-wide background services with the web application.
+ */
+public class ApplicationContextListener implements ServletContextListener {
+
+    @Override
+    public void contextInitialized(ServletContextEvent sce) {
+        // Before anything queries the tables; -Dontology.migration.skip=true leaves the schema to an operator.
+        // The application does not start on a schema it was not written for.
+        if (!Boolean.getBoolean("ontology.migration.skip") && !MigrationRunner.getDefault().migrate()) {
+            throw new IllegalStateException("The schema could not be migrated, see the log");
+        }
+        SnapshotMaintainer.getDefault().start();
+        ChangeFeed.getDefault().addListener(SnapshotMaintainer.getDefault());
+        ChangeBroadcaster.getDefault().start();
+        ChangeFeed.getDefault().addListener(ChangeBroadcaster.getDefault());
+        SearchIndexMaintainer.getDefault().start();
+        ChangeFeed.getDefault().addListener(SearchIndexMaintainer.getDefault());
+        ChangeFeed.getDefault().addListener(ResourceCache.getDefault());
+        ChangeFeed.getDefault().addListener(CatalogueCache.getDefault());
+        JobScheduler.getDefault().start();
+        ChangeFeed.getDefault().addListener(JobScheduler.getDefault());
+        ChangeFeed.getDefault().start();
+        ConsistencyChecker.getDefault().start();
+
+        ServerContainer container = (ServerContainer) sce.getServletContext().getAttribute(ServerContainer.class.getName());
+        if (container != null) {
+            try {
+                container.addEndpoint(OntologyChangeEndpoint.config());
+            } catch (DeploymentException e) {
+                Logger.getLogger(getClass().getName()).log(Level.SEVERE, "Error registering WebSocket endpoint", e);
+            }
+        }
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent sce) {
+        ConsistencyChecker.getDefault().stop();
+        ChangeFeed.getDefault().stop();
+        ChangeFeed.getDefault().removeListener(JobScheduler.getDefault());
+        JobScheduler.getDefault().stop();
+        ChangeFeed.getDefault().removeListener(CatalogueCache.getDefault());
+        ChangeFeed.getDefault().removeListener(ResourceCache.getDefault());
+        ChangeFeed.getDefault().removeListener(SearchIndexMaintainer.getDefault());
+        SearchIndexMaintainer.getDefault().stop();
+        ChangeFeed.getDefault().removeListener(ChangeBroadcaster.getDefault());
+        ChangeBroadcaster.getDefault().stop();
+        ChangeFeed.getDefault().removeListener(SnapshotMaintainer.getDefault());
+        SnapshotMaintainer.getDefault().stop();
+        AdmissionController.getDefault().shutdown();
+        ApiExecutor.getDefault().shutdown();
+        QueryProfiler.getDefault().shutdown();
+    }
+}
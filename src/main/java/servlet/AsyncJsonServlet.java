@@ -0,0 +1,338 @@
+package servlet;
+
+import admission.AdmissionController;
+import admission.OperationClass;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonWriter;
+import dao.VersionConflictException;
+import metrics.Metrics;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Base class of the JSON REST API servlets. Each request is put into asynchronous mode and its
+ * {@code doGet}/{@code doPost}/... runs on the {@link ApiExecutor}, so the container thread goes
+ * back to the pool while the DAOs wait on the database. Before that it has to be admitted by the
+ * {@link AdmissionController} under its {@link #operationClass(HttpServletRequest) operation class};
+ * when the controller or the executor is saturated the request is refused with 503 and a
+ * {@code Retry-After} hint instead of queueing unboundedly.
+ * Handlers signal client errors with {@link ApiException} or {@link IllegalArgumentException};
+ * both are turned into a JSON error body here. Any other exception is a 500.
+ * <p>
+ * A request not answered within {@code ontology.api.timeoutMillis} is answered with 503 by the
+ * container's timeout callback. From then on the response belongs to the container: a request
+ * still waiting for the executor is not run at all, and one that was running when it timed out
+ * has its error and completion skipped.
+ */
+public abstract class AsyncJsonServlet extends HttpServlet {
+
+    private static final Logger LOGGER = Logger.getLogger(AsyncJsonServlet.class.getName());
+    private static final long TIMEOUT_MILLIS = Long.getLong("ontology.api.timeoutMillis", 30000);
+
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        AsyncContext async = request.startAsync();
+        async.setTimeout(TIMEOUT_MILLIS);
+        // Set by whoever answers the request first: the handler's task, a refusal or the timeout.
+        AtomicBoolean answered = new AtomicBoolean();
+        async.addListener(new TimeoutListener(answered));
+        OperationClass operationClass = operationClass(request);
+        if (operationClass == null) {
+            if (!start(async, null, answered)) {
+                busy(async, 1, answered);
+            }
+            return;
+        }
+        AdmissionController.getDefault().submit(operationClass, new AdmissionController.Admission() {
+            @Override
+            public void admitted(AdmissionController.Permit permit) {
+                if (!start(async, permit, answered)) {
+                    permit.release();
+                    busy(async, 1, answered);
+                }
+            }
+
+            @Override
+            public void rejected(int retryAfterSeconds) {
+                busy(async, retryAfterSeconds, answered);
+            }
+        });
+    }
+
+    /**
+     * Says which admission class the request counts against. Safe methods are reads and
+     * everything else an interactive write.
+     *
+     * @return the class, or null for requests that never touch the database and skip admission.
+     */
+    protected OperationClass operationClass(HttpServletRequest request) {
+        String method = request.getMethod();
+        return "GET".equals(method) || "HEAD".equals(method) ? OperationClass.READ : OperationClass.WRITE;
+    }
+
+    /**
+     * Hands the request to the executor, releasing the permit when it completes. Only requests
+     * that reached the database report their latency to the controller, measured from when the
+     * task started, so cache hits and time queued in the executor do not skew its baseline.
+     *
+     * @return false if the executor refused it.
+     */
+    private boolean start(AsyncContext async, AdmissionController.Permit permit, AtomicBoolean answered) {
+        try {
+            ApiExecutor.getDefault().execute(() -> {
+                long started = System.nanoTime();
+                long connects = Metrics.getConnectsOnCurrentThread();
+                try {
+                    // Timed out while queued: the client has its answer, so the work is not done at all.
+                    if (!answered.get()) {
+                        dispatch((HttpServletRequest) async.getRequest(), (HttpServletResponse) async.getResponse(), answered);
+                    }
+                } finally {
+                    if (permit != null) {
+                        if (Metrics.getConnectsOnCurrentThread() != connects) {
+                            permit.release(System.nanoTime() - started);
+                        } else {
+                            permit.release();
+                        }
+                    }
+                    if (answered.compareAndSet(false, true)) {
+                        async.complete();
+                    }
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            return false;
+        }
+    }
+
+    private static void busy(AsyncContext async, int retryAfterSeconds, AtomicBoolean answered) {
+        // A request that waited for admission may have timed out and been answered already.
+        if (!answered.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            HttpServletResponse response = (HttpServletResponse) async.getResponse();
+            response.setHeader("Retry-After", Integer.toString(retryAfterSeconds));
+            writeError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The server is busy, retry shortly");
+            async.complete();
+        } catch (IOException | IllegalStateException e) {
+            LOGGER.log(Level.FINE, "Error writing busy response", e);
+        }
+    }
+
+    private void dispatch(HttpServletRequest request, HttpServletResponse response, AtomicBoolean answered) {
+        try {
+            response.setHeader("Cache-Control", "no-cache");
+            super.service(request, response);
+        } catch (ApiException e) {
+            fail(response, e.getStatus(), e.getMessage(), answered);
+        } catch (IllegalArgumentException | JsonParseException e) {
+            fail(response, HttpServletResponse.SC_BAD_REQUEST, e.getMessage(), answered);
+        } catch (IOException | ServletException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Error handling " + request.getMethod() + " " + request.getRequestURI(), e);
+            fail(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Internal error", answered);
+        }
+    }
+
+    private void fail(HttpServletResponse response, int status, String message, AtomicBoolean answered) {
+        if (answered.get()) {
+            // Timed out meanwhile; the container has answered and may have recycled the response.
+            return;
+        }
+        if (response.isCommitted()) {
+            // Part of a streamed body has gone out; all that can be done is to cut it short.
+            return;
+        }
+        response.resetBuffer();
+        try {
+            writeError(response, status, message);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Error writing error response", e);
+        }
+    }
+
+    /**
+     * Answers a request that ran out of time with 503, unless it was answered already.
+     */
+    private static final class TimeoutListener implements AsyncListener {
+
+        private final AtomicBoolean answered;
+
+        TimeoutListener(AtomicBoolean answered) {
+            this.answered = answered;
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            if (!answered.compareAndSet(false, true)) {
+                return;
+            }
+            AsyncContext async = event.getAsyncContext();
+            try {
+                HttpServletResponse response = (HttpServletResponse) async.getResponse();
+                if (!response.isCommitted()) {
+                    response.resetBuffer();
+                    writeError(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The request timed out, retry shortly");
+                }
+            } catch (IOException | IllegalStateException e) {
+                LOGGER.log(Level.FINE, "Error writing timeout response", e);
+            }
+            async.complete();
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    private static void writeError(HttpServletResponse response, int status, String message) throws IOException {
+        try (JsonWriter writer = startJson(response, status)) {
+            writer.beginObject();
+            writer.name("error").value(message);
+            writer.endObject();
+        }
+    }
+
+    /**
+     * Starts a streamed JSON response; the caller closes the writer.
+     */
+    protected static JsonWriter startJson(HttpServletResponse response, int status) throws IOException {
+        response.setStatus(status);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        return new JsonWriter(response.getWriter());
+    }
+
+    /**
+     * Sends a cached resource, or 304 if the client's {@code If-None-Match} already names it.
+     */
+    protected static void writeDocument(HttpServletRequest request, HttpServletResponse response, JsonDocument document) throws IOException {
+        if (document == null) {
+            throw notFound();
+        }
+        response.setHeader("ETag", document.getEtag());
+        if (document.matches(request.getHeader("If-None-Match"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setContentLength(document.getBody().length);
+        if (!"HEAD".equals(request.getMethod())) {
+            try (OutputStream out = response.getOutputStream()) {
+                out.write(document.getBody());
+            }
+        }
+    }
+
+    /**
+     * Answers an optimistic update that lost the race with 409 and the row as it is now.
+     */
+    protected static void writeConflict(HttpServletResponse response, VersionConflictException conflict) throws IOException {
+        try (JsonWriter writer = startJson(response, HttpServletResponse.SC_CONFLICT)) {
+            writer.beginObject();
+            writer.name("error").value(conflict.getMessage());
+            writer.name("current");
+            ApiJson.writeCurrentState(writer, conflict.getCurrentState());
+            writer.endObject();
+        }
+    }
+
+    protected static void writeCreated(HttpServletResponse response, int id) throws IOException {
+        try (JsonWriter writer = startJson(response, HttpServletResponse.SC_CREATED)) {
+            writer.beginObject();
+            writer.name("id").value(id);
+            writer.endObject();
+        }
+    }
+
+    /**
+     * Splits the path info into its non-empty segments, e.g. {@code /12/attributes} into {@code [12, attributes]}.
+     */
+    protected static List<String> segments(HttpServletRequest request) {
+        List<String> segments = new ArrayList<>();
+        String pathInfo = request.getPathInfo();
+        if (pathInfo != null) {
+            for (String segment : pathInfo.split("/")) {
+                if (!segment.isEmpty()) {
+                    segments.add(segment);
+                }
+            }
+        }
+        return segments;
+    }
+
+    /**
+     * @return the id of a {@code /{id}} path.
+     */
+    protected static int singleId(HttpServletRequest request) {
+        List<String> path = segments(request);
+        if (path.size() != 1) {
+            throw notFound();
+        }
+        return parseId(path.get(0));
+    }
+
+    protected static int parseId(String segment) {
+        try {
+            return Integer.parseInt(segment);
+        } catch (NumberFormatException e) {
+            throw notFound();
+        }
+    }
+
+    protected static int intParameter(HttpServletRequest request, String name, int defaultValue, int max) {
+        String value = request.getParameter(name);
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        int parsed = Integer.parseInt(value);
+        if (parsed < 1 || parsed > max) {
+            throw new IllegalArgumentException("'" + name + "' must be between 1 and " + max);
+        }
+        return parsed;
+    }
+
+    protected static JsonObject readBody(HttpServletRequest request) throws IOException {
+        JsonElement body = JsonParser.parseReader(request.getReader());
+        if (!body.isJsonObject()) {
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        return body.getAsJsonObject();
+    }
+
+    protected static ApiException notFound() {
+        return new ApiException(HttpServletResponse.SC_NOT_FOUND, "Not found");
+    }
+
+    protected static ApiException methodNotAllowed() {
+        return new ApiException(HttpServletResponse.SC_METHOD_NOT_ALLOWED, "Method not allowed");
+    }
+}
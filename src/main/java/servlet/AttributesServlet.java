@@ -0,0 +1,80 @@
+package servlet;
+
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import dao.AttributesDAO;
+import dao.VersionConflictException;
+import model.Attributes;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * REST resource for single attributes, mapped to {@code /api/attributes/*}. Attributes are
+ * created through their object type, see {@link ObjectTypesServlet}.
+ * <ul>
+ *     <li>{@code GET /{id}} returns the attribute.</li>
+ *     <li>{@code PUT /{id}} updates it, optimistically if the body carries a {@code version};
+ *     an {@code enumValues} array replaces the allowed values.</li>
+ *     <li>{@code DELETE /{id}} removes it.</li>
+ * </ul>
+ */
+public class AttributesServlet extends AsyncJsonServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Attributes attribute = new AttributesDAO().findAttributeById(singleId(request));
+        if (attribute == null) {
+            throw notFound();
+        }
+        try (JsonWriter writer = startJson(response, HttpServletResponse.SC_OK)) {
+            ApiJson.writeAttribute(writer, attribute);
+        }
+    }
+
+    @Override
+    protected void doPut(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        int id = singleId(request);
+        JsonObject body = readBody(request);
+        Attributes attribute = ApiJson.readAttribute(body);
+        Integer version = ApiJson.optInteger(body, "version");
+        AttributesDAO dao = new AttributesDAO();
+        boolean updated;
+        try {
+            updated = version != null
+                    ? dao.updateAttribute(id, version, attribute.getName(), attribute.getDataType(), attribute.isRequired(),
+                            attribute.getDefaultValue(), attribute.isIndexed())
+                    : dao.updateAttribute(id, attribute.getName(), attribute.getDataType(), attribute.isRequired(),
+                            attribute.getDefaultValue(), attribute.isIndexed());
+        } catch (VersionConflictException e) {
+            writeConflict(response, e);
+            return;
+        }
+        List<String> enumValues = attribute.getEnumValues();
+        if (updated && enumValues != null) {
+            updated = dao.updateAttributeEnumValues(id, enumValues);
+        }
+        ResourceCache.getDefault().invalidateObjectTypes();
+        Attributes current = dao.findAttributeById(id);
+        if (current == null) {
+            throw notFound();
+        }
+        if (!updated) {
+            throw new ApiException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Attribute could not be updated");
+        }
+        try (JsonWriter writer = startJson(response, HttpServletResponse.SC_OK)) {
+            ApiJson.writeAttribute(writer, current);
+        }
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest request, HttpServletResponse response) {
+        if (!new AttributesDAO().deleteAttributeById(singleId(request))) {
+            throw notFound();
+        }
+        ResourceCache.getDefault().invalidateObjectTypes();
+        response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    }
+}
@@ -0,0 +1,174 @@
+package servlet;
+
+import admission.OperationClass;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import dao.BulkOperation;
+import dao.BulkOperationsDAO;
+import dao.BulkOutcome;
+import dao.BulkResult;
+import model.Facilities;
+import model.ObjectTypes;
+import model.RelationshipDependencies;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies many ontology writes in one request and one transaction, mapped to {@code /api/bulk}.
+ * The body is {@code {"operations": [...]}}; each operation names its {@code entity}
+ * (OBJECT_TYPE, ATTRIBUTE, FACILITY or RELATIONSHIP_DEPENDENCY) and {@code action} (CREATE,
+ * UPDATE or DELETE) next to the same fields the single-resource endpoints take. Updates and
+ * deletes name their row in {@code id}, new attributes their object type in {@code objectTypeId}
+ * and new dependencies their relationship in {@code relationshipId}. Any of these may be the
+ * string {@code tempId} of an earlier create in the same request instead of a number.
+ * <p>
+ * The response lists the outcome of every operation in order, with the generated ids of creates.
+ * It is 200 if everything was committed and 409 if one operation failed and nothing was. If the
+ * transaction failed without one operation to blame, e.g. the database went away, every operation
+ * is reported as rolled back, the error is in the top-level {@code error} and the status is 500.
+ */
+public class BulkServlet extends AsyncJsonServlet {
+
+    private static final int MAX_OPERATIONS = 10000;
+
+    @Override
+    protected OperationClass operationClass(HttpServletRequest request) {
+        return OperationClass.BULK;
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!segments(request).isEmpty()) {
+            throw notFound();
+        }
+        JsonElement operationsElement = readBody(request).get("operations");
+        if (operationsElement == null || !operationsElement.isJsonArray()) {
+            throw new IllegalArgumentException("'operations' must be an array");
+        }
+        JsonArray array = operationsElement.getAsJsonArray();
+        if (array.size() > MAX_OPERATIONS) {
+            throw new IllegalArgumentException("At most " + MAX_OPERATIONS + " operations are accepted per request");
+        }
+        List<BulkOperation> operations = new ArrayList<>(array.size());
+        for (int i = 0; i < array.size(); i++) {
+            try {
+                operations.add(readOperation(array.get(i).getAsJsonObject()));
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Operation " + i + ": " + e.getMessage(), e);
+            }
+        }
+
+        BulkOutcome outcome = new BulkOperationsDAO().execute(operations);
+        List<BulkResult> results = outcome.getResults();
+        boolean committed = outcome.isCommitted();
+        if (committed) {
+            invalidate(operations, results);
+        }
+        int status = committed ? HttpServletResponse.SC_OK
+                : outcome.getError() != null ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : HttpServletResponse.SC_CONFLICT;
+        try (JsonWriter writer = startJson(response, status)) {
+            writer.beginObject();
+            writer.name("committed").value(committed);
+            if (outcome.getError() != null) {
+                writer.name("error").value(outcome.getError());
+            }
+            writer.name("results").beginArray();
+            for (BulkResult result : results) {
+                writer.beginObject();
+                writer.name("index").value(result.getIndex());
+                writer.name("status").value(result.getStatus().name());
+                if (result.getId() != 0) {
+                    writer.name("id").value(result.getId());
+                }
+                String tempId = operations.get(result.getIndex()).getTempId();
+                if (tempId != null) {
+                    writer.name("tempId").value(tempId);
+                }
+                if (result.getError() != null) {
+                    writer.name("error").value(result.getError());
+                }
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.endObject();
+        }
+    }
+
+    private static BulkOperation readOperation(JsonObject body) {
+        BulkOperation operation = new BulkOperation(ApiJson.requireEnum(body, "entity", BulkOperation.Entity.class),
+                ApiJson.requireEnum(body, "action", BulkOperation.Action.class));
+        operation.setTempId(ApiJson.optString(body, "tempId", null));
+        operation.setTarget(readRef(body, "id"));
+        operation.setExpectedVersion(ApiJson.optInteger(body, "version"));
+        if (operation.getAction() == BulkOperation.Action.DELETE) {
+            return operation;
+        }
+        switch (operation.getEntity()) {
+            case OBJECT_TYPE:
+                ObjectTypes objectType = new ObjectTypes();
+                objectType.setName(ApiJson.requireString(body, "name"));
+                objectType.setDescription(ApiJson.optString(body, "description", null));
+                operation.setObjectType(objectType);
+                break;
+            case ATTRIBUTE:
+                operation.setAttribute(ApiJson.readAttribute(body));
+                operation.setParent(readRef(body, "objectTypeId"));
+                break;
+            case FACILITY:
+                Facilities facility = new Facilities();
+                facility.setName(ApiJson.requireString(body, "name"));
+                facility.setLocation(ApiJson.optString(body, "location", null));
+                facility.setSizeInSquareFootage(ApiJson.optDecimal(body, "sizeInSquareFootage"));
+                facility.setFacilityType(ApiJson.requireEnum(body, "facilityType", Facilities.FacilityType.class));
+                facility.setOperationalStatus(ApiJson.requireEnum(body, "operationalStatus", Facilities.OperationalStatus.class));
+                operation.setFacility(facility);
+                operation.setOrganizationId(ApiJson.optString(body, "organizationId", null));
+                break;
+            default:
+                RelationshipDependencies dependency = new RelationshipDependencies();
+                dependency.setDependencyName(ApiJson.requireString(body, "dependencyName"));
+                dependency.setDependencyType(ApiJson.requireEnum(body, "dependencyType", RelationshipDependencies.DependencyType.class));
+                operation.setDependency(dependency);
+                operation.setParent(readRef(body, "relationshipId"));
+        }
+        return operation;
+    }
+
+    /**
+     * Reads a row reference: a number is an existing id, a string the temporary id of a create.
+     */
+    private static BulkOperation.Ref readRef(JsonObject body, String name) {
+        JsonElement element = body.get(name);
+        if (element == null || element.isJsonNull()) {
+            return null;
+        }
+        if (element.isJsonPrimitive() && element.getAsJsonPrimitive().isString()) {
+            return BulkOperation.Ref.temp(element.getAsString());
+        }
+        return BulkOperation.Ref.id(element.getAsInt());
+    }
+
+    private static void invalidate(List<BulkOperation> operations, List<BulkResult> results) {
+        boolean attributesChanged = false;
+        for (int i = 0; i < operations.size(); i++) {
+            BulkOperation.Entity entity = operations.get(i).getEntity();
+            if (entity == BulkOperation.Entity.OBJECT_TYPE) {
+                ResourceCache.getDefault().invalidateObjectType(results.get(i).getId());
+            } else if (entity == BulkOperation.Entity.FACILITY) {
+                ResourceCache.getDefault().invalidateFacility(results.get(i).getId());
+            } else if (entity == BulkOperation.Entity.ATTRIBUTE) {
+                attributesChanged = true;
+            }
+        }
+        if (attributesChanged) {
+            // The object types of updated and deleted attributes are not known here.
+            ResourceCache.getDefault().invalidateObjectTypes();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package servlet;
+
+import dao.AttributesDAO;
+import dao.ObjectTypesDAO;
+import events.ChangeEvent;
+import events.ChangeEventListener;
+import model.Attributes;
+import model.ObjectTypes;
+import snapshot.AttributeView;
+import snapshot.ObjectTypeView;
+import snapshot.OntologySnapshot;
+import snapshot.SnapshotMaintainer;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The whole ontology catalogue, all object types with their attributes, serialised and
+ * compressed once per catalogue version. Once {@link SnapshotMaintainer} has loaded the ontology,
+ * the catalogue version is the snapshot's: a read that finds a newer snapshot than the cached
+ * payload rebuilds it from that snapshot without touching the database. Until then every change
+ * event for the catalogue tables bumps the version and the next read rebuilds the payload with
+ * two queries. Either way concurrent readers wait for a single rebuild instead of each starting
+ * their own, and reads in between cost no serialisation or compression at all. A rebuild that
+ * cannot load the catalogue fails the read and caches nothing, so the next read tries again.
+ */
+public class CatalogueCache implements ChangeEventListener {
+
+    private static final Logger LOGGER = Logger.getLogger(CatalogueCache.class.getName());
+    private static final CatalogueCache DEFAULT = new CatalogueCache();
+
+    private final AtomicLong version = new AtomicLong();
+    private final Object rebuildLock = new Object();
+    private volatile CataloguePayload current;
+    // Built from the snapshot whose version it carries.
+    private volatile CataloguePayload fromSnapshot;
+
+    public static CatalogueCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return the payload for the current catalogue version, rebuilt if it is out of date.
+     * @throws SQLException if it was out of date and could not be loaded.
+     */
+    CataloguePayload get() throws SQLException {
+        OntologySnapshot snapshot = SnapshotMaintainer.getDefault().current();
+        if (snapshot.getVersion() > 0) {
+            return get(snapshot);
+        }
+        CataloguePayload payload = current;
+        if (payload != null && payload.getVersion() == version.get()) {
+            return payload;
+        }
+        synchronized (rebuildLock) {
+            long building = version.get();
+            payload = current;
+            if (payload != null && payload.getVersion() == building) {
+                return payload;
+            }
+            payload = build(building);
+            // A change that arrived during the build leaves the new payload uncached.
+            if (version.get() == building) {
+                current = payload;
+            }
+            return payload;
+        }
+    }
+
+    private CataloguePayload get(OntologySnapshot snapshot) {
+        CataloguePayload payload = fromSnapshot;
+        if (payload != null && payload.getVersion() >= snapshot.getVersion()) {
+            return payload;
+        }
+        synchronized (rebuildLock) {
+            payload = fromSnapshot;
+            if (payload != null && payload.getVersion() >= snapshot.getVersion()) {
+                return payload;
+            }
+            payload = build(snapshot);
+            fromSnapshot = payload;
+            return payload;
+        }
+    }
+
+    /**
+     * Marks the cached payload out of date, e.g. after this node wrote to the catalogue.
+     */
+    void invalidate() {
+        version.incrementAndGet();
+    }
+
+    @Override
+    public void onChange(ChangeEvent event) {
+        String table = event.getTable();
+        if (ChangeEvent.OBJECT_TYPES.equals(table) || ChangeEvent.ATTRIBUTES.equals(table)) {
+            invalidate();
+        }
+    }
+
+    @Override
+    public void onReset() {
+        invalidate();
+    }
+
+    private CataloguePayload build(long building) throws SQLException {
+        long started = System.nanoTime();
+        List<ObjectTypes> objectTypes = new ObjectTypesDAO().loadAllObjectTypes();
+        Map<Integer, List<Attributes>> attributes = new AttributesDAO().loadAllAttributesByObjectType();
+        for (ObjectTypes objectType : objectTypes) {
+            objectType.setAttributesList(attributes.getOrDefault(objectType.getId(), Collections.emptyList()));
+        }
+        JsonDocument document = JsonDocument.of(writer -> {
+            writer.beginArray();
+            for (ObjectTypes objectType : objectTypes) {
+                ApiJson.writeObjectType(writer, objectType);
+            }
+            writer.endArray();
+        });
+        CataloguePayload payload = CataloguePayload.of(building, document);
+        LOGGER.log(Level.FINE, "Catalogue version " + building + " built with " + objectTypes.size() + " object types, "
+                + payload.body(CataloguePayload.Encoding.IDENTITY).length + " bytes, in "
+                + (System.nanoTime() - started) / 1000000 + " ms");
+        return payload;
+    }
+
+    private CataloguePayload build(OntologySnapshot snapshot) {
+        long started = System.nanoTime();
+        List<ObjectTypeView> objectTypes = new ArrayList<>(snapshot.getObjectTypes().size());
+        for (ObjectTypeView objectType : snapshot.getObjectTypes()) {
+            objectTypes.add(objectType);
+        }
+        // The snapshot iterates in trie order; the catalogue lists object types and attributes by id.
+        objectTypes.sort(Comparator.comparingInt(ObjectTypeView::getId));
+        JsonDocument document = JsonDocument.of(writer -> {
+            writer.beginArray();
+            for (ObjectTypeView objectType : objectTypes) {
+                ApiJson.writeObjectType(writer, toObjectType(objectType, snapshot));
+            }
+            writer.endArray();
+        });
+        CataloguePayload payload = CataloguePayload.of(snapshot.getVersion(), document);
+        LOGGER.log(Level.FINE, "Catalogue built from snapshot " + snapshot.getVersion() + " with " + objectTypes.size()
+                + " object types, " + payload.body(CataloguePayload.Encoding.IDENTITY).length + " bytes, in "
+                + (System.nanoTime() - started) / 1000000 + " ms");
+        return payload;
+    }
+
+    private static ObjectTypes toObjectType(ObjectTypeView view, OntologySnapshot snapshot) {
+        ObjectTypes objectType = new ObjectTypes();
+        objectType.setId(view.getId());
+        objectType.setName(view.getName());
+        objectType.setDescription(view.getDescription());
+        objectType.setVersion(view.getVersion());
+        objectType.setCreatedAt(view.getCreatedAt() == null ? null : Timestamp.from(view.getCreatedAt()));
+        objectType.setUpdatedAt(view.getUpdatedAt() == null ? null : Timestamp.from(view.getUpdatedAt()));
+        List<Attributes> attributes = new ArrayList<>();
+        for (AttributeView attributeView : snapshot.getAttributes(view.getId())) {
+            Attributes attribute = new Attributes();
+            attribute.setId(attributeView.getId());
+            attribute.setName(attributeView.getName());
+            attribute.setDataType(attributeView.getDataType());
+            attribute.setRequired(attributeView.isRequired());
+            attribute.setDefaultValue(attributeView.getDefaultValue());
+            attribute.setEnumValues(attributeView.getEnumValues());
+            attribute.setIndexed(attributeView.isIndexed());
+            attribute.setAttributeUsageCount(attributeView.getUsageCount());
+            attribute.setVersion(attributeView.getVersion());
+            attributes.add(attribute);
+        }
+        attributes.sort(Comparator.comparingInt(Attributes::getId));
+        objectType.setAttributesList(attributes);
+        return objectType;
+    }
+}
@@ -0,0 +1,119 @@
+package servlet;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * One serialised version of the catalogue in every encoding the API serves. The compressed
+ * forms are produced once, at build time, with the best compression level since the cost is
+ * paid per catalogue version rather than per request. An encoding that does not make the body
+ * smaller is not kept.
+ */
+final class CataloguePayload {
+
+    enum Encoding {
+        GZIP("gzip"), DEFLATE("deflate"), IDENTITY(null);
+
+        private final String header;
+
+        Encoding(String header) {
+            this.header = header;
+        }
+
+        /**
+         * @return the Content-Encoding value, or null for the uncompressed body.
+         */
+        String getHeader() {
+            return header;
+        }
+    }
+
+    private final long version;
+    private final JsonDocument document;
+    private final byte[] gzip;
+    private final byte[] deflate;
+
+    private CataloguePayload(long version, JsonDocument document, byte[] gzip, byte[] deflate) {
+        this.version = version;
+        this.document = document;
+        this.gzip = gzip;
+        this.deflate = deflate;
+    }
+
+    static CataloguePayload of(long version, JsonDocument document) {
+        byte[] body = document.getBody();
+        byte[] gzip = compress(body, true);
+        byte[] deflate = compress(body, false);
+        return new CataloguePayload(version, document,
+                gzip.length < body.length ? gzip : null,
+                deflate.length < body.length ? deflate : null);
+    }
+
+    long getVersion() {
+        return version;
+    }
+
+    String getEtag() {
+        return document.getEtag();
+    }
+
+    boolean matches(String ifNoneMatch) {
+        return document.matches(ifNoneMatch);
+    }
+
+    /**
+     * @return true if the body is available in the encoding.
+     */
+    boolean has(Encoding encoding) {
+        return body(encoding) != null;
+    }
+
+    /**
+     * @return the body in the encoding; the array is shared and must not be modified.
+     */
+    byte[] body(Encoding encoding) {
+        switch (encoding) {
+            case GZIP:
+                return gzip;
+            case DEFLATE:
+                return deflate;
+            default:
+                return document.getBody();
+        }
+    }
+
+    private static byte[] compress(byte[] body, boolean gzip) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(body.length / 4 + 64);
+        try {
+            if (gzip) {
+                try (OutputStream out = new BestGzipOutputStream(bytes)) {
+                    out.write(body);
+                }
+            } else {
+                // A deflater passed in is not released by the stream, so end it here.
+                Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+                try (OutputStream out = new DeflaterOutputStream(bytes, deflater)) {
+                    out.write(body);
+                } finally {
+                    deflater.end();
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static final class BestGzipOutputStream extends GZIPOutputStream {
+
+        BestGzipOutputStream(OutputStream out) throws IOException {
+            super(out);
+            def.setLevel(Deflater.BEST_COMPRESSION);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package servlet;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serves the whole ontology catalogue from {@link CatalogueCache}, mapped to
+ * {@code /api/catalogue}. The body is sent pre-compressed in the best encoding the client
+ * accepts (gzip, then deflate) and a matching {@code If-None-Match} returns 304. If the catalogue
+ * changed and cannot be loaded the answer is 503, never an empty catalogue.
+ */
+public class CatalogueServlet extends AsyncJsonServlet {
+
+    private static final Logger LOGGER = Logger.getLogger(CatalogueServlet.class.getName());
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!segments(request).isEmpty()) {
+            throw notFound();
+        }
+        CataloguePayload payload;
+        try {
+            payload = CatalogueCache.getDefault().get();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error loading the catalogue", e);
+            throw new ApiException(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "The catalogue could not be loaded, retry shortly");
+        }
+        response.setHeader("ETag", payload.getEtag());
+        response.setHeader("Vary", "Accept-Encoding");
+        if (payload.matches(request.getHeader("If-None-Match"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+        CataloguePayload.Encoding encoding = negotiate(request.getHeader("Accept-Encoding"), payload);
+        byte[] body = payload.body(encoding);
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        if (encoding.getHeader() != null) {
+            response.setHeader("Content-Encoding", encoding.getHeader());
+        }
+        response.setContentLength(body.length);
+        if (!"HEAD".equals(request.getMethod())) {
+            ServletOutputStream out = response.getOutputStream();
+            out.write(body);
+            out.flush();
+        }
+    }
+
+    /**
+     * Picks the encoding with the highest quality value in {@code Accept-Encoding}, preferring
+     * gzip over deflate over identity on ties. Identity is used when nothing else is acceptable.
+     */
+    static CataloguePayload.Encoding negotiate(String acceptEncoding, CataloguePayload payload) {
+        if (acceptEncoding == null) {
+            return CataloguePayload.Encoding.IDENTITY;
+        }
+        CataloguePayload.Encoding best = CataloguePayload.Encoding.IDENTITY;
+        double bestQuality = 0;
+        for (CataloguePayload.Encoding encoding : new CataloguePayload.Encoding[] {CataloguePayload.Encoding.GZIP, CataloguePayload.Encoding.DEFLATE}) {
+            double quality = quality(acceptEncoding, encoding.getHeader());
+            if (quality > bestQuality && payload.has(encoding)) {
+                best = encoding;
+                bestQuality = quality;
+            }
+        }
+        return best;
+    }
+
+    private static double quality(String acceptEncoding, String coding) {
+        double wildcard = 0;
+        for (String part : acceptEncoding.split(",")) {
+            String[] pieces = part.trim().split(";");
+            String name = pieces[0].trim();
+            double quality = 1;
+            for (int i = 1; i < pieces.length; i++) {
+                String parameter = pieces[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equalsIgnoreCase(coding)) {
+                return quality;
+            }
+            if (name.equals("*")) {
+                wildcard = quality;
+            }
+        }
+        return wildcard;
+    }
+}
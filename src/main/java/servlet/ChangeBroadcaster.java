@@ -0,0 +1,314 @@
+package servlet;
+
+import com.google.gson.stream.JsonWriter;
+import events.ChangeEvent;
+import events.ChangeEventListener;
+
+import javax.websocket.CloseReason;
+import javax.websocket.Session;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Fans change events out to the WebSocket subscribers of {@link OntologyChangeEndpoint}.
+ * Events are queued per subscriber and flushed on a fixed tick as one batched frame. The queue
+ * holds one entry per row: a change to a row that is still queued replaces the queued one and
+ * moves to the end, so a hot row cannot fill the queue and its capacity bounds the distinct rows
+ * waiting. After a reset of the change feed the queued events are dropped and the next frame is
+ * {@code {"reset":true,"events":[...]}}, telling the client to reload. A burst of more distinct
+ * rows than the capacity is handled the same way: the queue collapses to a reset and the client
+ * reloads instead of replaying the burst. A subscriber has at most one frame in flight; only if its
+ * queue overflows while that frame is still being sent is it treated as a slow consumer and
+ * disconnected, so it cannot hold back everyone else.
+ */
+public class ChangeBroadcaster implements ChangeEventListener {
+
+    private static final Logger LOGGER = Logger.getLogger(ChangeBroadcaster.class.getName());
+    private static final ChangeBroadcaster DEFAULT = new ChangeBroadcaster(50, 1024, 256);
+
+    private final long flushIntervalMillis;
+    private final int queueCapacity;
+    private final int maxBatchSize;
+
+    private final Map<Session, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final Set<Subscriber> unfiltered = ConcurrentHashMap.newKeySet();
+    private final Map<Integer, Set<Subscriber>> byObjectType = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Subscriber>> byFacility = new ConcurrentHashMap<>();
+    private final Map<Integer, Set<Subscriber>> byRelationship = new ConcurrentHashMap<>();
+    private ScheduledExecutorService flusher;
+
+    /**
+     * @param flushIntervalMillis how long events are collected before a frame is sent.
+     * @param queueCapacity       how many distinct rows may wait for a subscriber before its queue
+     *                            collapses to a reset, or it is dropped if a frame is still in flight.
+     * @param maxBatchSize        the maximum number of events in one frame.
+     */
+    public ChangeBroadcaster(long flushIntervalMillis, int queueCapacity, int maxBatchSize) {
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.queueCapacity = queueCapacity;
+        this.maxBatchSize = maxBatchSize;
+    }
+
+    public static ChangeBroadcaster getDefault() {
+        return DEFAULT;
+    }
+
+    public synchronized void start() {
+        if (flusher == null) {
+            flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ontology-change-broadcaster");
+                thread.setDaemon(true);
+                return thread;
+            });
+            flusher.scheduleAtFixedRate(this::flushAll, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    public synchronized void stop() {
+        if (flusher != null) {
+            flusher.shutdownNow();
+            flusher = null;
+        }
+    }
+
+    /**
+     * Registers a session. Empty filter sets subscribe to every change.
+     *
+     * @param session         the WebSocket session.
+     * @param objectTypeIds   object types whose own and attribute changes are wanted.
+     * @param facilityIds     facilities whose changes are wanted.
+     * @param relationshipIds relationships whose dependency changes are wanted.
+     */
+    public void subscribe(Session session, Set<Integer> objectTypeIds, Set<Integer> facilityIds, Set<Integer> relationshipIds) {
+        Subscriber subscriber = new Subscriber(session, objectTypeIds, facilityIds, relationshipIds, queueCapacity);
+        Subscriber previous = subscribers.put(session, subscriber);
+        if (previous != null) {
+            unindex(previous);
+        }
+        if (objectTypeIds.isEmpty() && facilityIds.isEmpty() && relationshipIds.isEmpty()) {
+            unfiltered.add(subscriber);
+        }
+        index(byObjectType, objectTypeIds, subscriber);
+        index(byFacility, facilityIds, subscriber);
+        index(byRelationship, relationshipIds, subscriber);
+    }
+
+    public void unsubscribe(Session session) {
+        Subscriber subscriber = subscribers.get(session);
+        if (subscriber != null) {
+            remove(subscriber);
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @Override
+    public void onChange(ChangeEvent event) {
+        String key = event.getTable() + '|' + event.getId();
+        for (Subscriber subscriber : unfiltered) {
+            enqueue(subscriber, key, event);
+        }
+        Set<Subscriber> targets;
+        switch (event.getTable()) {
+            case ChangeEvent.OBJECT_TYPES:
+                targets = byObjectType.get(event.getId());
+                break;
+            case ChangeEvent.ATTRIBUTES:
+                targets = byObjectType.get(event.getParentId());
+                break;
+            case ChangeEvent.FACILITIES:
+                targets = byFacility.get(event.getId());
+                break;
+            case ChangeEvent.RELATIONSHIP_DEPENDENCIES:
+                targets = byRelationship.get(event.getParentId());
+                break;
+            default:
+                targets = null;
+        }
+        if (targets != null) {
+            for (Subscriber subscriber : targets) {
+                enqueue(subscriber, key, event);
+            }
+        }
+    }
+
+    @Override
+    public void onReset() {
+        for (Subscriber subscriber : subscribers.values()) {
+            subscriber.reset();
+        }
+    }
+
+    private void enqueue(Subscriber subscriber, String key, ChangeEvent event) {
+        if (!subscriber.offer(key, event)) {
+            LOGGER.log(Level.WARNING, "Dropping slow WebSocket consumer " + subscriber.session.getId());
+            remove(subscriber);
+            close(subscriber.session, new CloseReason(CloseReason.CloseCodes.TRY_AGAIN_LATER, "slow consumer"));
+        }
+    }
+
+    // Package-private so tests can flush without waiting for the tick
+    void flushAll() {
+        for (Subscriber subscriber : subscribers.values()) {
+            if (subscriber.isEmpty() || !subscriber.sending.compareAndSet(false, true)) {
+                continue;
+            }
+            try {
+                String frame = drainToFrame(subscriber);
+                subscriber.session.getAsyncRemote().sendText(frame, result -> {
+                    subscriber.sending.set(false);
+                    if (!result.isOK()) {
+                        remove(subscriber);
+                    }
+                });
+            } catch (IOException | RuntimeException e) {
+                subscriber.sending.set(false);
+                LOGGER.log(Level.WARNING, "Error sending change batch to " + subscriber.session.getId(), e);
+                remove(subscriber);
+            }
+        }
+    }
+
+    private String drainToFrame(Subscriber subscriber) throws IOException {
+        List<ChangeEvent> batch = new ArrayList<>();
+        boolean reset = subscriber.drain(batch, maxBatchSize);
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            writer.beginObject();
+            if (reset) {
+                writer.name("reset").value(true);
+            }
+            writer.name("events").beginArray();
+            for (ChangeEvent change : batch) {
+                writer.beginObject()
+                        .name("table").value(change.getTable())
+                        .name("id").value(change.getId())
+                        .name("parentId").value(change.getParentId())
+                        .name("operation").value(change.getOperation().name())
+                        .name("version").value(change.getVersion())
+                        .endObject();
+            }
+            writer.endArray().endObject();
+        }
+        return out.toString();
+    }
+
+    private void remove(Subscriber subscriber) {
+        if (subscribers.remove(subscriber.session, subscriber)) {
+            unindex(subscriber);
+        }
+    }
+
+    private void unindex(Subscriber subscriber) {
+        unfiltered.remove(subscriber);
+        unindex(byObjectType, subscriber.objectTypeIds, subscriber);
+        unindex(byFacility, subscriber.facilityIds, subscriber);
+        unindex(byRelationship, subscriber.relationshipIds, subscriber);
+    }
+
+    private static void index(Map<Integer, Set<Subscriber>> index, Set<Integer> keys, Subscriber subscriber) {
+        for (Integer key : keys) {
+            index.computeIfAbsent(key, k -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+    }
+
+    private static void unindex(Map<Integer, Set<Subscriber>> index, Set<Integer> keys, Subscriber subscriber) {
+        for (Integer key : keys) {
+            index.computeIfPresent(key, (k, set) -> {
+                set.remove(subscriber);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    private static void close(Session session, CloseReason reason) {
+        try {
+            session.close(reason);
+        } catch (IOException e) {
+            LOGGER.log(Level.FINE, "Error closing WebSocket session " + session.getId(), e);
+        }
+    }
+
+    /**
+     * A session, its filters and its queue, which is filled on the change feed thread and drained
+     * on the flusher thread.
+     */
+    private static final class Subscriber {
+        private final Session session;
+        private final Set<Integer> objectTypeIds;
+        private final Set<Integer> facilityIds;
+        private final Set<Integer> relationshipIds;
+        private final int capacity;
+        // The latest change of every queued row, by table and id, oldest first.
+        private final LinkedHashMap<String, ChangeEvent> pending = new LinkedHashMap<>();
+        private boolean reset;
+        private final AtomicBoolean sending = new AtomicBoolean();
+
+        private Subscriber(Session session, Set<Integer> objectTypeIds, Set<Integer> facilityIds, Set<Integer> relationshipIds, int capacity) {
+            this.session = session;
+            this.objectTypeIds = Collections.unmodifiableSet(objectTypeIds);
+            this.facilityIds = Collections.unmodifiableSet(facilityIds);
+            this.relationshipIds = Collections.unmodifiableSet(relationshipIds);
+            this.capacity = capacity;
+        }
+
+        /**
+         * Queues the change. If the row is not queued yet and the queue is full, the queue is
+         * replaced by a reset, unless a frame is still in flight.
+         *
+         * @return false if the queue is full while a frame is in flight.
+         */
+        synchronized boolean offer(String key, ChangeEvent event) {
+            if (pending.remove(key) == null && pending.size() >= capacity) {
+                if (sending.get()) {
+                    return false;
+                }
+                pending.clear();
+                reset = true;
+            }
+            pending.put(key, event);
+            return true;
+        }
+
+        synchronized void reset() {
+            pending.clear();
+            reset = true;
+        }
+
+        synchronized boolean isEmpty() {
+            return pending.isEmpty() && !reset;
+        }
+
+        /**
+         * Moves up to the given number of the oldest changes into the batch.
+         *
+         * @return whether the batch follows a reset.
+         */
+        synchronized boolean drain(List<ChangeEvent> batch, int max) {
+            Iterator<ChangeEvent> events = pending.values().iterator();
+            while (batch.size() < max && events.hasNext()) {
+                batch.add(events.next());
+                events.remove();
+            }
+            boolean wasReset = reset;
+            reset = false;
+            return wasReset;
+        }
+    }
+}
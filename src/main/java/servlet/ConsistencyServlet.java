@@ -0,0 +1,90 @@
+package servlet;
+
+import com.google.gson.stream.JsonWriter;
+import consistency.ConsistencyChecker;
+import consistency.ConsistencyReport;
+import consistency.Rule;
+import consistency.Violation;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Shows the report of the last {@link ConsistencyChecker} run: the counts per rule and up to
+ * {@code limit} violations (default 1000). {@code POST} runs a check now and shows its report,
+ * an incremental one unless {@code full=true}.
+ */
+public class ConsistencyServlet extends HttpServlet {
+
+    private static final int DEFAULT_LIMIT = 1000;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        write(request, response, ConsistencyChecker.getDefault().getLastReport());
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ConsistencyChecker checker = ConsistencyChecker.getDefault();
+        ConsistencyReport report = "true".equals(request.getParameter("full")) ? checker.checkFull() : checker.check();
+        if (report == null) {
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Consistency check failed, see the log");
+            return;
+        }
+        write(request, response, report);
+    }
+
+    private void write(HttpServletRequest request, HttpServletResponse response, ConsistencyReport report) throws IOException {
+        if (report == null) {
+            response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+            return;
+        }
+        int limit = DEFAULT_LIMIT;
+        if (request.getParameter("limit") != null) {
+            try {
+                limit = Math.max(0, Integer.parseInt(request.getParameter("limit")));
+            } catch (NumberFormatException e) {
+                response.sendError(HttpServletResponse.SC_BAD_REQUEST, "limit must be a number");
+                return;
+            }
+        }
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        try (JsonWriter writer = new JsonWriter(response.getWriter())) {
+            writer.beginObject();
+            writer.name("full").value(report.isFull());
+            writer.name("finishedAt").value(report.getFinishedAt());
+            writer.name("durationMillis").value(report.getDurationMillis());
+            writer.name("historySeq").value(report.getHistorySeq());
+            writer.name("rowsChecked").value(report.getRowsChecked());
+            writer.name("objectTypes").value(report.getObjectTypes());
+            writer.name("relationships").value(report.getRelationships());
+            writer.name("added").value(report.getAdded());
+            writer.name("resolved").value(report.getResolved());
+            writer.name("counts").beginObject();
+            for (Map.Entry<Rule, Integer> count : report.countByRule().entrySet()) {
+                writer.name(count.getKey().name()).value(count.getValue());
+            }
+            writer.endObject();
+            List<Violation> violations = report.getViolations();
+            writer.name("violations").beginArray();
+            for (Violation violation : violations.subList(0, Math.min(limit, violations.size()))) {
+                writer.beginObject();
+                writer.name("table").value(violation.getTable());
+                writer.name("id").value(violation.getId());
+                writer.name("rule").value(violation.getRule().name());
+                writer.name("description").value(violation.getRule().getDescription());
+                writer.name("detail").value(violation.getDetail());
+                writer.endObject();
+            }
+            writer.endArray();
+            writer.name("truncated").value(violations.size() > limit);
+            writer.endObject();
+        }
+    }
+}
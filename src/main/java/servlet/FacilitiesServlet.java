@@ -0,0 +1,71 @@
+package servlet;
+
+import com.google.gson.JsonObject;
+import dao.FacilitiesDAO;
+import model.Facilities;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * REST resource for facilities, mapped to {@code /api/facilities/*}.
+ * <ul>
+ *     <li>{@code POST /} creates a facility.</li>
+ *     <li>{@code GET /{id}} returns it and supports {@code If-None-Match}.</li>
+ *     <li>{@code PUT /{id}} replaces its details, {@code DELETE /{id}} removes it.</li>
+ * </ul>
+ */
+public class FacilitiesServlet extends AsyncJsonServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        writeDocument(request, response, ResourceCache.getDefault().getFacility(singleId(request)));
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!segments(request).isEmpty()) {
+            throw methodNotAllowed();
+        }
+        JsonObject body = readBody(request);
+        Facilities facility = new FacilitiesDAO().createFacility(ApiJson.requireString(body, "name"),
+                ApiJson.optString(body, "location", null), ApiJson.optDecimal(body, "sizeInSquareFootage"),
+                ApiJson.requireEnum(body, "facilityType", Facilities.FacilityType.class),
+                ApiJson.requireEnum(body, "operationalStatus", Facilities.OperationalStatus.class),
+                ApiJson.optString(body, "organizationId", null));
+        if (facility == null || facility.getId() == 0) {
+            throw new ApiException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Facility could not be created");
+        }
+        writeCreated(response, facility.getId());
+    }
+
+    @Override
+    protected void doPut(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        int id = singleId(request);
+        JsonObject body = readBody(request);
+        boolean updated = new FacilitiesDAO().updateFacilityDetails(id, ApiJson.requireString(body, "name"),
+                ApiJson.optString(body, "location", null), ApiJson.optDecimal(body, "sizeInSquareFootage"),
+                ApiJson.requireEnum(body, "facilityType", Facilities.FacilityType.class),
+                ApiJson.requireEnum(body, "operationalStatus", Facilities.OperationalStatus.class));
+        ResourceCache.getDefault().invalidateFacility(id);
+        JsonDocument current = ResourceCache.getDefault().getFacility(id);
+        if (current == null) {
+            throw notFound();
+        }
+        if (!updated) {
+            throw new ApiException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Facility could not be updated");
+        }
+        writeDocument(request, response, current);
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest request, HttpServletResponse response) {
+        int id = singleId(request);
+        if (!new FacilitiesDAO().deleteFacility(id)) {
+            throw notFound();
+        }
+        ResourceCache.getDefault().invalidateFacility(id);
+        response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    }
+}
@@ -0,0 +1,98 @@
+package servlet;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import jobs.Job;
+import jobs.JobScheduler;
+import jobs.JobStatus;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * REST resource for background jobs, see {@link JobScheduler}, mapped to {@code /api/jobs/*}.
+ * <ul>
+ *     <li>{@code GET /} lists the most recently queued jobs, newest first, optionally only those
+ *     with a {@code status}, up to {@code limit} (default 50, at most 500).</li>
+ *     <li>{@code GET /{id}} returns a job with its progress.</li>
+ *     <li>{@code POST /} queues a job of a {@code type} with optional {@code parameters}; with a
+ *     {@code key}, a pending job with the same key is returned instead of queuing another.
+ *     Answers 202 with the job id.</li>
+ *     <li>{@code DELETE /{id}} cancels a pending or running job.</li>
+ * </ul>
+ */
+public class JobsServlet extends AsyncJsonServlet {
+
+    private static final int DEFAULT_LIMIT = 50;
+    private static final int MAX_LIMIT = 500;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        List<String> path = segments(request);
+        if (path.isEmpty()) {
+            String status = request.getParameter("status");
+            List<Job> jobs = JobScheduler.getDefault().getStore().findJobs(
+                    status == null ? null : JobStatus.valueOf(status.trim().toUpperCase()),
+                    intParameter(request, "limit", DEFAULT_LIMIT, MAX_LIMIT));
+            try (JsonWriter writer = startJson(response, HttpServletResponse.SC_OK)) {
+                writer.beginArray();
+                for (Job job : jobs) {
+                    ApiJson.writeJob(writer, job);
+                }
+                writer.endArray();
+            }
+            return;
+        }
+        Job job = JobScheduler.getDefault().getStore().findJobById(jobId(path));
+        if (job == null) {
+            throw notFound();
+        }
+        try (JsonWriter writer = startJson(response, HttpServletResponse.SC_OK)) {
+            ApiJson.writeJob(writer, job);
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!segments(request).isEmpty()) {
+            throw methodNotAllowed();
+        }
+        JsonObject body = readBody(request);
+        JsonElement parameters = body.get("parameters");
+        if (parameters != null && !parameters.isJsonNull() && !parameters.isJsonObject()) {
+            throw new IllegalArgumentException("'parameters' must be an object");
+        }
+        long id = JobScheduler.getDefault().enqueue(ApiJson.requireString(body, "type"), ApiJson.optString(body, "key", null),
+                parameters == null || parameters.isJsonNull() ? null : parameters.toString());
+        if (id < 0) {
+            throw new ApiException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Job could not be queued");
+        }
+        try (JsonWriter writer = startJson(response, HttpServletResponse.SC_ACCEPTED)) {
+            writer.beginObject();
+            writer.name("id").value(id);
+            writer.endObject();
+        }
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest request, HttpServletResponse response) {
+        if (!JobScheduler.getDefault().getStore().cancel(jobId(segments(request)))) {
+            throw notFound();
+        }
+        response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    }
+
+    private static long jobId(List<String> path) {
+        if (path.size() != 1) {
+            throw notFound();
+        }
+        try {
+            return Long.parseLong(path.get(0));
+        } catch (NumberFormatException e) {
+            throw notFound();
+        }
+    }
+}
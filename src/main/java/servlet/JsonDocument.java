@@ -0,0 +1,86 @@
+package servlet;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * A serialised REST API resource and its entity tag. The tag is a digest of the bytes, so it
+ * changes exactly when the representation does and is the same on every node.
+ */
+final class JsonDocument {
+
+    /**
+     * Writes one resource.
+     */
+    interface Content {
+        void write(JsonWriter writer) throws IOException;
+    }
+
+    private final byte[] body;
+    private final String etag;
+
+    private JsonDocument(byte[] body, String etag) {
+        this.body = body;
+        this.etag = etag;
+    }
+
+    static JsonDocument of(Content content) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try (JsonWriter writer = new JsonWriter(new OutputStreamWriter(bytes, StandardCharsets.UTF_8))) {
+            content.write(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] body = bytes.toByteArray();
+        return new JsonDocument(body, "\"" + digest(body) + "\"");
+    }
+
+    byte[] getBody() {
+        return body;
+    }
+
+    String getEtag() {
+        return etag;
+    }
+
+    /**
+     * Checks an {@code If-None-Match} header against this document, allowing weak comparison as
+     * RFC 7232 does for that header.
+     *
+     * @param ifNoneMatch the header value, or null.
+     * @return true if the client's copy is current.
+     */
+    boolean matches(String ifNoneMatch) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String digest(byte[] body) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(body);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 16));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package servlet;
+
+import admission.AdmissionController;
+import admission.OperationClass;
+import consistency.ConsistencyChecker;
+import consistency.ConsistencyReport;
+import consistency.Rule;
+import jobs.JobScheduler;
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+import metrics.OperationMetrics;
+import migration.MigrationRunner;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Exposes the DAO operation metrics in the Prometheus text format: latency and connection wait
+ * quantiles in seconds, row and error counters per operation, the number of open connections, and
+ * the limits, occupancy and outcomes of admission control per operation class, the violations
+ * per rule found by the last consistency check, the schema version, and the background jobs
+ * running, finished and failed on this node.
+ */
+public class MetricsServlet extends HttpServlet {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999, 1.0};
+    private static final double NANOS_PER_SECOND = 1e9;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("text/plain; version=0.0.4");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        PrintWriter writer = response.getWriter();
+        List<OperationMetrics> operations = Metrics.getOperations();
+
+        writer.println("# TYPE dao_operation_latency_seconds summary");
+        for (OperationMetrics operation : operations) {
+            writeSummary(writer, "dao_operation_latency_seconds", operation.getName(), operation.getLatency().snapshot());
+        }
+        writer.println("# TYPE dao_connection_wait_seconds summary");
+        for (OperationMetrics operation : operations) {
+            writeSummary(writer, "dao_connection_wait_seconds", operation.getName(), operation.getConnectionWait().snapshot());
+        }
+        writer.println("# TYPE dao_operation_rows_total counter");
+        for (OperationMetrics operation : operations) {
+            writer.println("dao_operation_rows_total" + labels(operation.getName(), null) + ' ' + operation.getRows());
+        }
+        writer.println("# TYPE dao_operation_errors_total counter");
+        for (OperationMetrics operation : operations) {
+            writer.println("dao_operation_errors_total" + labels(operation.getName(), null) + ' ' + operation.getErrors());
+        }
+        writer.println("# TYPE dao_open_connections gauge");
+        writer.println("dao_open_connections " + Metrics.getOpenConnections());
+
+        AdmissionController admission = AdmissionController.getDefault();
+        writer.println("# TYPE admission_limit gauge");
+        for (OperationClass operationClass : OperationClass.values()) {
+            writer.println("admission_limit" + classLabel(operationClass) + ' ' + admission.getLimit(operationClass));
+        }
+        writer.println("# TYPE admission_inflight gauge");
+        for (OperationClass operationClass : OperationClass.values()) {
+            writer.println("admission_inflight" + classLabel(operationClass) + ' ' + admission.getInflight(operationClass));
+        }
+        writer.println("# TYPE admission_queued gauge");
+        for (OperationClass operationClass : OperationClass.values()) {
+            writer.println("admission_queued" + classLabel(operationClass) + ' ' + admission.getQueued(operationClass));
+        }
+        writer.println("# TYPE admission_admitted_total counter");
+        for (OperationClass operationClass : OperationClass.values()) {
+            writer.println("admission_admitted_total" + classLabel(operationClass) + ' ' + admission.getAdmitted(operationClass));
+        }
+        writer.println("# TYPE admission_rejected_total counter");
+        for (OperationClass operationClass : OperationClass.values()) {
+            writer.println("admission_rejected_total" + classLabel(operationClass) + ' ' + admission.getRejected(operationClass));
+        }
+
+        ConsistencyReport consistency = ConsistencyChecker.getDefault().getLastReport();
+        if (consistency != null) {
+            writer.println("# TYPE ontology_consistency_violations gauge");
+            for (Map.Entry<Rule, Integer> count : consistency.countByRule().entrySet()) {
+                writer.println("ontology_consistency_violations{rule=\"" + count.getKey().name().toLowerCase() + "\"} " + count.getValue());
+            }
+            writer.println("# TYPE ontology_consistency_checked_timestamp_seconds gauge");
+            writer.println("ontology_consistency_checked_timestamp_seconds " + consistency.getFinishedAt() / 1000.0);
+        }
+        writer.println("# TYPE ontology_schema_version gauge");
+        writer.println("ontology_schema_version " + MigrationRunner.getDefault().getCurrentVersion());
+
+        JobScheduler jobs = JobScheduler.getDefault();
+        writer.println("# TYPE ontology_jobs_running gauge");
+        writer.println("ontology_jobs_running " + jobs.getRunning());
+        writer.println("# TYPE ontology_jobs_succeeded_total counter");
+        writer.println("ontology_jobs_succeeded_total " + jobs.getSucceeded());
+        writer.println("# TYPE ontology_jobs_failed_total counter");
+        writer.println("ontology_jobs_failed_total " + jobs.getFailed());
+        writer.flush();
+    }
+
+    private static void writeSummary(PrintWriter writer, String metric, String operation, LatencyHistogram.Snapshot snapshot) {
+        if (snapshot.getCount() == 0) {
+            return;
+        }
+        for (double quantile : QUANTILES) {
+            writer.println(metric + labels(operation, quantile) + ' '
+                    + snapshot.getValueAtPercentile(quantile * 100) / NANOS_PER_SECOND);
+        }
+        writer.println(metric + "_sum" + labels(operation, null) + ' ' + snapshot.getSum() / NANOS_PER_SECOND);
+        writer.println(metric + "_count" + labels(operation, null) + ' ' + snapshot.getCount());
+    }
+
+    private static String classLabel(OperationClass operationClass) {
+        return "{class=\"" + operationClass.name().toLowerCase() + "\"}";
+    }
+
+    private static String labels(String operation, Double quantile) {
+        String escaped = operation.replace("\\", "\\\\").replace("\"", "\\\"");
+        return "{operation=\"" + escaped + "\"" + (quantile != null ? ",quantile=\"" + quantile + "\"" : "") + "}";
+    }
+}
@@ -0,0 +1,140 @@
+package servlet;
+
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import dao.AttributesDAO;
+import dao.ObjectTypesDAO;
+import dao.VersionConflictException;
+import model.Attributes;
+import model.ObjectTypes;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * REST resource for object types, mapped to {@code /api/object-types/*}.
+ * <ul>
+ *     <li>{@code GET /} lists the object types, {@code POST /} creates one.</li>
+ *     <li>{@code GET /{id}} returns an object type with its attributes and supports {@code If-None-Match}.</li>
+ *     <li>{@code PUT /{id}} updates it; if the body carries a {@code version} the update is optimistic
+ *     and answers 409 with the current state when someone else got there first.</li>
+ *     <li>{@code DELETE /{id}} removes it.</li>
+ *     <li>{@code GET /{id}/attributes} lists its attributes, {@code POST /{id}/attributes} adds one.</li>
+ * </ul>
+ */
+public class ObjectTypesServlet extends AsyncJsonServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        List<String> path = segments(request);
+        if (path.isEmpty()) {
+            List<ObjectTypes> objectTypes = new ObjectTypesDAO().getAllObjectTypes();
+            try (JsonWriter writer = startJson(response, HttpServletResponse.SC_OK)) {
+                writer.beginArray();
+                for (ObjectTypes objectType : objectTypes) {
+                    ApiJson.writeObjectType(writer, objectType);
+                }
+                writer.endArray();
+            }
+        } else if (path.size() == 1) {
+            writeDocument(request, response, ResourceCache.getDefault().getObjectType(parseId(path.get(0))));
+        } else if (path.size() == 2 && "attributes".equals(path.get(1))) {
+            int id = parseId(path.get(0));
+            if (ResourceCache.getDefault().getObjectType(id) == null) {
+                throw notFound();
+            }
+            List<Attributes> attributes = new AttributesDAO().findAttributesByObjectTypeId(id);
+            try (JsonWriter writer = startJson(response, HttpServletResponse.SC_OK)) {
+                writer.beginArray();
+                for (Attributes attribute : attributes) {
+                    ApiJson.writeAttribute(writer, attribute);
+                }
+                writer.endArray();
+            }
+        } else {
+            throw notFound();
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        List<String> path = segments(request);
+        JsonObject body = readBody(request);
+        if (path.isEmpty()) {
+            List<Attributes> attributes = ApiJson.optAttributes(body);
+            int id = new ObjectTypesDAO().createObjectType(ApiJson.requireString(body, "name"),
+                    ApiJson.optString(body, "description", null), attributes != null ? attributes : new ArrayList<>());
+            if (id == 0) {
+                throw new ApiException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Object type could not be created");
+            }
+            writeCreated(response, id);
+        } else if (path.size() == 2 && "attributes".equals(path.get(1))) {
+            int id = parseId(path.get(0));
+            if (ResourceCache.getDefault().getObjectType(id) == null) {
+                throw notFound();
+            }
+            Attributes attribute = ApiJson.readAttribute(body);
+            boolean created = new AttributesDAO().createAttribute(attribute.getName(), attribute.getDataType(), attribute.isRequired(),
+                    attribute.getDefaultValue(), attribute.isIndexed(), id);
+            if (!created) {
+                throw new ApiException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Attribute could not be created");
+            }
+            ResourceCache.getDefault().invalidateObjectType(id);
+            response.setStatus(HttpServletResponse.SC_CREATED);
+        } else {
+            throw methodNotAllowed();
+        }
+    }
+
+    @Override
+    protected void doPut(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        List<String> path = segments(request);
+        if (path.size() != 1) {
+            throw methodNotAllowed();
+        }
+        int id = parseId(path.get(0));
+        JsonObject body = readBody(request);
+        String name = ApiJson.requireString(body, "name");
+        String description = ApiJson.optString(body, "description", null);
+        List<Attributes> attributes = ApiJson.optAttributes(body);
+        if (attributes == null) {
+            attributes = new AttributesDAO().findAttributesByObjectTypeId(id);
+        }
+        Integer version = ApiJson.optInteger(body, "version");
+        ObjectTypesDAO dao = new ObjectTypesDAO();
+        boolean updated;
+        try {
+            updated = version != null
+                    ? dao.updateObjectTypeById(id, version, name, description, attributes)
+                    : dao.updateObjectTypeById(id, name, description, attributes);
+        } catch (VersionConflictException e) {
+            writeConflict(response, e);
+            return;
+        }
+        ResourceCache.getDefault().invalidateObjectType(id);
+        if (!updated) {
+            if (dao.getObjectTypeById(id) == null) {
+                throw notFound();
+            }
+            throw new ApiException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Object type could not be updated");
+        }
+        writeDocument(request, response, ResourceCache.getDefault().getObjectType(id));
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest request, HttpServletResponse response) {
+        List<String> path = segments(request);
+        if (path.size() != 1) {
+            throw methodNotAllowed();
+        }
+        int id = parseId(path.get(0));
+        if (!new ObjectTypesDAO().deleteObjectTypeById(id)) {
+            throw notFound();
+        }
+        ResourceCache.getDefault().invalidateObjectType(id);
+        response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    }
+}
@@ -0,0 +1,77 @@
+package servlet;
+
+import javax.websocket.CloseReason;
+import javax.websocket.Endpoint;
+import javax.websocket.EndpointConfig;
+import javax.websocket.Session;
+import javax.websocket.server.ServerEndpointConfig;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * WebSocket endpoint pushing ontology change events to editor UIs so they no longer poll.
+ * Clients connect to {@code /ws/changes} and may narrow the stream with comma separated
+ * {@code objectTypeId}, {@code facilityId} and {@code relationshipId} query parameters.
+ * Frames are JSON objects of the form {@code {"events":[...]}}, with {@code "reset":true} when
+ * changes may have been missed and the client should reload; see {@link ChangeBroadcaster}.
+ */
+public class OntologyChangeEndpoint extends Endpoint {
+
+    public static final String PATH = "/ws/changes";
+
+    /**
+     * Builds the configuration used to register the endpoint programmatically, since web.xml does not
+     * enable annotation scanning.
+     *
+     * @return the endpoint configuration.
+     */
+    public static ServerEndpointConfig config() {
+        return ServerEndpointConfig.Builder.create(OntologyChangeEndpoint.class, PATH).build();
+    }
+
+    @Override
+    public void onOpen(Session session, EndpointConfig config) {
+        Map<String, List<String>> parameters = session.getRequestParameterMap();
+        try {
+            ChangeBroadcaster.getDefault().subscribe(session,
+                    parseIds(parameters.get("objectTypeId")),
+                    parseIds(parameters.get("facilityId")),
+                    parseIds(parameters.get("relationshipId")));
+        } catch (NumberFormatException e) {
+            try {
+                session.close(new CloseReason(CloseReason.CloseCodes.CANNOT_ACCEPT, "invalid filter"));
+            } catch (java.io.IOException ioe) {
+                Logger.getLogger(getClass().getName()).log(Level.FINE, null, ioe);
+            }
+        }
+    }
+
+    @Override
+    public void onClose(Session session, CloseReason closeReason) {
+        ChangeBroadcaster.getDefault().unsubscribe(session);
+    }
+
+    @Override
+    public void onError(Session session, Throwable thr) {
+        Logger.getLogger(getClass().getName()).log(Level.WARNING, "WebSocket error on session " + session.getId(), thr);
+        ChangeBroadcaster.getDefault().unsubscribe(session);
+    }
+
+    private static Set<Integer> parseIds(List<String> values) {
+        Set<Integer> ids = new HashSet<>();
+        if (values != null) {
+            for (String value : values) {
+                for (String part : value.split(",")) {
+                    if (!part.trim().isEmpty()) {
+                        ids.add(Integer.parseInt(part.trim()));
+                    }
+                }
+            }
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,175 @@
+package servlet;
+
+import admission.OperationClass;
+import com.google.gson.stream.JsonWriter;
+import diff.Change;
+import diff.ChangeSet;
+import diff.ChangeSetApplier;
+import diff.ChangeSummary;
+import diff.DatabaseSource;
+import diff.EntityKind;
+import diff.ExportFile;
+import diff.OntologyDiff;
+import metrics.Metrics;
+import metrics.OperationMetrics;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Promotes an ontology between environments through the {@link diff} engine:
+ * <ul>
+ * <li>{@code GET /api/promotion/export} streams this database's ontology as an export file.</li>
+ * <li>{@code POST /api/promotion/diff} takes an export file, e.g. of staging, and returns the change
+ * set that turns this database into it.</li>
+ * <li>{@code POST /api/promotion/apply} applies a change set in one transaction and returns the
+ * number of changes per kind.</li>
+ * </ul>
+ * Bodies are streamed; a change set is spooled to a temporary file while it is computed. Every
+ * endpoint reads or writes the whole ontology, so all of them are admitted as bulk operations.
+ * A natural key that this database has more than once is answered with 409.
+ */
+public class PromotionServlet extends AsyncJsonServlet {
+
+    private static final Logger LOGGER = Logger.getLogger(PromotionServlet.class.getName());
+
+    private static final OperationMetrics EXPORT = Metrics.operation("PromotionServlet.export");
+    private static final OperationMetrics DIFF = Metrics.operation("PromotionServlet.diff");
+    private static final OperationMetrics APPLY = Metrics.operation("PromotionServlet.apply");
+
+    private static final int BATCH_SIZE = Integer.getInteger("ontology.promotion.batchSize", 1000);
+    private static final int RESET_THRESHOLD = Integer.getInteger("ontology.promotion.resetThreshold", 1000);
+
+    @Override
+    protected OperationClass operationClass(HttpServletRequest request) {
+        return OperationClass.BULK;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (!segments(request).equals(List.of("export"))) {
+            throw notFound();
+        }
+        long started = System.nanoTime();
+        Connection connection = connect(EXPORT);
+        try (DatabaseSource source = new DatabaseSource(connection)) {
+            response.setContentType("application/x-ndjson");
+            response.setCharacterEncoding("UTF-8");
+            response.setHeader("Cache-Control", "no-store");
+            long entities = ExportFile.write(source, response.getWriter());
+            EXPORT.record(started, entities);
+        } catch (SQLException e) {
+            EXPORT.error();
+            throw failed("Error exporting the ontology", "Export failed, see the log", e);
+        } finally {
+            Metrics.disconnect(connection);
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        request.setCharacterEncoding("UTF-8");
+        List<String> path = segments(request);
+        if (path.equals(List.of("diff"))) {
+            diff(request, response);
+        } else if (path.equals(List.of("apply"))) {
+            apply(request, response);
+        } else {
+            throw notFound();
+        }
+    }
+
+    private void diff(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long started = System.nanoTime();
+        Connection connection = connect(DIFF);
+        Path changeSet = Files.createTempFile("ontology-changes", ".jsonl");
+        try {
+            ChangeSummary summary;
+            try (DatabaseSource current = new DatabaseSource(connection)) {
+                summary = OntologyDiff.diff(current, ExportFile.read(request.getReader()), changeSet);
+            } catch (IOException | IllegalArgumentException e) {
+                // The body is not a valid export; reading the database fails with SQLException instead.
+                DIFF.error();
+                throw new ApiException(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+            } catch (SQLException e) {
+                DIFF.error();
+                throw failed("Error comparing the ontology", "Diff failed, see the log", e);
+            }
+            response.setContentType("application/x-ndjson");
+            response.setCharacterEncoding("UTF-8");
+            response.setHeader("Cache-Control", "no-store");
+            response.setHeader("X-Ontology-Changes", String.valueOf(summary.getTotal()));
+            try (BufferedReader in = Files.newBufferedReader(changeSet, StandardCharsets.UTF_8)) {
+                in.transferTo(response.getWriter());
+            }
+            DIFF.record(started, summary.getTotal());
+        } finally {
+            Metrics.disconnect(connection);
+            Files.deleteIfExists(changeSet);
+        }
+    }
+
+    private void apply(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long started = System.nanoTime();
+        Connection connection = connect(APPLY);
+        ChangeSummary summary;
+        try {
+            summary = new ChangeSetApplier(BATCH_SIZE, RESET_THRESHOLD).apply(connection, ChangeSet.read(request.getReader()));
+            APPLY.record(started, summary.getTotal());
+        } catch (IOException | IllegalArgumentException e) {
+            APPLY.error();
+            throw new ApiException(HttpServletResponse.SC_BAD_REQUEST, e.getMessage());
+        } catch (SQLException e) {
+            // Nothing was applied; most often the change set was computed against an older state.
+            APPLY.error();
+            LOGGER.log(Level.WARNING, "Change set rejected", e);
+            throw new ApiException(HttpServletResponse.SC_CONFLICT, e.getMessage());
+        } finally {
+            Metrics.disconnect(connection);
+        }
+        response.setHeader("Cache-Control", "no-store");
+        try (JsonWriter writer = startJson(response, HttpServletResponse.SC_OK)) {
+            writer.beginObject();
+            writer.name("total").value(summary.getTotal());
+            for (EntityKind kind : EntityKind.values()) {
+                writer.name(kind.getTable()).beginObject();
+                for (Change.Operation operation : Change.Operation.values()) {
+                    writer.name(operation.name().toLowerCase()).value(summary.get(kind, operation));
+                }
+                writer.endObject();
+            }
+            writer.endObject();
+        }
+    }
+
+    private static Connection connect(OperationMetrics operation) {
+        Connection connection = Metrics.connect(operation);
+        if (connection == null) {
+            throw new ApiException(HttpServletResponse.SC_SERVICE_UNAVAILABLE, "No database connection");
+        }
+        return connection;
+    }
+
+    /**
+     * @return 409 if the database has a natural key twice, which has to be cleaned up before it can
+     * be promoted to or from, and 500 for any other database error.
+     */
+    private static ApiException failed(String logMessage, String message, SQLException e) {
+        if (DatabaseSource.DUPLICATE_KEY.equals(e.getSQLState())) {
+            LOGGER.log(Level.WARNING, logMessage, e);
+            return new ApiException(HttpServletResponse.SC_CONFLICT, e.getMessage());
+        }
+        LOGGER.log(Level.SEVERE, logMessage, e);
+        return new ApiException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, message);
+    }
+}
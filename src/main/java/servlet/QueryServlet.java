@@ -0,0 +1,47 @@
+package servlet;
+
+import com.google.gson.stream.JsonWriter;
+import query.Projection;
+import query.ProjectionLoader;
+import query.ProjectionResult;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Loads just the fields a client asks for, mapped to {@code /api/query}. The {@code select}
+ * parameter is a projection such as {@code objectType{id,name,attributes{name,dataType}}};
+ * {@code ids} (comma separated) restricts the root rows and {@code limit} caps them.
+ */
+public class QueryServlet extends AsyncJsonServlet {
+
+    private static final int MAX_LIMIT = 10000;
+    private static final int MAX_IDS = 1000;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Projection projection = Projection.parse(request.getParameter("select"));
+        List<Integer> ids = null;
+        String idsParameter = request.getParameter("ids");
+        if (idsParameter != null && !idsParameter.isEmpty()) {
+            ids = new ArrayList<>();
+            for (String id : idsParameter.split(",")) {
+                ids.add(Integer.parseInt(id.trim()));
+            }
+            if (ids.size() > MAX_IDS) {
+                throw new IllegalArgumentException("At most " + MAX_IDS + " ids are accepted per request");
+            }
+        }
+        int limit = intParameter(request, "limit", MAX_LIMIT, MAX_LIMIT);
+        ProjectionResult result = new ProjectionLoader().load(projection, ids, limit);
+        if (result == null) {
+            throw new ApiException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "The projection could not be loaded");
+        }
+        try (JsonWriter writer = startJson(response, HttpServletResponse.SC_OK)) {
+            result.write(writer);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package servlet;
+
+import com.google.gson.JsonObject;
+import com.google.gson.stream.JsonWriter;
+import dao.RelationshipDependenciesDAO;
+import model.RelationshipDependencies;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * REST resource for relationship dependencies, mapped to both {@code /api/relationships/*} and
+ * {@code /api/dependencies/*}.
+ * <ul>
+ *     <li>{@code GET /api/relationships/{id}/dependencies} lists the dependencies of a relationship,
+ *     {@code POST} to the same path adds one.</li>
+ *     <li>{@code PUT /api/dependencies/{id}} updates a dependency, {@code DELETE} removes it.</li>
+ * </ul>
+ */
+public class RelationshipDependenciesServlet extends AsyncJsonServlet {
+
+    private static final String DEPENDENCIES_PATH = "/api/dependencies";
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        List<RelationshipDependencies> dependencies = new RelationshipDependenciesDAO().findAllDependenciesByRelationshipId(relationshipId(request));
+        try (JsonWriter writer = startJson(response, HttpServletResponse.SC_OK)) {
+            writer.beginArray();
+            for (RelationshipDependencies dependency : dependencies) {
+                ApiJson.writeDependency(writer, dependency);
+            }
+            writer.endArray();
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        int relationshipId = relationshipId(request);
+        JsonObject body = readBody(request);
+        RelationshipDependencies dependency = new RelationshipDependenciesDAO().createRelationshipDependency(
+                ApiJson.requireString(body, "dependencyName"),
+                ApiJson.requireEnum(body, "dependencyType", RelationshipDependencies.DependencyType.class), relationshipId);
+        if (dependency == null) {
+            throw new ApiException(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Dependency could not be created");
+        }
+        try (JsonWriter writer = startJson(response, HttpServletResponse.SC_CREATED)) {
+            ApiJson.writeDependency(writer, dependency);
+        }
+    }
+
+    @Override
+    protected void doPut(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        int id = dependencyId(request);
+        JsonObject body = readBody(request);
+        boolean updated = new RelationshipDependenciesDAO().updateRelationshipDependency(id,
+                ApiJson.requireString(body, "dependencyName"),
+                ApiJson.requireEnum(body, "dependencyType", RelationshipDependencies.DependencyType.class));
+        if (!updated) {
+            throw notFound();
+        }
+        response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    }
+
+    @Override
+    protected void doDelete(HttpServletRequest request, HttpServletResponse response) {
+        if (!new RelationshipDependenciesDAO().deleteRelationshipDependencyById(dependencyId(request))) {
+            throw notFound();
+        }
+        response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    }
+
+    private static int relationshipId(HttpServletRequest request) {
+        List<String> path = segments(request);
+        if (DEPENDENCIES_PATH.equals(request.getServletPath()) || path.size() != 2 || !"dependencies".equals(path.get(1))) {
+            throw notFound();
+        }
+        return parseId(path.get(0));
+    }
+
+    private static int dependencyId(HttpServletRequest request) {
+        if (!DEPENDENCIES_PATH.equals(request.getServletPath())) {
+            throw methodNotAllowed();
+        }
+        return singleId(request);
+    }
+}
@@ -0,0 +1,96 @@
+package servlet;
+
+import dao.AttributesDAO;
+import dao.FacilitiesDAO;
+import dao.ObjectTypesDAO;
+import events.ChangeEvent;
+import events.ChangeEventListener;
+import events.EntityCache;
+import model.Facilities;
+import model.ObjectTypes;
+
+/**
+ * The serialised object types and facilities served by the REST API, kept current by the change
+ * feed. A conditional read whose tag matches the cached document is answered without touching
+ * the database. An object type's document embeds its attributes, so attribute changes evict the
+ * parent object type as well.
+ */
+public class ResourceCache implements ChangeEventListener {
+
+    private static final ResourceCache DEFAULT = new ResourceCache();
+
+    private final EntityCache<JsonDocument> objectTypes = new EntityCache<>(ChangeEvent.OBJECT_TYPES, false);
+    private final EntityCache<JsonDocument> facilities = new EntityCache<>(ChangeEvent.FACILITIES, false);
+
+    public static ResourceCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return the object type with its attributes, or null if there is no such object type.
+     */
+    JsonDocument getObjectType(int id) {
+        return objectTypes.get(id, this::loadObjectType);
+    }
+
+    /**
+     * @return the facility, or null if there is no such facility.
+     */
+    JsonDocument getFacility(int id) {
+        return facilities.get(id, this::loadFacility);
+    }
+
+    /**
+     * Evicts an object type this node has just written, so its next read reflects the write even
+     * before the change notification comes back from the database.
+     */
+    void invalidateObjectType(int id) {
+        objectTypes.invalidate(id);
+        // The catalogue embeds every object type.
+        CatalogueCache.getDefault().invalidate();
+    }
+
+    /**
+     * Evicts every object type, for writes to an attribute whose owner is not known here.
+     */
+    void invalidateObjectTypes() {
+        objectTypes.clear();
+        CatalogueCache.getDefault().invalidate();
+    }
+
+    void invalidateFacility(int id) {
+        facilities.invalidate(id);
+    }
+
+    @Override
+    public void onChange(ChangeEvent event) {
+        objectTypes.onChange(event);
+        facilities.onChange(event);
+        if (ChangeEvent.ATTRIBUTES.equals(event.getTable())) {
+            objectTypes.invalidate(event.getParentId());
+        }
+    }
+
+    @Override
+    public void onReset() {
+        objectTypes.clear();
+        facilities.clear();
+    }
+
+    private JsonDocument loadObjectType(int id) {
+        ObjectTypes objectType = new ObjectTypesDAO().getObjectTypeById(id);
+        if (objectType == null) {
+            return null;
+        }
+        objectType.setAttributesList(new AttributesDAO().findAttributesByObjectTypeId(id));
+        return JsonDocument.of(writer -> ApiJson.writeObjectType(writer, objectType));
+    }
+
+    private JsonDocument loadFacility(int id) {
+        Facilities facility = new FacilitiesDAO().getFacilityDetailsById(id);
+        if (facility == null) {
+            return null;
+        }
+        return JsonDocument.of(writer -> ApiJson.writeFacility(writer, facility));
+    }
+}
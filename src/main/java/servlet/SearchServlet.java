@@ -0,0 +1,58 @@
+package servlet;
+
+import admission.OperationClass;
+import com.google.gson.stream.JsonWriter;
+import search.OntologySearchIndex;
+import search.SearchIndexMaintainer;
+import search.SearchResult;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Typo-tolerant search over the in-memory ontology index, mapped to {@code /api/search} and
+ * {@code /api/autocomplete}. Both take an optional {@code kind} (OBJECT_TYPE, ATTRIBUTE or
+ * RELATIONSHIP) and {@code limit}; search reads the query from {@code q}, autocomplete its prefix
+ * from {@code prefix}. Neither touches the database.
+ */
+public class SearchServlet extends AsyncJsonServlet {
+
+    private static final int DEFAULT_LIMIT = 20;
+    private static final int MAX_LIMIT = 200;
+
+    @Override
+    protected OperationClass operationClass(HttpServletRequest request) {
+        return null;
+    }
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        OntologySearchIndex index = SearchIndexMaintainer.getDefault().getIndex();
+        int limit = intParameter(request, "limit", DEFAULT_LIMIT, MAX_LIMIT);
+        String kindName = request.getParameter("kind");
+        SearchResult.Kind kind = kindName == null || kindName.isEmpty() ? null : SearchResult.Kind.valueOf(kindName.toUpperCase());
+        List<SearchResult> results;
+        if ("/api/autocomplete".equals(request.getServletPath())) {
+            results = index.autocomplete(required(request, "prefix"), kind, limit);
+        } else {
+            results = index.search(required(request, "q"), kind, limit);
+        }
+        try (JsonWriter writer = startJson(response, HttpServletResponse.SC_OK)) {
+            writer.beginArray();
+            for (SearchResult result : results) {
+                ApiJson.writeSearchResult(writer, result);
+            }
+            writer.endArray();
+        }
+    }
+
+    private static String required(HttpServletRequest request, String name) {
+        String value = request.getParameter(name);
+        if (value == null || value.trim().isEmpty()) {
+            throw new IllegalArgumentException("'" + name + "' is required");
+        }
+        return value;
+    }
+}
@@ -0,0 +1,56 @@
+package servlet;
+
+import com.google.gson.stream.JsonWriter;
+import metrics.QueryProfile;
+import metrics.QueryProfiler;
+
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Lists the statements the {@link QueryProfiler} has seen slow, with their latest captured plan
+ * and the large tables they scan sequentially. {@code POST} clears the collected profiles.
+ */
+public class SlowQueriesServlet extends HttpServlet {
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+        boolean includePlans = !"false".equals(request.getParameter("plans"));
+        try (JsonWriter writer = new JsonWriter(response.getWriter())) {
+            writer.beginArray();
+            for (QueryProfile profile : QueryProfiler.getDefault().getProfiles()) {
+                writer.beginObject();
+                writer.name("statement").value(profile.getStatement());
+                writer.name("slowExecutions").value(profile.getSlowExecutions());
+                writer.name("meanMillis").value(profile.getMeanSlowMillis());
+                writer.name("maxMillis").value(profile.getMaxMillis());
+                writer.name("sequentialScans").beginArray();
+                for (String table : profile.getSequentialScans()) {
+                    writer.value(table);
+                }
+                writer.endArray();
+                if (profile.getPlan() != null) {
+                    writer.name("planCapturedAt").value(profile.getPlanCapturedAt());
+                    writer.name("planningMillis").value(profile.getPlanningMillis());
+                    writer.name("executionMillis").value(profile.getExecutionMillis());
+                    if (includePlans) {
+                        writer.name("plan").jsonValue(profile.getPlan());
+                    }
+                }
+                writer.endObject();
+            }
+            writer.endArray();
+        }
+    }
+
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response) {
+        QueryProfiler.getDefault().reset();
+        response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+    }
+}
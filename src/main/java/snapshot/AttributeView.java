@@ -0,0 +1,97 @@
+package snapshot;
+
+import model.Attributes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable copy of an attribute as held in an {@link OntologySnapshot}, with the id of the
+ * object type it belongs to.
+ */
+public final class AttributeView {
+
+    private final int id;
+    private final int objectTypeId;
+    private final String name;
+    private final Attributes.DataTypes dataType;
+    private final boolean required;
+    private final String defaultValue;
+    private final List<String> enumValues;
+    private final boolean indexed;
+    private final int usageCount;
+    private final int version;
+
+    public AttributeView(int id, int objectTypeId, String name, Attributes.DataTypes dataType, boolean required, String defaultValue,
+                         List<String> enumValues, boolean indexed, int usageCount, int version) {
+        this.id = id;
+        this.objectTypeId = objectTypeId;
+        this.name = name;
+        this.dataType = dataType;
+        this.required = required;
+        this.defaultValue = defaultValue;
+        // Copied without List.copyOf, which rejects the null values a text[] column can hold.
+        this.enumValues = enumValues == null ? null : Collections.unmodifiableList(new ArrayList<>(enumValues));
+        this.indexed = indexed;
+        this.usageCount = usageCount;
+        this.version = version;
+    }
+
+    /**
+     * @param objectTypeId the owning object type, which the model class does not carry reliably.
+     */
+    public static AttributeView of(Attributes attribute, int objectTypeId) {
+        return new AttributeView(attribute.getId(), objectTypeId, attribute.getName(), attribute.getDataType(), attribute.isRequired(),
+                attribute.getDefaultValue(), attribute.getEnumValues(), attribute.isIndexed(), attribute.getAttributeUsageCount(),
+                attribute.getVersion());
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public int getObjectTypeId() {
+        return objectTypeId;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Attributes.DataTypes getDataType() {
+        return dataType;
+    }
+
+    public boolean isRequired() {
+        return required;
+    }
+
+    public String getDefaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * @return the allowed values of an ENUM attribute, unmodifiable, or null if none are stored.
+     */
+    public List<String> getEnumValues() {
+        return enumValues;
+    }
+
+    public boolean isIndexed() {
+        return indexed;
+    }
+
+    public int getUsageCount() {
+        return usageCount;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    @Override
+    public String toString() {
+        return "AttributeView{id=" + id + ", objectTypeId=" + objectTypeId + ", name='" + name + "', dataType=" + dataType + '}';
+    }
+}
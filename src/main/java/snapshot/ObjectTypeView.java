@@ -0,0 +1,64 @@
+package snapshot;
+
+import model.ObjectTypes;
+
+import java.time.Instant;
+
+/**
+ * Immutable copy of an object type as held in an {@link OntologySnapshot}. Its attributes are
+ * looked up in the snapshot rather than held here, so that changing one attribute does not
+ * require copying its object type.
+ */
+public final class ObjectTypeView {
+
+    private final int id;
+    private final String name;
+    private final String description;
+    private final int version;
+    private final Instant createdAt;
+    private final Instant updatedAt;
+
+    public ObjectTypeView(int id, String name, String description, int version, Instant createdAt, Instant updatedAt) {
+        this.id = id;
+        this.name = name;
+        this.description = description;
+        this.version = version;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
+    public static ObjectTypeView of(ObjectTypes objectType) {
+        return new ObjectTypeView(objectType.getId(), objectType.getName(), objectType.getDescription(), objectType.getVersion(),
+                objectType.getCreatedAt() == null ? null : objectType.getCreatedAt().toInstant(),
+                objectType.getUpdatedAt() == null ? null : objectType.getUpdatedAt().toInstant());
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public Instant getUpdatedAt() {
+        return updatedAt;
+    }
+
+    @Override
+    public String toString() {
+        return "ObjectTypeView{id=" + id + ", name='" + name + "', version=" + version + '}';
+    }
+}
@@ -0,0 +1,157 @@
+package snapshot;
+
+/**
+ * One immutable version of the whole ontology: object types, their attributes and relationships.
+ * A snapshot never changes once built, so any number of threads can read it without locking.
+ * The {@code with}/{@code without} methods return the next version and leave this one untouched;
+ * the two share every part that did not change, so deriving a version after a single-row edit
+ * costs a handful of small node copies regardless of the size of the ontology. A change that
+ * changes nothing returns the snapshot itself.
+ */
+public final class OntologySnapshot {
+
+    private static final OntologySnapshot EMPTY = new OntologySnapshot(0, PersistentIntMap.empty(), PersistentIntMap.empty(),
+            PersistentIntMap.empty(), PersistentIntMap.empty());
+
+    private final long version;
+    private final PersistentIntMap<ObjectTypeView> objectTypes;
+    private final PersistentIntMap<AttributeView> attributes;
+    private final PersistentIntMap<PersistentIntMap<AttributeView>> attributesByObjectType;
+    private final PersistentIntMap<RelationshipView> relationships;
+
+    private OntologySnapshot(long version, PersistentIntMap<ObjectTypeView> objectTypes, PersistentIntMap<AttributeView> attributes,
+                             PersistentIntMap<PersistentIntMap<AttributeView>> attributesByObjectType,
+                             PersistentIntMap<RelationshipView> relationships) {
+        this.version = version;
+        this.objectTypes = objectTypes;
+        this.attributes = attributes;
+        this.attributesByObjectType = attributesByObjectType;
+        this.relationships = relationships;
+    }
+
+    public static OntologySnapshot empty() {
+        return EMPTY;
+    }
+
+    /**
+     * @return the number it was published under by {@link SnapshotMaintainer}, growing with each
+     * publication; 0 for a snapshot that was never published.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    OntologySnapshot published(long version) {
+        return new OntologySnapshot(version, objectTypes, attributes, attributesByObjectType, relationships);
+    }
+
+    public ObjectTypeView getObjectType(int id) {
+        return objectTypes.get(id);
+    }
+
+    public PersistentIntMap<ObjectTypeView> getObjectTypes() {
+        return objectTypes;
+    }
+
+    public AttributeView getAttribute(int id) {
+        return attributes.get(id);
+    }
+
+    /**
+     * @return the attributes of the object type, keyed by attribute id, empty if it has none.
+     */
+    public PersistentIntMap<AttributeView> getAttributes(int objectTypeId) {
+        PersistentIntMap<AttributeView> owned = attributesByObjectType.get(objectTypeId);
+        return owned == null ? PersistentIntMap.empty() : owned;
+    }
+
+    public PersistentIntMap<AttributeView> getAttributes() {
+        return attributes;
+    }
+
+    public RelationshipView getRelationship(int id) {
+        return relationships.get(id);
+    }
+
+    public PersistentIntMap<RelationshipView> getRelationships() {
+        return relationships;
+    }
+
+    public OntologySnapshot withObjectType(ObjectTypeView objectType) {
+        return derive(objectTypes.put(objectType.getId(), objectType), attributes,
+                attributesByObjectType, relationships);
+    }
+
+    /**
+     * Removes the object type together with its attributes.
+     */
+    public OntologySnapshot withoutObjectType(int id) {
+        PersistentIntMap<AttributeView> remaining = attributes;
+        for (AttributeView attribute : getAttributes(id)) {
+            remaining = remaining.remove(attribute.getId());
+        }
+        return derive(objectTypes.remove(id), remaining, attributesByObjectType.remove(id), relationships);
+    }
+
+    /**
+     * Adds or replaces the attribute, moving it if it used to belong to another object type.
+     */
+    public OntologySnapshot withAttribute(AttributeView attribute) {
+        PersistentIntMap<PersistentIntMap<AttributeView>> byObjectType = attributesByObjectType;
+        AttributeView previous = attributes.get(attribute.getId());
+        if (previous != null && previous.getObjectTypeId() != attribute.getObjectTypeId()) {
+            byObjectType = removeOwned(byObjectType, previous);
+        }
+        byObjectType = byObjectType.put(attribute.getObjectTypeId(),
+                getOwned(byObjectType, attribute.getObjectTypeId()).put(attribute.getId(), attribute));
+        return derive(objectTypes, attributes.put(attribute.getId(), attribute), byObjectType, relationships);
+    }
+
+    public OntologySnapshot withoutAttribute(int id) {
+        AttributeView previous = attributes.get(id);
+        if (previous == null) {
+            return this;
+        }
+        return derive(objectTypes, attributes.remove(id),
+                removeOwned(attributesByObjectType, previous), relationships);
+    }
+
+    public OntologySnapshot withRelationship(RelationshipView relationship) {
+        return derive(objectTypes, attributes, attributesByObjectType,
+                relationships.put(relationship.getId(), relationship));
+    }
+
+    public OntologySnapshot withoutRelationship(int id) {
+        return derive(objectTypes, attributes, attributesByObjectType, relationships.remove(id));
+    }
+
+    /**
+     * @return a snapshot of the maps, this one if none of them changed.
+     */
+    private OntologySnapshot derive(PersistentIntMap<ObjectTypeView> objectTypes, PersistentIntMap<AttributeView> attributes,
+                                    PersistentIntMap<PersistentIntMap<AttributeView>> attributesByObjectType,
+                                    PersistentIntMap<RelationshipView> relationships) {
+        if (objectTypes == this.objectTypes && attributes == this.attributes
+                && attributesByObjectType == this.attributesByObjectType && relationships == this.relationships) {
+            return this;
+        }
+        return new OntologySnapshot(version, objectTypes, attributes, attributesByObjectType, relationships);
+    }
+
+    private static PersistentIntMap<AttributeView> getOwned(PersistentIntMap<PersistentIntMap<AttributeView>> byObjectType, int objectTypeId) {
+        PersistentIntMap<AttributeView> owned = byObjectType.get(objectTypeId);
+        return owned == null ? PersistentIntMap.empty() : owned;
+    }
+
+    private static PersistentIntMap<PersistentIntMap<AttributeView>> removeOwned(
+            PersistentIntMap<PersistentIntMap<AttributeView>> byObjectType, AttributeView attribute) {
+        PersistentIntMap<AttributeView> owned = getOwned(byObjectType, attribute.getObjectTypeId()).remove(attribute.getId());
+        return owned.isEmpty() ? byObjectType.remove(attribute.getObjectTypeId()) : byObjectType.put(attribute.getObjectTypeId(), owned);
+    }
+
+    @Override
+    public String toString() {
+        return "OntologySnapshot{version=" + version + ", objectTypes=" + objectTypes.size() + ", attributes=" + attributes.size()
+                + ", relationships=" + relationships.size() + '}';
+    }
+}
@@ -0,0 +1,284 @@
+package snapshot;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * Immutable map from int ids to values, stored as a hash array mapped trie. Every level consumes
+ * five bits of the key, so a lookup touches at most seven nodes, and an update copies only the
+ * nodes on the path to its key; all other nodes are shared with the map it was derived from.
+ * Ids are used as their own hash: sequential ids fill the trie densely and, since every bit of the
+ * key is consumed by the last level, two keys never collide. Values are iterated in trie order,
+ * which is not numeric order.
+ *
+ * @param <V> the value type, never null.
+ */
+public final class PersistentIntMap<V> implements Iterable<V> {
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final Node EMPTY_NODE = new Node(0, 0, new int[0], new Object[0], new Node[0]);
+    private static final PersistentIntMap<?> EMPTY = new PersistentIntMap<>(EMPTY_NODE, 0);
+
+    /**
+     * A trie node. Entries stored directly and child nodes are kept in separate arrays, each in
+     * the order of the five-bit fragment their bitmap bit stands for.
+     */
+    private static final class Node {
+
+        final int dataMap;
+        final int nodeMap;
+        final int[] keys;
+        final Object[] values;
+        final Node[] nodes;
+
+        Node(int dataMap, int nodeMap, int[] keys, Object[] values, Node[] nodes) {
+            this.dataMap = dataMap;
+            this.nodeMap = nodeMap;
+            this.keys = keys;
+            this.values = values;
+            this.nodes = nodes;
+        }
+
+        static int dataIndex(int map, int bit) {
+            return Integer.bitCount(map & (bit - 1));
+        }
+
+        Node withValue(int index, Object value) {
+            Object[] copy = values.clone();
+            copy[index] = value;
+            return new Node(dataMap, nodeMap, keys, copy, nodes);
+        }
+
+        Node withEntry(int bit, int key, Object value) {
+            int index = dataIndex(dataMap, bit);
+            int[] newKeys = new int[keys.length + 1];
+            Object[] newValues = new Object[values.length + 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(values, 0, newValues, 0, index);
+            newKeys[index] = key;
+            newValues[index] = value;
+            System.arraycopy(keys, index, newKeys, index + 1, keys.length - index);
+            System.arraycopy(values, index, newValues, index + 1, values.length - index);
+            return new Node(dataMap | bit, nodeMap, newKeys, newValues, nodes);
+        }
+
+        Node withoutEntry(int bit) {
+            int index = dataIndex(dataMap, bit);
+            int[] newKeys = new int[keys.length - 1];
+            Object[] newValues = new Object[values.length - 1];
+            System.arraycopy(keys, 0, newKeys, 0, index);
+            System.arraycopy(values, 0, newValues, 0, index);
+            System.arraycopy(keys, index + 1, newKeys, index, keys.length - index - 1);
+            System.arraycopy(values, index + 1, newValues, index, values.length - index - 1);
+            return new Node(dataMap & ~bit, nodeMap, newKeys, newValues, nodes);
+        }
+
+        Node withNode(int bit, Node node) {
+            Node[] copy = nodes.clone();
+            copy[dataIndex(nodeMap, bit)] = node;
+            return new Node(dataMap, nodeMap, keys, values, copy);
+        }
+
+        /**
+         * Replaces the entry at {@code bit} by a child node holding it and another entry.
+         */
+        Node entryToNode(int bit, Node node) {
+            Node without = withoutEntry(bit);
+            int index = dataIndex(nodeMap, bit);
+            Node[] newNodes = new Node[nodes.length + 1];
+            System.arraycopy(nodes, 0, newNodes, 0, index);
+            newNodes[index] = node;
+            System.arraycopy(nodes, index, newNodes, index + 1, nodes.length - index);
+            return new Node(without.dataMap, nodeMap | bit, without.keys, without.values, newNodes);
+        }
+
+        /**
+         * Replaces the child node at {@code bit}, left with a single entry, by that entry.
+         */
+        Node nodeToEntry(int bit, Node node) {
+            int index = dataIndex(nodeMap, bit);
+            Node[] newNodes = new Node[nodes.length - 1];
+            System.arraycopy(nodes, 0, newNodes, 0, index);
+            System.arraycopy(nodes, index + 1, newNodes, index, nodes.length - index - 1);
+            Node without = new Node(dataMap, nodeMap & ~bit, keys, values, newNodes);
+            return without.withEntry(bit, node.keys[0], node.values[0]);
+        }
+
+        boolean isSingleEntry() {
+            return nodeMap == 0 && keys.length == 1;
+        }
+    }
+
+    private final Node root;
+    private final int size;
+
+    private PersistentIntMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <V> PersistentIntMap<V> empty() {
+        return (PersistentIntMap<V>) EMPTY;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return the value for the key, or null if there is none.
+     */
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Node node = root;
+        for (int shift = 0; ; shift += BITS) {
+            int bit = 1 << ((key >>> shift) & MASK);
+            if ((node.dataMap & bit) != 0) {
+                int index = Node.dataIndex(node.dataMap, bit);
+                return node.keys[index] == key ? (V) node.values[index] : null;
+            }
+            if ((node.nodeMap & bit) == 0) {
+                return null;
+            }
+            node = node.nodes[Node.dataIndex(node.nodeMap, bit)];
+        }
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    /**
+     * @return a map with the key mapped to the value, or this map if it already was.
+     */
+    public PersistentIntMap<V> put(int key, V value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Null values are not supported");
+        }
+        boolean[] added = new boolean[1];
+        Node newRoot = put(root, key, value, 0, added);
+        return newRoot == root ? this : new PersistentIntMap<>(newRoot, added[0] ? size + 1 : size);
+    }
+
+    /**
+     * @return a map without the key, or this map if it had none.
+     */
+    public PersistentIntMap<V> remove(int key) {
+        Node newRoot = remove(root, key, 0);
+        return newRoot == root ? this : new PersistentIntMap<>(newRoot, size - 1);
+    }
+
+    private static Node put(Node node, int key, Object value, int shift, boolean[] added) {
+        int bit = 1 << ((key >>> shift) & MASK);
+        if ((node.dataMap & bit) != 0) {
+            int index = Node.dataIndex(node.dataMap, bit);
+            int existing = node.keys[index];
+            if (existing == key) {
+                return node.values[index] == value ? node : node.withValue(index, value);
+            }
+            added[0] = true;
+            return node.entryToNode(bit, pair(existing, node.values[index], key, value, shift + BITS));
+        }
+        if ((node.nodeMap & bit) != 0) {
+            Node child = node.nodes[Node.dataIndex(node.nodeMap, bit)];
+            Node newChild = put(child, key, value, shift + BITS, added);
+            return newChild == child ? node : node.withNode(bit, newChild);
+        }
+        added[0] = true;
+        return node.withEntry(bit, key, value);
+    }
+
+    private static Node pair(int key1, Object value1, int key2, Object value2, int shift) {
+        int fragment1 = (key1 >>> shift) & MASK;
+        int fragment2 = (key2 >>> shift) & MASK;
+        if (fragment1 == fragment2) {
+            return new Node(0, 1 << fragment1, new int[0], new Object[0],
+                    new Node[] {pair(key1, value1, key2, value2, shift + BITS)});
+        }
+        if (fragment1 < fragment2) {
+            return new Node((1 << fragment1) | (1 << fragment2), 0, new int[] {key1, key2}, new Object[] {value1, value2}, new Node[0]);
+        }
+        return new Node((1 << fragment1) | (1 << fragment2), 0, new int[] {key2, key1}, new Object[] {value2, value1}, new Node[0]);
+    }
+
+    private static Node remove(Node node, int key, int shift) {
+        int bit = 1 << ((key >>> shift) & MASK);
+        if ((node.dataMap & bit) != 0) {
+            return node.keys[Node.dataIndex(node.dataMap, bit)] == key ? node.withoutEntry(bit) : node;
+        }
+        if ((node.nodeMap & bit) != 0) {
+            Node child = node.nodes[Node.dataIndex(node.nodeMap, bit)];
+            Node newChild = remove(child, key, shift + BITS);
+            if (newChild == child) {
+                return node;
+            }
+            // Keep the trie canonical: a child with one entry left is folded into its parent.
+            return newChild.isSingleEntry() ? node.nodeToEntry(bit, newChild) : node.withNode(bit, newChild);
+        }
+        return node;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void forEach(Consumer<? super V> action) {
+        forEach(root, (Consumer<Object>) action);
+    }
+
+    private static void forEach(Node node, Consumer<Object> action) {
+        for (Object value : node.values) {
+            action.accept(value);
+        }
+        for (Node child : node.nodes) {
+            forEach(child, action);
+        }
+    }
+
+    @Override
+    public Iterator<V> iterator() {
+        return new Iterator<V>() {
+            private final Deque<Node> pending = new ArrayDeque<>();
+            private Node node;
+            private int index;
+
+            {
+                pending.push(root);
+                advance();
+            }
+
+            private void advance() {
+                while ((node == null || index >= node.values.length) && !pending.isEmpty()) {
+                    node = pending.pop();
+                    index = 0;
+                    for (int i = node.nodes.length - 1; i >= 0; i--) {
+                        pending.push(node.nodes[i]);
+                    }
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                return node != null && index < node.values.length;
+            }
+
+            @SuppressWarnings("unchecked")
+            @Override
+            public V next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                V value = (V) node.values[index++];
+                advance();
+                return value;
+            }
+        };
+    }
+}
@@ -0,0 +1,75 @@
+package snapshot;
+
+import model.Relationships;
+
+/**
+ * Immutable copy of a relationship as held in an {@link OntologySnapshot}. The object type it
+ * filters by is kept as an id, 0 if there is none.
+ */
+public final class RelationshipView {
+
+    private final int id;
+    private final String name;
+    private final Relationships.RelationshipTypes type;
+    private final String description;
+    private final String attributesJson;
+    private final int sortOrder;
+    private final Relationships.RelationshipTypes filterByType;
+    private final int filterByObjectTypeId;
+
+    public RelationshipView(int id, String name, Relationships.RelationshipTypes type, String description, String attributesJson,
+                            int sortOrder, Relationships.RelationshipTypes filterByType, int filterByObjectTypeId) {
+        this.id = id;
+        this.name = name;
+        this.type = type;
+        this.description = description;
+        this.attributesJson = attributesJson;
+        this.sortOrder = sortOrder;
+        this.filterByType = filterByType;
+        this.filterByObjectTypeId = filterByObjectTypeId;
+    }
+
+    public static RelationshipView of(Relationships relationship) {
+        return new RelationshipView(relationship.getId(), relationship.getRelationshipName(), relationship.getRelationshipType(),
+                relationship.getRelationshipDescription(), relationship.getAttributesJson(), relationship.getSortOrder(),
+                relationship.getFilterByType(),
+                relationship.getFilterByObjectType() == null ? 0 : relationship.getFilterByObjectType().getId());
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Relationships.RelationshipTypes getType() {
+        return type;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public String getAttributesJson() {
+        return attributesJson;
+    }
+
+    public int getSortOrder() {
+        return sortOrder;
+    }
+
+    public Relationships.RelationshipTypes getFilterByType() {
+        return filterByType;
+    }
+
+    public int getFilterByObjectTypeId() {
+        return filterByObjectTypeId;
+    }
+
+    @Override
+    public String toString() {
+        return "RelationshipView{id=" + id + ", name='" + name + "', type=" + type + '}';
+    }
+}
@@ -0,0 +1,176 @@
+package snapshot;
+
+import dao.AttributesDAO;
+import dao.ObjectTypesDAO;
+import dao.RelationshipsDAO;
+import events.ChangeEvent;
+import events.ChangeEventListener;
+import model.Attributes;
+import model.ObjectTypes;
+import model.Relationships;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.UnaryOperator;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Publishes the current {@link OntologySnapshot} through a single volatile reference and keeps
+ * it in line with the database. Readers call {@link #current()} and work on what they got, never
+ * taking a lock and never seeing a half-applied change. Writers are serialised: each derives the
+ * next snapshot from the current one, sharing everything it did not touch, and publishes it with
+ * one volatile write. Change events reload only the changed row, a feed reset triggers a full
+ * rebuild, and database work runs on a private thread so the change feed is never blocked.
+ * A rebuild that cannot load everything keeps the current snapshot rather than publishing a
+ * partial one.
+ * <p>
+ * The application starts the default maintainer and registers it with the change feed; the
+ * catalogue is served from its snapshot once the initial load has completed.
+ */
+public class SnapshotMaintainer implements ChangeEventListener {
+
+    private static final Logger LOGGER = Logger.getLogger(SnapshotMaintainer.class.getName());
+
+    private static final SnapshotMaintainer DEFAULT = new SnapshotMaintainer();
+
+    private final ObjectTypesDAO objectTypesDAO = new ObjectTypesDAO();
+    private final AttributesDAO attributesDAO = new AttributesDAO();
+    private final RelationshipsDAO relationshipsDAO = new RelationshipsDAO();
+    private final Object writeLock = new Object();
+    private volatile OntologySnapshot current = OntologySnapshot.empty();
+    private ExecutorService executor;
+
+    /**
+     * @return the maintainer of the application-wide snapshot.
+     */
+    public static SnapshotMaintainer getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * @return the latest published snapshot, empty until the initial load has completed.
+     */
+    public OntologySnapshot current() {
+        return current;
+    }
+
+    /**
+     * Derives the next snapshot from the current one and publishes it. Updates are applied one at
+     * a time; readers keep using the snapshot they already have.
+     *
+     * @return the published snapshot, or the current one if the update changed nothing.
+     */
+    public OntologySnapshot update(UnaryOperator<OntologySnapshot> change) {
+        synchronized (writeLock) {
+            OntologySnapshot previous = current;
+            OntologySnapshot next = change.apply(previous);
+            if (next != previous) {
+                current = next.published(previous.getVersion() + 1);
+            }
+            return current;
+        }
+    }
+
+    /**
+     * Starts the worker thread and schedules the initial load of the snapshot.
+     */
+    public synchronized void start() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "ontology-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.execute(this::rebuild);
+        }
+    }
+
+    public synchronized void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /**
+     * Loads all object types, attributes and relationships and publishes them as one snapshot.
+     * If any of them cannot be loaded the current snapshot is kept.
+     */
+    public void rebuild() {
+        List<ObjectTypes> objectTypes;
+        Map<Integer, List<Attributes>> attributes;
+        List<Relationships> relationships;
+        try {
+            objectTypes = objectTypesDAO.loadAllObjectTypes();
+            attributes = attributesDAO.loadAllAttributesByObjectType();
+            relationships = relationshipsDAO.loadAllRelationships();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error loading the ontology, keeping the current snapshot", e);
+            return;
+        }
+        OntologySnapshot published = update(previous -> {
+            OntologySnapshot next = OntologySnapshot.empty();
+            for (ObjectTypes objectType : objectTypes) {
+                next = next.withObjectType(ObjectTypeView.of(objectType));
+            }
+            for (Map.Entry<Integer, List<Attributes>> entry : attributes.entrySet()) {
+                for (Attributes attribute : entry.getValue()) {
+                    next = next.withAttribute(AttributeView.of(attribute, entry.getKey()));
+                }
+            }
+            for (Relationships relationship : relationships) {
+                next = next.withRelationship(RelationshipView.of(relationship));
+            }
+            return next;
+        });
+        LOGGER.log(Level.INFO, "Ontology snapshot rebuilt: " + published);
+    }
+
+    public void putRelationship(Relationships relationship) {
+        RelationshipView view = RelationshipView.of(relationship);
+        update(snapshot -> snapshot.withRelationship(view));
+    }
+
+    @Override
+    public void onChange(ChangeEvent event) {
+        submit(() -> apply(event));
+    }
+
+    @Override
+    public void onReset() {
+        submit(this::rebuild);
+    }
+
+    private synchronized void submit(Runnable task) {
+        if (executor != null) {
+            executor.execute(task);
+        }
+    }
+
+    private void apply(ChangeEvent event) {
+        int id = event.getId();
+        boolean deleted = event.getOperation() == ChangeEvent.Operation.DELETE;
+        switch (event.getTable()) {
+            case ChangeEvent.OBJECT_TYPES:
+                ObjectTypes objectType = deleted ? null : objectTypesDAO.getObjectTypeById(id);
+                update(snapshot -> objectType == null ? snapshot.withoutObjectType(id) : snapshot.withObjectType(ObjectTypeView.of(objectType)));
+                break;
+            case ChangeEvent.ATTRIBUTES:
+                Attributes attribute = deleted ? null : attributesDAO.findAttributeById(id);
+                update(snapshot -> attribute == null ? snapshot.withoutAttribute(id)
+                        : snapshot.withAttribute(AttributeView.of(attribute, event.getParentId())));
+                break;
+            case ChangeEvent.RELATIONSHIPS:
+                Relationships relationship = deleted ? null : relationshipsDAO.findRelationshipById(id);
+                update(snapshot -> relationship == null ? snapshot.withoutRelationship(id)
+                        : snapshot.withRelationship(RelationshipView.of(relationship)));
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Package for snapshot.
+ */
+package snapshot;
\ No newline at end of file
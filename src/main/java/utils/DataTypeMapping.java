@@ -0,0 +1,106 @@
+package utils;
+
+import model.Attributes;
+
+/**
+ * Maps attribute data types onto the Java types used to represent their values.
+ */
+public final class DataTypeMapping {
+
+    private DataTypeMapping() {
+    }
+
+    /**
+     * Gets the Java type holding values of the given data type. ENUM values are kept as strings
+     * because the allowed constants are data, not code.
+     *
+     * @param dataType the attribute data type.
+     * @return the boxed Java type.
+     */
+    public static Class<?> javaType(Attributes.DataTypes dataType) {
+        switch (dataType) {
+            case INTEGER:
+                return Long.class;
+            case FLOAT:
+                return Double.class;
+            case DATE:
+                return java.time.LocalDate.class;
+            case DATETIME:
+                return java.time.LocalDateTime.class;
+            case VARCHAR:
+            case TEXT:
+            case ENUM:
+            default:
+                return String.class;
+        }
+    }
+
+    /**
+     * Gets the Postgres column type storing values of the given data type.
+     *
+     * @param dataType the attribute data type.
+     * @return the SQL type name.
+     */
+    public static String sqlType(Attributes.DataTypes dataType) {
+        switch (dataType) {
+            case INTEGER:
+                return "BIGINT";
+            case FLOAT:
+                return "DOUBLE PRECISION";
+            case VARCHAR:
+                return "VARCHAR(255)";
+            case DATE:
+                return "DATE";
+            case DATETIME:
+                return "TIMESTAMP";
+            case TEXT:
+            case ENUM:
+            default:
+                return "TEXT";
+        }
+    }
+
+    /**
+     * Converts a value to the Java type of the given data type. Strings are parsed, values that
+     * already have the right type are returned as they are, and other numbers are widened.
+     *
+     * @param dataType the attribute data type.
+     * @param value    the value, or null.
+     * @return the converted value, or null.
+     * @throws IllegalArgumentException if the value cannot be converted.
+     */
+    public static Object toJavaValue(Attributes.DataTypes dataType, Object value) {
+        if (value == null) {
+            return null;
+        }
+        Class<?> type = javaType(dataType);
+        if (type.isInstance(value)) {
+            return value;
+        }
+        if (value instanceof Number) {
+            if (type == Long.class && !(value instanceof Double || value instanceof Float)) {
+                return ((Number) value).longValue();
+            }
+            if (type == Double.class) {
+                return ((Number) value).doubleValue();
+            }
+        }
+        String text = value.toString().trim();
+        try {
+            switch (dataType) {
+                case INTEGER:
+                    return Long.parseLong(text);
+                case FLOAT:
+                    return Double.parseDouble(text);
+                case DATE:
+                    return java.time.LocalDate.parse(text);
+                case DATETIME:
+                    return java.time.LocalDateTime.parse(text.replace(' ', 'T'));
+                default:
+                    return value.toString();
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Cannot convert '" + value + "' to " + dataType, e);
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package validation;
+
+/**
+ * Parsers for raw attribute values that do not allocate on the success path or on failure.
+ * Each parser reports failure through its return value instead of an exception; parsed
+ * values are written to a caller supplied slot so primitives are never boxed.
+ */
+final class FieldParsers {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private FieldParsers() {
+    }
+
+    /**
+     * @return true if the value is null or only whitespace.
+     */
+    static boolean isBlank(CharSequence value) {
+        if (value == null) {
+            return true;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (!Character.isWhitespace(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses a decimal integer, allowing surrounding whitespace and a sign.
+     *
+     * @return true if the value is a valid long; the result is stored in {@code out[index]}.
+     */
+    static boolean parseLong(CharSequence value, long[] out, int index) {
+        int start = skipLeading(value);
+        int end = skipTrailing(value, start);
+        if (start >= end) {
+            return false;
+        }
+        boolean negative = false;
+        char first = value.charAt(start);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            if (++start == end) {
+                return false;
+            }
+        }
+        // Accumulate negatively so Long.MIN_VALUE is representable.
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long result = 0;
+        for (int i = start; i < end; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9 || result < limit / 10) {
+                return false;
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                return false;
+            }
+            result -= digit;
+        }
+        out[index] = negative ? result : -result;
+        return true;
+    }
+
+    /**
+     * Parses a decimal floating point number. Values with at most 15 significant digits and a small
+     * exponent take an exact fast path; anything else falls back to {@link Double#parseDouble}.
+     *
+     * @return true if the value is a valid finite double; the result is stored in {@code out[index]}.
+     */
+    static boolean parseDouble(CharSequence value, double[] out, int index) {
+        int start = skipLeading(value);
+        int end = skipTrailing(value, start);
+        if (start >= end) {
+            return false;
+        }
+        int i = start;
+        boolean negative = false;
+        if (value.charAt(i) == '-' || value.charAt(i) == '+') {
+            negative = value.charAt(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int scale = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for (; i < end; i++) {
+            char c = value.charAt(i);
+            if (c >= '0' && c <= '9') {
+                seenDigit = true;
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                if (digits > 15) {
+                    return parseDoubleSlow(value, start, end, out, index);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (seenPoint) {
+                    scale--;
+                }
+            } else if (c == '.' && !seenPoint) {
+                seenPoint = true;
+            } else if (c == 'e' || c == 'E') {
+                break;
+            } else {
+                return false;
+            }
+        }
+        if (!seenDigit) {
+            return false;
+        }
+        if (i < end) {
+            // Exponents are rare in ingest data; the slow path keeps this branch simple.
+            return parseDoubleSlow(value, start, end, out, index);
+        }
+        double result;
+        if (scale == 0) {
+            result = mantissa;
+        } else if (-scale < POWERS_OF_TEN.length) {
+            result = mantissa / POWERS_OF_TEN[-scale];
+        } else {
+            return parseDoubleSlow(value, start, end, out, index);
+        }
+        out[index] = negative ? -result : result;
+        return true;
+    }
+
+    private static boolean parseDoubleSlow(CharSequence value, int start, int end, double[] out, int index) {
+        try {
+            double result = Double.parseDouble(value.subSequence(start, end).toString());
+            if (Double.isNaN(result) || Double.isInfinite(result)) {
+                return false;
+            }
+            out[index] = result;
+            return true;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Parses an ISO date (yyyy-MM-dd).
+     *
+     * @return true if the value is a valid date; its epoch day is stored in {@code out[index]}.
+     */
+    static boolean parseDate(CharSequence value, long[] out, int index) {
+        int start = skipLeading(value);
+        int end = skipTrailing(value, start);
+        return end - start == 10 && parseDateAt(value, start, out, index);
+    }
+
+    private static boolean parseDateAt(CharSequence value, int start, long[] out, int index) {
+        if (value.charAt(start + 4) != '-' || value.charAt(start + 7) != '-') {
+            return false;
+        }
+        int year = digits(value, start, 4);
+        int month = digits(value, start + 5, 2);
+        int day = digits(value, start + 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return false;
+        }
+        out[index] = epochDay(year, month, day);
+        return true;
+    }
+
+    /**
+     * Parses an ISO date-time (yyyy-MM-dd'T'HH:mm[:ss[.fraction]], with 'T' or a space as separator).
+     *
+     * @return true if the value is valid; microseconds since the epoch (no time zone) are stored in {@code out[index]}.
+     */
+    static boolean parseDateTime(CharSequence value, long[] out, int index) {
+        int start = skipLeading(value);
+        int end = skipTrailing(value, start);
+        if (end - start < 16) {
+            return false;
+        }
+        char separator = value.charAt(start + 10);
+        if ((separator != 'T' && separator != ' ') || value.charAt(start + 13) != ':'
+                || !parseDateAt(value, start, out, index)) {
+            return false;
+        }
+        long epochDay = out[index];
+        int hour = digits(value, start + 11, 2);
+        int minute = digits(value, start + 14, 2);
+        int second = 0;
+        long micros = 0;
+        int i = start + 16;
+        if (i < end) {
+            if (value.charAt(i) != ':' || i + 3 > end) {
+                return false;
+            }
+            second = digits(value, i + 1, 2);
+            i += 3;
+            if (i < end) {
+                if (value.charAt(i) != '.' || i + 1 == end || end - i - 1 > 9) {
+                    return false;
+                }
+                int fractionDigits = 0;
+                for (i++; i < end; i++, fractionDigits++) {
+                    int digit = value.charAt(i) - '0';
+                    if (digit < 0 || digit > 9) {
+                        return false;
+                    }
+                    if (fractionDigits < 6) {
+                        micros = micros * 10 + digit;
+                    }
+                }
+                for (; fractionDigits < 6; fractionDigits++) {
+                    micros *= 10;
+                }
+            }
+        }
+        if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+            return false;
+        }
+        out[index] = ((epochDay * 24 + hour) * 60 + minute) * 60_000_000L + second * 1_000_000L + micros;
+        return true;
+    }
+
+    private static int digits(CharSequence value, int offset, int count) {
+        int result = 0;
+        for (int i = offset; i < offset + count; i++) {
+            int digit = value.charAt(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            result = result * 10 + digit;
+        }
+        return result;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+            case 2:
+                return (year % 4 == 0 && (year % 100 != 0 || year % 400 == 0)) ? 29 : 28;
+            case 4:
+            case 6:
+            case 9:
+            case 11:
+                return 30;
+            default:
+                return 31;
+        }
+    }
+
+    // Days since 1970-01-01 in the proleptic Gregorian calendar (H. Hinnant's days_from_civil).
+    private static long epochDay(int year, int month, int day) {
+        long y = month <= 2 ? year - 1 : year;
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153L * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int skipLeading(CharSequence value) {
+        int i = 0;
+        while (i < value.length() && Character.isWhitespace(value.charAt(i))) {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipTrailing(CharSequence value, int start) {
+        int end = value.length();
+        while (end > start && Character.isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        return end;
+    }
+}
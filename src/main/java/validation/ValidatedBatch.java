@@ -0,0 +1,114 @@
+package validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The typed, column-major output of a {@link ValidationPlan}. INTEGER columns are held in
+ * {@code long[]}, FLOAT in {@code double[]}, DATE as epoch days and DATETIME as epoch microseconds
+ * in {@code long[]}, and text columns reference the input strings. A batch is sized once and
+ * reused across calls, so validating a stream of batches allocates no per-row objects.
+ */
+public final class ValidatedBatch {
+
+    final long[][] longs;
+    final double[][] doubles;
+    final String[][] strings;
+    final boolean[][] nulls;
+    final boolean[] rejected;
+    private final List<ValidationError> errors = new ArrayList<>();
+    private final int capacity;
+    private int rowCount;
+
+    ValidatedBatch(byte[] kinds, int capacity) {
+        this.capacity = capacity;
+        longs = new long[kinds.length][];
+        doubles = new double[kinds.length][];
+        strings = new String[kinds.length][];
+        nulls = new boolean[kinds.length][capacity];
+        rejected = new boolean[capacity];
+        for (int c = 0; c < kinds.length; c++) {
+            switch (kinds[c]) {
+                case ValidationPlan.KIND_LONG:
+                case ValidationPlan.KIND_DATE:
+                case ValidationPlan.KIND_DATETIME:
+                    longs[c] = new long[capacity];
+                    break;
+                case ValidationPlan.KIND_DOUBLE:
+                    doubles[c] = new double[capacity];
+                    break;
+                default:
+                    strings[c] = new String[capacity];
+            }
+        }
+    }
+
+    void reset(int rows) {
+        if (rows > capacity) {
+            throw new IllegalArgumentException("Batch of " + rows + " rows exceeds capacity " + capacity);
+        }
+        rowCount = rows;
+        java.util.Arrays.fill(rejected, 0, rows, false);
+        errors.clear();
+    }
+
+    synchronized void addErrors(List<ValidationError> taskErrors) {
+        errors.addAll(taskErrors);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    public boolean isRejected(int row) {
+        return rejected[row];
+    }
+
+    public int getRejectedCount() {
+        int count = 0;
+        for (int r = 0; r < rowCount; r++) {
+            if (rejected[r]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    public boolean isNull(int column, int row) {
+        return nulls[column][row];
+    }
+
+    /**
+     * Gets an INTEGER, DATE (epoch day) or DATETIME (epoch microseconds) column.
+     */
+    public long[] getLongColumn(int column) {
+        return longs[column];
+    }
+
+    /**
+     * Gets a FLOAT column.
+     */
+    public double[] getDoubleColumn(int column) {
+        return doubles[column];
+    }
+
+    /**
+     * Gets a VARCHAR, TEXT or ENUM column.
+     */
+    public String[] getStringColumn(int column) {
+        return strings[column];
+    }
+
+    /**
+     * Gets the validation errors, ordered by row.
+     */
+    public synchronized List<ValidationError> getErrors() {
+        errors.sort((a, b) -> Integer.compare(a.getRow(), b.getRow()));
+        return Collections.unmodifiableList(new ArrayList<>(errors));
+    }
+}
@@ -0,0 +1,38 @@
+package validation;
+
+/**
+ * A value of an ingested row that failed validation.
+ */
+public final class ValidationError {
+
+    private final int row;
+    private final String attributeName;
+    private final String message;
+
+    public ValidationError(int row, String attributeName, String message) {
+        this.row = row;
+        this.attributeName = attributeName;
+        this.message = message;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public String getAttributeName() {
+        return attributeName;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "ValidationError{" +
+                "row=" + row +
+                ", attributeName='" + attributeName + '\'' +
+                ", message='" + message + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,271 @@
+package validation;
+
+import model.Attributes;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * A reusable validator compiled from an object type's attribute list. Compiling resolves each
+ * attribute to a column kind, parses its default value once and builds the ENUM membership set;
+ * validating then applies the plan column-at-a-time over a batch of raw string values. Batches are
+ * split into row ranges that run in parallel on a fork-join pool.
+ */
+public final class ValidationPlan {
+
+    static final byte KIND_LONG = 0;
+    static final byte KIND_DOUBLE = 1;
+    static final byte KIND_DATE = 2;
+    static final byte KIND_DATETIME = 3;
+    static final byte KIND_STRING = 4;
+    static final byte KIND_ENUM = 5;
+
+    // Rows handled by one fork-join task before it stops splitting.
+    private static final int SPLIT_THRESHOLD = 4096;
+    private static final int VARCHAR_LENGTH = 255;
+
+    private final String[] names;
+    private final byte[] kinds;
+    private final boolean[] required;
+    private final boolean[] hasDefault;
+    private final long[] longDefaults;
+    private final double[] doubleDefaults;
+    private final String[] stringDefaults;
+    private final int[] maxLengths;
+    private final List<Set<String>> enumValues;
+    private final ForkJoinPool pool;
+
+    private ValidationPlan(int columns, ForkJoinPool pool) {
+        names = new String[columns];
+        kinds = new byte[columns];
+        required = new boolean[columns];
+        hasDefault = new boolean[columns];
+        longDefaults = new long[columns];
+        doubleDefaults = new double[columns];
+        stringDefaults = new String[columns];
+        maxLengths = new int[columns];
+        enumValues = new ArrayList<>(Collections.nCopies(columns, null));
+        this.pool = pool;
+    }
+
+    /**
+     * Compiles a plan for the common fork-join pool.
+     *
+     * @param attributes the attributes, in the column order of the batches to validate.
+     * @return the plan.
+     * @throws IllegalArgumentException if a default value does not match its attribute's type.
+     */
+    public static ValidationPlan compile(List<Attributes> attributes) {
+        return compile(attributes, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Compiles a plan that validates on the given pool.
+     *
+     * @param attributes the attributes, in the column order of the batches to validate.
+     * @param pool       the pool running the validation tasks.
+     * @return the plan.
+     * @throws IllegalArgumentException if a default value does not match its attribute's type.
+     */
+    public static ValidationPlan compile(List<Attributes> attributes, ForkJoinPool pool) {
+        ValidationPlan plan = new ValidationPlan(attributes.size(), pool);
+        for (int c = 0; c < attributes.size(); c++) {
+            Attributes attribute = attributes.get(c);
+            plan.names[c] = attribute.getName();
+            plan.required[c] = attribute.isRequired();
+            plan.maxLengths[c] = Integer.MAX_VALUE;
+            switch (attribute.getDataType()) {
+                case INTEGER:
+                    plan.kinds[c] = KIND_LONG;
+                    break;
+                case FLOAT:
+                    plan.kinds[c] = KIND_DOUBLE;
+                    break;
+                case DATE:
+                    plan.kinds[c] = KIND_DATE;
+                    break;
+                case DATETIME:
+                    plan.kinds[c] = KIND_DATETIME;
+                    break;
+                case ENUM:
+                    plan.kinds[c] = KIND_ENUM;
+                    plan.enumValues.set(c, attribute.getEnumValues() == null ? new HashSet<>() : new HashSet<>(attribute.getEnumValues()));
+                    break;
+                case VARCHAR:
+                    plan.kinds[c] = KIND_STRING;
+                    plan.maxLengths[c] = VARCHAR_LENGTH;
+                    break;
+                default:
+                    plan.kinds[c] = KIND_STRING;
+            }
+            String defaultValue = attribute.getDefaultValue();
+            if (!FieldParsers.isBlank(defaultValue)) {
+                if (plan.check(c, defaultValue, plan.longDefaults, plan.doubleDefaults, c) != null) {
+                    throw new IllegalArgumentException("Default value '" + defaultValue + "' of attribute '"
+                            + attribute.getName() + "' is not a valid " + attribute.getDataType());
+                }
+                plan.hasDefault[c] = true;
+                plan.stringDefaults[c] = defaultValue;
+            }
+        }
+        return plan;
+    }
+
+    /**
+     * Checks a single non-blank value, such as a stored default value, against a data type the way
+     * {@link #validate} checks batch values. ENUM membership is left to the caller, which knows the
+     * allowed values.
+     *
+     * @return null if the value is valid, otherwise the error message.
+     */
+    public static String checkValue(Attributes.DataTypes dataType, String value) {
+        long[] longSlot = new long[1];
+        double[] doubleSlot = new double[1];
+        switch (dataType) {
+            case INTEGER:
+                return FieldParsers.parseLong(value, longSlot, 0) ? null : "not a valid INTEGER";
+            case FLOAT:
+                return FieldParsers.parseDouble(value, doubleSlot, 0) ? null : "not a valid FLOAT";
+            case DATE:
+                return FieldParsers.parseDate(value, longSlot, 0) ? null : "not a valid DATE";
+            case DATETIME:
+                return FieldParsers.parseDateTime(value, longSlot, 0) ? null : "not a valid DATETIME";
+            case VARCHAR:
+                return value.length() <= VARCHAR_LENGTH ? null : "longer than " + VARCHAR_LENGTH + " characters";
+            default:
+                return null;
+        }
+    }
+
+    public int getColumnCount() {
+        return kinds.length;
+    }
+
+    /**
+     * Allocates an output batch that can be reused for every call to {@link #validate}.
+     *
+     * @param capacity the maximum number of rows per batch.
+     * @return the batch.
+     */
+    public ValidatedBatch newBatch(int capacity) {
+        return new ValidatedBatch(kinds, capacity);
+    }
+
+    /**
+     * Validates a batch of raw values. Blank values are replaced by the attribute default; rows with a
+     * missing required value, an unparseable value, an over-long VARCHAR or an unknown ENUM constant
+     * are marked as rejected and reported in {@link ValidatedBatch#getErrors()}.
+     *
+     * @param columns raw values in column-major order, {@code columns[attribute][row]}.
+     * @param rows    the number of rows in the batch.
+     * @param output  the batch receiving the typed values; its previous content is discarded.
+     */
+    public void validate(String[][] columns, int rows, ValidatedBatch output) {
+        if (columns.length != kinds.length) {
+            throw new IllegalArgumentException("Expected " + kinds.length + " columns but got " + columns.length);
+        }
+        output.reset(rows);
+        if (rows <= SPLIT_THRESHOLD) {
+            validateRange(columns, 0, rows, output);
+        } else {
+            pool.invoke(new RangeTask(columns, 0, rows, output));
+        }
+    }
+
+    private void validateRange(String[][] columns, int from, int to, ValidatedBatch output) {
+        List<ValidationError> errors = null;
+        for (int c = 0; c < kinds.length; c++) {
+            String[] input = columns[c];
+            boolean[] nulls = output.nulls[c];
+            for (int r = from; r < to; r++) {
+                String raw = input[r];
+                if (FieldParsers.isBlank(raw)) {
+                    if (hasDefault[c]) {
+                        // Defaults were parsed when the plan was compiled.
+                        nulls[r] = false;
+                        if (output.longs[c] != null) {
+                            output.longs[c][r] = longDefaults[c];
+                        } else if (output.doubles[c] != null) {
+                            output.doubles[c][r] = doubleDefaults[c];
+                        } else {
+                            output.strings[c][r] = stringDefaults[c];
+                        }
+                    } else {
+                        nulls[r] = true;
+                        if (required[c]) {
+                            output.rejected[r] = true;
+                            errors = addError(errors, r, c, "required value is missing");
+                        }
+                    }
+                    continue;
+                }
+                nulls[r] = false;
+                String message = check(c, raw, output.longs[c], output.doubles[c], r);
+                if (message != null) {
+                    output.rejected[r] = true;
+                    errors = addError(errors, r, c, message);
+                } else if (output.strings[c] != null) {
+                    output.strings[c][r] = raw;
+                }
+            }
+        }
+        if (errors != null) {
+            output.addErrors(errors);
+        }
+    }
+
+    // Parses one value into its typed slot; returns null on success or an error message.
+    private String check(int column, String raw, long[] longSlot, double[] doubleSlot, int index) {
+        switch (kinds[column]) {
+            case KIND_LONG:
+                return FieldParsers.parseLong(raw, longSlot, index) ? null : "not a valid INTEGER";
+            case KIND_DOUBLE:
+                return FieldParsers.parseDouble(raw, doubleSlot, index) ? null : "not a valid FLOAT";
+            case KIND_DATE:
+                return FieldParsers.parseDate(raw, longSlot, index) ? null : "not a valid DATE";
+            case KIND_DATETIME:
+                return FieldParsers.parseDateTime(raw, longSlot, index) ? null : "not a valid DATETIME";
+            case KIND_ENUM:
+                return enumValues.get(column).contains(raw) ? null : "not an allowed ENUM value";
+            default:
+                return raw.length() <= maxLengths[column] ? null : "longer than " + maxLengths[column] + " characters";
+        }
+    }
+
+    private List<ValidationError> addError(List<ValidationError> errors, int row, int column, String message) {
+        if (errors == null) {
+            errors = new ArrayList<>();
+        }
+        errors.add(new ValidationError(row, names[column], message));
+        return errors;
+    }
+
+    private final class RangeTask extends RecursiveAction {
+        private final String[][] columns;
+        private final int from;
+        private final int to;
+        private final ValidatedBatch output;
+
+        private RangeTask(String[][] columns, int from, int to, ValidatedBatch output) {
+            this.columns = columns;
+            this.from = from;
+            this.to = to;
+            this.output = output;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= SPLIT_THRESHOLD) {
+                validateRange(columns, from, to, output);
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new RangeTask(columns, from, middle, output), new RangeTask(columns, middle, to, output));
+        }
+    }
+}
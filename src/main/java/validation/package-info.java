@@ -0,0 +1,4 @@
+/**
+ * Package for validation.
+ */
+package validation;
\ No newline at end of file
@@ -0,0 +1,187 @@
+package versioning;
+
+import model.Attributes;
+import model.ObjectTypes;
+import model.RelationshipDependencies;
+import model.Relationships;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.CommitBuilder;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Versions the ontology in a local bare git repository. Changed entities are staged, and
+ * {@link #commit(String, String, PersonIdent)} writes only their blobs and the trees on their
+ * paths on top of the branch head, so a commit touching one attribute costs the same whether the
+ * ontology has a hundred or a hundred thousand object types. Diffs and branches are plain git.
+ */
+public class GitOntologyRepository implements AutoCloseable {
+
+    private final Repository repository;
+    // Pending edits keyed by path; a null value deletes the path.
+    private final Map<String, byte[]> staged = new TreeMap<>();
+
+    /**
+     * Opens the bare repository at the given directory, creating it if it does not exist.
+     *
+     * @param directory the repository directory.
+     * @throws IOException if the repository cannot be opened or created.
+     */
+    public GitOntologyRepository(File directory) throws IOException {
+        repository = new FileRepositoryBuilder().setGitDir(directory).setBare().build();
+        if (!repository.getObjectDatabase().exists()) {
+            repository.create(true);
+        }
+    }
+
+    public synchronized void stage(ObjectTypes objectType) throws IOException {
+        staged.put(OntologySerializer.objectTypePath(objectType.getId()), OntologySerializer.serialize(objectType));
+    }
+
+    public synchronized void stage(int objectTypeId, Attributes attribute) throws IOException {
+        staged.put(OntologySerializer.attributePath(objectTypeId, attribute.getId()), OntologySerializer.serialize(attribute));
+    }
+
+    public synchronized void stage(Relationships relationship) throws IOException {
+        staged.put(OntologySerializer.relationshipPath(relationship.getId()), OntologySerializer.serialize(relationship));
+    }
+
+    public synchronized void stage(int relationshipId, RelationshipDependencies dependency) throws IOException {
+        staged.put(OntologySerializer.dependencyPath(relationshipId, dependency.getId()), OntologySerializer.serialize(dependency));
+    }
+
+    /**
+     * Stages the removal of a file or a whole directory, e.g. an object type with all its attributes.
+     *
+     * @param path a path built with {@link OntologySerializer}.
+     */
+    public synchronized void stageDelete(String path) {
+        staged.put(path, null);
+    }
+
+    public synchronized int getStagedCount() {
+        return staged.size();
+    }
+
+    /**
+     * Commits the staged changes on top of the given branch, creating the branch if needed.
+     * If the staged content is identical to the branch head, no commit is created.
+     *
+     * @param branch  the branch name, e.g. master.
+     * @param message the commit message.
+     * @param author  the author and committer.
+     * @return the id of the new commit, or of the unchanged head.
+     * @throws IOException if writing fails or the branch moved concurrently.
+     */
+    public synchronized ObjectId commit(String branch, String message, PersonIdent author) throws IOException {
+        String refName = Constants.R_HEADS + branch;
+        ObjectId parentId = repository.resolve(refName);
+        try (ObjectInserter inserter = repository.newObjectInserter();
+             ObjectReader reader = repository.newObjectReader();
+             RevWalk revWalk = new RevWalk(reader)) {
+            ObjectId parentTree = parentId == null ? null : revWalk.parseCommit(parentId).getTree();
+            ObjectId tree = new TreeEditor(reader, inserter).apply(parentTree, staged);
+            if (tree == null) {
+                tree = inserter.insert(new TreeFormatter());
+            }
+            if (parentTree != null && tree.equals(parentTree)) {
+                staged.clear();
+                return parentId;
+            }
+
+            CommitBuilder commit = new CommitBuilder();
+            commit.setTreeId(tree);
+            if (parentId != null) {
+                commit.setParentId(parentId);
+            }
+            commit.setAuthor(author);
+            commit.setCommitter(author);
+            commit.setMessage(message);
+            ObjectId commitId = inserter.insert(commit);
+            inserter.flush();
+
+            RefUpdate update = repository.updateRef(refName);
+            update.setNewObjectId(commitId);
+            update.setExpectedOldObjectId(parentId == null ? ObjectId.zeroId() : parentId);
+            update.setRefLogMessage("commit: " + message, false);
+            RefUpdate.Result result = update.update(revWalk);
+            if (result != RefUpdate.Result.NEW && result != RefUpdate.Result.FAST_FORWARD) {
+                throw new IOException("Could not update " + refName + ": " + result);
+            }
+            staged.clear();
+            return commitId;
+        }
+    }
+
+    /**
+     * Creates a branch pointing at an existing revision.
+     *
+     * @param branch   the new branch name.
+     * @param revision the revision to branch from, e.g. master or a commit id.
+     * @throws IOException if the revision does not exist or the branch cannot be created.
+     */
+    public void createBranch(String branch, String revision) throws IOException {
+        ObjectId start = repository.resolve(revision);
+        if (start == null) {
+            throw new IOException("Unknown revision " + revision);
+        }
+        RefUpdate update = repository.updateRef(Constants.R_HEADS + branch);
+        update.setNewObjectId(start);
+        update.setExpectedOldObjectId(ObjectId.zeroId());
+        RefUpdate.Result result = update.update();
+        if (result != RefUpdate.Result.NEW) {
+            throw new IOException("Could not create branch " + branch + ": " + result);
+        }
+    }
+
+    /**
+     * Lists the entity files that differ between two revisions. Identical subtrees are skipped
+     * by id, so the cost is proportional to the size of the change.
+     *
+     * @param oldRevision the base revision.
+     * @param newRevision the revision to compare.
+     * @return the changed paths with their change type.
+     * @throws IOException if a revision does not exist.
+     */
+    public List<DiffEntry> diff(String oldRevision, String newRevision) throws IOException {
+        try (RevWalk revWalk = new RevWalk(repository); TreeWalk treeWalk = new TreeWalk(repository)) {
+            RevCommit oldCommit = revWalk.parseCommit(resolve(oldRevision));
+            RevCommit newCommit = revWalk.parseCommit(resolve(newRevision));
+            treeWalk.addTree(oldCommit.getTree());
+            treeWalk.addTree(newCommit.getTree());
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(TreeFilter.ANY_DIFF);
+            return DiffEntry.scan(treeWalk);
+        }
+    }
+
+    private ObjectId resolve(String revision) throws IOException {
+        ObjectId id = repository.resolve(revision);
+        if (id == null) {
+            throw new IOException("Unknown revision " + revision);
+        }
+        return id;
+    }
+
+    @Override
+    public void close() {
+        repository.close();
+    }
+}
@@ -0,0 +1,136 @@
+package versioning;
+
+import com.google.gson.stream.JsonWriter;
+import model.Attributes;
+import model.ObjectTypes;
+import model.RelationshipDependencies;
+import model.Relationships;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Serialises ontology entities into the deterministic file layout of the git-backed store.
+ * Keys are written in alphabetical order with fixed indentation, so the same entity always
+ * produces the same bytes and therefore the same blob id. Bookkeeping columns (versions,
+ * timestamps, usage counts) are left out so they do not make semantically unchanged entities differ.
+ *
+ * <pre>
+ * object_types/&lt;shard&gt;/&lt;id&gt;/object_type.json
+ * object_types/&lt;shard&gt;/&lt;id&gt;/attributes/&lt;attributeId&gt;.json
+ * relationships/&lt;shard&gt;/&lt;id&gt;/relationship.json
+ * relationships/&lt;shard&gt;/&lt;id&gt;/dependencies/&lt;dependencyId&gt;.json
+ * </pre>
+ * The shard is the low byte of the id in hex, which keeps every tree small enough to rewrite cheaply.
+ */
+public final class OntologySerializer {
+
+    private OntologySerializer() {
+    }
+
+    public static String objectTypeDirectory(int objectTypeId) {
+        return "object_types/" + shard(objectTypeId) + "/" + objectTypeId;
+    }
+
+    public static String objectTypePath(int objectTypeId) {
+        return objectTypeDirectory(objectTypeId) + "/object_type.json";
+    }
+
+    public static String attributePath(int objectTypeId, int attributeId) {
+        return objectTypeDirectory(objectTypeId) + "/attributes/" + attributeId + ".json";
+    }
+
+    public static String relationshipDirectory(int relationshipId) {
+        return "relationships/" + shard(relationshipId) + "/" + relationshipId;
+    }
+
+    public static String relationshipPath(int relationshipId) {
+        return relationshipDirectory(relationshipId) + "/relationship.json";
+    }
+
+    public static String dependencyPath(int relationshipId, int dependencyId) {
+        return relationshipDirectory(relationshipId) + "/dependencies/" + dependencyId + ".json";
+    }
+
+    public static byte[] serialize(ObjectTypes objectType) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = writer(out)) {
+            writer.beginObject()
+                    .name("description").value(objectType.getDescription())
+                    .name("id").value(objectType.getId())
+                    .name("name").value(objectType.getName())
+                    .endObject();
+        }
+        return bytes(out);
+    }
+
+    public static byte[] serialize(Attributes attribute) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = writer(out)) {
+            writer.beginObject()
+                    .name("dataType").value(attribute.getDataType() == null ? null : attribute.getDataType().name())
+                    .name("defaultValue").value(attribute.getDefaultValue())
+                    .name("enumValues");
+            if (attribute.getEnumValues() == null) {
+                writer.nullValue();
+            } else {
+                writer.beginArray();
+                for (String value : attribute.getEnumValues()) {
+                    writer.value(value);
+                }
+                writer.endArray();
+            }
+            writer.name("id").value(attribute.getId())
+                    .name("indexed").value(attribute.isIndexed())
+                    .name("name").value(attribute.getName())
+                    .name("required").value(attribute.isRequired())
+                    .endObject();
+        }
+        return bytes(out);
+    }
+
+    public static byte[] serialize(Relationships relationship) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = writer(out)) {
+            writer.beginObject()
+                    .name("attributesJson").value(relationship.getAttributesJson())
+                    .name("filterByObjectTypeId").value(relationship.getFilterByObjectType() == null ? null : relationship.getFilterByObjectType().getId())
+                    .name("filterByType").value(relationship.getFilterByType() == null ? null : relationship.getFilterByType().name())
+                    .name("id").value(relationship.getId())
+                    .name("relationshipDescription").value(relationship.getRelationshipDescription())
+                    .name("relationshipName").value(relationship.getRelationshipName())
+                    .name("relationshipType").value(relationship.getRelationshipType() == null ? null : relationship.getRelationshipType().name())
+                    .name("sortOrder").value(relationship.getSortOrder())
+                    .endObject();
+        }
+        return bytes(out);
+    }
+
+    public static byte[] serialize(RelationshipDependencies dependency) throws IOException {
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = writer(out)) {
+            writer.beginObject()
+                    .name("dependencyName").value(dependency.getDependencyName())
+                    .name("dependencyType").value(dependency.getDependencyType() == null ? null : dependency.getDependencyType().name())
+                    .name("id").value(dependency.getId())
+                    .endObject();
+        }
+        return bytes(out);
+    }
+
+    private static String shard(int id) {
+        return String.format("%02x", id & 0xff);
+    }
+
+    private static JsonWriter writer(StringWriter out) {
+        JsonWriter writer = new JsonWriter(out);
+        writer.setIndent("  ");
+        writer.setSerializeNulls(true);
+        return writer;
+    }
+
+    private static byte[] bytes(StringWriter out) {
+        return (out.toString() + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,109 @@
+package versioning;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectInserter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.TreeFormatter;
+import org.eclipse.jgit.treewalk.CanonicalTreeParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Applies a set of path edits to an existing git tree, rewriting only the trees on the edited
+ * paths. Unchanged subtrees keep their object ids, so the cost of a commit depends on the
+ * number of edits and the depth of the layout, not on the size of the ontology.
+ */
+class TreeEditor {
+
+    private final ObjectReader reader;
+    private final ObjectInserter inserter;
+
+    TreeEditor(ObjectReader reader, ObjectInserter inserter) {
+        this.reader = reader;
+        this.inserter = inserter;
+    }
+
+    /**
+     * @param treeId the tree to edit, or null for an empty tree.
+     * @param edits  blob contents keyed by slash separated path; a null value deletes the file or directory.
+     * @return the id of the new tree, or null if the result is empty.
+     */
+    ObjectId apply(ObjectId treeId, Map<String, byte[]> edits) throws IOException {
+        Map<String, Entry> entries = read(treeId);
+        Map<String, Map<String, byte[]>> childEdits = new TreeMap<>();
+        for (Map.Entry<String, byte[]> edit : edits.entrySet()) {
+            String path = edit.getKey();
+            int slash = path.indexOf('/');
+            if (slash < 0) {
+                if (edit.getValue() == null) {
+                    entries.remove(path);
+                } else {
+                    // Identical content hashes to the same id, so unchanged blobs are shared, not rewritten.
+                    entries.put(path, new Entry(FileMode.REGULAR_FILE, inserter.insert(Constants.OBJ_BLOB, edit.getValue())));
+                }
+            } else {
+                childEdits.computeIfAbsent(path.substring(0, slash), k -> new TreeMap<>())
+                        .put(path.substring(slash + 1), edit.getValue());
+            }
+        }
+        for (Map.Entry<String, Map<String, byte[]>> child : childEdits.entrySet()) {
+            Entry existing = entries.get(child.getKey());
+            ObjectId childTree = existing != null && existing.mode == FileMode.TREE ? existing.id : null;
+            ObjectId newChildTree = apply(childTree, child.getValue());
+            if (newChildTree == null) {
+                entries.remove(child.getKey());
+            } else {
+                entries.put(child.getKey(), new Entry(FileMode.TREE, newChildTree));
+            }
+        }
+        if (entries.isEmpty()) {
+            return null;
+        }
+        return inserter.insert(format(entries));
+    }
+
+    private Map<String, Entry> read(ObjectId treeId) throws IOException {
+        Map<String, Entry> entries = new TreeMap<>();
+        if (treeId == null) {
+            return entries;
+        }
+        CanonicalTreeParser parser = new CanonicalTreeParser(null, reader, treeId);
+        while (!parser.eof()) {
+            entries.put(parser.getEntryPathString(), new Entry(parser.getEntryFileMode(), parser.getEntryObjectId()));
+            parser.next();
+        }
+        return entries;
+    }
+
+    private static TreeFormatter format(Map<String, Entry> entries) {
+        // Git orders tree entries as if directory names ended with '/'.
+        List<String> names = new ArrayList<>(entries.keySet());
+        names.sort((a, b) -> sortKey(a, entries.get(a)).compareTo(sortKey(b, entries.get(b))));
+        TreeFormatter formatter = new TreeFormatter();
+        for (String name : names) {
+            Entry entry = entries.get(name);
+            formatter.append(name, entry.mode, entry.id);
+        }
+        return formatter;
+    }
+
+    private static String sortKey(String name, Entry entry) {
+        return entry.mode == FileMode.TREE ? name + '/' : name;
+    }
+
+    private static final class Entry {
+        private final FileMode mode;
+        private final ObjectId id;
+
+        private Entry(FileMode mode, ObjectId id) {
+            this.mode = mode;
+            this.id = id;
+        }
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Package for versioning.
+ */
+package versioning;
\ No newline at end of file
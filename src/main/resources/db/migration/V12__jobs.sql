@@ -0,0 +1,41 @@
+-- Background jobs shared by all nodes, see jobs.JobScheduler. A pending job is claimed with
+-- SELECT ... FOR UPDATE SKIP LOCKED and then leased to one node, which renews the lease while it
+-- works; job_cursor records the last completed chunk, so a retried job resumes after it.
+CREATE TABLE IF NOT EXISTS jobs (
+    id BIGSERIAL PRIMARY KEY,
+    job_type TEXT NOT NULL,
+    dedupe_key TEXT,
+    parameters TEXT NOT NULL DEFAULT '{}',
+    status TEXT NOT NULL DEFAULT 'PENDING',
+    job_cursor TEXT,
+    units_done BIGINT NOT NULL DEFAULT 0,
+    units_total BIGINT,
+    attempts INTEGER NOT NULL DEFAULT 0,
+    max_attempts INTEGER NOT NULL DEFAULT 5,
+    run_after TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    locked_by TEXT,
+    lease_until TIMESTAMP,
+    last_error TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    started_at TIMESTAMP,
+    finished_at TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- The table is new, so its indexes are built here rather than concurrently.
+CREATE INDEX IF NOT EXISTS jobs_pending_idx ON jobs (run_after, id) WHERE status = 'PENDING';
+CREATE INDEX IF NOT EXISTS jobs_running_idx ON jobs (lease_until) WHERE status = 'RUNNING';
+CREATE INDEX IF NOT EXISTS jobs_finished_idx ON jobs (finished_at) WHERE finished_at IS NOT NULL;
+-- At most one pending job per key. A running job does not count, so a change made while it runs
+-- still queues the next run.
+CREATE UNIQUE INDEX IF NOT EXISTS jobs_dedupe_idx ON jobs (dedupe_key) WHERE status = 'PENDING';
+
+-- Per object type aggregates, refreshed by the object-type-stats job rather than counted per request.
+CREATE TABLE IF NOT EXISTS object_type_stats (
+    object_type_id INTEGER PRIMARY KEY REFERENCES object_types (id) ON DELETE CASCADE,
+    attribute_count INTEGER NOT NULL,
+    indexed_attribute_count INTEGER NOT NULL,
+    relationship_count INTEGER NOT NULL,
+    instance_count BIGINT NOT NULL,
+    refreshed_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,44 @@
+-- Makes an object type's version cover its attribute set: adding, removing or editing one of
+-- its attributes bumps the object type's version, so an optimistic update of the object type
+-- fails if any of its attributes changed since it was read.
+-- Statement-level triggers with transition tables bump each object type once per statement.
+-- Writes of derived columns (attribute_usage_count) and of the attribute's own version do not count.
+CREATE OR REPLACE FUNCTION bump_object_type_version() RETURNS TRIGGER AS $$
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        UPDATE object_types SET version = version + 1, updated_at = CURRENT_TIMESTAMP
+        WHERE id IN (SELECT fk_object_type_id FROM new_attributes);
+    ELSIF TG_OP = 'DELETE' THEN
+        UPDATE object_types SET version = version + 1, updated_at = CURRENT_TIMESTAMP
+        WHERE id IN (SELECT fk_object_type_id FROM old_attributes);
+    ELSE
+        UPDATE object_types SET version = version + 1, updated_at = CURRENT_TIMESTAMP
+        WHERE id IN (
+            SELECT o.fk_object_type_id FROM old_attributes o JOIN new_attributes n ON n.id = o.id
+            WHERE (o.name, o.data_type, o.is_required, o.default_value, o.enum_values, o.is_indexed, o.fk_object_type_id)
+                IS DISTINCT FROM (n.name, n.data_type, n.is_required, n.default_value, n.enum_values, n.is_indexed, n.fk_object_type_id)
+            UNION
+            SELECT n.fk_object_type_id FROM old_attributes o JOIN new_attributes n ON n.id = o.id
+            WHERE o.fk_object_type_id IS DISTINCT FROM n.fk_object_type_id);
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS attributes_insert_bump_object_type ON attributes;
+CREATE TRIGGER attributes_insert_bump_object_type
+    AFTER INSERT ON attributes
+    REFERENCING NEW TABLE AS new_attributes
+    FOR EACH STATEMENT EXECUTE PROCEDURE bump_object_type_version();
+
+DROP TRIGGER IF EXISTS attributes_update_bump_object_type ON attributes;
+CREATE TRIGGER attributes_update_bump_object_type
+    AFTER UPDATE ON attributes
+    REFERENCING OLD TABLE AS old_attributes NEW TABLE AS new_attributes
+    FOR EACH STATEMENT EXECUTE PROCEDURE bump_object_type_version();
+
+DROP TRIGGER IF EXISTS attributes_delete_bump_object_type ON attributes;
+CREATE TRIGGER attributes_delete_bump_object_type
+    AFTER DELETE ON attributes
+    REFERENCING OLD TABLE AS old_attributes
+    FOR EACH STATEMENT EXECUTE PROCEDURE bump_object_type_version();
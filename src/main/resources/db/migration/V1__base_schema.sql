@@ -0,0 +1,78 @@
+-- The ontology and facility tables as the DAOs use them. Every statement is a no-op on a
+-- database that already has the object, so existing installations adopt the migrations as is.
+-- Indexes on foreign keys are built concurrently by later migrations, not here.
+
+DO $$ BEGIN
+    CREATE TYPE facility_types AS ENUM ('MANUFACTURING_PLANT', 'WAREHOUSE', 'R_D_CENTER');
+EXCEPTION WHEN duplicate_object THEN NULL;
+END $$;
+
+DO $$ BEGIN
+    CREATE TYPE operational_statuses AS ENUM ('ACTIVE', 'INACTIVE', 'UNDER_CONSTRUCTION');
+EXCEPTION WHEN duplicate_object THEN NULL;
+END $$;
+
+DO $$ BEGIN
+    CREATE TYPE dependency_type AS ENUM ('OBJECT_TYPE', 'ATTRIBUTE', 'RELATIONSHIP');
+EXCEPTION WHEN duplicate_object THEN NULL;
+END $$;
+
+CREATE TABLE IF NOT EXISTS object_types (
+    id SERIAL PRIMARY KEY,
+    name TEXT NOT NULL,
+    description TEXT,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- data_type holds an Attributes.DataTypes name; unknown values are reported by the consistency checker.
+CREATE TABLE IF NOT EXISTS attributes (
+    id SERIAL PRIMARY KEY,
+    fk_object_type_id INTEGER NOT NULL REFERENCES object_types (id) ON DELETE CASCADE,
+    name TEXT NOT NULL,
+    data_type TEXT NOT NULL,
+    is_required BOOLEAN NOT NULL DEFAULT FALSE,
+    default_value TEXT,
+    is_indexed BOOLEAN NOT NULL DEFAULT FALSE,
+    attribute_usage_count INTEGER NOT NULL DEFAULT 0
+);
+
+-- relationship_type and filter_by_type hold Relationships.RelationshipTypes names.
+CREATE TABLE IF NOT EXISTS relationships (
+    id SERIAL PRIMARY KEY,
+    relationship_name TEXT NOT NULL,
+    relationship_type TEXT,
+    relationship_description TEXT,
+    attributes_json TEXT,
+    sort_order INTEGER NOT NULL DEFAULT 0,
+    filter_by_type TEXT,
+    filter_by_object_type_id INTEGER REFERENCES object_types (id) ON DELETE SET NULL
+);
+
+CREATE TABLE IF NOT EXISTS relationship_dependencies (
+    id SERIAL PRIMARY KEY,
+    relationship_id INTEGER NOT NULL REFERENCES relationships (id) ON DELETE CASCADE,
+    dependency_name TEXT NOT NULL,
+    dependency_type dependency_type NOT NULL,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE TABLE IF NOT EXISTS facilities (
+    id SERIAL PRIMARY KEY,
+    name TEXT NOT NULL,
+    location TEXT,
+    size_in_square_footage NUMERIC,
+    facility_type facility_types,
+    operational_status operational_statuses,
+    organization_id TEXT
+);
+
+CREATE TABLE IF NOT EXISTS use_cases (
+    id SERIAL PRIMARY KEY,
+    title TEXT NOT NULL,
+    description TEXT,
+    objective TEXT,
+    operational_status operational_statuses,
+    fk_facility_id INTEGER REFERENCES facilities (id) ON DELETE CASCADE
+);
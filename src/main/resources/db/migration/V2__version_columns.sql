@@ -0,0 +1,4 @@
+-- Row versions for optimistic concurrency control on the editing hot path.
+-- Every update increments the version; optimistic writers add "AND version = ?" to their WHERE clause.
+ALTER TABLE object_types ADD COLUMN IF NOT EXISTS version INTEGER NOT NULL DEFAULT 0;
+ALTER TABLE attributes ADD COLUMN IF NOT EXISTS version INTEGER NOT NULL DEFAULT 0;
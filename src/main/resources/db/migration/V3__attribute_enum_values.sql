@@ -0,0 +1,2 @@
+-- Allowed values of ENUM attributes, used by validation and the consistency checker.
+ALTER TABLE attributes ADD COLUMN IF NOT EXISTS enum_values TEXT[];
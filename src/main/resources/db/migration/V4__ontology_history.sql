@@ -0,0 +1,102 @@
+-- Per-entity change history of the ontology tables.
+-- Every write stores only the columns that changed (a delta). Inserts, and every
+-- CHECKPOINT_INTERVAL-th update of an entity, store the full row as a checkpoint instead,
+-- so reconstructing any point in time replays at most that many deltas per entity.
+CREATE TABLE IF NOT EXISTS ontology_history (
+    seq BIGSERIAL PRIMARY KEY,
+    entity_table TEXT NOT NULL,
+    entity_id INTEGER NOT NULL,
+    root_object_type_id INTEGER,
+    operation CHAR(1) NOT NULL,
+    is_checkpoint BOOLEAN NOT NULL DEFAULT FALSE,
+    data JSONB NOT NULL,
+    changed_at TIMESTAMP NOT NULL DEFAULT clock_timestamp()
+);
+
+CREATE INDEX IF NOT EXISTS ontology_history_entity_idx ON ontology_history (entity_table, entity_id, seq);
+CREATE INDEX IF NOT EXISTS ontology_history_root_idx ON ontology_history (root_object_type_id, entity_table, entity_id, seq);
+
+-- Number of deltas written for each entity since its last checkpoint.
+CREATE TABLE IF NOT EXISTS ontology_history_heads (
+    entity_table TEXT NOT NULL,
+    entity_id INTEGER NOT NULL,
+    deltas_since_checkpoint INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (entity_table, entity_id)
+);
+
+CREATE OR REPLACE FUNCTION record_ontology_delta() RETURNS TRIGGER AS $$
+DECLARE
+    checkpoint_interval CONSTANT INTEGER := 32;
+    new_row JSONB;
+    old_row JSONB;
+    row_data JSONB;
+    delta JSONB;
+    pending INTEGER;
+    checkpoint BOOLEAN := FALSE;
+    root_id INTEGER;
+BEGIN
+    IF TG_OP = 'INSERT' THEN
+        new_row := to_jsonb(NEW);
+        row_data := new_row;
+        delta := new_row;
+        checkpoint := TRUE;
+    ELSIF TG_OP = 'UPDATE' THEN
+        new_row := to_jsonb(NEW);
+        old_row := to_jsonb(OLD);
+        row_data := new_row;
+        SELECT COALESCE(jsonb_object_agg(n.key, n.value), '{}'::jsonb) INTO delta
+        FROM jsonb_each(new_row) n
+        WHERE old_row -> n.key IS DISTINCT FROM n.value;
+        IF delta = '{}'::jsonb THEN
+            RETURN NULL;
+        END IF;
+        INSERT INTO ontology_history_heads (entity_table, entity_id, deltas_since_checkpoint)
+        VALUES (TG_TABLE_NAME, (new_row ->> 'id')::INTEGER, 1)
+        ON CONFLICT (entity_table, entity_id)
+        DO UPDATE SET deltas_since_checkpoint = ontology_history_heads.deltas_since_checkpoint + 1
+        RETURNING deltas_since_checkpoint INTO pending;
+        IF pending >= checkpoint_interval THEN
+            delta := new_row;
+            checkpoint := TRUE;
+        END IF;
+    ELSE
+        row_data := to_jsonb(OLD);
+        delta := '{}'::jsonb;
+    END IF;
+
+    IF checkpoint AND TG_OP = 'UPDATE' THEN
+        UPDATE ontology_history_heads SET deltas_since_checkpoint = 0
+        WHERE entity_table = TG_TABLE_NAME AND entity_id = (row_data ->> 'id')::INTEGER;
+    ELSIF TG_OP = 'DELETE' THEN
+        DELETE FROM ontology_history_heads
+        WHERE entity_table = TG_TABLE_NAME AND entity_id = (row_data ->> 'id')::INTEGER;
+    END IF;
+
+    root_id := CASE TG_TABLE_NAME
+        WHEN 'object_types' THEN (row_data ->> 'id')::INTEGER
+        WHEN 'attributes' THEN (row_data ->> 'fk_object_type_id')::INTEGER
+        WHEN 'relationships' THEN (row_data ->> 'filter_by_object_type_id')::INTEGER
+        ELSE NULL
+    END;
+
+    INSERT INTO ontology_history (entity_table, entity_id, root_object_type_id, operation, is_checkpoint, data)
+    VALUES (TG_TABLE_NAME, (row_data ->> 'id')::INTEGER, root_id, left(TG_OP, 1), checkpoint, delta);
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS object_types_history ON object_types;
+CREATE TRIGGER object_types_history AFTER INSERT OR UPDATE OR DELETE ON object_types
+    FOR EACH ROW EXECUTE PROCEDURE record_ontology_delta();
+
+DROP TRIGGER IF EXISTS attributes_history ON attributes;
+CREATE TRIGGER attributes_history AFTER INSERT OR UPDATE OR DELETE ON attributes
+    FOR EACH ROW EXECUTE PROCEDURE record_ontology_delta();
+
+DROP TRIGGER IF EXISTS relationships_history ON relationships;
+CREATE TRIGGER relationships_history AFTER INSERT OR UPDATE OR DELETE ON relationships
+    FOR EACH ROW EXECUTE PROCEDURE record_ontology_delta();
+
+DROP TRIGGER IF EXISTS relationship_dependencies_history ON relationship_dependencies;
+CREATE TRIGGER relationship_dependencies_history AFTER INSERT OR UPDATE OR DELETE ON relationship_dependencies
+    FOR EACH ROW EXECUTE PROCEDURE record_ontology_delta();
@@ -0,0 +1,204 @@
+package perf;
+
+import dao.AttributesDAO;
+import dao.ObjectTypesDAO;
+import dao.VersionConflictException;
+import model.Attributes;
+import model.ObjectTypes;
+import utils.DatabaseUtility;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks optimistic object type updates under contention, against the database configured in
+ * {@link DatabaseUtility}, on a generated object type that is removed afterwards:
+ * <ol>
+ * <li>{@code threads} threads read the object type, then update it at the same moment with the
+ * version they read. Exactly one must win and every other one must get a
+ * {@link VersionConflictException}.</li>
+ * <li>For {@code duration} seconds, half the threads keep updating the object type from a fresh
+ * read while the other half keep editing its attributes one at a time. Both paths lock the object
+ * type and its attributes, so conflicts are expected, but no write may fail, as it would if the
+ * two took their locks in opposite order and deadlocked.</li>
+ * </ol>
+ * Options, all {@code name=value}, optionally prefixed with {@code --}:
+ * <ul>
+ * <li>threads: the number of concurrent writers (default 16)</li>
+ * <li>attributes: attributes of the object type (default 10)</li>
+ * <li>rounds: how often the first check is repeated (default 20)</li>
+ * <li>duration: how long the second check runs, in seconds (default 10)</li>
+ * </ul>
+ * Failed writes are logged by the DAOs. The process exits with status 1 if a check fails.
+ */
+public class ConcurrencyCheck {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int threads = Integer.parseInt(options.getOrDefault("threads", "16"));
+        int attributeCount = Integer.parseInt(options.getOrDefault("attributes", "10"));
+        int rounds = Integer.parseInt(options.getOrDefault("rounds", "20"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "10"));
+        List<String> failures = new ArrayList<>();
+
+        OntologyDataGenerator generator = new OntologyDataGenerator(System.nanoTime());
+        Connection connection = DatabaseUtility.connect();
+        OntologyDataGenerator.Dataset dataset;
+        try {
+            dataset = generator.load(connection, 1, attributeCount, 0, 0, 0);
+        } finally {
+            DatabaseUtility.disconnect(connection);
+        }
+        int id = dataset.getObjectTypeIds()[0];
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < rounds; round++) {
+                sameVersion(failures, executor, threads, id, round);
+            }
+            mixed(failures, executor, threads, id, durationSeconds);
+        } finally {
+            executor.shutdownNow();
+            connection = DatabaseUtility.connect();
+            try {
+                OntologyDataGenerator.unload(connection, dataset);
+            } finally {
+                DatabaseUtility.disconnect(connection);
+            }
+        }
+
+        if (failures.isEmpty()) {
+            System.out.println("all checks passed");
+        } else {
+            for (String failure : failures) {
+                System.out.println("FAILED: " + failure);
+            }
+            System.exit(1);
+        }
+    }
+
+    private static void sameVersion(List<String> failures, ExecutorService executor, int threads, int id, int round) throws Exception {
+        ObjectTypes read = read(id);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger winners = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            String name = read.getName() + " r" + round + "w" + t;
+            writers.add(executor.submit(() -> {
+                start.await();
+                try {
+                    if (new ObjectTypesDAO().updateObjectTypeById(id, read.getVersion(), name, read.getDescription(), edited(read.getAttributesList()))) {
+                        winners.incrementAndGet();
+                    } else {
+                        failed.incrementAndGet();
+                    }
+                } catch (VersionConflictException e) {
+                    conflicts.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        start.countDown();
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        System.out.printf("round %d at version %d: %d won, %d conflicts, %d failed%n",
+                round, read.getVersion(), winners.get(), conflicts.get(), failed.get());
+        check(failures, winners.get() == 1, "round " + round + " had " + winners.get() + " winners");
+        check(failures, conflicts.get() == threads - 1, "round " + round + " had " + conflicts.get() + " conflicts");
+        check(failures, failed.get() == 0, "round " + round + " had " + failed.get() + " failed updates, see the log");
+    }
+
+    private static void mixed(List<String> failures, ExecutorService executor, int threads, int id, int durationSeconds) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(durationSeconds);
+        AtomicInteger updates = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        List<Future<?>> writers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            boolean objectTypeWriter = t % 2 == 0;
+            writers.add(executor.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    ObjectTypes read = read(id);
+                    boolean written;
+                    if (objectTypeWriter) {
+                        try {
+                            written = new ObjectTypesDAO().updateObjectTypeById(id, read.getVersion(), read.getName(),
+                                    read.getDescription(), edited(read.getAttributesList()));
+                        } catch (VersionConflictException e) {
+                            conflicts.incrementAndGet();
+                            continue;
+                        }
+                    } else {
+                        List<Attributes> attributes = read.getAttributesList();
+                        Attributes attribute = attributes.get(ThreadLocalRandom.current().nextInt(attributes.size()));
+                        written = new AttributesDAO().updateAttribute(attribute.getId(), attribute.getName(), attribute.getDataType(),
+                                attribute.isRequired(), "v" + ThreadLocalRandom.current().nextInt(1000), attribute.isIndexed());
+                    }
+                    (written ? updates : failed).incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        for (Future<?> writer : writers) {
+            writer.get();
+        }
+        System.out.printf("mixed writers for %d s: %,d updates, %,d conflicts, %d failed%n",
+                durationSeconds, updates.get(), conflicts.get(), failed.get());
+        check(failures, failed.get() == 0, failed.get() + " mixed writes failed, see the log for deadlocks");
+    }
+
+    private static ObjectTypes read(int id) {
+        ObjectTypes objectType = new ObjectTypesDAO().getObjectTypeById(id);
+        objectType.setAttributesList(new AttributesDAO().findAttributesByObjectTypeId(id));
+        return objectType;
+    }
+
+    // Copies with a new default value each, so every attribute in the list is written
+    private static List<Attributes> edited(List<Attributes> attributes) {
+        List<Attributes> edited = new ArrayList<>(attributes.size());
+        for (Attributes attribute : attributes) {
+            Attributes copy = new Attributes();
+            copy.setId(attribute.getId());
+            copy.setName(attribute.getName());
+            copy.setDataType(attribute.getDataType());
+            copy.setRequired(attribute.isRequired());
+            copy.setDefaultValue("v" + ThreadLocalRandom.current().nextInt(1000));
+            copy.setEnumValues(attribute.getEnumValues());
+            copy.setIndexed(attribute.isIndexed());
+            copy.setVersion(attribute.getVersion());
+            edited.add(copy);
+        }
+        return edited;
+    }
+
+    private static void check(List<String> failures, boolean condition, String failure) {
+        if (!condition) {
+            failures.add(failure);
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int separator = option.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected name=value but got '" + arg + "'");
+            }
+            options.put(option.substring(0, separator), option.substring(separator + 1));
+        }
+        return options;
+    }
+}
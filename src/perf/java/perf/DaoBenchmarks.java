@@ -0,0 +1,117 @@
+package perf;
+
+import dao.AttributesDAO;
+import dao.FacilitiesDAO;
+import dao.ObjectTypesDAO;
+import dao.RelationshipDependenciesDAO;
+import model.Attributes;
+import model.Facilities;
+import model.ObjectTypes;
+import model.RelationshipDependencies;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import utils.DatabaseUtility;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DAO round trips against the database configured in {@link DatabaseUtility}, which must hold the
+ * ontology schema. Each trial loads its own generated dataset and removes it afterwards, so the
+ * benchmarks can run against a shared development database.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DaoBenchmarks {
+
+    @Param("42")
+    private long seed;
+
+    @Param("200")
+    private int objectTypes;
+
+    @Param("20")
+    private int attributesPerObjectType;
+
+    @Param("500")
+    private int relationships;
+
+    @Param("5")
+    private int dependenciesPerRelationship;
+
+    private final ObjectTypesDAO objectTypesDAO = new ObjectTypesDAO();
+    private final AttributesDAO attributesDAO = new AttributesDAO();
+    private final FacilitiesDAO facilitiesDAO = new FacilitiesDAO();
+    private final RelationshipDependenciesDAO dependenciesDAO = new RelationshipDependenciesDAO();
+    private OntologyDataGenerator generator;
+    private OntologyDataGenerator.Dataset dataset;
+
+    @Setup(Level.Trial)
+    public void load() throws SQLException {
+        generator = new OntologyDataGenerator(seed);
+        Connection connection = DatabaseUtility.connect();
+        try {
+            dataset = generator.load(connection, objectTypes, attributesPerObjectType, 0, relationships, dependenciesPerRelationship);
+        } finally {
+            DatabaseUtility.disconnect(connection);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void unload() throws SQLException {
+        Connection connection = DatabaseUtility.connect();
+        try {
+            OntologyDataGenerator.unload(connection, dataset);
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM facilities WHERE name LIKE ?")) {
+                statement.setString(1, generator.getPrefix() + "%");
+                statement.executeUpdate();
+            }
+        } finally {
+            DatabaseUtility.disconnect(connection);
+        }
+    }
+
+    @Benchmark
+    public List<ObjectTypes> getAllObjectTypes() {
+        return objectTypesDAO.getAllObjectTypes();
+    }
+
+    @Benchmark
+    public List<Attributes> findAttributesByObjectTypeId() {
+        int[] ids = dataset.getObjectTypeIds();
+        return attributesDAO.findAttributesByObjectTypeId(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+
+    @Benchmark
+    public Facilities createFacility() {
+        int n = ThreadLocalRandom.current().nextInt(1_000_000);
+        return facilitiesDAO.createFacility(generator.getPrefix() + "facility " + n, "bench district", BigDecimal.valueOf(n, 2),
+                Facilities.FacilityType.WAREHOUSE, Facilities.OperationalStatus.ACTIVE, null);
+    }
+
+    @Benchmark
+    public List<RelationshipDependencies> findAllDependenciesByRelationshipId() {
+        int[] ids = dataset.getRelationshipIds();
+        return dependenciesDAO.findAllDependenciesByRelationshipId(ids[ThreadLocalRandom.current().nextInt(ids.length)]);
+    }
+}
@@ -0,0 +1,50 @@
+package perf;
+
+import compact.CompactOntology;
+import model.Attributes;
+import model.ObjectTypes;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.sql.Timestamp;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures with JOL the retained heap of a generated ontology held as model objects, the way the
+ * DAOs return it, and as a {@link CompactOntology}, and prints the bytes per attribute of each.
+ * <p>
+ * Arguments: the number of object types and attributes per object type, by default 50000 and 20
+ * for a million attributes. Run with a heap of a few gigabytes.
+ */
+public class FootprintReport {
+
+    public static void main(String[] args) {
+        int objectTypeCount = args.length > 0 ? Integer.parseInt(args[0]) : 50000;
+        int attributesPerObjectType = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        OntologyDataGenerator generator = new OntologyDataGenerator(42);
+
+        List<ObjectTypes> objectTypes = generator.objectTypes(objectTypeCount);
+        Map<Integer, List<Attributes>> attributes = new HashMap<>();
+        long now = System.currentTimeMillis();
+        for (ObjectTypes objectType : objectTypes) {
+            // Rows read from the database carry both timestamps.
+            objectType.setCreatedAt(new Timestamp(now - objectType.getId() * 1000L));
+            objectType.setUpdatedAt(new Timestamp(now));
+            List<Attributes> owned = generator.attributes(objectType.getId(), attributesPerObjectType);
+            objectType.setAttributesList(owned);
+            attributes.put(objectType.getId(), owned);
+        }
+        int attributeCount = objectTypeCount * attributesPerObjectType;
+
+        long modelBytes = GraphLayout.parseInstance(objectTypes).totalSize();
+        CompactOntology compact = CompactOntology.of(objectTypes, attributes);
+        long compactBytes = GraphLayout.parseInstance(compact).totalSize();
+
+        System.out.printf("%d object types, %d attributes, %d distinct strings%n", objectTypeCount, attributeCount,
+                compact.getDistinctStringCount());
+        System.out.printf("  model objects      %,14d bytes  %8.1f bytes/attribute%n", modelBytes, (double) modelBytes / attributeCount);
+        System.out.printf("  compact ontology   %,14d bytes  %8.1f bytes/attribute%n", compactBytes, (double) compactBytes / attributeCount);
+        System.out.printf("  reduction          %13.1fx%n", (double) modelBytes / compactBytes);
+    }
+}
@@ -0,0 +1,339 @@
+package perf;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import model.Attributes;
+import model.ObjectTypes;
+import model.RelationshipDependencies;
+import model.Relationships;
+import offheap.AttributeRecord;
+import offheap.OffHeapStore;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.File;
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compares GC pauses and heap occupancy of a large ontology held on the heap as model objects in
+ * maps, the way the caches hold it, and in an {@link OffHeapStore}. Each store is loaded, then a
+ * churn phase reads random attributes, replaces some of them with a new version and allocates
+ * short-lived garbage the way request handling does, while every stop-the-world pause is recorded.
+ * <p>
+ * With {@code store=both} each store runs in a JVM of its own with the same heap, so neither
+ * inherits the other's heap state. Options, all {@code name=value}, optionally prefixed with {@code --}:
+ * <ul>
+ * <li>store: onheap, offheap or both (default both)</li>
+ * <li>objectTypes, attributes: object types and attributes per object type (defaults 20000 and 50)</li>
+ * <li>duration: an ISO-8601 duration of the churn phase (default PT30S)</li>
+ * <li>updates: the percentage of operations that replace an attribute (default 10)</li>
+ * <li>heap: the -Xmx of the child JVMs (default 2g)</li>
+ * </ul>
+ */
+public class GcPauseComparison {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        String store = options.getOrDefault("store", "both");
+        if ("both".equals(store)) {
+            fork("onheap", options, args);
+            fork("offheap", options, args);
+            return;
+        }
+        int objectTypeCount = Integer.parseInt(options.getOrDefault("objectTypes", "20000"));
+        int attributesPerObjectType = Integer.parseInt(options.getOrDefault("attributes", "50"));
+        Duration duration = Duration.parse(options.getOrDefault("duration", "PT30S"));
+        int updatePercent = Integer.parseInt(options.getOrDefault("updates", "10"));
+        if (attributesPerObjectType > 999) {
+            throw new IllegalArgumentException("At most 999 attributes per object type");
+        }
+
+        Workload workload;
+        if ("onheap".equals(store)) {
+            workload = new OnHeap();
+        } else if ("offheap".equals(store)) {
+            workload = new OffHeap(64 << 20);
+        } else {
+            throw new IllegalArgumentException("Unknown store '" + store + "'");
+        }
+
+        long loadStarted = System.nanoTime();
+        OntologyDataGenerator generator = new OntologyDataGenerator(42);
+        List<ObjectTypes> objectTypes = generator.objectTypes(objectTypeCount);
+        for (ObjectTypes objectType : objectTypes) {
+            workload.put(objectType);
+            for (Attributes attribute : generator.attributes(objectType.getId(), attributesPerObjectType)) {
+                workload.put(attribute, objectType.getId());
+            }
+        }
+        for (Relationships relationship : generator.relationships(objectTypes, objectTypeCount / 10)) {
+            workload.put(relationship);
+            for (RelationshipDependencies dependency : generator.dependencies(relationship.getId(), 5)) {
+                workload.put(dependency, relationship.getId());
+            }
+        }
+        objectTypes = null;
+        long loadMillis = (System.nanoTime() - loadStarted) / 1000000;
+        long heapAfterLoad = heapAfterFullGc();
+
+        PauseRecorder pauses = new PauseRecorder();
+        Random random = new Random(7);
+        int attributeCount = objectTypeCount * attributesPerObjectType;
+        long operations = 0;
+        long checksum = 0;
+        long deadline = System.nanoTime() + duration.toNanos();
+        while (System.nanoTime() < deadline) {
+            for (int i = 0; i < 1000; i++) {
+                // The generator numbers the attributes of object type t from t * 1000 + 1.
+                int objectTypeId = random.nextInt(objectTypeCount) + 1;
+                int id = objectTypeId * 1000 + random.nextInt(attributesPerObjectType) + 1;
+                if (random.nextInt(100) < updatePercent) {
+                    workload.update(id, objectTypeId);
+                } else {
+                    checksum += workload.read(id);
+                }
+                // What handling the request allocates besides the ontology.
+                byte[] garbage = new byte[256 + random.nextInt(512)];
+                checksum += garbage.length;
+            }
+            operations += 1000;
+        }
+        pauses.stop();
+        long heapAfterChurn = heapAfterFullGc();
+
+        System.out.printf("%s: %,d object types, %,d attributes, loaded in %,d ms%n", store, objectTypeCount,
+                attributeCount, loadMillis);
+        System.out.printf("  heap used after load     %,14d bytes%n", heapAfterLoad);
+        System.out.printf("  heap used after churn    %,14d bytes%n", heapAfterChurn);
+        System.out.printf("  off-heap buffers         %,14d bytes%s%n", directMemoryUsed(), workload.describe());
+        System.out.printf("  churn                    %,14d operations in %s (checksum %d)%n", operations, duration, checksum);
+        System.out.printf("  GC pauses                %,14d, total %,d ms, max %,d ms, %.2f ms per 1000 operations%n",
+                pauses.count.get(), pauses.totalMillis.get(), pauses.maxMillis.get(),
+                pauses.totalMillis.get() * 1000.0 / operations);
+    }
+
+    /**
+     * The same operations against either store.
+     */
+    private interface Workload {
+
+        void put(ObjectTypes objectType);
+
+        void put(Attributes attribute, int objectTypeId);
+
+        void put(Relationships relationship);
+
+        void put(RelationshipDependencies dependency, int relationshipId);
+
+        /**
+         * @return something derived from the attribute, so the read is not optimised away.
+         */
+        int read(int attributeId);
+
+        /**
+         * Replaces the attribute with a new version, as a cache does when it is edited.
+         */
+        void update(int attributeId, int objectTypeId);
+
+        String describe();
+    }
+
+    private static final class OnHeap implements Workload {
+
+        private final Map<Integer, ObjectTypes> objectTypes = new HashMap<>();
+        private final Map<Integer, Attributes> attributes = new HashMap<>();
+        private final Map<Integer, Relationships> relationships = new HashMap<>();
+        private final Map<Integer, RelationshipDependencies> dependencies = new HashMap<>();
+
+        @Override
+        public void put(ObjectTypes objectType) {
+            objectTypes.put(objectType.getId(), objectType);
+        }
+
+        @Override
+        public void put(Attributes attribute, int objectTypeId) {
+            attributes.put(attribute.getId(), attribute);
+        }
+
+        @Override
+        public void put(Relationships relationship) {
+            relationships.put(relationship.getId(), relationship);
+        }
+
+        @Override
+        public void put(RelationshipDependencies dependency, int relationshipId) {
+            dependencies.put(dependency.getId(), dependency);
+        }
+
+        @Override
+        public int read(int attributeId) {
+            Attributes attribute = attributes.get(attributeId);
+            return attribute.getName().length() + attribute.getAttributeUsageCount();
+        }
+
+        @Override
+        public void update(int attributeId, int objectTypeId) {
+            attributes.put(attributeId, nextVersion(attributes.get(attributeId)));
+        }
+
+        @Override
+        public String describe() {
+            return "";
+        }
+    }
+
+    private static final class OffHeap implements Workload {
+
+        private final OffHeapStore store;
+        private final AttributeRecord attribute = new AttributeRecord();
+
+        OffHeap(int initialCapacity) {
+            store = OffHeapStore.allocate(initialCapacity);
+        }
+
+        @Override
+        public void put(ObjectTypes objectType) {
+            store.put(objectType);
+        }
+
+        @Override
+        public void put(Attributes attribute, int objectTypeId) {
+            store.put(attribute, objectTypeId);
+        }
+
+        @Override
+        public void put(Relationships relationship) {
+            store.put(relationship);
+        }
+
+        @Override
+        public void put(RelationshipDependencies dependency, int relationshipId) {
+            store.put(dependency, relationshipId);
+        }
+
+        @Override
+        public int read(int attributeId) {
+            store.get(attributeId, attribute);
+            return attribute.getName().length() + attribute.getAttributeUsageCount();
+        }
+
+        @Override
+        public void update(int attributeId, int objectTypeId) {
+            store.get(attributeId, attribute);
+            store.put(nextVersion(attribute.toModel()), objectTypeId);
+        }
+
+        @Override
+        public String describe() {
+            return String.format(", %,d live, %,d dead, %d compactions", store.getLiveBytes(), store.getDeadBytes(),
+                    store.getCompactions());
+        }
+    }
+
+    private static Attributes nextVersion(Attributes current) {
+        Attributes next = new Attributes();
+        next.setId(current.getId());
+        next.setName(current.getName());
+        next.setDataType(current.getDataType());
+        next.setRequired(current.isRequired());
+        next.setIndexed(current.isIndexed());
+        next.setDefaultValue(current.getDefaultValue());
+        next.setEnumValues(current.getEnumValues() == null ? null : new ArrayList<>(current.getEnumValues()));
+        next.setAttributeUsageCount(current.getAttributeUsageCount() + 1);
+        next.setVersion(current.getVersion() + 1);
+        return next;
+    }
+
+    /**
+     * Records the stop-the-world pauses reported by the collectors, leaving out the concurrent
+     * phases that some of them report as well.
+     */
+    private static final class PauseRecorder {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalMillis = new AtomicLong();
+        private final AtomicLong maxMillis = new AtomicLong();
+        private volatile boolean stopped;
+
+        PauseRecorder() {
+            for (GarbageCollectorMXBean collector : ManagementFactory.getGarbageCollectorMXBeans()) {
+                ((NotificationEmitter) collector).addNotificationListener((notification, handback) -> {
+                    if (stopped || !GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                        return;
+                    }
+                    GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                    if (info.getGcName().contains("Concurrent") || info.getGcAction().contains("concurrent")) {
+                        return;
+                    }
+                    long millis = info.getGcInfo().getDuration();
+                    count.incrementAndGet();
+                    totalMillis.addAndGet(millis);
+                    maxMillis.accumulateAndGet(millis, Math::max);
+                }, null, null);
+            }
+        }
+
+        void stop() {
+            stopped = true;
+        }
+    }
+
+    private static long heapAfterFullGc() {
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    private static long directMemoryUsed() {
+        long used = 0;
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            used += pool.getMemoryUsed();
+        }
+        return used;
+    }
+
+    /**
+     * Runs one store in a fresh JVM with the same options and the configured heap.
+     */
+    private static void fork(String store, Map<String, String> options, String[] args) throws Exception {
+        List<String> command = new ArrayList<>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.add("-Xms" + options.getOrDefault("heap", "2g"));
+        command.add("-Xmx" + options.getOrDefault("heap", "2g"));
+        command.add("-cp");
+        command.add(System.getProperty("java.class.path"));
+        command.add(GcPauseComparison.class.getName());
+        for (String arg : args) {
+            if (!arg.replaceFirst("^--", "").startsWith("store=")) {
+                command.add(arg);
+            }
+        }
+        command.add("store=" + store);
+        int exit = new ProcessBuilder(command).inheritIO().start().waitFor();
+        if (exit != 0) {
+            throw new IllegalStateException(store + " run failed with exit code " + exit);
+        }
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int separator = option.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected name=value but got '" + arg + "'");
+            }
+            options.put(option.substring(0, separator), option.substring(separator + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,156 @@
+package perf;
+
+import dao.OntologyHistoryDAO;
+import model.ObjectTypeRevision;
+import model.OntologyHistory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import utils.DatabaseUtility;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Point-in-time reads of the change history recorded by the record_ontology_delta trigger, against
+ * the database configured in {@link DatabaseUtility}. Each trial loads a generated dataset and
+ * applies {@code edits} random attribute edits to it in transactions of {@code editsPerTransaction},
+ * noting the database clock after each one; the benchmarks reconstruct a random object type as of
+ * one of those points. Setting up the default million edits takes several minutes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoryBenchmarks {
+
+    @Param("42")
+    private long seed;
+
+    @Param("200")
+    private int objectTypes;
+
+    @Param("20")
+    private int attributesPerObjectType;
+
+    @Param("1000000")
+    private int edits;
+
+    @Param("10000")
+    private int editsPerTransaction;
+
+    private final OntologyHistoryDAO historyDAO = new OntologyHistoryDAO();
+    private OntologyDataGenerator.Dataset dataset;
+    private int[] attributeIds;
+    private Timestamp[] asOf;
+
+    @Setup(Level.Trial)
+    public void load() throws SQLException {
+        OntologyDataGenerator generator = new OntologyDataGenerator(seed);
+        Connection connection = DatabaseUtility.connect();
+        try {
+            dataset = generator.load(connection, objectTypes, attributesPerObjectType, 0, 0, 0);
+            attributeIds = attributeIds(connection, dataset.getObjectTypeIds());
+            asOf = edit(connection, new Random(seed));
+        } finally {
+            DatabaseUtility.disconnect(connection);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void unload() throws SQLException {
+        Connection connection = DatabaseUtility.connect();
+        try {
+            OntologyDataGenerator.unload(connection, dataset);
+            Integer[] ids = new Integer[dataset.getObjectTypeIds().length];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = dataset.getObjectTypeIds()[i];
+            }
+            try (PreparedStatement statement = connection.prepareStatement("DELETE FROM ontology_history WHERE root_object_type_id = ANY(?)")) {
+                statement.setArray(1, connection.createArrayOf("integer", ids));
+                statement.executeUpdate();
+            }
+        } finally {
+            DatabaseUtility.disconnect(connection);
+        }
+    }
+
+    @Benchmark
+    public ObjectTypeRevision getObjectTypeAt() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int[] ids = dataset.getObjectTypeIds();
+        return historyDAO.getObjectTypeAt(ids[random.nextInt(ids.length)], asOf[random.nextInt(asOf.length)]);
+    }
+
+    @Benchmark
+    public List<OntologyHistory> findHistoryByEntity() {
+        return historyDAO.findHistoryByEntity("attributes", attributeIds[ThreadLocalRandom.current().nextInt(attributeIds.length)]);
+    }
+
+    private static int[] attributeIds(Connection connection, int[] objectTypeIds) throws SQLException {
+        Integer[] boxed = new Integer[objectTypeIds.length];
+        for (int i = 0; i < objectTypeIds.length; i++) {
+            boxed[i] = objectTypeIds[i];
+        }
+        List<Integer> ids = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT id FROM attributes WHERE fk_object_type_id = ANY(?) ORDER BY id")) {
+            statement.setArray(1, connection.createArrayOf("integer", boxed));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    ids.add(resultSet.getInt(1));
+                }
+            }
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    // Every edit changes one column, so the trigger writes a delta and every 32nd a checkpoint
+    private Timestamp[] edit(Connection connection, Random random) throws SQLException {
+        List<Timestamp> points = new ArrayList<>();
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement update = connection.prepareStatement("UPDATE attributes SET default_value = ? WHERE id = ?");
+             PreparedStatement clock = connection.prepareStatement("SELECT clock_timestamp()::timestamp")) {
+            for (int edit = 1; edit <= edits; edit++) {
+                update.setString(1, "v" + edit);
+                update.setInt(2, attributeIds[random.nextInt(attributeIds.length)]);
+                update.addBatch();
+                if (edit % editsPerTransaction == 0 || edit == edits) {
+                    update.executeBatch();
+                    connection.commit();
+                    try (ResultSet resultSet = clock.executeQuery()) {
+                        resultSet.next();
+                        points.add(resultSet.getTimestamp(1));
+                    }
+                    connection.commit();
+                }
+            }
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return points.toArray(new Timestamp[0]);
+    }
+}
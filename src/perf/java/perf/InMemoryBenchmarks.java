@@ -0,0 +1,221 @@
+package perf;
+
+import metrics.LatencyHistogram;
+import model.Attributes;
+import model.ObjectTypes;
+import model.Relationships;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import search.OntologySearchIndex;
+import search.SearchResult;
+import validation.ValidatedBatch;
+import validation.ValidationPlan;
+import versioning.OntologySerializer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hot paths that do not touch the database: serialising the ontology for versioning, validating
+ * instance batches, searching names and recording metrics.
+ * <p>
+ * {@code validateBatch} runs batches of {@code batchRows} rows, well above the plan's split
+ * threshold of 4096 rows, on a pool of {@code poolThreads} threads; besides batches per second it
+ * reports {@code rowsPerCore}, rows per second divided by the pool size. {@code searchWithTypos}
+ * and {@code autocomplete} query an index of {@code indexedNames} names and report latency
+ * percentiles.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InMemoryBenchmarks {
+
+    @Param("42")
+    private long seed;
+
+    @Param("2000")
+    private int objectTypeCount;
+
+    private List<ObjectTypes> objectTypes;
+    private List<Attributes> attributes;
+    private List<Relationships> relationships;
+    private final LatencyHistogram histogram = new LatencyHistogram();
+
+    @Setup
+    public void generate() {
+        OntologyDataGenerator generator = new OntologyDataGenerator(seed);
+        objectTypes = generator.objectTypes(objectTypeCount);
+        attributes = generator.attributes(1, 20);
+        relationships = generator.relationships(objectTypes, objectTypeCount);
+    }
+
+    @Benchmark
+    public void serializeObjectTypeWithAttributes(Blackhole blackhole) throws IOException {
+        blackhole.consume(OntologySerializer.serialize(objectTypes.get(ThreadLocalRandom.current().nextInt(objectTypes.size()))));
+        for (Attributes attribute : attributes) {
+            blackhole.consume(OntologySerializer.serialize(attribute));
+        }
+    }
+
+    @Benchmark
+    public byte[] serializeRelationship() throws IOException {
+        return OntologySerializer.serialize(relationships.get(ThreadLocalRandom.current().nextInt(relationships.size())));
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public ValidatedBatch validateBatch(ValidationState validation, BatchState state) {
+        validation.plan.validate(validation.columns, validation.batchRows, state.batch);
+        state.rowsPerCore += validation.batchRows / validation.poolThreads;
+        return state.batch;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<SearchResult> searchWithTypos(SearchState search) {
+        return search.index.search("presure sensr", null, 10);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public List<SearchResult> autocomplete(SearchState search) {
+        return search.index.autocomplete("bench" + seed + " cool", null, 10);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordLatency() {
+        histogram.record(ThreadLocalRandom.current().nextLong(10_000_000));
+    }
+
+    @State(Scope.Benchmark)
+    public static class ValidationState {
+        @Param({"65536", "1048576"})
+        private int batchRows;
+
+        @Param({"1", "2", "4", "8"})
+        private int poolThreads;
+
+        private ForkJoinPool pool;
+        private ValidationPlan plan;
+        private String[][] columns;
+
+        @Setup
+        public void compile(InMemoryBenchmarks benchmarks) {
+            pool = new ForkJoinPool(poolThreads);
+            plan = ValidationPlan.compile(benchmarks.attributes, pool);
+            columns = rawColumns(benchmarks.attributes, batchRows, new Random(benchmarks.seed));
+        }
+
+        @TearDown
+        public void shutdown() {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * A batch per benchmark thread, and the rows it validated per pool thread, which JMH reports
+     * as a rate next to the batch throughput.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class BatchState {
+        private ValidatedBatch batch;
+        public long rowsPerCore;
+
+        @Setup
+        public void allocate(ValidationState validation) {
+            batch = validation.plan.newBatch(validation.batchRows);
+        }
+
+        @Setup(Level.Iteration)
+        public void resetCounters() {
+            rowsPerCore = 0;
+        }
+    }
+
+    /**
+     * An index of about {@code indexedNames} names: per generated object type, its own, ten
+     * attributes' and one relationship's.
+     */
+    @State(Scope.Benchmark)
+    public static class SearchState {
+        @Param({"100000", "1000000"})
+        private int indexedNames;
+
+        private OntologySearchIndex index;
+
+        @Setup
+        public void index(InMemoryBenchmarks benchmarks) {
+            OntologyDataGenerator generator = new OntologyDataGenerator(benchmarks.seed);
+            List<ObjectTypes> objectTypes = generator.objectTypes(indexedNames / 12);
+            index = new OntologySearchIndex();
+            for (ObjectTypes objectType : objectTypes) {
+                index.put(SearchResult.Kind.OBJECT_TYPE, objectType.getId(), 0, objectType.getName(), objectType.getDescription());
+                for (Attributes attribute : generator.attributes(objectType.getId(), 10)) {
+                    index.put(SearchResult.Kind.ATTRIBUTE, attribute.getId(), objectType.getId(), attribute.getName(), null);
+                }
+            }
+            for (Relationships relationship : generator.relationships(objectTypes, objectTypes.size())) {
+                index.put(SearchResult.Kind.RELATIONSHIP, relationship.getId(), 0, relationship.getRelationshipName(), relationship.getRelationshipDescription());
+            }
+        }
+    }
+
+    private static String[][] rawColumns(List<Attributes> attributes, int rows, Random random) {
+        String[][] columns = new String[attributes.size()][rows];
+        for (int c = 0; c < attributes.size(); c++) {
+            Attributes attribute = attributes.get(c);
+            for (int r = 0; r < rows; r++) {
+                columns[c][r] = rawValue(attribute, random);
+            }
+        }
+        return columns;
+    }
+
+    private static String rawValue(Attributes attribute, Random random) {
+        if (random.nextInt(50) == 0) {
+            return "";
+        }
+        switch (attribute.getDataType()) {
+            case INTEGER:
+                return Integer.toString(random.nextInt(2_000_000) - 1_000_000);
+            case FLOAT:
+                return Double.toString(random.nextDouble() * 1000);
+            case DATE:
+                return String.format("20%02d-%02d-%02d", random.nextInt(30), 1 + random.nextInt(12), 1 + random.nextInt(28));
+            case DATETIME:
+                return String.format("20%02d-%02d-%02dT%02d:%02d:%02d", random.nextInt(30), 1 + random.nextInt(12),
+                        1 + random.nextInt(28), random.nextInt(24), random.nextInt(60), random.nextInt(60));
+            case ENUM:
+                List<String> values = attribute.getEnumValues();
+                return values.get(random.nextInt(values.size()));
+            default:
+                return "value " + random.nextInt(100_000);
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package perf;
+
+import migration.ConcurrentIndexMigration;
+import migration.Migration;
+import migration.MigrationRunner;
+import migration.Migrations;
+import utils.DatabaseUtility;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Verifies the migrations against the local database configured in {@link DatabaseUtility}, which
+ * may be empty or hold an existing installation:
+ * <ol>
+ * <li>migrates, and migrates again, which must apply nothing;</li>
+ * <li>checks the enum types, tables and indexes the DAOs depend on, and that every ontology row
+ * has a history checkpoint;</li>
+ * <li>builds an index while another transaction holds a conflicting lock, which must time out,
+ * retry and succeed once the lock is released, while a probe keeps reading the table.</li>
+ * </ol>
+ * Options, all {@code name=value}, optionally prefixed with {@code --}:
+ * <ul>
+ * <li>hold: how long the conflicting lock is held, in seconds (default 5)</li>
+ * <li>lockTimeoutMillis: the lock_timeout of the contended build (default 200)</li>
+ * </ul>
+ * The process exits with status 1 if a check fails.
+ */
+public class MigrationCheck {
+
+    private static final int CHECK_VERSION = 1_000_000;
+    private static final String CHECK_INDEX = "migration_check_idx";
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        int holdSeconds = Integer.parseInt(options.getOrDefault("hold", "5"));
+        long lockTimeoutMillis = Long.parseLong(options.getOrDefault("lockTimeoutMillis", "200"));
+        List<String> failures = new ArrayList<>();
+
+        MigrationRunner runner = MigrationRunner.getDefault();
+        long started = System.nanoTime();
+        check(failures, runner.migrate(), "first migration failed, see the log");
+        System.out.printf("migrated to version %d in %,d ms%n", runner.getCurrentVersion(), elapsedMillis(started));
+        Map<Integer, String> applied = applied();
+        check(failures, runner.migrate(), "second migration failed, see the log");
+        check(failures, applied.equals(applied()), "the second migration applied something");
+        for (Migration migration : Migrations.all()) {
+            check(failures, migration.getChecksum().equals(applied.get(migration.getVersion())), migration + " is not recorded");
+        }
+
+        Connection connection = DatabaseUtility.connect();
+        try {
+            for (String type : new String[]{"facility_types", "operational_statuses", "dependency_type"}) {
+                check(failures, exists(connection, "SELECT 1 FROM pg_type WHERE typname = ?", type), "type " + type + " is missing");
+            }
+            for (String table : new String[]{"object_types", "attributes", "relationships", "relationship_dependencies",
+                    "facilities", "use_cases", "ontology_history", "ontology_history_heads", "schema_migrations"}) {
+                check(failures, exists(connection, "SELECT 1 FROM information_schema.tables WHERE table_name = ?", table),
+                        "table " + table + " is missing");
+            }
+            for (String index : new String[]{"attributes_object_type_idx", "relationship_dependencies_relationship_idx",
+                    "relationships_filter_object_type_idx"}) {
+                check(failures, exists(connection, "SELECT 1 FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid"
+                        + " WHERE c.relname = ? AND i.indisvalid", index), "index " + index + " is missing or invalid");
+            }
+            for (String table : new String[]{"object_types", "attributes", "relationships", "relationship_dependencies"}) {
+                long missing = count(connection, "SELECT COUNT(*) FROM " + table + " t WHERE NOT EXISTS (SELECT 1 FROM ontology_history h"
+                        + " WHERE h.entity_table = '" + table + "' AND h.entity_id = t.id AND h.is_checkpoint)");
+                check(failures, missing == 0, missing + " rows of " + table + " have no history checkpoint");
+            }
+        } finally {
+            DatabaseUtility.disconnect(connection);
+        }
+
+        contendedIndex(failures, holdSeconds, lockTimeoutMillis);
+
+        if (failures.isEmpty()) {
+            System.out.println("all checks passed");
+        } else {
+            for (String failure : failures) {
+                System.out.println("FAILED: " + failure);
+            }
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Holds a SHARE lock on attributes, which conflicts with CREATE INDEX CONCURRENTLY, and builds
+     * an index with a short lock_timeout meanwhile.
+     */
+    private static void contendedIndex(List<String> failures, int holdSeconds, long lockTimeoutMillis) throws Exception {
+        MigrationRunner runner = new MigrationRunner(Collections.singletonList(
+                new ConcurrentIndexMigration(CHECK_VERSION, "migration check", CHECK_INDEX, "ON attributes (name)")),
+                lockTimeoutMillis, 100, 100, 1000, 100);
+        Connection holder = DatabaseUtility.connect();
+        Connection probe = DatabaseUtility.connect();
+        AtomicBoolean probing = new AtomicBoolean(true);
+        AtomicLong maxProbeNanos = new AtomicLong();
+        AtomicLong releasedNanos = new AtomicLong(Long.MAX_VALUE);
+        Thread prober = new Thread(() -> {
+            try (PreparedStatement statement = probe.prepareStatement("SELECT COUNT(*) FROM attributes WHERE id = 1")) {
+                while (probing.get()) {
+                    long started = System.nanoTime();
+                    statement.executeQuery().close();
+                    maxProbeNanos.accumulateAndGet(System.nanoTime() - started, Math::max);
+                    Thread.sleep(20);
+                }
+            } catch (SQLException | InterruptedException e) {
+                maxProbeNanos.set(Long.MAX_VALUE);
+            }
+        }, "migration-check-probe");
+        try {
+            holder.setAutoCommit(false);
+            try (Statement statement = holder.createStatement()) {
+                statement.execute("LOCK TABLE attributes IN SHARE MODE");
+            }
+            prober.start();
+            Thread releaser = new Thread(() -> {
+                try {
+                    Thread.sleep(TimeUnit.SECONDS.toMillis(holdSeconds));
+                    releasedNanos.set(System.nanoTime());
+                    holder.rollback();
+                } catch (SQLException | InterruptedException e) {
+                    e.printStackTrace();
+                }
+            }, "migration-check-release");
+            releaser.start();
+            long started = System.nanoTime();
+            boolean migrated = runner.migrate();
+            long finishedNanos = System.nanoTime();
+            long millis = elapsedMillis(started);
+            releaser.join();
+            probing.set(false);
+            prober.join();
+            System.out.printf("contended index build finished after %,d ms with the lock held for %d s,"
+                    + " slowest probe read %,d ms%n", millis, holdSeconds, TimeUnit.NANOSECONDS.toMillis(maxProbeNanos.get()));
+            check(failures, migrated, "the contended index build failed, see the log");
+            check(failures, finishedNanos >= releasedNanos.get(), "the index was built while the conflicting lock was held");
+            check(failures, maxProbeNanos.get() < TimeUnit.SECONDS.toNanos(1), "reads stalled during the index build");
+        } finally {
+            probing.set(false);
+            holder.setAutoCommit(true);
+            try (Statement statement = holder.createStatement()) {
+                statement.execute("DROP INDEX CONCURRENTLY IF EXISTS " + CHECK_INDEX);
+                statement.execute("DELETE FROM schema_migrations WHERE version = " + CHECK_VERSION);
+            }
+            DatabaseUtility.disconnect(probe);
+            DatabaseUtility.disconnect(holder);
+        }
+    }
+
+    private static Map<Integer, String> applied() throws SQLException {
+        Map<Integer, String> applied = new HashMap<>();
+        Connection connection = DatabaseUtility.connect();
+        try (PreparedStatement statement = connection.prepareStatement("SELECT version, checksum FROM schema_migrations");
+             ResultSet resultSet = statement.executeQuery()) {
+            while (resultSet.next()) {
+                applied.put(resultSet.getInt(1), resultSet.getString(2));
+            }
+        } finally {
+            DatabaseUtility.disconnect(connection);
+        }
+        return applied;
+    }
+
+    private static boolean exists(Connection connection, String sql, String name) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setString(1, name);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next();
+            }
+        }
+    }
+
+    private static long count(Connection connection, String sql) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(sql);
+             ResultSet resultSet = statement.executeQuery()) {
+            resultSet.next();
+            return resultSet.getLong(1);
+        }
+    }
+
+    private static void check(List<String> failures, boolean condition, String failure) {
+        if (!condition) {
+            failures.add(failure);
+        }
+    }
+
+    private static long elapsedMillis(long started) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started);
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int separator = option.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected name=value but got '" + arg + "'");
+            }
+            options.put(option.substring(0, separator), option.substring(separator + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,299 @@
+package perf;
+
+import model.Attributes;
+import model.Facilities;
+import model.ObjectTypes;
+import model.RelationshipDependencies;
+import model.Relationships;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Reproducible ontology data for benchmarks. Every generator derives its random stream from the seed
+ * and the owning entity, so the same seed yields the same data regardless of call order.
+ * Rows loaded into the database carry a name prefix containing the seed and are removed by id.
+ */
+public class OntologyDataGenerator {
+
+    private static final String[] NOUNS = {"pump", "station", "valve", "sensor", "line", "tank", "motor", "meter",
+            "bearing", "seal", "filter", "cooler", "inlet", "outlet", "site", "zone", "asset", "batch"};
+    private static final String[] ADJECTIVES = {"primary", "backup", "main", "remote", "cooling", "pressure",
+            "flow", "north", "south", "legacy", "mobile", "shared"};
+
+    private final long seed;
+    private final String prefix;
+
+    public OntologyDataGenerator(long seed) {
+        this.seed = seed;
+        this.prefix = "bench" + seed + " ";
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public List<ObjectTypes> objectTypes(int count) {
+        Random random = random(1, 0);
+        List<ObjectTypes> objectTypes = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            ObjectTypes objectType = new ObjectTypes();
+            objectType.setId(i);
+            objectType.setName(prefix + name(random) + ' ' + i);
+            objectType.setDescription("Generated object type " + i + " describing a " + name(random));
+            objectType.setVersion(1);
+            objectTypes.add(objectType);
+        }
+        return objectTypes;
+    }
+
+    public List<Attributes> attributes(int objectTypeId, int count) {
+        Random random = random(2, objectTypeId);
+        Attributes.DataTypes[] dataTypes = Attributes.DataTypes.values();
+        List<Attributes> attributes = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Attributes attribute = new Attributes();
+            attribute.setId(objectTypeId * 1000 + i);
+            attribute.setName(name(random).replace(' ', '_') + '_' + i);
+            Attributes.DataTypes dataType = dataTypes[random.nextInt(dataTypes.length)];
+            attribute.setDataType(dataType);
+            attribute.setRequired(random.nextInt(4) == 0);
+            attribute.setIndexed(random.nextInt(8) == 0);
+            attribute.setAttributeUsageCount(random.nextInt(1000));
+            if (dataType == Attributes.DataTypes.ENUM) {
+                attribute.setEnumValues(Arrays.asList("LOW", "MEDIUM", "HIGH", "CRITICAL"));
+                attribute.setDefaultValue("LOW");
+            } else if (dataType == Attributes.DataTypes.INTEGER && random.nextBoolean()) {
+                attribute.setDefaultValue("0");
+            }
+            attribute.setVersion(1);
+            attributes.add(attribute);
+        }
+        return attributes;
+    }
+
+    public List<Facilities> facilities(int count) {
+        Random random = random(3, 0);
+        Facilities.FacilityType[] types = Facilities.FacilityType.values();
+        Facilities.OperationalStatus[] statuses = Facilities.OperationalStatus.values();
+        List<Facilities> facilities = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            Facilities facility = new Facilities();
+            facility.setId(i);
+            facility.setName(prefix + name(random) + " facility " + i);
+            facility.setLocation(ADJECTIVES[random.nextInt(ADJECTIVES.length)] + " district " + random.nextInt(100));
+            facility.setSizeInSquareFootage(BigDecimal.valueOf(1000 + random.nextInt(500_000), 2));
+            facility.setFacilityType(types[random.nextInt(types.length)]);
+            facility.setOperationalStatus(statuses[random.nextInt(statuses.length)]);
+            facilities.add(facility);
+        }
+        return facilities;
+    }
+
+    /**
+     * @param objectTypes the object types the relationships may filter by.
+     */
+    public List<Relationships> relationships(List<ObjectTypes> objectTypes, int count) {
+        Random random = random(4, 0);
+        Relationships.RelationshipTypes[] types = Relationships.RelationshipTypes.values();
+        List<Relationships> relationships = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            ObjectTypes filter = objectTypes.isEmpty() ? null : objectTypes.get(random.nextInt(objectTypes.size()));
+            relationships.add(new Relationships(i, prefix + name(random) + " link " + i, types[random.nextInt(types.length)],
+                    "Generated relationship " + i, "{\"weight\":" + random.nextInt(10) + "}", i,
+                    types[random.nextInt(types.length)], filter));
+        }
+        return relationships;
+    }
+
+    public List<RelationshipDependencies> dependencies(int relationshipId, int count) {
+        Random random = random(5, relationshipId);
+        RelationshipDependencies.DependencyType[] types = RelationshipDependencies.DependencyType.values();
+        List<RelationshipDependencies> dependencies = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            RelationshipDependencies dependency = new RelationshipDependencies();
+            dependency.setId(relationshipId * 1000 + i);
+            dependency.setDependencyName(name(random) + ' ' + i);
+            dependency.setDependencyType(types[random.nextInt(types.length)]);
+            dependencies.add(dependency);
+        }
+        return dependencies;
+    }
+
+    /**
+     * Inserts a generated ontology with JDBC batches in one transaction. Ids are assigned by the
+     * database; the generated ids are ignored.
+     *
+     * @return the ids of the inserted rows, needed to query and to {@link #unload} them.
+     */
+    public Dataset load(Connection connection, int objectTypeCount, int attributesPerObjectType, int facilityCount,
+                        int relationshipCount, int dependenciesPerRelationship) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            List<ObjectTypes> objectTypes = objectTypes(objectTypeCount);
+            int[] objectTypeIds = insert(connection, "INSERT INTO object_types (name, description) VALUES (?, ?)", objectTypes.size(), (statement, i) -> {
+                statement.setString(1, objectTypes.get(i).getName());
+                statement.setString(2, objectTypes.get(i).getDescription());
+            });
+
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO attributes (name, data_type, is_required, default_value, "
+                    + "is_indexed, attribute_usage_count, fk_object_type_id) VALUES (?, ?, ?, ?, ?, ?, ?)")) {
+                for (int objectTypeId : objectTypeIds) {
+                    for (Attributes attribute : attributes(objectTypeId, attributesPerObjectType)) {
+                        statement.setString(1, attribute.getName());
+                        statement.setString(2, attribute.getDataType().name());
+                        statement.setBoolean(3, attribute.isRequired());
+                        statement.setString(4, attribute.getDefaultValue());
+                        statement.setBoolean(5, attribute.isIndexed());
+                        statement.setInt(6, attribute.getAttributeUsageCount());
+                        statement.setInt(7, objectTypeId);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+            }
+
+            List<Facilities> facilities = facilities(facilityCount);
+            int[] facilityIds = insert(connection, "INSERT INTO facilities (name, location, size_in_square_footage, facility_type, operational_status) "
+                    + "VALUES (?, ?, ?, ?, ?)", facilities.size(), (statement, i) -> {
+                Facilities facility = facilities.get(i);
+                statement.setString(1, facility.getName());
+                statement.setString(2, facility.getLocation());
+                statement.setBigDecimal(3, facility.getSizeInSquareFootage());
+                statement.setString(4, facility.getFacilityType().name());
+                statement.setString(5, facility.getOperationalStatus().name());
+            });
+
+            List<Relationships> relationships = relationships(objectTypes, relationshipCount);
+            int[] relationshipIds = insert(connection, "INSERT INTO relationships (relationship_name, relationship_type, relationship_description, "
+                    + "attributes_json, sort_order, filter_by_type, filter_by_object_type_id) VALUES (?, ?, ?, ?, ?, ?, ?)", relationships.size(), (statement, i) -> {
+                Relationships relationship = relationships.get(i);
+                statement.setString(1, relationship.getRelationshipName());
+                statement.setString(2, relationship.getRelationshipType().name());
+                statement.setString(3, relationship.getRelationshipDescription());
+                statement.setString(4, relationship.getAttributesJson());
+                statement.setInt(5, relationship.getSortOrder());
+                statement.setString(6, relationship.getFilterByType().name());
+                // Generated object type ids are 1-based positions in the inserted list.
+                statement.setInt(7, objectTypeIds[relationship.getFilterByObjectType().getId() - 1]);
+            });
+
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "INSERT INTO relationship_dependencies (dependency_name, dependency_type, relationship_id) VALUES (?, ?, ?)")) {
+                for (int relationshipId : relationshipIds) {
+                    for (RelationshipDependencies dependency : dependencies(relationshipId, dependenciesPerRelationship)) {
+                        statement.setString(1, dependency.getDependencyName());
+                        statement.setString(2, dependency.getDependencyType().name());
+                        statement.setInt(3, relationshipId);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                }
+            }
+            connection.commit();
+            return new Dataset(objectTypeIds, facilityIds, relationshipIds);
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Deletes the rows of a dataset, children first.
+     */
+    public static void unload(Connection connection, Dataset dataset) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try {
+            delete(connection, "DELETE FROM relationship_dependencies WHERE relationship_id = ANY(?)", dataset.relationshipIds);
+            delete(connection, "DELETE FROM relationships WHERE id = ANY(?)", dataset.relationshipIds);
+            delete(connection, "DELETE FROM attributes WHERE fk_object_type_id = ANY(?)", dataset.objectTypeIds);
+            delete(connection, "DELETE FROM object_types WHERE id = ANY(?)", dataset.objectTypeIds);
+            delete(connection, "DELETE FROM facilities WHERE id = ANY(?)", dataset.facilityIds);
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+    }
+
+    private static void delete(Connection connection, String sql, int[] ids) throws SQLException {
+        Integer[] boxed = new Integer[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            boxed[i] = ids[i];
+        }
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            statement.setArray(1, connection.createArrayOf("integer", boxed));
+            statement.executeUpdate();
+        }
+    }
+
+    private static int[] insert(Connection connection, String sql, int rows, RowBinder binder) throws SQLException {
+        int[] ids = new int[rows];
+        try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            for (int i = 0; i < rows; i++) {
+                binder.bind(statement, i);
+                statement.addBatch();
+            }
+            statement.executeBatch();
+            try (ResultSet keys = statement.getGeneratedKeys()) {
+                for (int i = 0; i < rows && keys.next(); i++) {
+                    ids[i] = keys.getInt(1);
+                }
+            }
+        }
+        return ids;
+    }
+
+    private Random random(int stream, int entity) {
+        return new Random(seed * 31 + stream * 1_000_003L + entity);
+    }
+
+    private static String name(Random random) {
+        return ADJECTIVES[random.nextInt(ADJECTIVES.length)] + ' ' + NOUNS[random.nextInt(NOUNS.length)];
+    }
+
+    private interface RowBinder {
+        void bind(PreparedStatement statement, int row) throws SQLException;
+    }
+
+    /**
+     * Database ids of a loaded dataset.
+     */
+    public static final class Dataset {
+        private final int[] objectTypeIds;
+        private final int[] facilityIds;
+        private final int[] relationshipIds;
+
+        private Dataset(int[] objectTypeIds, int[] facilityIds, int[] relationshipIds) {
+            this.objectTypeIds = objectTypeIds;
+            this.facilityIds = facilityIds;
+            this.relationshipIds = relationshipIds;
+        }
+
+        public int[] getObjectTypeIds() {
+            return objectTypeIds;
+        }
+
+        public int[] getFacilityIds() {
+            return facilityIds;
+        }
+
+        public int[] getRelationshipIds() {
+            return relationshipIds;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package perf;
+
+import model.Attributes;
+import model.ObjectTypes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import snapshot.AttributeView;
+import snapshot.ObjectTypeView;
+import snapshot.OntologySnapshot;
+import snapshot.SnapshotMaintainer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Read throughput of the ontology while one thread keeps writing, with 1, 4 and 8 reader threads.
+ * The {@code snapshot} groups read the immutable {@link OntologySnapshot} published by a
+ * {@link SnapshotMaintainer}; the {@code locked} groups read mutable model objects in maps
+ * guarded by a read-write lock, the usual alternative. A read looks up an object type and walks
+ * its attributes, a write replaces one object type and one of its attributes. Reader throughput
+ * of the snapshot groups should grow in proportion to the reader threads, up to the cores available.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Group)
+public class SnapshotBenchmarks {
+
+    // Keeps the writer at a steady pace instead of spinning on the write lock.
+    private static final long WRITE_PAUSE_TOKENS = 1000;
+
+    @Param("42")
+    private long seed;
+
+    @Param("2000")
+    private int objectTypeCount;
+
+    @Param("20")
+    private int attributesPerObjectType;
+
+    private final SnapshotMaintainer maintainer = new SnapshotMaintainer();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, ObjectTypes> lockedObjectTypes = new HashMap<>();
+    private final Map<Integer, List<Attributes>> lockedAttributes = new HashMap<>();
+
+    @Setup
+    public void generate() {
+        OntologyDataGenerator generator = new OntologyDataGenerator(seed);
+        List<ObjectTypes> objectTypes = generator.objectTypes(objectTypeCount);
+        maintainer.update(snapshot -> {
+            OntologySnapshot next = snapshot;
+            for (ObjectTypes objectType : objectTypes) {
+                next = next.withObjectType(ObjectTypeView.of(objectType));
+                for (Attributes attribute : generator.attributes(objectType.getId(), attributesPerObjectType)) {
+                    next = next.withAttribute(AttributeView.of(attribute, objectType.getId()));
+                }
+            }
+            return next;
+        });
+        for (ObjectTypes objectType : objectTypes) {
+            lockedObjectTypes.put(objectType.getId(), objectType);
+            lockedAttributes.put(objectType.getId(), new ArrayList<>(generator.attributes(objectType.getId(), attributesPerObjectType)));
+        }
+    }
+
+    private int readSnapshot() {
+        OntologySnapshot snapshot = maintainer.current();
+        int id = 1 + ThreadLocalRandom.current().nextInt(objectTypeCount);
+        int usage = snapshot.getObjectType(id).getVersion();
+        for (AttributeView attribute : snapshot.getAttributes(id)) {
+            usage += attribute.getUsageCount();
+        }
+        return usage;
+    }
+
+    private void writeSnapshot() {
+        int id = 1 + ThreadLocalRandom.current().nextInt(objectTypeCount);
+        maintainer.update(snapshot -> {
+            ObjectTypeView objectType = snapshot.getObjectType(id);
+            AttributeView attribute = snapshot.getAttributes(id).iterator().next();
+            return snapshot.withObjectType(new ObjectTypeView(id, objectType.getName(), objectType.getDescription(),
+                            objectType.getVersion() + 1, objectType.getCreatedAt(), objectType.getUpdatedAt()))
+                    .withAttribute(new AttributeView(attribute.getId(), id, attribute.getName(), attribute.getDataType(),
+                            attribute.isRequired(), attribute.getDefaultValue(), attribute.getEnumValues(), attribute.isIndexed(),
+                            attribute.getUsageCount() + 1, attribute.getVersion() + 1));
+        });
+        Blackhole.consumeCPU(WRITE_PAUSE_TOKENS);
+    }
+
+    private int readLocked() {
+        int id = 1 + ThreadLocalRandom.current().nextInt(objectTypeCount);
+        lock.readLock().lock();
+        try {
+            int usage = lockedObjectTypes.get(id).getVersion();
+            for (Attributes attribute : lockedAttributes.get(id)) {
+                usage += attribute.getAttributeUsageCount();
+            }
+            return usage;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void writeLocked() {
+        int id = 1 + ThreadLocalRandom.current().nextInt(objectTypeCount);
+        lock.writeLock().lock();
+        try {
+            ObjectTypes objectType = lockedObjectTypes.get(id);
+            objectType.setVersion(objectType.getVersion() + 1);
+            Attributes attribute = lockedAttributes.get(id).get(0);
+            attribute.setAttributeUsageCount(attribute.getAttributeUsageCount() + 1);
+            attribute.setVersion(attribute.getVersion() + 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        Blackhole.consumeCPU(WRITE_PAUSE_TOKENS);
+    }
+
+    @Benchmark
+    @Group("snapshot1")
+    @GroupThreads(1)
+    public int snapshot1Read() {
+        return readSnapshot();
+    }
+
+    @Benchmark
+    @Group("snapshot1")
+    @GroupThreads(1)
+    public void snapshot1Write() {
+        writeSnapshot();
+    }
+
+    @Benchmark
+    @Group("snapshot4")
+    @GroupThreads(4)
+    public int snapshot4Read() {
+        return readSnapshot();
+    }
+
+    @Benchmark
+    @Group("snapshot4")
+    @GroupThreads(1)
+    public void snapshot4Write() {
+        writeSnapshot();
+    }
+
+    @Benchmark
+    @Group("snapshot8")
+    @GroupThreads(8)
+    public int snapshot8Read() {
+        return readSnapshot();
+    }
+
+    @Benchmark
+    @Group("snapshot8")
+    @GroupThreads(1)
+    public void snapshot8Write() {
+        writeSnapshot();
+    }
+
+    @Benchmark
+    @Group("locked1")
+    @GroupThreads(1)
+    public int locked1Read() {
+        return readLocked();
+    }
+
+    @Benchmark
+    @Group("locked1")
+    @GroupThreads(1)
+    public void locked1Write() {
+        writeLocked();
+    }
+
+    @Benchmark
+    @Group("locked4")
+    @GroupThreads(4)
+    public int locked4Read() {
+        return readLocked();
+    }
+
+    @Benchmark
+    @Group("locked4")
+    @GroupThreads(1)
+    public void locked4Write() {
+        writeLocked();
+    }
+
+    @Benchmark
+    @Group("locked8")
+    @GroupThreads(8)
+    public int locked8Read() {
+        return readLocked();
+    }
+
+    @Benchmark
+    @Group("locked8")
+    @GroupThreads(1)
+    public void locked8Write() {
+        writeLocked();
+    }
+}
@@ -0,0 +1,111 @@
+package perf;
+
+import model.Attributes;
+import model.ObjectTypes;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import versioning.GitOntologyRepository;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Commits to a {@link GitOntologyRepository} holding a generated ontology of {@code objectTypeCount}
+ * object types, in a temporary bare repository. {@code commitAttribute} changes one attribute of a
+ * random object type and commits it, which should cost the same at 100k object types as at a
+ * hundred; {@code diffLastCommit} lists the changes of the latest commit. Populating the default
+ * 100k object types takes about two minutes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class VersioningBenchmarks {
+
+    private static final String BRANCH = "master";
+    // Object types staged per commit while the repository is populated, to bound the staged map.
+    private static final int LOAD_CHUNK = 10_000;
+
+    @Param("42")
+    private long seed;
+
+    @Param("100000")
+    private int objectTypeCount;
+
+    @Param("5")
+    private int attributesPerObjectType;
+
+    private final PersonIdent author = new PersonIdent("bench", "bench@localhost");
+    private Path directory;
+    private GitOntologyRepository repository;
+    private OntologyDataGenerator generator;
+    private long edits;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        directory = Files.createTempDirectory("ontology-versioning");
+        repository = new GitOntologyRepository(new File(directory.toFile(), "ontology.git"));
+        generator = new OntologyDataGenerator(seed);
+        List<ObjectTypes> objectTypes = generator.objectTypes(objectTypeCount);
+        for (ObjectTypes objectType : objectTypes) {
+            repository.stage(objectType);
+            for (Attributes attribute : generator.attributes(objectType.getId(), attributesPerObjectType)) {
+                repository.stage(objectType.getId(), attribute);
+            }
+            if (objectType.getId() % LOAD_CHUNK == 0) {
+                repository.commit(BRANCH, "Load up to object type " + objectType.getId(), author);
+            }
+        }
+        repository.commit(BRANCH, "Load " + objectTypeCount + " object types", author);
+        commitAttribute();
+    }
+
+    @TearDown(Level.Trial)
+    public void unload() throws IOException {
+        repository.close();
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public ObjectId commitAttribute() throws IOException {
+        int objectTypeId = 1 + ThreadLocalRandom.current().nextInt(objectTypeCount);
+        List<Attributes> attributes = generator.attributes(objectTypeId, attributesPerObjectType);
+        Attributes attribute = attributes.get(ThreadLocalRandom.current().nextInt(attributes.size()));
+        // A new value every time, so no commit is skipped as identical to the head.
+        attribute.setDefaultValue("edit " + ++edits);
+        repository.stage(objectTypeId, attribute);
+        return repository.commit(BRANCH, "Edit attribute " + attribute.getId(), author);
+    }
+
+    @Benchmark
+    public List<DiffEntry> diffLastCommit() throws IOException {
+        return repository.diff(BRANCH + "~1", BRANCH);
+    }
+}
@@ -0,0 +1,262 @@
+package perf.load;
+
+import admission.AdmissionController;
+import admission.OperationClass;
+import metrics.LatencyHistogram;
+import servlet.ApiExecutor;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Overloads a simulated database twice with the same open-loop arrivals: once through the API
+ * executor alone, as the REST API ran before admission control, and once through the
+ * {@link AdmissionController} in front of it. No real database is needed.
+ * <p>
+ * The simulated database serves {@code cores} operations at full speed; beyond that every
+ * operation slows down in proportion to the concurrency, plus a contention penalty per excess
+ * operation, so that throughput drops once it is overcommitted, the way a connection pool
+ * hammering a database does. Bulk operations cost {@code bulkCost} times a single one.
+ * <p>
+ * Options, all {@code name=value}, optionally prefixed with {@code --}:
+ * <ul>
+ * <li>rate: requests per second (default 2500, more than the database sustains)</li>
+ * <li>duration: an ISO-8601 duration per run (default PT10S)</li>
+ * <li>mix: weights of write, read and bulk requests (default 20,70,10)</li>
+ * <li>cores, serviceMillis, contention, bulkCost: the simulated database (defaults 8, 4, 0.05, 5)</li>
+ * <li>threads, queue: the API executor (defaults 16 and 256)</li>
+ * <li>maxConcurrency, admissionQueue, maxWaitMillis: the controller (defaults 16, 64 and 500)</li>
+ * <li>seed: the arrival schedule</li>
+ * </ul>
+ */
+public class AdmissionOverloadSimulation {
+
+    private static final double[] PERCENTILES = {50, 99, 99.9};
+
+    public static void main(String[] args) throws InterruptedException {
+        Map<String, String> options = parse(args);
+        double rate = Double.parseDouble(options.getOrDefault("rate", "2500"));
+        long duration = Duration.parse(options.getOrDefault("duration", "PT10S")).toNanos();
+        String[] mix = options.getOrDefault("mix", "20,70,10").split(",");
+        double[] weights = new double[OperationClass.values().length];
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = Double.parseDouble(mix[i].trim());
+        }
+        SimulatedDatabase database = new SimulatedDatabase(Integer.parseInt(options.getOrDefault("cores", "8")),
+                TimeUnit.MICROSECONDS.toNanos((long) (1000 * Double.parseDouble(options.getOrDefault("serviceMillis", "4")))),
+                Double.parseDouble(options.getOrDefault("contention", "0.05")),
+                Integer.parseInt(options.getOrDefault("bulkCost", "5")));
+        int threads = Integer.parseInt(options.getOrDefault("threads", "16"));
+        int queue = Integer.parseInt(options.getOrDefault("queue", "256"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+
+        System.out.printf("Simulated database sustains about %.0f single operations/s; offered %.0f requests/s%n",
+                database.capacity(), rate);
+
+        Run baseline = new Run(database, new ApiExecutor(threads, queue), null);
+        baseline.drive(rate, duration, weights, seed);
+        baseline.report("Executor only");
+
+        AdmissionController controller = new AdmissionController(Integer.parseInt(options.getOrDefault("maxConcurrency", "16")),
+                Integer.parseInt(options.getOrDefault("admissionQueue", "64")),
+                Long.parseLong(options.getOrDefault("maxWaitMillis", "500")));
+        Run admitted = new Run(database, new ApiExecutor(threads, queue), controller);
+        admitted.drive(rate, duration, weights, seed);
+        admitted.report("Admission control");
+        for (OperationClass operationClass : OperationClass.values()) {
+            System.out.printf("  final limit %-5s %d%n", operationClass, controller.getLimit(operationClass));
+        }
+        controller.shutdown();
+    }
+
+    static final class SimulatedDatabase {
+
+        private final int cores;
+        private final long serviceNanos;
+        private final double contention;
+        private final int bulkCost;
+        private final AtomicInteger active = new AtomicInteger();
+
+        SimulatedDatabase(int cores, long serviceNanos, double contention, int bulkCost) {
+            this.cores = cores;
+            this.serviceNanos = serviceNanos;
+            this.contention = contention;
+            this.bulkCost = bulkCost;
+        }
+
+        double capacity() {
+            return cores * 1e9 / serviceNanos;
+        }
+
+        void execute(OperationClass operationClass) {
+            int concurrency = active.incrementAndGet();
+            try {
+                double slowdown = 1;
+                if (concurrency > cores) {
+                    slowdown = (double) concurrency / cores * (1 + contention * (concurrency - cores));
+                }
+                long nanos = (long) (serviceNanos * slowdown * (operationClass == OperationClass.BULK ? bulkCost : 1));
+                LockSupport.parkNanos(nanos);
+            } finally {
+                active.decrementAndGet();
+            }
+        }
+    }
+
+    static final class Run {
+
+        private final SimulatedDatabase database;
+        private final ApiExecutor executor;
+        private final AdmissionController controller;
+        private final Map<OperationClass, LatencyHistogram> completed = new EnumMap<>(OperationClass.class);
+        private final Map<OperationClass, LatencyHistogram> rejected = new EnumMap<>(OperationClass.class);
+        private final AtomicInteger pending = new AtomicInteger();
+        private final LongAdder total = new LongAdder();
+
+        Run(SimulatedDatabase database, ApiExecutor executor, AdmissionController controller) {
+            this.database = database;
+            this.executor = executor;
+            this.controller = controller;
+            for (OperationClass operationClass : OperationClass.values()) {
+                completed.put(operationClass, new LatencyHistogram());
+                rejected.put(operationClass, new LatencyHistogram());
+            }
+        }
+
+        void drive(double rate, long durationNanos, double[] weights, long seed) throws InterruptedException {
+            Random random = new Random(seed);
+            double weightSum = 0;
+            for (double weight : weights) {
+                weightSum += weight;
+            }
+            double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+            long start = System.nanoTime();
+            double scheduled = start;
+            long nextReport = start + TimeUnit.SECONDS.toNanos(1);
+            while (scheduled < start + durationNanos) {
+                if (controller != null && System.nanoTime() >= nextReport) {
+                    StringBuilder line = new StringBuilder(String.format("[%3.0f s]", (System.nanoTime() - start) / 1e9));
+                    for (OperationClass operationClass : OperationClass.values()) {
+                        line.append(String.format(" %s limit %2d inflight %2d queued %3d", operationClass,
+                                controller.getLimit(operationClass), controller.getInflight(operationClass), controller.getQueued(operationClass)));
+                    }
+                    System.out.println(line);
+                    nextReport += TimeUnit.SECONDS.toNanos(1);
+                }
+                long intended = (long) scheduled;
+                long now = System.nanoTime();
+                if (now < intended) {
+                    LockSupport.parkNanos(intended - now);
+                }
+                double pick = random.nextDouble() * weightSum;
+                OperationClass operationClass = OperationClass.values()[weights.length - 1];
+                for (int i = 0; i < weights.length; i++) {
+                    pick -= weights[i];
+                    if (pick < 0) {
+                        operationClass = OperationClass.values()[i];
+                        break;
+                    }
+                }
+                submit(operationClass, intended);
+                scheduled += -Math.log(1 - random.nextDouble()) * meanIntervalNanos;
+            }
+            while (pending.get() > 0) {
+                Thread.sleep(10);
+            }
+            executor.shutdown();
+        }
+
+        private void submit(OperationClass operationClass, long intended) {
+            pending.incrementAndGet();
+            total.increment();
+            if (controller == null) {
+                if (!start(operationClass, intended, null)) {
+                    reject(operationClass, intended);
+                }
+                return;
+            }
+            controller.submit(operationClass, new AdmissionController.Admission() {
+                @Override
+                public void admitted(AdmissionController.Permit permit) {
+                    if (!start(operationClass, intended, permit)) {
+                        permit.release();
+                        reject(operationClass, intended);
+                    }
+                }
+
+                @Override
+                public void rejected(int retryAfterSeconds) {
+                    reject(operationClass, intended);
+                }
+            });
+        }
+
+        private boolean start(OperationClass operationClass, long intended, AdmissionController.Permit permit) {
+            try {
+                executor.execute(() -> {
+                    long started = System.nanoTime();
+                    try {
+                        database.execute(operationClass);
+                    } finally {
+                        if (permit != null) {
+                            // Every simulated operation reaches the database
+                            permit.release(System.nanoTime() - started);
+                        }
+                        completed.get(operationClass).record(System.nanoTime() - intended);
+                        pending.decrementAndGet();
+                    }
+                });
+                return true;
+            } catch (RejectedExecutionException e) {
+                return false;
+            }
+        }
+
+        private void reject(OperationClass operationClass, long intended) {
+            rejected.get(operationClass).record(System.nanoTime() - intended);
+            pending.decrementAndGet();
+        }
+
+        void report(String name) {
+            System.out.printf("%n%s, %d requests (ms, from scheduled start):%n", name, total.sum());
+            for (OperationClass operationClass : OperationClass.values()) {
+                LatencyHistogram.Snapshot done = completed.get(operationClass).snapshot();
+                LatencyHistogram.Snapshot refused = rejected.get(operationClass).snapshot();
+                long requests = done.getCount() + refused.getCount();
+                System.out.printf("  %-5s %7d ok %s | %7d rejected (%5.1f%%) p99 %8.2f%n", operationClass, done.getCount(),
+                        percentiles(done), refused.getCount(), requests == 0 ? 0 : 100.0 * refused.getCount() / requests,
+                        refused.getValueAtPercentile(99) / 1e6);
+            }
+        }
+    }
+
+    private static String percentiles(LatencyHistogram.Snapshot snapshot) {
+        StringBuilder text = new StringBuilder();
+        for (double percentile : PERCENTILES) {
+            text.append(String.format(" p%s %8.2f", percentile == (long) percentile ? Long.toString((long) percentile) : Double.toString(percentile),
+                    snapshot.getValueAtPercentile(percentile) / 1e6));
+        }
+        return text.toString();
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int separator = option.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected name=value but got '" + arg + "'");
+            }
+            options.put(option.substring(0, separator), option.substring(separator + 1));
+        }
+        return options;
+    }
+}
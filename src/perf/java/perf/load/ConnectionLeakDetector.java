@@ -0,0 +1,55 @@
+package perf.load;
+
+/**
+ * Watches the connections obtained through {@code metrics.Metrics} during a run. Every journey
+ * holds at most one connection at a time, so more open connections than journeys in flight means
+ * some path returned without disconnecting. The two counters are not read atomically, so only an
+ * excess seen in several consecutive samples is reported.
+ */
+class ConnectionLeakDetector {
+
+    private final int consecutiveSamples;
+    private int suspicious;
+    private long maxExcess;
+    private boolean leakSuspected;
+
+    ConnectionLeakDetector(int consecutiveSamples) {
+        this.consecutiveSamples = consecutiveSamples;
+    }
+
+    /**
+     * @return the connections held beyond the journeys in flight, or 0.
+     */
+    long sample(long openConnections, int inFlight) {
+        long excess = Math.max(0, openConnections - inFlight);
+        if (excess > 0) {
+            suspicious++;
+            maxExcess = Math.max(maxExcess, excess);
+            if (suspicious >= consecutiveSamples) {
+                leakSuspected = true;
+            }
+        } else {
+            suspicious = 0;
+        }
+        return excess;
+    }
+
+    /**
+     * Final check once every journey has finished: any connection still open has leaked.
+     */
+    long drained(long openConnections) {
+        if (openConnections > 0) {
+            leakSuspected = true;
+            maxExcess = Math.max(maxExcess, openConnections);
+        }
+        return openConnections;
+    }
+
+    boolean isLeakSuspected() {
+        return leakSuspected;
+    }
+
+    long getMaxExcess() {
+        return maxExcess;
+    }
+}
@@ -0,0 +1,120 @@
+package perf.load;
+
+import com.google.gson.stream.JsonWriter;
+import metrics.LatencyHistogram;
+import perf.OntologyDataGenerator;
+import utils.DatabaseUtility;
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Replays a workload mix against the DAO layer of a local instance, using the database configured in
+ * {@link DatabaseUtility}, and reports coordinated-omission-corrected percentiles and connection leaks.
+ * <p>
+ * Options, all {@code name=value}, optionally prefixed with {@code --}:
+ * <ul>
+ * <li>rate: journeys per second (default 200)</li>
+ * <li>users: virtual users, i.e. journeys that may run at once (default 1000)</li>
+ * <li>duration, report: ISO-8601 durations such as PT2H (defaults PT5M and PT10S)</li>
+ * <li>mix: weighted journeys (default browse=60,editObjectType=10,facilityCrud=20,dependencyEdit=10)</li>
+ * <li>arrivals: poisson or uniform (default poisson)</li>
+ * <li>seed, objectTypes, attributes, relationships, dependencies: the generated dataset</li>
+ * <li>output: file receiving the final summary as JSON</li>
+ * </ul>
+ * The process exits with status 2 if a connection leak was suspected.
+ */
+public class LoadHarness {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        WorkloadMix mix = WorkloadMix.parse(options.getOrDefault("mix", "browse=60,editObjectType=10,facilityCrud=20,dependencyEdit=10"));
+        OntologyDataGenerator generator = new OntologyDataGenerator(seed);
+
+        OntologyDataGenerator.Dataset dataset;
+        Connection connection = DatabaseUtility.connect();
+        try {
+            dataset = generator.load(connection, Integer.parseInt(options.getOrDefault("objectTypes", "500")),
+                    Integer.parseInt(options.getOrDefault("attributes", "20")), 0,
+                    Integer.parseInt(options.getOrDefault("relationships", "1000")),
+                    Integer.parseInt(options.getOrDefault("dependencies", "5")));
+        } finally {
+            DatabaseUtility.disconnect(connection);
+        }
+
+        boolean clean;
+        OpenLoopDriver driver = new OpenLoopDriver(mix, new OntologyWorkload(dataset, generator.getPrefix()),
+                Double.parseDouble(options.getOrDefault("rate", "200")), Integer.parseInt(options.getOrDefault("users", "1000")),
+                !"uniform".equals(options.get("arrivals")), seed);
+        try {
+            clean = driver.run(Duration.parse(options.getOrDefault("duration", "PT5M")).toNanos(),
+                    Duration.parse(options.getOrDefault("report", "PT10S")).toNanos(), System.out);
+        } finally {
+            unload(dataset);
+        }
+        if (options.containsKey("output")) {
+            try (Writer writer = new FileWriter(options.get("output"))) {
+                writeSummary(writer, driver);
+            }
+        }
+        System.exit(clean ? 0 : 2);
+    }
+
+    private static void unload(OntologyDataGenerator.Dataset dataset) throws SQLException {
+        Connection connection = DatabaseUtility.connect();
+        try {
+            OntologyDataGenerator.unload(connection, dataset);
+        } finally {
+            DatabaseUtility.disconnect(connection);
+        }
+    }
+
+    private static void writeSummary(Writer out, OpenLoopDriver driver) throws IOException {
+        JsonWriter writer = new JsonWriter(out);
+        writer.setIndent("  ");
+        writer.beginObject();
+        writer.name("connectionLeakSuspected").value(driver.isLeakSuspected());
+        writer.name("operations").beginObject();
+        for (OperationStats operation : driver.getStats().values()) {
+            writer.name(operation.getName()).beginObject();
+            writer.name("errors").value(operation.getErrors());
+            writePercentiles(writer, "responseTimeMillis", operation.getResponseTime().snapshot());
+            writePercentiles(writer, "serviceTimeMillis", operation.getServiceTime().snapshot());
+            writer.endObject();
+        }
+        writer.endObject();
+        writer.endObject();
+        writer.flush();
+    }
+
+    private static void writePercentiles(JsonWriter writer, String name, LatencyHistogram.Snapshot snapshot) throws IOException {
+        writer.name(name).beginObject();
+        writer.name("count").value(snapshot.getCount());
+        writer.name("mean").value(snapshot.getMean() / 1e6);
+        for (double percentile : new double[] {50, 90, 99, 99.9, 99.99}) {
+            writer.name("p" + percentile).value(snapshot.getValueAtPercentile(percentile) / 1e6);
+        }
+        writer.name("max").value(snapshot.getMax() / 1e6);
+        writer.endObject();
+    }
+
+    private static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String option = arg.startsWith("--") ? arg.substring(2) : arg;
+            int separator = option.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException("Expected name=value but got '" + arg + "'");
+            }
+            options.put(option.substring(0, separator), option.substring(separator + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,109 @@
+package perf.load;
+
+import dao.AttributesDAO;
+import dao.FacilitiesDAO;
+import dao.ObjectTypesDAO;
+import dao.RelationshipDependenciesDAO;
+import dao.VersionConflictException;
+import model.Attributes;
+import model.Facilities;
+import model.ObjectTypes;
+import model.RelationshipDependencies;
+import perf.OntologyDataGenerator;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * The user journeys the harness replays, each a short sequence of DAO calls as the pages issue them.
+ * A journey returns false when a DAO call reported a failure; an optimistic version conflict is
+ * an expected outcome under concurrent edits and does not count as a failure.
+ */
+public class OntologyWorkload {
+
+    public static final String BROWSE = "browse";
+    public static final String EDIT_OBJECT_TYPE = "editObjectType";
+    public static final String FACILITY_CRUD = "facilityCrud";
+    public static final String DEPENDENCY_EDIT = "dependencyEdit";
+
+    private final ObjectTypesDAO objectTypesDAO = new ObjectTypesDAO();
+    private final AttributesDAO attributesDAO = new AttributesDAO();
+    private final FacilitiesDAO facilitiesDAO = new FacilitiesDAO();
+    private final RelationshipDependenciesDAO dependenciesDAO = new RelationshipDependenciesDAO();
+    private final OntologyDataGenerator.Dataset dataset;
+    private final String prefix;
+
+    public OntologyWorkload(OntologyDataGenerator.Dataset dataset, String prefix) {
+        this.dataset = dataset;
+        this.prefix = prefix;
+    }
+
+    public boolean run(String operation) {
+        switch (operation) {
+            case BROWSE:
+                return browse();
+            case EDIT_OBJECT_TYPE:
+                return editObjectType();
+            case FACILITY_CRUD:
+                return facilityCrud();
+            case DEPENDENCY_EDIT:
+                return dependencyEdit();
+            default:
+                throw new IllegalArgumentException("Unknown operation " + operation);
+        }
+    }
+
+    // Object type list, then the detail page of one object type with its attributes.
+    private boolean browse() {
+        List<ObjectTypes> objectTypes = objectTypesDAO.getAllObjectTypes();
+        int id = pick(dataset.getObjectTypeIds());
+        ObjectTypes objectType = objectTypesDAO.getObjectTypeById(id);
+        List<Attributes> attributes = attributesDAO.findAttributesByObjectTypeId(id);
+        return !objectTypes.isEmpty() && objectType != null && attributes != null;
+    }
+
+    // Open the edit form, then save with the version read.
+    private boolean editObjectType() {
+        int id = pick(dataset.getObjectTypeIds());
+        ObjectTypes objectType = objectTypesDAO.getObjectTypeById(id);
+        if (objectType == null) {
+            return false;
+        }
+        List<Attributes> attributes = attributesDAO.findAttributesByObjectTypeId(id);
+        try {
+            return objectTypesDAO.updateObjectTypeById(id, objectType.getVersion(), objectType.getName(),
+                    "Edited " + System.nanoTime(), attributes);
+        } catch (VersionConflictException e) {
+            return true;
+        }
+    }
+
+    private boolean facilityCrud() {
+        int n = ThreadLocalRandom.current().nextInt(1_000_000);
+        Facilities created = facilitiesDAO.createFacility(prefix + "load facility " + n, "load district", BigDecimal.valueOf(n, 2),
+                Facilities.FacilityType.WAREHOUSE, Facilities.OperationalStatus.UNDER_CONSTRUCTION, null);
+        if (created.getId() == 0) {
+            return false;
+        }
+        boolean ok = facilitiesDAO.getFacilityDetailsById(created.getId()) != null
+                && facilitiesDAO.updateFacilityDetails(created.getId(), created.getName(), "moved district", created.getSizeInSquareFootage(),
+                Facilities.FacilityType.WAREHOUSE, Facilities.OperationalStatus.ACTIVE);
+        return facilitiesDAO.deleteFacility(created.getId()) && ok;
+    }
+
+    private boolean dependencyEdit() {
+        int relationshipId = pick(dataset.getRelationshipIds());
+        List<RelationshipDependencies> dependencies = dependenciesDAO.findAllDependenciesByRelationshipId(relationshipId);
+        RelationshipDependencies created = dependenciesDAO.createRelationshipDependency("load dependency", RelationshipDependencies.DependencyType.ATTRIBUTE, relationshipId);
+        if (created == null) {
+            return false;
+        }
+        boolean ok = dependenciesDAO.updateRelationshipDependency(created.getId(), "load dependency edited", RelationshipDependencies.DependencyType.OBJECT_TYPE);
+        return dependenciesDAO.deleteRelationshipDependencyById(created.getId()) && ok && dependencies != null;
+    }
+
+    private static int pick(int[] ids) {
+        return ids[ThreadLocalRandom.current().nextInt(ids.length)];
+    }
+}
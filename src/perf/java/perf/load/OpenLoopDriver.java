@@ -0,0 +1,161 @@
+package perf.load;
+
+import metrics.LatencyHistogram;
+import metrics.Metrics;
+
+import java.io.PrintStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop load: requests are issued on a fixed schedule, at the target rate, whether or not earlier
+ * requests have completed. A pool of virtual users executes them; when all users are busy requests
+ * queue up and their waiting time counts towards their response time. Falling behind schedule never
+ * slows the arrivals down, which is what keeps the percentiles free of coordinated omission.
+ */
+public class OpenLoopDriver {
+
+    private static final double[] PERCENTILES = {50, 90, 99, 99.9};
+
+    private final WorkloadMix mix;
+    private final OntologyWorkload workload;
+    private final double ratePerSecond;
+    private final int virtualUsers;
+    private final boolean poisson;
+    private final Random random;
+    private final Map<String, OperationStats> stats = new LinkedHashMap<>();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ConnectionLeakDetector leakDetector = new ConnectionLeakDetector(3);
+
+    /**
+     * @param ratePerSecond the arrival rate of journeys.
+     * @param virtualUsers  the number of journeys that can run at once.
+     * @param poisson       true for exponentially distributed gaps between arrivals, false for even spacing.
+     */
+    public OpenLoopDriver(WorkloadMix mix, OntologyWorkload workload, double ratePerSecond, int virtualUsers, boolean poisson, long seed) {
+        this.mix = mix;
+        this.workload = workload;
+        this.ratePerSecond = ratePerSecond;
+        this.virtualUsers = virtualUsers;
+        this.poisson = poisson;
+        this.random = new Random(seed);
+        for (String name : mix.getNames()) {
+            stats.put(name, new OperationStats(name));
+        }
+    }
+
+    /**
+     * Runs the load and waits for the last journey to finish.
+     *
+     * @return true if no connection leak was suspected.
+     */
+    public boolean run(long durationNanos, long reportIntervalNanos, PrintStream out) throws InterruptedException {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(virtualUsers, virtualUsers, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "virtual-user");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.prestartAllCoreThreads();
+        double meanIntervalNanos = TimeUnit.SECONDS.toNanos(1) / ratePerSecond;
+        long start = System.nanoTime();
+        long end = start + durationNanos;
+        long nextReport = start + reportIntervalNanos;
+        double scheduled = start;
+        while (scheduled < end) {
+            long intended = (long) scheduled;
+            long now = System.nanoTime();
+            while (now < intended) {
+                LockSupport.parkNanos(Math.min(intended - now, nextReport - now));
+                now = System.nanoTime();
+                if (now >= nextReport) {
+                    report(out, now - start, executor.getQueue().size());
+                    nextReport += reportIntervalNanos;
+                }
+            }
+            OperationStats operation = stats.get(mix.choose(random.nextDouble()));
+            executor.execute(() -> execute(operation, intended));
+            scheduled += poisson ? -Math.log(1 - random.nextDouble()) * meanIntervalNanos : meanIntervalNanos;
+            if (now >= nextReport) {
+                report(out, now - start, executor.getQueue().size());
+                nextReport += reportIntervalNanos;
+            }
+        }
+        shutdownAndWait(executor, out);
+        long leaked = leakDetector.drained(Metrics.getOpenConnections());
+        out.printf("%nFinished after %.1f s, %d connection(s) still open%n", (System.nanoTime() - start) / 1e9, leaked);
+        summary(out);
+        if (leakDetector.isLeakSuspected()) {
+            out.println("CONNECTION LEAK SUSPECTED: up to " + leakDetector.getMaxExcess() + " connection(s) held beyond the journeys in flight");
+        }
+        return !leakDetector.isLeakSuspected();
+    }
+
+    private void execute(OperationStats operation, long scheduledNanos) {
+        inFlight.incrementAndGet();
+        long started = System.nanoTime();
+        boolean success;
+        try {
+            success = workload.run(operation.getName());
+        } catch (RuntimeException e) {
+            success = false;
+        } finally {
+            inFlight.decrementAndGet();
+        }
+        operation.record(scheduledNanos, started, System.nanoTime(), success);
+    }
+
+    private void shutdownAndWait(ExecutorService executor, PrintStream out) throws InterruptedException {
+        executor.shutdown();
+        while (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            out.println("Waiting for " + inFlight.get() + " journeys in flight to finish");
+        }
+    }
+
+    private void report(PrintStream out, long elapsedNanos, int queued) {
+        int running = inFlight.get();
+        long open = Metrics.getOpenConnections();
+        long excess = leakDetector.sample(open, running);
+        out.printf("[%6.0f s] in flight %d, queued %d, open connections %d%s%n", elapsedNanos / 1e9, running, queued, open,
+                excess > 0 ? " (" + excess + " beyond in-flight journeys)" : "");
+        for (OperationStats operation : stats.values()) {
+            LatencyHistogram.Snapshot interval = operation.takeInterval();
+            if (interval.getCount() > 0) {
+                out.printf("  %-16s %8d req %s%n", operation.getName(), interval.getCount(), percentiles(interval));
+            }
+        }
+    }
+
+    private void summary(PrintStream out) {
+        out.println("Response time (from scheduled start) / service time (from actual start), ms:");
+        for (OperationStats operation : stats.values()) {
+            LatencyHistogram.Snapshot response = operation.getResponseTime().snapshot();
+            LatencyHistogram.Snapshot service = operation.getServiceTime().snapshot();
+            out.printf("  %-16s %8d req %6d err%n    response %s%n    service  %s%n", operation.getName(), response.getCount(),
+                    operation.getErrors(), percentiles(response), percentiles(service));
+        }
+    }
+
+    Map<String, OperationStats> getStats() {
+        return stats;
+    }
+
+    boolean isLeakSuspected() {
+        return leakDetector.isLeakSuspected();
+    }
+
+    private static String percentiles(LatencyHistogram.Snapshot snapshot) {
+        StringBuilder text = new StringBuilder();
+        for (double percentile : PERCENTILES) {
+            text.append(String.format(" p%s %8.2f", percentile == (long) percentile ? Long.toString((long) percentile) : Double.toString(percentile),
+                    snapshot.getValueAtPercentile(percentile) / 1e6));
+        }
+        return text.append(String.format(" max %8.2f", snapshot.getMax() / 1e6)).toString();
+    }
+}
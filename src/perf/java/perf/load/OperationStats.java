@@ -0,0 +1,58 @@
+package perf.load;
+
+import metrics.LatencyHistogram;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies of one operation of the workload. The response time is measured from the moment the
+ * request was scheduled to be sent, so time a request spent waiting behind slow ones is included
+ * (the coordinated omission correction); the service time is measured from the moment it started.
+ */
+class OperationStats {
+
+    private final String name;
+    private final LatencyHistogram responseTime = new LatencyHistogram();
+    private final LatencyHistogram serviceTime = new LatencyHistogram();
+    private volatile LatencyHistogram intervalResponseTime = new LatencyHistogram();
+    private final LongAdder errors = new LongAdder();
+
+    OperationStats(String name) {
+        this.name = name;
+    }
+
+    void record(long scheduledNanos, long startedNanos, long finishedNanos, boolean success) {
+        responseTime.record(finishedNanos - scheduledNanos);
+        intervalResponseTime.record(finishedNanos - scheduledNanos);
+        serviceTime.record(finishedNanos - startedNanos);
+        if (!success) {
+            errors.increment();
+        }
+    }
+
+    /**
+     * @return the response times since the previous call; a few values recorded during the swap may
+     * land in either interval.
+     */
+    LatencyHistogram.Snapshot takeInterval() {
+        LatencyHistogram interval = intervalResponseTime;
+        intervalResponseTime = new LatencyHistogram();
+        return interval.snapshot();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    LatencyHistogram getResponseTime() {
+        return responseTime;
+    }
+
+    LatencyHistogram getServiceTime() {
+        return serviceTime;
+    }
+
+    long getErrors() {
+        return errors.sum();
+    }
+}
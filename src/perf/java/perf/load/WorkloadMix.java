@@ -0,0 +1,70 @@
+package perf.load;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Weighted choice between named operations, parsed from a specification such as
+ * {@code browse=60,editObjectType=10,facilityCrud=20,dependencyEdit=10}.
+ */
+public class WorkloadMix {
+
+    private final String[] names;
+    private final int[] cumulativeWeights;
+    private final int totalWeight;
+
+    public WorkloadMix(Map<String, Integer> weights) {
+        names = new String[weights.size()];
+        cumulativeWeights = new int[weights.size()];
+        int total = 0;
+        int i = 0;
+        for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+            if (entry.getValue() < 0) {
+                throw new IllegalArgumentException("Negative weight for " + entry.getKey());
+            }
+            total += entry.getValue();
+            names[i] = entry.getKey();
+            cumulativeWeights[i++] = total;
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("The workload mix has no weight");
+        }
+        totalWeight = total;
+    }
+
+    public static WorkloadMix parse(String specification) {
+        Map<String, Integer> weights = new LinkedHashMap<>();
+        for (String part : specification.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected name=weight but got '" + part + "'");
+            }
+            weights.put(pair[0].trim(), Integer.parseInt(pair[1].trim()));
+        }
+        return new WorkloadMix(weights);
+    }
+
+    /**
+     * @param roll a uniformly distributed value in [0, 1).
+     * @return the name of the chosen operation.
+     */
+    public String choose(double roll) {
+        int point = (int) (roll * totalWeight);
+        for (int i = 0; i < cumulativeWeights.length; i++) {
+            if (point < cumulativeWeights[i]) {
+                return names[i];
+            }
+        }
+        return names[names.length - 1];
+    }
+
+    public List<String> getNames() {
+        List<String> result = new ArrayList<>();
+        for (String name : names) {
+            result.add(name);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,4 @@
+/**
+ * Package for perf.load.
+ */
+package perf.load;
\ No newline at end of file
@@ -0,0 +1,4 @@
+/**
+ * Package for perf.
+ */
+package perf;
\ No newline at end of file
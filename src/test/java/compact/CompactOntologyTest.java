@@ -0,0 +1,154 @@
+package compact;
+
+import junit.framework.TestCase;
+import model.Attributes;
+import model.ObjectTypes;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Round-trips random object types and attributes through {@link CompactOntology} and compares
+ * the adapters' copies with the originals, field by field.
+ */
+public class CompactOntologyTest extends TestCase {
+
+    private static final String[] NAMES = {"name", "code", "status", "weight", "created", null};
+    private static final List<List<String>> ENUM_VALUES = Arrays.asList(
+            null, Arrays.asList("LOW", "HIGH"), Arrays.asList("LOW", null, "HIGH"), new ArrayList<>());
+
+    public void testEnumValuesWithNullElements() {
+        ObjectTypes objectType = objectType(3);
+        Attributes attribute = new Attributes();
+        attribute.setId(30);
+        attribute.setEnumValues(Arrays.asList("A", null));
+        Map<Integer, List<Attributes>> attributes = new HashMap<>();
+        attributes.put(3, List.of(attribute));
+
+        CompactOntology ontology = CompactOntology.of(List.of(objectType), attributes);
+        assertEquals(Arrays.asList("A", null), ontology.getAttributes(3).get(0).getEnumValues());
+    }
+
+    public void testAttributesKeepTheirParent() {
+        Attributes attribute = new Attributes();
+        attribute.setId(70);
+        Map<Integer, List<Attributes>> attributes = new HashMap<>();
+        attributes.put(7, List.of(attribute));
+
+        CompactOntology ontology = CompactOntology.of(List.of(objectType(7)), attributes);
+        Attributes copy = ontology.getObjectType(7).getAttributesList().get(0);
+        assertEquals(7, copy.getFkObjectType().getId());
+        assertEquals(7, copy.getObjectTypeId().getId());
+        assertEquals(7, ontology.getAttributes(7).get(0).getFkObjectType().getId());
+    }
+
+    public void testDuplicateObjectTypeIsRejected() {
+        try {
+            CompactOntology.of(List.of(objectType(1), objectType(1)), new HashMap<>());
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testTimestampsKeepMicroseconds() {
+        for (long micros : new long[]{0, 1, -1, 1_700_000_000_123_456L, -86_400_000_001L}) {
+            assertEquals(micros, CompactOntology.encode(CompactOntology.decode(micros)));
+        }
+        assertNull(CompactOntology.decode(CompactOntology.encode(null)));
+    }
+
+    public void testRandomOntologyRoundTrips() {
+        Random random = new Random(45);
+        Attributes.DataTypes[] dataTypes = Attributes.DataTypes.values();
+        List<ObjectTypes> objectTypes = new ArrayList<>();
+        Map<Integer, List<Attributes>> attributes = new HashMap<>();
+        int nextAttributeId = 1;
+        for (int id = 200; id > 0; id -= 1 + random.nextInt(3)) {
+            ObjectTypes objectType = objectType(id);
+            objectType.setDescription(random.nextBoolean() ? null : "type " + random.nextInt(10));
+            objectType.setCreatedAt(random.nextBoolean() ? null : timestamp(random));
+            objectType.setUpdatedAt(timestamp(random));
+            objectTypes.add(objectType);
+            List<Attributes> owned = new ArrayList<>();
+            for (int a = random.nextInt(6); a > 0; a--) {
+                Attributes attribute = new Attributes();
+                attribute.setId(nextAttributeId++);
+                attribute.setName(NAMES[random.nextInt(NAMES.length)]);
+                attribute.setDataType(random.nextInt(8) == 0 ? null : dataTypes[random.nextInt(dataTypes.length)]);
+                attribute.setRequired(random.nextBoolean());
+                attribute.setIndexed(random.nextBoolean());
+                attribute.setDefaultValue(NAMES[random.nextInt(NAMES.length)]);
+                List<String> enumValues = ENUM_VALUES.get(random.nextInt(ENUM_VALUES.size()));
+                attribute.setEnumValues(enumValues == null ? null : new ArrayList<>(enumValues));
+                attribute.setAttributeUsageCount(random.nextInt(1000));
+                attribute.setVersion(random.nextInt(5));
+                owned.add(attribute);
+            }
+            if (!owned.isEmpty() || random.nextBoolean()) {
+                attributes.put(id, owned);
+            }
+        }
+
+        CompactOntology ontology = CompactOntology.of(objectTypes, attributes);
+        assertEquals(objectTypes.size(), ontology.getObjectTypeCount());
+        assertEquals(nextAttributeId - 1, ontology.getAttributeCount());
+        List<ObjectTypes> copies = ontology.getObjectTypes();
+        for (int i = 1; i < copies.size(); i++) {
+            assertTrue(copies.get(i - 1).getId() < copies.get(i).getId());
+        }
+        for (ObjectTypes expected : objectTypes) {
+            assertTrue(ontology.containsObjectType(expected.getId()));
+            ObjectTypes actual = ontology.getObjectType(expected.getId());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getDescription(), actual.getDescription());
+            assertEquals(expected.getVersion(), actual.getVersion());
+            assertEquals(expected.getCreatedAt(), actual.getCreatedAt());
+            assertEquals(expected.getUpdatedAt(), actual.getUpdatedAt());
+            List<Attributes> expectedAttributes = attributes.getOrDefault(expected.getId(), new ArrayList<>());
+            assertEquals(expectedAttributes.size(), actual.getAttributesList().size());
+            for (int a = 0; a < expectedAttributes.size(); a++) {
+                assertAttribute(expected.getId(), expectedAttributes.get(a), actual.getAttributesList().get(a));
+            }
+        }
+        assertFalse(ontology.containsObjectType(201));
+        assertNull(ontology.getObjectType(201));
+        assertTrue(ontology.getAttributes(201).isEmpty());
+    }
+
+    private static void assertAttribute(int objectTypeId, Attributes expected, Attributes actual) {
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertEquals(expected.getDataType(), actual.getDataType());
+        assertEquals(expected.isRequired(), actual.isRequired());
+        assertEquals(expected.isIndexed(), actual.isIndexed());
+        assertEquals(expected.getDefaultValue(), actual.getDefaultValue());
+        assertEquals(expected.getEnumValues(), actual.getEnumValues());
+        assertEquals(expected.getAttributeUsageCount(), actual.getAttributeUsageCount());
+        assertEquals(expected.getVersion(), actual.getVersion());
+        assertEquals(objectTypeId, actual.getFkObjectType().getId());
+        assertEquals(objectTypeId, actual.getObjectTypeId().getId());
+        if (actual.getEnumValues() != null) {
+            // Each copy has its own list, so changing it leaves the ontology as it was.
+            actual.getEnumValues().add("changed");
+        }
+    }
+
+    private static ObjectTypes objectType(int id) {
+        ObjectTypes objectType = new ObjectTypes();
+        objectType.setId(id);
+        objectType.setName("type " + id);
+        objectType.setVersion(id % 4);
+        return objectType;
+    }
+
+    private static Timestamp timestamp(Random random) {
+        Timestamp timestamp = new Timestamp(1_600_000_000_000L + random.nextInt(1_000_000_000) * 1000L);
+        timestamp.setNanos(random.nextInt(1_000_000) * 1000);
+        return timestamp;
+    }
+}
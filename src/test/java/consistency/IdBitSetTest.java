@@ -0,0 +1,113 @@
+package consistency;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks {@link IdBitSet} against {@link BitSet}, including growth past the expected maximum id
+ * and concurrent fills of disjoint 64-aligned ranges.
+ */
+public class IdBitSetTest extends TestCase {
+
+    public void testWordBoundaries() {
+        IdBitSet ids = new IdBitSet(128);
+        int[] present = {0, 63, 64, 127, 128};
+        for (int id : present) {
+            ids.set(id);
+        }
+        for (int id : present) {
+            assertTrue(String.valueOf(id), ids.get(id));
+        }
+        assertFalse(ids.get(1));
+        assertFalse(ids.get(62));
+        assertFalse(ids.get(65));
+        assertEquals(present.length, ids.cardinality());
+        ids.clear(64);
+        assertFalse(ids.get(64));
+        assertTrue(ids.get(63));
+        assertEquals(present.length - 1, ids.cardinality());
+    }
+
+    public void testNegativeAndOutOfRangeIdsAreAbsent() {
+        IdBitSet ids = new IdBitSet(10);
+        ids.set(-1);
+        ids.set(-64);
+        assertFalse(ids.get(-1));
+        assertFalse(ids.get(-64));
+        assertFalse(ids.get(1_000_000));
+        ids.clear(1_000_000);
+        ids.clear(-5);
+        assertEquals(0, ids.cardinality());
+    }
+
+    public void testGrowsPastExpectedMaximum() {
+        IdBitSet ids = new IdBitSet(0);
+        ids.set(5);
+        ids.set(10_000);
+        ids.set(Integer.MAX_VALUE / 64);
+        assertTrue(ids.get(5));
+        assertTrue(ids.get(10_000));
+        assertTrue(ids.get(Integer.MAX_VALUE / 64));
+        assertFalse(ids.get(10_001));
+        assertEquals(3, ids.cardinality());
+    }
+
+    public void testRandomOperationsMatchBitSet() {
+        Random random = new Random(47);
+        IdBitSet ids = new IdBitSet(1000);
+        BitSet expected = new BitSet();
+        for (int step = 0; step < 20000; step++) {
+            int id = random.nextInt(5000);
+            if (random.nextInt(4) == 0) {
+                ids.clear(id);
+                expected.clear(id);
+            } else {
+                ids.set(id);
+                expected.set(id);
+            }
+        }
+        for (int id = 0; id < 5100; id++) {
+            assertEquals(String.valueOf(id), expected.get(id), ids.get(id));
+        }
+        assertEquals(expected.cardinality(), ids.cardinality());
+    }
+
+    public void testConcurrentFillOfAlignedRanges() throws Exception {
+        int partitions = 8;
+        int rangeSize = 64 * 500;
+        IdBitSet ids = new IdBitSet(partitions * rangeSize);
+        ExecutorService executor = Executors.newFixedThreadPool(partitions);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < partitions; p++) {
+                int from = p * rangeSize;
+                futures.add(executor.submit(() -> {
+                    for (int id = from; id < from + rangeSize; id += 3) {
+                        ids.set(id);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+        int expected = 0;
+        for (int p = 0; p < partitions; p++) {
+            for (int id = p * rangeSize; id < (p + 1) * rangeSize; id++) {
+                boolean set = (id - p * rangeSize) % 3 == 0;
+                assertEquals(String.valueOf(id), set, ids.get(id));
+                expected += set ? 1 : 0;
+            }
+        }
+        assertEquals(expected, ids.cardinality());
+    }
+}
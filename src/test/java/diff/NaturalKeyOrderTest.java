@@ -0,0 +1,37 @@
+package diff;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks {@link NaturalKeyOrder} against the order PostgreSQL's {@code COLLATE "C"} sorts in.
+ */
+public class NaturalKeyOrderTest extends TestCase {
+
+    public void testCodePointOrder() {
+        assertTrue(NaturalKeyOrder.compare("Pump", "Valve") < 0);
+        assertTrue(NaturalKeyOrder.compare("Z", "a") < 0);
+        assertTrue(NaturalKeyOrder.compare("Pump", "Pumps") < 0);
+        assertEquals(0, NaturalKeyOrder.compare("Pump", "Pump"));
+    }
+
+    public void testSupplementaryCharactersSortAfterTheBasicPlane() {
+        String high = "\uFFFD";
+        String supplementary = new String(Character.toChars(0x1F600));
+        // String.compareTo sorts the surrogate 0xD83D first, UTF-8 byte order the other way round.
+        assertTrue(high.compareTo(supplementary) > 0);
+        assertTrue(NaturalKeyOrder.compare(high, supplementary) < 0);
+        assertTrue(NaturalKeyOrder.compare(supplementary, high) > 0);
+    }
+
+    public void testNullSortsLast() {
+        assertTrue(NaturalKeyOrder.compare("z", null) < 0);
+        assertTrue(NaturalKeyOrder.compare(null, "a") > 0);
+        assertEquals(0, NaturalKeyOrder.compare((String) null, null));
+    }
+
+    public void testKeysCompareColumnByColumn() {
+        assertTrue(NaturalKeyOrder.compare(new String[]{"Pump", "z"}, new String[]{"Valve", "a"}) < 0);
+        assertTrue(NaturalKeyOrder.compare(new String[]{"Pump", "b"}, new String[]{"Pump", "a"}) > 0);
+        assertEquals(0, NaturalKeyOrder.compare(new String[]{"Pump", null}, new String[]{"Pump", null}));
+    }
+}
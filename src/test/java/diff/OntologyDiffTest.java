@@ -0,0 +1,151 @@
+package diff;
+
+import junit.framework.TestCase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Diffs in-memory ontologies and reads the change set back, checking the changes and their apply order.
+ */
+public class OntologyDiffTest extends TestCase {
+
+    private Path changeSet;
+
+    @Override
+    protected void setUp() throws Exception {
+        changeSet = Files.createTempFile("ontology-diff-test", ".jsonl");
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        Files.deleteIfExists(changeSet);
+    }
+
+    public void testEqualOntologiesHaveNoChanges() throws Exception {
+        Source current = new Source().objectType("Pump", "A pump").attribute("Pump", "flow", "DECIMAL");
+        Source desired = new Source().objectType("Pump", "A pump").attribute("Pump", "flow", "DECIMAL");
+        ChangeSummary summary = OntologyDiff.diff(current, desired, changeSet);
+        assertEquals(0, summary.getTotal());
+        assertTrue(readChanges().isEmpty());
+    }
+
+    public void testInsertsUpdatesAndDeletes() throws Exception {
+        Source current = new Source()
+                .objectType("Pump", "A pump")
+                .objectType("Valve", "A valve")
+                .attribute("Pump", "flow", "DECIMAL")
+                .attribute("Valve", "open", "BOOLEAN");
+        Source desired = new Source()
+                .objectType("Motor", "A motor")
+                .objectType("Pump", "A centrifugal pump")
+                .attribute("Motor", "rpm", "INTEGER")
+                .attribute("Pump", "flow", "DECIMAL");
+        ChangeSummary summary = OntologyDiff.diff(current, desired, changeSet);
+        assertEquals(1, summary.get(EntityKind.OBJECT_TYPE, Change.Operation.INSERT));
+        assertEquals(1, summary.get(EntityKind.OBJECT_TYPE, Change.Operation.UPDATE));
+        assertEquals(1, summary.get(EntityKind.OBJECT_TYPE, Change.Operation.DELETE));
+        assertEquals(1, summary.get(EntityKind.ATTRIBUTE, Change.Operation.INSERT));
+        assertEquals(1, summary.get(EntityKind.ATTRIBUTE, Change.Operation.DELETE));
+        assertEquals(5, summary.getTotal());
+
+        List<Change> changes = readChanges();
+        // Parents are inserted before their children, children deleted before their parents.
+        assertEquals(Arrays.asList("INSERT OBJECT_TYPE[Motor]", "UPDATE OBJECT_TYPE[Pump]",
+                        "INSERT ATTRIBUTE[Motor, rpm]", "DELETE ATTRIBUTE[Valve, open]", "DELETE OBJECT_TYPE[Valve]"),
+                toStrings(changes));
+        Change update = changes.get(1);
+        assertTrue(update.isIncluded(0));
+        assertEquals("A centrifugal pump", update.values()[0]);
+    }
+
+    public void testUpdateOnlyIncludesChangedColumns() throws Exception {
+        Source current = new Source().objectType("Pump", null).attribute("Pump", "flow", "DECIMAL");
+        Source desired = new Source().objectType("Pump", null).attribute("Pump", "flow", "INTEGER");
+        OntologyDiff.diff(current, desired, changeSet);
+        List<Change> changes = readChanges();
+        assertEquals(1, changes.size());
+        Change update = changes.get(0);
+        assertEquals(Change.Operation.UPDATE, update.getOperation());
+        assertTrue(update.isIncluded(0));
+        for (int i = 1; i < EntityKind.ATTRIBUTE.getValueColumns().size(); i++) {
+            assertFalse(update.isIncluded(i));
+        }
+    }
+
+    public void testDuplicateKeyIsRejected() throws Exception {
+        Source current = new Source().objectType("Pump", "one").objectType("Pump", "two");
+        try {
+            OntologyDiff.diff(current, new Source(), changeSet);
+            fail("Expected IOException");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("more than once"));
+        }
+    }
+
+    public void testOutOfOrderSourceIsRejected() throws Exception {
+        Source desired = new Source().objectType("Valve", null).objectType("Pump", null);
+        try {
+            OntologyDiff.diff(new Source(), desired, changeSet);
+            fail("Expected IOException");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("not in natural key order"));
+        }
+    }
+
+    private List<Change> readChanges() throws IOException {
+        List<Change> changes = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(changeSet, StandardCharsets.UTF_8)) {
+            ChangeSet.Reader reader = ChangeSet.read(in);
+            for (Change change = reader.next(); change != null; change = reader.next()) {
+                changes.add(change);
+            }
+        }
+        return changes;
+    }
+
+    private static List<String> toStrings(List<Change> changes) {
+        List<String> strings = new ArrayList<>();
+        for (Change change : changes) {
+            strings.add(change.toString());
+        }
+        return strings;
+    }
+
+    /**
+     * An ontology held in memory, its entities added in the order they are read back in.
+     */
+    private static final class Source implements OntologySource {
+
+        private final Map<EntityKind, List<Entity>> entities = new EnumMap<>(EntityKind.class);
+
+        Source objectType(String name, String description) {
+            return add(new Entity(EntityKind.OBJECT_TYPE, new String[]{name}, new String[]{description}));
+        }
+
+        Source attribute(String objectType, String name, String dataType) {
+            return add(new Entity(EntityKind.ATTRIBUTE, new String[]{objectType, name},
+                    new String[]{dataType, "false", null, "false", null}));
+        }
+
+        private Source add(Entity entity) {
+            entities.computeIfAbsent(entity.getKind(), kind -> new ArrayList<>()).add(entity);
+            return this;
+        }
+
+        @Override
+        public Cursor open(EntityKind kind) {
+            Iterator<Entity> iterator = entities.getOrDefault(kind, new ArrayList<>()).iterator();
+            return () -> iterator.hasNext() ? iterator.next() : null;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package jobs;
+
+import events.ChangeEvent;
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Feeds attribute change events to a started {@link JobScheduler} on a store that records what
+ * is queued, and polls by hand.
+ */
+public class JobSchedulerTest extends TestCase {
+
+    private final RecordingStore store = new RecordingStore();
+    private final JobScheduler scheduler = new JobScheduler(store, 1, TimeUnit.HOURS.toMillis(1), 60_000, 10, 0,
+            new AttributeIndexJob());
+
+    @Override
+    protected void setUp() {
+        scheduler.start();
+    }
+
+    @Override
+    protected void tearDown() {
+        scheduler.stop();
+    }
+
+    public void testBurstQueuesOneJobPerObjectTypePerPoll() {
+        for (int i = 0; i < 3000; i++) {
+            scheduler.onChange(attributeChange(i, 1 + i % 3));
+        }
+        assertTrue(store.dedupeKeys.isEmpty());
+
+        scheduler.poll();
+        List<String> keys = new ArrayList<>(store.dedupeKeys);
+        Collections.sort(keys);
+        String type = AttributeIndexJob.TYPE;
+        assertEquals(List.of(type + ":1", type + ":2", type + ":3"), keys);
+
+        scheduler.poll();
+        assertEquals(3, store.dedupeKeys.size());
+        scheduler.onChange(attributeChange(1, 2));
+        scheduler.poll();
+        assertEquals(4, store.dedupeKeys.size());
+    }
+
+    public void testResetReplacesTheNotedObjectTypes() {
+        scheduler.onChange(attributeChange(1, 5));
+        scheduler.onReset();
+        scheduler.onChange(attributeChange(2, 6));
+        scheduler.poll();
+        assertEquals(List.of(AttributeIndexJob.TYPE), store.dedupeKeys);
+    }
+
+    public void testFailedEnqueueIsRetriedOnTheNextPoll() {
+        store.failing = true;
+        scheduler.onChange(attributeChange(1, 7));
+        scheduler.poll();
+        store.failing = false;
+        store.dedupeKeys.clear();
+        scheduler.poll();
+        assertEquals(List.of(AttributeIndexJob.TYPE + ":7"), store.dedupeKeys);
+    }
+
+    public void testDerivedChangesQueueNothing() {
+        scheduler.onChange(new ChangeEvent(ChangeEvent.ATTRIBUTES, 1, 8, ChangeEvent.Operation.DERIVED, 1));
+        scheduler.poll();
+        assertTrue(store.dedupeKeys.isEmpty());
+    }
+
+    private static ChangeEvent attributeChange(int attributeId, int objectTypeId) {
+        return new ChangeEvent(ChangeEvent.ATTRIBUTES, attributeId, objectTypeId, ChangeEvent.Operation.UPDATE, 1);
+    }
+
+    /**
+     * Records the keys of queued jobs and claims nothing; touches no database.
+     */
+    private static final class RecordingStore extends JobStore {
+        private final List<String> dedupeKeys = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean failing;
+
+        @Override
+        public long enqueue(String type, String dedupeKey, String parameters, int maxAttempts) {
+            if (failing) {
+                return -1;
+            }
+            dedupeKeys.add(dedupeKey);
+            return dedupeKeys.size();
+        }
+
+        @Override
+        List<Job> claim(String workerId, Collection<String> types, int limit, long leaseMillis) {
+            return Collections.emptyList();
+        }
+
+        @Override
+        void renewLeases(String workerId, Collection<Long> ids, long leaseMillis) {
+        }
+
+        @Override
+        int reapExpired() {
+            return 0;
+        }
+
+        @Override
+        int purge(long retentionMillis) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package migration;
+
+import junit.framework.TestCase;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Checks how {@link SqlScriptMigration} splits scripts into statements, and that every shipped
+ * migration can be loaded.
+ */
+public class SqlScriptMigrationTest extends TestCase {
+
+    public void testSplitsAtSemicolons() {
+        assertEquals(Arrays.asList("CREATE TABLE a (id INTEGER)", "CREATE TABLE b (id INTEGER)"),
+                SqlScriptMigration.split("CREATE TABLE a (id INTEGER);\nCREATE TABLE b (id INTEGER);\n"));
+    }
+
+    public void testLastStatementNeedsNoSemicolon() {
+        assertEquals(Arrays.asList("SELECT 1", "SELECT 2"), SqlScriptMigration.split("SELECT 1; SELECT 2"));
+    }
+
+    public void testSkipsCommentsAndEmptyStatements() {
+        List<String> statements = SqlScriptMigration.split("-- a comment; not a statement\n;;\n"
+                + "SELECT /* inline; comment */ 1;\n-- trailing comment");
+        assertEquals(1, statements.size());
+        assertEquals("SELECT   1", statements.get(0));
+    }
+
+    public void testKeepsSemicolonsInQuotes() {
+        assertEquals(Arrays.asList("SELECT 'a;b', 'it''s;', \"odd;name\"", "SELECT 2"),
+                SqlScriptMigration.split("SELECT 'a;b', 'it''s;', \"odd;name\"; SELECT 2;"));
+    }
+
+    public void testKeepsDollarQuotedBodies() {
+        String function = "CREATE FUNCTION f() RETURNS TRIGGER AS $$\nBEGIN\n    UPDATE t SET x = 1;\n    RETURN NULL;\nEND;\n$$ LANGUAGE plpgsql";
+        String tagged = "DO $body$ BEGIN PERFORM 1; END $body$";
+        assertEquals(Arrays.asList(function, tagged, "SELECT 3"),
+                SqlScriptMigration.split(function + ";\n" + tagged + ";\nSELECT 3;"));
+    }
+
+    public void testParameterReferenceIsNotADollarQuote() {
+        assertEquals(Arrays.asList("PREPARE p AS SELECT $1", "SELECT 2"),
+                SqlScriptMigration.split("PREPARE p AS SELECT $1; SELECT 2;"));
+    }
+
+    public void testShippedMigrationsAreNumberedInOrder() {
+        List<Migration> migrations = Migrations.all();
+        for (int i = 0; i < migrations.size(); i++) {
+            assertEquals(i + 1, migrations.get(i).getVersion());
+            assertNotNull(migrations.get(i).getChecksum());
+        }
+    }
+}
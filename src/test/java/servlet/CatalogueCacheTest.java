@@ -0,0 +1,48 @@
+package servlet;
+
+import junit.framework.TestCase;
+import model.Attributes;
+import snapshot.AttributeView;
+import snapshot.ObjectTypeView;
+import snapshot.SnapshotMaintainer;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Serves the catalogue from snapshots published on the default {@link SnapshotMaintainer},
+ * which is never started here, so nothing is read from the database.
+ */
+public class CatalogueCacheTest extends TestCase {
+
+    public void testCatalogueFollowsTheSnapshot() throws Exception {
+        SnapshotMaintainer maintainer = SnapshotMaintainer.getDefault();
+        maintainer.update(snapshot -> snapshot
+                .withObjectType(new ObjectTypeView(40, "pump", null, 1, Instant.parse("2024-03-01T10:15:30Z"), null))
+                .withObjectType(new ObjectTypeView(3, "valve", "a valve", 2, null, null))
+                .withAttribute(new AttributeView(9, 40, "state", Attributes.DataTypes.ENUM, true, null,
+                        Arrays.asList("ON", null), false, 5, 1))
+                .withAttribute(new AttributeView(7, 40, "speed", Attributes.DataTypes.INTEGER, false, "10",
+                        null, true, 0, 3)));
+
+        CataloguePayload first = CatalogueCache.getDefault().get();
+        String body = body(first);
+        assertTrue(body, body.indexOf("\"valve\"") < body.indexOf("\"pump\""));
+        assertTrue(body, body.indexOf("\"speed\"") < body.indexOf("\"state\""));
+        assertTrue(body, body.contains("\"enumValues\":[\"ON\",null]"));
+        String speed = body.substring(body.indexOf("\"speed\""), body.indexOf('}', body.indexOf("\"speed\"")));
+        assertFalse(speed, speed.contains("enumValues"));
+        assertSame(first, CatalogueCache.getDefault().get());
+
+        maintainer.update(snapshot -> snapshot.withoutObjectType(40));
+        CataloguePayload second = CatalogueCache.getDefault().get();
+        assertNotSame(first, second);
+        assertFalse(body(second).contains("pump"));
+        assertFalse(first.getEtag().equals(second.getEtag()));
+    }
+
+    private static String body(CataloguePayload payload) {
+        return new String(payload.body(CataloguePayload.Encoding.IDENTITY), StandardCharsets.UTF_8);
+    }
+}
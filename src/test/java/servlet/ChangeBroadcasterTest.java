@@ -0,0 +1,164 @@
+package servlet;
+
+import events.ChangeEvent;
+import junit.framework.TestCase;
+
+import javax.websocket.CloseReason;
+import javax.websocket.RemoteEndpoint;
+import javax.websocket.SendHandler;
+import javax.websocket.SendResult;
+import javax.websocket.Session;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Drives a {@link ChangeBroadcaster} with many fake sessions and bursts of more distinct rows than
+ * the queue capacity, flushing by hand instead of on the tick.
+ */
+public class ChangeBroadcasterTest extends TestCase {
+
+    private static final int CAPACITY = 16;
+    private static final int SUBSCRIBERS = 2000;
+    private static final int BURST = 10 * CAPACITY + 3;
+
+    private final ChangeBroadcaster broadcaster = new ChangeBroadcaster(50, CAPACITY, 256);
+
+    public void testBurstWithoutFrameInFlightCollapsesToReset() {
+        List<FakeSession> sessions = subscribe(SUBSCRIBERS);
+        burst(0);
+        assertEquals(SUBSCRIBERS, broadcaster.getSubscriberCount());
+
+        broadcaster.flushAll();
+        for (FakeSession session : sessions) {
+            assertNull(session.closeReason);
+            assertEquals(1, session.frames.size());
+            String frame = session.frames.get(0);
+            assertTrue(frame, frame.startsWith("{\"reset\":true,"));
+            // Only what arrived after the last collapse is left, the latest row included.
+            assertTrue(frame, frame.contains("\"id\":" + (BURST - 1) + ","));
+            assertFalse(frame, frame.contains("\"id\":0,"));
+            session.complete();
+        }
+
+        broadcaster.onChange(event(BURST));
+        broadcaster.flushAll();
+        for (FakeSession session : sessions) {
+            String frame = session.frames.get(1);
+            assertFalse(frame, frame.contains("reset"));
+            assertTrue(frame, frame.contains("\"id\":" + BURST + ","));
+        }
+    }
+
+    public void testBurstWithFrameInFlightDropsOnlyThoseSubscribers() {
+        List<FakeSession> sessions = subscribe(SUBSCRIBERS);
+        broadcaster.onChange(event(0));
+        broadcaster.flushAll();
+        // Every other subscriber acknowledges its frame; the rest still have it in flight.
+        for (int i = 0; i < sessions.size(); i += 2) {
+            sessions.get(i).complete();
+        }
+
+        burst(1);
+        assertEquals(SUBSCRIBERS / 2, broadcaster.getSubscriberCount());
+        for (int i = 0; i < sessions.size(); i++) {
+            FakeSession session = sessions.get(i);
+            if (i % 2 == 0) {
+                assertNull(session.closeReason);
+            } else {
+                assertEquals(CloseReason.CloseCodes.TRY_AGAIN_LATER, session.closeReason.getCloseCode());
+            }
+        }
+
+        broadcaster.flushAll();
+        for (int i = 0; i < sessions.size(); i++) {
+            assertEquals(i % 2 == 0 ? 2 : 1, sessions.get(i).frames.size());
+        }
+    }
+
+    public void testBurstOfOneHotRowStaysQueued() {
+        List<FakeSession> sessions = subscribe(10);
+        for (int i = 0; i < BURST; i++) {
+            broadcaster.onChange(new ChangeEvent(ChangeEvent.OBJECT_TYPES, 7, 0, ChangeEvent.Operation.UPDATE, i));
+        }
+        broadcaster.flushAll();
+        for (FakeSession session : sessions) {
+            String frame = session.frames.get(0);
+            assertFalse(frame, frame.contains("reset"));
+            assertTrue(frame, frame.contains("\"version\":" + (BURST - 1) + "}"));
+        }
+    }
+
+    private List<FakeSession> subscribe(int count) {
+        List<FakeSession> sessions = new ArrayList<>();
+        Set<Integer> none = Collections.emptySet();
+        for (int i = 0; i < count; i++) {
+            FakeSession session = new FakeSession("s" + i);
+            broadcaster.subscribe(session.proxy, none, none, none);
+            sessions.add(session);
+        }
+        return sessions;
+    }
+
+    private void burst(int firstId) {
+        for (int id = firstId; id < firstId + BURST; id++) {
+            broadcaster.onChange(event(id));
+        }
+    }
+
+    private static ChangeEvent event(int id) {
+        return new ChangeEvent(ChangeEvent.OBJECT_TYPES, id, 0, ChangeEvent.Operation.UPDATE, 1);
+    }
+
+    /**
+     * Records the frames sent to it and keeps the last one in flight until {@link #complete()}.
+     */
+    private static final class FakeSession {
+        private final List<String> frames = new ArrayList<>();
+        private final Session proxy;
+        private SendHandler inFlight;
+        private CloseReason closeReason;
+
+        private FakeSession(String id) {
+            RemoteEndpoint.Async remote = (RemoteEndpoint.Async) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class<?>[]{RemoteEndpoint.Async.class}, (target, method, args) -> {
+                        if (method.getName().equals("sendText") && args.length == 2) {
+                            frames.add((String) args[0]);
+                            inFlight = (SendHandler) args[1];
+                            return null;
+                        }
+                        throw new UnsupportedOperationException(method.getName());
+                    });
+            proxy = (Session) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Session.class},
+                    (target, method, args) -> {
+                        switch (method.getName()) {
+                            case "getId":
+                                return id;
+                            case "getAsyncRemote":
+                                return remote;
+                            case "close":
+                                closeReason = (CloseReason) args[0];
+                                return null;
+                            case "isOpen":
+                                return closeReason == null;
+                            case "equals":
+                                return target == args[0];
+                            case "hashCode":
+                                return System.identityHashCode(target);
+                            case "toString":
+                                return id;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+
+        void complete() {
+            SendHandler handler = inFlight;
+            inFlight = null;
+            handler.onResult(new SendResult());
+        }
+    }
+}
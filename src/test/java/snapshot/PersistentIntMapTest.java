@@ -0,0 +1,115 @@
+package snapshot;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Checks {@link PersistentIntMap} against a {@link HashMap} under random puts and removes,
+ * including keys that share long runs of low bits and so end up deep in the trie.
+ */
+public class PersistentIntMapTest extends TestCase {
+
+    public void testEmpty() {
+        PersistentIntMap<String> map = PersistentIntMap.empty();
+        assertEquals(0, map.size());
+        assertTrue(map.isEmpty());
+        assertNull(map.get(1));
+        assertFalse(map.iterator().hasNext());
+        assertSame(map, map.remove(1));
+    }
+
+    public void testPutReturnsSameMapForSameValue() {
+        String value = "a";
+        PersistentIntMap<String> map = PersistentIntMap.<String>empty().put(7, value);
+        assertSame(map, map.put(7, value));
+        assertNotSame(map, map.put(7, "b"));
+        assertEquals(1, map.put(7, "b").size());
+    }
+
+    public void testNullValueIsRejected() {
+        try {
+            PersistentIntMap.empty().put(1, null);
+            fail("Expected IllegalArgumentException");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    public void testKeysDifferingOnlyInHighBits() {
+        int[] keys = {0, 1 << 30, 1 << 31, (1 << 31) | (1 << 30), -1, Integer.MAX_VALUE, Integer.MIN_VALUE};
+        PersistentIntMap<Integer> map = PersistentIntMap.empty();
+        for (int key : keys) {
+            map = map.put(key, key);
+        }
+        assertEquals(keys.length - 1, map.size()); // 1 << 31 is Integer.MIN_VALUE
+        for (int key : keys) {
+            assertEquals(Integer.valueOf(key), map.get(key));
+        }
+        for (int key : keys) {
+            map = map.remove(key);
+            assertNull(map.get(key));
+        }
+        assertEquals(0, map.size());
+    }
+
+    public void testRandomOperationsMatchHashMap() {
+        Random random = new Random(44);
+        for (int round = 0; round < 20; round++) {
+            int range = round % 2 == 0 ? 1000 : Integer.MAX_VALUE;
+            int collidingMask = round % 4 == 1 ? 0xFFFFF000 : 0;
+            PersistentIntMap<Integer> map = PersistentIntMap.empty();
+            Map<Integer, Integer> expected = new HashMap<>();
+            List<PersistentIntMap<Integer>> versions = new ArrayList<>();
+            List<Map<Integer, Integer>> expectedVersions = new ArrayList<>();
+            for (int step = 0; step < 5000; step++) {
+                int key = random.nextInt(range);
+                if (collidingMask != 0) {
+                    // Same low twelve bits, so these keys only diverge deep in the trie.
+                    key = (key & collidingMask) | 0xABC;
+                }
+                if (random.nextInt(3) == 0) {
+                    map = map.remove(key);
+                    expected.remove(key);
+                } else {
+                    int value = random.nextInt();
+                    map = map.put(key, value);
+                    expected.put(key, value);
+                }
+                assertEquals(expected.size(), map.size());
+                if (step % 500 == 0) {
+                    versions.add(map);
+                    expectedVersions.add(new HashMap<>(expected));
+                }
+            }
+            assertContents(expected, map);
+            // Older versions are unaffected by the updates derived from them.
+            for (int i = 0; i < versions.size(); i++) {
+                assertContents(expectedVersions.get(i), versions.get(i));
+            }
+        }
+    }
+
+    private static void assertContents(Map<Integer, Integer> expected, PersistentIntMap<Integer> map) {
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+            assertTrue(map.containsKey(entry.getKey()));
+        }
+        List<Integer> iterated = new ArrayList<>();
+        for (Integer value : map) {
+            iterated.add(value);
+        }
+        List<Integer> visited = new ArrayList<>();
+        map.forEach(visited::add);
+        assertEquals(expected.size(), iterated.size());
+        assertEquals(iterated, visited);
+        Set<Integer> values = new HashSet<>(expected.values());
+        assertEquals(values, new HashSet<>(iterated));
+    }
+}
@@ -0,0 +1,194 @@
+package validation;
+
+import junit.framework.TestCase;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Random;
+
+/**
+ * Checks {@link FieldParsers} against the JDK parsers: Long.parseLong, Double.parseDouble and
+ * java.time, on fixed edge cases and on random values, both valid and corrupted.
+ */
+public class FieldParsersTest extends TestCase {
+
+    private final long[] longs = new long[1];
+    private final double[] doubles = new double[1];
+
+    public void testIsBlank() {
+        assertTrue(FieldParsers.isBlank(null));
+        assertTrue(FieldParsers.isBlank(""));
+        assertTrue(FieldParsers.isBlank(" \t\n"));
+        assertFalse(FieldParsers.isBlank(" x "));
+    }
+
+    public void testLongEdgeCases() {
+        assertLong("0", 0);
+        assertLong(" -42 ", -42);
+        assertLong("+7", 7);
+        assertLong(String.valueOf(Long.MAX_VALUE), Long.MAX_VALUE);
+        assertLong(String.valueOf(Long.MIN_VALUE), Long.MIN_VALUE);
+        for (String invalid : new String[]{"", " ", "-", "+", "1 2", "12a", "9223372036854775808",
+                "-9223372036854775809", "99999999999999999999", "1.0", "--1"}) {
+            assertFalse(invalid, FieldParsers.parseLong(invalid, longs, 0));
+        }
+    }
+
+    public void testRandomLongsMatchParseLong() {
+        Random random = new Random(33);
+        for (int i = 0; i < 100_000; i++) {
+            String value = corrupt(random, String.valueOf(random.nextInt(4) == 0 ? random.nextLong() : random.nextInt(100_000) - 50_000));
+            Long expected;
+            try {
+                expected = Long.parseLong(value.trim());
+            } catch (NumberFormatException e) {
+                expected = null;
+            }
+            assertEquals(value, expected != null, FieldParsers.parseLong(value, longs, 0));
+            if (expected != null) {
+                assertEquals(value, expected.longValue(), longs[0]);
+            }
+        }
+    }
+
+    public void testDoubleEdgeCases() {
+        assertDouble("0", 0);
+        assertDouble("-0.5", -0.5);
+        assertDouble(".25", 0.25);
+        assertDouble("3.", 3);
+        assertDouble(" 1e3 ", 1000);
+        assertDouble("123456789012345678", 123456789012345678d);
+        assertDouble("0.000000000000000000000001", 1e-24);
+        for (String invalid : new String[]{"", ".", "-", "1.2.3", "1e", "abc", "NaN", "Infinity", "1e999", "0x10", "1,5"}) {
+            assertFalse(invalid, FieldParsers.parseDouble(invalid, doubles, 0));
+        }
+    }
+
+    public void testRandomDoublesMatchParseDouble() {
+        Random random = new Random(34);
+        for (int i = 0; i < 100_000; i++) {
+            String value;
+            switch (random.nextInt(3)) {
+                case 0:
+                    value = String.valueOf(random.nextDouble() * Math.pow(10, random.nextInt(20) - 10));
+                    break;
+                case 1:
+                    value = (random.nextInt(2_000_000) - 1_000_000) + "." + random.nextInt(1000);
+                    break;
+                default:
+                    value = String.valueOf(random.nextInt(1_000_000) / 100.0);
+                    break;
+            }
+            value = corrupt(random, value);
+            Double expected;
+            try {
+                expected = Double.parseDouble(value.trim());
+                if (expected.isNaN() || expected.isInfinite() || value.trim().endsWith("d") || value.trim().endsWith("f")) {
+                    expected = null;
+                }
+            } catch (NumberFormatException e) {
+                expected = null;
+            }
+            if (expected == null) {
+                // Double.parseDouble is laxer (hex, type suffixes); only require that what it rejects is rejected.
+                if (!FieldParsers.parseDouble(value, doubles, 0)) {
+                    continue;
+                }
+                fail("Accepted " + value);
+            }
+            assertTrue(value, FieldParsers.parseDouble(value, doubles, 0));
+            assertEquals(value, expected, doubles[0], 0);
+        }
+    }
+
+    public void testDateEdgeCases() {
+        assertDate("1970-01-01");
+        assertDate("2000-02-29");
+        assertDate("1600-12-31");
+        assertDate("0001-01-01");
+        for (String invalid : new String[]{"", "2023-02-29", "1900-02-29", "2024-13-01", "2024-00-10", "2024-04-31",
+                "2024-1-01", "2024/01/01", "20240101", "2024-01-011"}) {
+            assertFalse(invalid, FieldParsers.parseDate(invalid, longs, 0));
+        }
+    }
+
+    public void testRandomDatesMatchLocalDate() {
+        Random random = new Random(35);
+        for (int i = 0; i < 50_000; i++) {
+            String value = String.format("%04d-%02d-%02d", random.nextInt(10_000), random.nextInt(14), random.nextInt(33));
+            LocalDate expected;
+            try {
+                expected = LocalDate.parse(value);
+            } catch (DateTimeParseException e) {
+                expected = null;
+            }
+            assertEquals(value, expected != null, FieldParsers.parseDate(value, longs, 0));
+            if (expected != null) {
+                assertEquals(value, expected.toEpochDay(), longs[0]);
+            }
+        }
+    }
+
+    public void testDateTimes() {
+        assertDateTime("2024-03-01T10:15", LocalDateTime.of(2024, 3, 1, 10, 15));
+        assertDateTime("2024-03-01 10:15:30", LocalDateTime.of(2024, 3, 1, 10, 15, 30));
+        assertDateTime("1969-12-31T23:59:59.999999", LocalDateTime.of(1969, 12, 31, 23, 59, 59, 999_999_000));
+        // Digits beyond microseconds are dropped, as PostgreSQL stores microseconds.
+        assertDateTime("2024-03-01T10:15:30.1234567", LocalDateTime.of(2024, 3, 1, 10, 15, 30, 123_456_000));
+        for (String invalid : new String[]{"2024-03-01", "2024-03-01T24:00", "2024-03-01T10:60", "2024-03-01T10:15:60",
+                "2024-03-01X10:15", "2024-03-01T10:15:3", "2024-03-01T10:15:30.", "2024-03-01T10:15:30.1234567890",
+                "2024-03-01T10:15:30Z", "2024-02-30T10:15"}) {
+            assertFalse(invalid, FieldParsers.parseDateTime(invalid, longs, 0));
+        }
+    }
+
+    public void testRandomDateTimesMatchLocalDateTime() {
+        Random random = new Random(36);
+        for (int i = 0; i < 50_000; i++) {
+            LocalDateTime expected = LocalDateTime.of(1 + random.nextInt(9999), 1 + random.nextInt(12), 1 + random.nextInt(28),
+                    random.nextInt(24), random.nextInt(60), random.nextInt(60), random.nextInt(1_000_000) * 1000);
+            String value = expected.toString();
+            assertDateTime(random.nextBoolean() ? value : value.replace('T', ' '), expected);
+        }
+    }
+
+    private void assertLong(String value, long expected) {
+        assertTrue(value, FieldParsers.parseLong(value, longs, 0));
+        assertEquals(value, expected, longs[0]);
+    }
+
+    private void assertDouble(String value, double expected) {
+        assertTrue(value, FieldParsers.parseDouble(value, doubles, 0));
+        assertEquals(value, expected, doubles[0], 0);
+    }
+
+    private void assertDate(String value) {
+        assertTrue(value, FieldParsers.parseDate(value, longs, 0));
+        assertEquals(value, LocalDate.parse(value).toEpochDay(), longs[0]);
+    }
+
+    private void assertDateTime(String value, LocalDateTime expected) {
+        assertTrue(value, FieldParsers.parseDateTime(value, longs, 0));
+        LocalDateTime truncated = expected.truncatedTo(ChronoUnit.MICROS);
+        long micros = truncated.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + truncated.getNano() / 1000;
+        assertEquals(value, micros, longs[0]);
+    }
+
+    // Leaves most values intact and otherwise pads, truncates or replaces a character.
+    private static String corrupt(Random random, String value) {
+        switch (random.nextInt(8)) {
+            case 0:
+                return " " + value + "\t";
+            case 1:
+                return value.substring(0, random.nextInt(value.length() + 1));
+            case 2:
+                int at = random.nextInt(value.length());
+                return value.substring(0, at) + "x-.e+ 9".charAt(random.nextInt(7)) + value.substring(at + 1);
+            default:
+                return value;
+        }
+    }
+}